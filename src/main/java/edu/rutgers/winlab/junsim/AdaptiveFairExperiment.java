@@ -22,20 +22,18 @@ import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
 
@@ -43,9 +41,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A basic experimental simulation task that generates receiver positions based
- * on intersections of capture disks and tests each one to find the maximal
- * overlap.
+ * An experimental simulation task that places receivers to even out the
+ * contention between transmitters rather than to cover the most disks. A
+ * point is scored as the number of disks covering it, counting only disks
+ * captured by transmitters still above a contention cutoff, divided by the
+ * number of distinct transmitters capturing them. The scores come from
+ * per-transmitter counters, see {@link ContentionScore}.
+ * <p>
+ * Candidate points are grids from a shared {@link RefinementQuadTree}. With a
+ * single refinement window, the best bin of points is scored and a grid half
+ * the size is generated around the best point, until the best score stops
+ * changing. With several windows, the best points of every window become
+ * smaller windows in turn, and windows whose score bound can't beat the best
+ * score found are skipped.
+ * </p>
  * 
  * @author Robert Moore
  */
@@ -113,117 +122,556 @@ public class AdaptiveFairExperiment implements Experiment {
   }
 
   /**
-   * Private class used to parallelize the checking of possible solution points.
+   * Scores solution points by how much they would improve the contention of
+   * the transmitters above the cutoff. Every point with a positive score is
+   * put back into the bins, but only points that land in the desired bin or
+   * higher can be chosen.
    * 
    * @author Robert Moore
    */
-  private static final class SolutionCheckTask implements Callable<Receiver> {
+  private static final class FairScorer extends GuidedScheduler.RangeScorer {
+    /**
+     * The points being scored.
+     */
+    final Point2D[] points;
 
-    private static final Logger log = LoggerFactory
-        .getLogger(SolutionCheckTask.class);
+    /**
+     * Scores points from the contention counters, with this thread's scratch
+     * space.
+     */
+    final ContentionScore contention;
 
     /**
-     * Set of points this task should check.
+     * Reference to the bins for points.
      */
-    Collection<Point2D> solutionPoints;
+    final Binner binner;
+
+    final int cutoffContention;
+
+    final int desiredBin;
 
-    Collection<Transmitter> txers;
     /**
-     * Set of capture disks to check for intersections
+     * Storage for the score of every point, whether or not it can be chosen.
      */
-    Collection<CaptureDisk> disks;
+    final float[] allScores;
 
+    FairScorer(final Point2D[] points, final ContentionScore contention,
+        final Binner binner, final int cutoffContention, final int desiredBin,
+        final float[] allScores) {
+      super();
+      this.points = points;
+      this.contention = contention;
+      this.binner = binner;
+      this.cutoffContention = cutoffContention;
+      this.desiredBin = desiredBin;
+      this.allScores = allScores;
+    }
+
+    @Override
+    void score(final int from, final int to, final float[] scores) {
+      for (int i = from; i < to; ++i) {
+        final Point2D p = this.points[i];
+        final float score = this.contention.score(p.getX(), p.getY(),
+            this.cutoffContention, null);
+        this.allScores[i] = score;
+        scores[i - from] = 0;
+        if (score > 0 && this.binner.put(p, (int) score) >= this.desiredBin) {
+          scores[i - from] = score;
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the fair score of a point from per-transmitter disk counters and
+   * the disks containing the point. The counters are shared, but each thread
+   * needs its own instance for the scratch arrays.
+   * 
+   * @author Robert Moore
+   */
+  static final class ContentionScore {
     /**
-     * Reference to the bins for points.
+     * Every capture disk of the trial, including the covered ones.
+     */
+    final DiskGrid allDisks;
+
+    /**
+     * Disk counters of the transmitters, shared by all threads.
+     */
+    final TransmitterCounters counters;
+
+    /**
+     * Scratch space for the disks whose bounds contain a point.
      */
-    Binner binner;
+    private final int[] containing;
 
-    int cutoffContention = 0;
+    /**
+     * Last stamp at which each transmitter was counted, so the distinct
+     * transmitters can be counted without clearing a set per point.
+     */
+    private final int[] seen;
+
+    /**
+     * Number of disks of each transmitter counted by {@link #bound}, valid
+     * where {@link #seen} holds the current stamp.
+     */
+    private final int[] txDisks;
+
+    private int stamp = 0;
+
+    ContentionScore(final DiskGrid allDisks,
+        final TransmitterCounters counters) {
+      super();
+      this.allDisks = allDisks;
+      this.counters = counters;
+      this.containing = new int[allDisks.table.length()];
+      this.seen = new int[counters.numTransmitters()];
+      this.txDisks = new int[counters.numTransmitters()];
+    }
+
+    /**
+     * Creates a scorer sharing this one's counters, for use by another thread.
+     */
+    ContentionScore copy() {
+      return new ContentionScore(this.allDisks, this.counters);
+    }
+
+    /**
+     * Scores a point as the number of disks covering it, captured by
+     * transmitters whose contention is above {@code minContention}, divided by
+     * the number of distinct transmitters capturing those disks. Disks that are
+     * already covered still count, just as they did when the transmitters were
+     * cloned with none of their disks covered.
+     * 
+     * @param x
+     *          the x-coordinate of the point.
+     * @param y
+     *          the y-coordinate of the point.
+     * @param minContention
+     *          transmitters at or below this contention are ignored.
+     * @param returnedDisks
+     *          if not {@code null}, the indices of the counted disks are added
+     *          to it.
+     * @return the score of the point, or 0 if no disk counts.
+     */
+    float score(final double x, final double y, final int minContention,
+        final DiskBitmap returnedDisks) {
+      final CaptureDiskTable table = this.allDisks.table;
+      final int numContaining = this.allDisks.collectContaining(x, y,
+          this.containing);
+      if (++this.stamp == 0) {
+        Arrays.fill(this.seen, 0);
+        this.stamp = 1;
+      }
+      int numDisks = 0;
+      int uniqueTxers = 0;
+      for (int k = 0; k < numContaining; ++k) {
+        final int j = this.containing[k];
+        final int tx = table.t1[j];
+        if (this.counters.getContention(tx) <= minContention
+            || !table.contains(j, x, y)) {
+          continue;
+        }
+        ++numDisks;
+        if (this.seen[tx] != this.stamp) {
+          this.seen[tx] = this.stamp;
+          ++uniqueTxers;
+        }
+        if (returnedDisks != null) {
+          returnedDisks.add(j);
+        }
+      }
+      return uniqueTxers == 0 ? 0 : (float) numDisks / uniqueTxers;
+    }
+
+    /**
+     * An upper bound on the score of every point in a square. A score is the
+     * mean number of counted disks per capturing transmitter, so it is never
+     * more than the number of counted disks of any one transmitter that
+     * could contain the point.
+     * 
+     * @param x
+     *          the x-coordinate of the center of the square.
+     * @param y
+     *          the y-coordinate of the center of the square.
+     * @param halfSize
+     *          half the width of the square.
+     * @param minContention
+     *          transmitters at or below this contention are ignored.
+     * @return the largest number of counted disks of one transmitter that
+     *         may cover part of the square.
+     */
+    float bound(final double x, final double y, final double halfSize,
+        final int minContention) {
+      final CaptureDiskTable table = this.allDisks.table;
+      final int numOverlapping = this.allDisks.collectOverlapping(x, y,
+          halfSize, this.containing);
+      if (++this.stamp == 0) {
+        Arrays.fill(this.seen, 0);
+        this.stamp = 1;
+      }
+      int max = 0;
+      for (int k = 0; k < numOverlapping; ++k) {
+        final int j = this.containing[k];
+        final int tx = table.t1[j];
+        if (this.counters.getContention(tx) <= minContention
+            || !table.mayContain(j, x, y, halfSize)) {
+          continue;
+        }
+        if (this.seen[tx] != this.stamp) {
+          this.seen[tx] = this.stamp;
+          this.txDisks[tx] = 0;
+        }
+        max = Math.max(max, ++this.txDisks[tx]);
+      }
+      return max;
+    }
+  }
 
-    int desiredBin = 0;
+  /**
+   * Scores a point and returns the disks that were counted, as a view of the
+   * disk table.
+   */
+  private static float calculateScore(final Point2D pnt,
+      final ContentionScore contention, final int minContention,
+      final Receiver rxer) {
+    final DiskBitmap covering = new DiskBitmap();
+    final float score = contention.score(pnt.getX(), pnt.getY(),
+        minContention, covering);
+    covering.runOptimize();
+    rxer.coveringDisks = contention.allDisks.table.view(covering);
+    return score;
+  }
 
+  /**
+   * A region of the universe to search for receiver positions, together with
+   * the score of the point it was centered on.
+   * 
+   * @author Robert Moore
+   */
+  static final class Window {
+    final float minX;
+    final float maxX;
+    final float minY;
+    final float maxY;
     /**
-     * Creates a new solution check task.
+     * Maximum jitter applied to the grid points of this window.
      */
-    public SolutionCheckTask() {
+    final float random;
+    /**
+     * Score of the point this window was centered on, or 0 for the whole
+     * universe.
+     */
+    final float score;
+    /**
+     * Upper bound on the score of every point of this window and of the
+     * windows refined from it.
+     */
+    final float bound;
+    /**
+     * Creation order of this window, used to break ties between scores.
+     */
+    final int sequence;
+
+    Window(final float minX, final float maxX, final float minY,
+        final float maxY, final float random, final float score,
+        final float bound, final int sequence) {
       super();
+      this.minX = minX;
+      this.maxX = maxX;
+      this.minY = minY;
+      this.maxY = maxY;
+      this.random = random;
+      this.score = score;
+      this.bound = bound;
+      this.sequence = sequence;
     }
+  }
 
+  /**
+   * Orders windows by decreasing score, then by creation.
+   */
+  static final Comparator<Window> WINDOW_ORDER = new Comparator<Window>() {
     @Override
-    public Receiver call() {
-      Point2D maxPoint = null;
-      Collection<CaptureDisk> maxPointDisks = null;
-      float maxScore = 0;
-      final int totalDisks = this.disks.size();
-      log.info(String.format(
-          "Computing %,d points for %,d disks. Desired bin: %d.",
-          this.solutionPoints.size(), totalDisks, desiredBin));
+    public int compare(final Window w1, final Window w2) {
+      if (w1.score != w2.score) {
+        return w1.score > w2.score ? -1 : 1;
+      }
+      return w1.sequence - w2.sequence;
+    }
+  };
 
-      /*
-       * Determine the number of disks that intersect this point. If the number
-       * is the new max, then save it. If there are no intersections, remove it.
-       */
-      points: for (final Iterator<Point2D> iter = this.solutionPoints
-          .iterator(); iter.hasNext();) {
-        final Point2D p = iter.next();
+  /**
+   * Generates the grid of one window and keeps its highest-scoring points.
+   * Each window is scored on a single worker, so several windows can be
+   * refined at once. Windows share the best score found so far, and a window
+   * whose bound can't reach it is skipped.
+   * 
+   * @author Robert Moore
+   */
+  private static final class WindowTask implements Callable<Boolean> {
+    final Window window;
+    /**
+     * The grid samples of the trial, shared by all windows.
+     */
+    final RefinementQuadTree samples;
+    final ContentionScore contention;
+    final int cutoffContention;
+    /**
+     * Bits of the best score found by any window, shared by all windows.
+     */
+    final AtomicInteger sharedBest;
+    /**
+     * Half the width and height, and the jitter, of the windows refined from
+     * this one.
+     */
+    final float childWidth;
+    final float childHeight;
+    final float childRandom;
+    /**
+     * The best points of the window, highest score first.
+     */
+    final Point2D[] best;
+    final float[] bestScores;
+    /**
+     * Bound of the window refined from each best point, if it beats the
+     * center of this window.
+     */
+    final float[] childBounds;
+    int numBest = 0;
+    int numPoints = 0;
+    /**
+     * Whether this window was skipped because it couldn't reach the best
+     * score.
+     */
+    boolean skipped = false;
 
-        // for (final CaptureDisk d : this.disks) {
-        Collection<CaptureDisk> pDisk = new HashSet<CaptureDisk>();
-        float score = AdaptiveFairExperiment.calculateScore(p, this.txers, pDisk,
-            this.cutoffContention);
+    WindowTask(final Window window, final RefinementQuadTree samples,
+        final ContentionScore contention, final int cutoffContention,
+        final AtomicInteger sharedBest, final int numBest) {
+      super();
+      this.window = window;
+      this.samples = samples;
+      this.contention = contention;
+      this.cutoffContention = cutoffContention;
+      this.sharedBest = sharedBest;
+      this.childWidth = (window.maxX - window.minX) / 4;
+      this.childHeight = (window.maxY - window.minY) / 4;
+      this.childRandom = Main.config.isRandomized() ? ((this.childWidth + this.childHeight) / 2) * 0.01f
+          : 0f;
+      this.best = new Point2D[numBest];
+      this.bestScores = new float[numBest];
+      this.childBounds = new float[numBest];
+    }
 
-        if (score == 0) {
-          iter.remove();
+    @Override
+    public Boolean call() {
+      if (this.window.bound < Float.intBitsToFloat(this.sharedBest.get())) {
+        this.skipped = true;
+        return Boolean.FALSE;
+      }
+      final Collection<Point2D> refined = this.samples.refine(
+          this.window.minX, this.window.maxX, this.window.minY,
+          this.window.maxY, this.window.random);
+      final Point2D[] points = refined.toArray(new Point2D[refined.size()]);
+      this.numPoints = points.length;
+
+      // Samples shared with an earlier window keep their score, and the
+      // rest are scored here and recorded together
+      final float[] scores = new float[points.length];
+      this.samples.getScores(points, scores, points.length);
+      final Point2D[] scored = new Point2D[points.length];
+      final float[] newScores = new float[points.length];
+      int numScored = 0;
+      for (int k = 0; k < points.length; ++k) {
+        if (Float.isNaN(scores[k])) {
+          scores[k] = this.contention.score(points[k].getX(),
+              points[k].getY(), this.cutoffContention, null);
+          scored[numScored] = points[k];
+          newScores[numScored] = scores[k];
+          ++numScored;
+        }
+      }
+      this.samples.setScores(scored, newScores, numScored);
+
+      for (int k = 0; k < points.length; ++k) {
+        final Point2D p = points[k];
+        final float score = scores[k];
+        if (score <= 0) {
+          continue;
+        }
+        // Earlier points win ties
+        int i = this.numBest;
+        while (i > 0 && this.bestScores[i - 1] < score) {
+          --i;
+        }
+        if (i == this.best.length) {
           continue;
         }
-        // }
-        // int size = pDisk.size();
+        final int toMove = Math.min(this.numBest, this.best.length - 1) - i;
+        System.arraycopy(this.best, i, this.best, i + 1, toMove);
+        System.arraycopy(this.bestScores, i, this.bestScores, i + 1, toMove);
+        this.best[i] = p;
+        this.bestScores[i] = score;
+        this.numBest = Math.min(this.numBest + 1, this.best.length);
+      }
+      if (this.numBest > 0) {
+        WindowTask.raise(this.sharedBest, this.bestScores[0]);
+      }
 
-        if (score > 0) {
-          int bindex = this.binner.put(p, (int)score);
+      /*
+       * Each window refined from this one is centered within its jitter of
+       * this window, and the windows refined from that one are half its size,
+       * so none of them reaches further than twice its half-size and jitter.
+       */
+      final double reach = 2 * Math.max(this.childWidth, this.childHeight) + 2
+          * this.childRandom;
+      for (int i = 0; i < this.numBest; ++i) {
+        if (this.bestScores[i] > this.window.score) {
+          this.childBounds[i] = this.contention.bound(this.best[i].getX(),
+              this.best[i].getY(), reach, this.cutoffContention);
+        }
+      }
+      return Boolean.TRUE;
+    }
 
-          // Add to bin
-          if (score > maxScore && bindex >= this.desiredBin) {
-            maxScore = score;
-            maxPoint = p;
-            maxPointDisks = pDisk;
+    /**
+     * Raises the shared best score to {@code score} if it is lower.
+     */
+    private static void raise(final AtomicInteger sharedBest,
+        final float score) {
+      int current = sharedBest.get();
+      while (score > Float.intBitsToFloat(current)
+          && !sharedBest.compareAndSet(current, Float.floatToIntBits(score))) {
+        current = sharedBest.get();
+      }
+    }
+  }
+
+  /**
+   * Searches for the best receiver position by refining up to
+   * {@code numWindows} windows at once. Every round, each window is searched
+   * on the worker pool, and its best points become smaller windows if they
+   * beat the score the window was centered on. All windows compete for the
+   * same {@code numWindows} places, so a window stuck at a low local maximum is
+   * dropped in favor of better ones elsewhere.
+   * <p>
+   * The windows share the best score found so far. A window whose bound is
+   * below it is skipped, even if the score was found by a window running at
+   * the same time, and a window is never created if its bound is below the
+   * best score of the round that found its center. A window is only skipped
+   * if none of its points or refined windows could have been chosen, so the
+   * result doesn't depend on the order the windows run in.
+   * </p>
+   * 
+   * @param samples
+   *          the grid samples of the trial.
+   * @param contention
+   *          scores points from the transmitter counters.
+   * @param cutoffContention
+   *          transmitters at or below this contention are ignored.
+   * @param numWindows
+   *          the number of windows to refine at once.
+   * @return the best receiver found, or {@code null} if no point has a
+   *         positive score.
+   */
+  private Receiver refineWindows(final RefinementQuadTree samples,
+      final ContentionScore contention, final int cutoffContention,
+      final int numWindows) {
+    // Scores from the previous receiver are stale
+    samples.clear();
+    final TreeSet<Window> windows = new TreeSet<Window>(WINDOW_ORDER);
+    final Set<Point2D> refined = new HashSet<Point2D>();
+    int numCreated = 0;
+    final float universeWidth = Main.config.universeWidth;
+    final float universeHeight = Main.config.universeHeight;
+    windows.add(new Window(0, universeWidth, 0, universeHeight, Main.config
+        .isRandomized() ? ((universeWidth + universeHeight) / 2) * 0.01f : 0f,
+        0, Float.POSITIVE_INFINITY, numCreated++));
+
+    Point2D bestPoint = null;
+    float bestScore = 0;
+    final AtomicInteger sharedBest = new AtomicInteger(
+        Float.floatToIntBits(bestScore));
+    while (!windows.isEmpty()) {
+      final long start = System.currentTimeMillis();
+      final List<WindowTask> tasks = new ArrayList<WindowTask>(windows.size());
+      while (!windows.isEmpty()) {
+        tasks.add(new WindowTask(windows.pollFirst(), samples,
+            contention.copy(), cutoffContention, sharedBest, numWindows));
+      }
+      Main.runAll(tasks, this.workers);
+
+      int numPoints = 0;
+      int numSkipped = 0;
+      for (final WindowTask task : tasks) {
+        numPoints += task.numPoints;
+        if (task.skipped) {
+          ++numSkipped;
+        }
+        for (int i = 0; i < task.numBest; ++i) {
+          if (task.bestScores[i] > bestScore) {
+            bestPoint = task.best[i];
+            bestScore = task.bestScores[i];
           }
         }
-
       }
-      final Receiver maxReceiver = new Receiver();
-      // Remove the highest point and its solution disks
-      if (maxPoint != null) {
-        maxReceiver.setLocation(maxPoint);
-        maxReceiver.coveringDisks = maxPointDisks;
-        maxReceiver.score = maxScore;
+
+      int numPruned = 0;
+      for (final WindowTask task : tasks) {
+        for (int i = 0; i < task.numBest; ++i) {
+          final Point2D p = task.best[i];
+          final float score = task.bestScores[i];
+          // Only dig deeper where this window improved on its center
+          if (score <= task.window.score) {
+            continue;
+          }
+          // A refined window lies within this one's reach
+          final float bound = Math.min(task.childBounds[i], task.window.bound);
+          if (bound < bestScore) {
+            ++numPruned;
+            continue;
+          }
+          if (refined.add(p)) {
+            windows.add(new Window((float) p.getX() - task.childWidth,
+                (float) p.getX() + task.childWidth, (float) p.getY()
+                    - task.childHeight, (float) p.getY() + task.childHeight,
+                task.childRandom, score, bound, numCreated++));
+          }
+        }
       }
-      // No solutions found?
-      else {
-        return null;
+      while (windows.size() > numWindows) {
+        windows.pollLast();
       }
+      log.info(String.format(
+          "Refined %,d windows (%,d points, %,d skipped, %,d pruned) in %,dms, best score %.2f.",
+          Integer.valueOf(tasks.size() - numSkipped),
+          Integer.valueOf(numPoints), Integer.valueOf(numSkipped),
+          Integer.valueOf(numPruned),
+          Long.valueOf(System.currentTimeMillis() - start),
+          Float.valueOf(bestScore)));
+    }
 
-      return maxReceiver;
+    if (bestPoint == null) {
+      return null;
     }
+    final Receiver r = new Receiver();
+    r.score = AdaptiveFairExperiment.calculateScore(bestPoint, contention,
+        cutoffContention, r);
+    r.setLocation(bestPoint);
+    return r;
   }
 
   public Boolean perform() {
     // final ExperimentRender display = new AnimatedRenderer(Main.gfxConfig);
 
-    final Collection<CaptureDisk> disks = new HashSet<CaptureDisk>();
     // Compute all possible capture disks
-    for (final Transmitter t1 : this.config.transmitters) {
-      for (final Transmitter t2 : this.config.transmitters) {
-        final CaptureDisk someDisk = Main.generateCaptureDisk(t1, t2);
-        if (someDisk != null) {
-          disks.add(someDisk);
-        }
-      }
-    }
+    final CaptureDiskTable disks = Main
+        .generateCaptureDisks(this.config.transmitters, this.workers);
 
     if (Main.gfxConfig.generateImages) {
       this.render.setTransmitters(this.config.transmitters);
-      this.render.setCaptureDisks(disks);
+      this.render.setCaptureDisks(disks.getLiveDisks());
 
       final String saveName = this.saveDirectory + File.separator + "1000";
       Main.saveImage(this.render, saveName);
@@ -247,13 +695,14 @@ public class AdaptiveFairExperiment implements Experiment {
 
     // Keep going while there are either solution points or capture disks
     // final Collection<Receiver> receivers = new LinkedList<Receiver>();
-    // Keep track of which collisions are captured so that packet loss
-    // probabilities can be quickly calculated
-    final ConcurrentHashMap<Transmitter, HashSet<Transmitter>> capturedCollisions = new ConcurrentHashMap<Transmitter, HashSet<Transmitter>>();
-    // Add an empty set for each transmitter
-    for (final Transmitter txer : this.config.transmitters) {
-      capturedCollisions.put(txer, new HashSet<Transmitter>());
-    }
+    // Removed disks are counted as covered, and each covered disk is one
+    // captured collision of its transmitter
+    final TransmitterCounters counters = disks.getCounters();
+
+    // Covered disks still count towards a point's score, so score against a
+    // grid that nothing is ever removed from
+    final ContentionScore contention = new ContentionScore(new DiskGrid(disks),
+        counters);
 
     this.binner = new Binner(this.numBins, 1, disks.size() / 3);
 
@@ -271,42 +720,13 @@ public class AdaptiveFairExperiment implements Experiment {
           + "] Evaluating existing receiver position " + (m + 1) + ".");
       // ////////////////////////////////////////////////////////////////////
 
-      SolutionCheckTask task = new SolutionCheckTask();
-      task.solutionPoints = new LinkedList<Point2D>();
-      task.solutionPoints.add(rxer);
-      task.disks = disks;
-      task.txers = this.config.transmitters;
-      task.cutoffContention = 0;
-      task.binner = this.binner;
-      task.desiredBin = 0;
-
-      try {
-        final Future<Receiver> future = this.workers.submit(task);
-
-        try {
-          final Receiver r = future.get();
-          if (r != null) {
-            highestBindex = this.binner.getBindex(r.coveringDisks.size());
-            rxer.coveringDisks = r.coveringDisks;
-          }
-
-        } catch (final ExecutionException e) {
-          // TODO Auto-generated catch block
-          e.printStackTrace();
-        }
-
-      } catch (final InterruptedException e) {
-        e.printStackTrace();
+      if (AdaptiveFairExperiment.calculateScore(rxer, contention, 0, rxer) > 0) {
+        this.binner.put(rxer, rxer.coveringDisks.size());
+        highestBindex = this.binner.getBindex(rxer.coveringDisks.size());
       }
 
       log.info("Receiver score: {}", rxer.coveringDisks.size());
 
-      // Add captures to each transmitter's capture set for collision
-      // calculations
-      for (final CaptureDisk disk : rxer.coveringDisks) {
-        capturedCollisions.get(disk.t1).add(disk.t2);
-        disk.t1.addCoveredDisk(disk);
-      }
       disks.removeAll(rxer.coveringDisks);
 
       // Calculate collision rates for each transmitter
@@ -314,12 +734,12 @@ public class AdaptiveFairExperiment implements Experiment {
       float mean_contention = 0.0f;
       float min_contention = this.config.numTransmitters;
       float max_contention = 0.0f;
-      for (final Transmitter txer : this.config.transmitters) {
+      for (int t = 0; t < counters.numTransmitters(); ++t) {
         // Calculate the number of transmitters in contention
         // Subtract 1 because this transmitter can never be in contention with
         // itself
         final int num_in_contention = this.config.numTransmitters - 1
-            - capturedCollisions.get(txer).size();
+            - counters.coveredDisks[t];
         min_contention = Math.min(num_in_contention, min_contention);
         max_contention = Math.max(num_in_contention, max_contention);
         mean_contention += (float) num_in_contention
@@ -338,7 +758,7 @@ public class AdaptiveFairExperiment implements Experiment {
             this.binner.getBinMins());
 
         // display.setSolutionPoints(this.binner.getMaxBin());
-        this.render.setCaptureDisks(disks);
+        this.render.setCaptureDisks(disks.getLiveDisks());
         this.render.setReceiverPoints(this.config.receivers);
 
         final String saveName = String.format(this.saveDirectory
@@ -352,10 +772,14 @@ public class AdaptiveFairExperiment implements Experiment {
       ++m;
     }
 
+    // Grid samples of every zoom level, shared across receivers
+    final RefinementQuadTree samples = new RefinementQuadTree(
+        this.config.transmitters, this.config.taskRandom(
+            TaskConfig.JITTER_PHASE, 0));
+
     // Finding new positions
-    Collection<Point2D> startingPoints = AdaptiveFairExperiment
-        .generateSolutionPoints(minX, maxX, minY, maxY, random,
-            this.config.transmitters);
+    Collection<Point2D> startingPoints = samples.refine(minX, maxX, minY,
+        maxY, random);
     log.info(String.format("[%d] Generated %,d solution points.\n",
         this.config.trialNumber, startingPoints.size()));
 
@@ -365,11 +789,11 @@ public class AdaptiveFairExperiment implements Experiment {
 
       int maxContention = 0;
       int minContention = this.config.transmitters.size();
-      for (Transmitter tx : this.config.transmitters) {
-        if (tx.getContention() > maxContention) {
-          maxContention = tx.getContention();
-        } else if (tx.getContention() < minContention) {
-          minContention = tx.getContention();
+      for (int t = 0; t < counters.numTransmitters(); ++t) {
+        if (counters.getContention(t) > maxContention) {
+          maxContention = counters.getContention(t);
+        } else if (counters.getContention(t) < minContention) {
+          minContention = counters.getContention(t);
         }
       }
       log.info("Min: {} Max: {}", minContention, maxContention);
@@ -385,153 +809,115 @@ public class AdaptiveFairExperiment implements Experiment {
       log.info("[" + this.config.trialNumber
           + "] Calculating position for receiver " + (m + 1) + ".");
       Receiver maxReceiver = null;
-      float previousMaxScore = 0;
-      HashSet<Point2D> alreadyChecked = new HashSet<Point2D>();
-      HashSet<Point2D> maxChecked = new HashSet<Point2D>();
-      recursiveLoop: do {
-        this.binner.printBins();
-
-        if (maxReceiver != null) {
-          previousMaxScore = maxReceiver.score;
-        }
-        log.info("Using bin {}", this.binner.getMaxBindex());
-        Set<Point2D> possiblePoints = this.binner.getMaxBin();
-        if (possiblePoints == null) {
-          log.info("No more points available in the bins.");
-          break;
+      if (Main.config.refinementWindows > 1) {
+        maxReceiver = this.refineWindows(samples, contention,
+            cutoffContention, Main.config.refinementWindows);
+        if (maxReceiver == null) {
+          break receiverLoop;
         }
-        Set<Point2D> thePoints = new HashSet<Point2D>();
-        for (Iterator<Point2D> iter = possiblePoints.iterator(); iter.hasNext();) {
-          Point2D pnt = iter.next();
-          iter.remove();
-          if (alreadyChecked.contains(pnt)) {
-            maxChecked.add(pnt);
-          } else {
-            thePoints.add(pnt);
+        log.info("Max receiver score: {}", maxReceiver.score);
+      } else {
+        float previousMaxScore = 0;
+        // Scores from the previous receiver are stale
+        samples.clear();
+        HashSet<Point2D> maxChecked = new HashSet<Point2D>();
+        recursiveLoop: do {
+          this.binner.printBins();
+
+          if (maxReceiver != null) {
+            previousMaxScore = maxReceiver.score;
           }
-
-        }
-
-        final int numTasks = Main.config.numThreads;
-        final int numPoints = thePoints.size();
-        final int pointsPerTask = (numPoints / numTasks) + 1;
-        final long numComparisons = disks.size() * (long) numPoints;
-
-        final Collection<SolutionCheckTask> tasks = new LinkedList<AdaptiveFairExperiment.SolutionCheckTask>();
-        final Iterator<Point2D> pointIter = thePoints.iterator();
-        SolutionCheckTask task = new SolutionCheckTask();
-        task.solutionPoints = new LinkedList<Point2D>();
-        task.disks = disks;
-        task.txers = this.config.transmitters;
-        task.desiredBin = highestBindex;
-        task.cutoffContention = cutoffContention;
-        task.binner = this.binner;
-        // task.parent = this;
-        tasks.add(task);
-        for (int i = 0; pointIter.hasNext(); ++i) {
-          Point2D pnt = pointIter.next();
-          task.solutionPoints.add(pnt);
-          alreadyChecked.add(pnt);
-          pointIter.remove();
-          if (i == pointsPerTask) {
-            i = 0;
-            task = new SolutionCheckTask();
-            task.solutionPoints = new LinkedList<Point2D>();
-            task.disks = disks;
-            task.txers = this.config.transmitters;
-            task.binner = this.binner;
-            task.desiredBin = highestBindex;
-            task.cutoffContention = cutoffContention;
-            // task.parent = this;
-            tasks.add(task);
+          log.info("Using bin {}", this.binner.getMaxBindex());
+          final Point2D[] possiblePoints = this.binner.takeMaxBin();
+          if (possiblePoints == null) {
+            log.info("No more points available in the bins.");
+            break;
           }
-        }
-        int sumTasks = 0;
-        for (final SolutionCheckTask t : tasks) {
-          log.info(String.format("Task (%,d)", t.solutionPoints.size()));
-          sumTasks += t.solutionPoints.size();
-        }
-
-        log.info(String
-            .format("Divided %,d/%,d points.\n", sumTasks, numPoints));
-        final long start = System.currentTimeMillis();
+          List<Point2D> thePoints = new ArrayList<Point2D>();
+          for (final Point2D pnt : possiblePoints) {
+            if (samples.isEvaluated(pnt)) {
+              maxChecked.add(pnt);
+            } else {
+              thePoints.add(pnt);
+            }
 
-        try {
-          final List<Future<Receiver>> solutions = this.workers
-              .invokeAll(tasks);
+          }
 
-          for (final Future<Receiver> future : solutions) {
-            if (future.isCancelled() || !future.isDone()) {
-              log.error("One of the tasks was cancelled! Double-check the code!");
-              return Boolean.FALSE;
-            }
-            try {
-              final Receiver r = future.get();
-              if (r == null) {
-                log.warn("No receiver returned.");
-                continue;
-              }
-              if (maxReceiver == null || r.score > maxReceiver.score) {
-                highestBindex = this.binner.getBindex((int)r.score);
-                maxReceiver = r;
-              }
-            } catch (final ExecutionException e) {
-              // TODO Auto-generated catch block
-              e.printStackTrace();
+          final Point2D[] points = thePoints.toArray(new Point2D[thePoints
+              .size()]);
+          thePoints.clear();
+          final int numPoints = points.length;
+          final long numComparisons = disks.size() * (long) numPoints;
+
+          final long start = System.currentTimeMillis();
+          final float[] allScores = new float[numPoints];
+          final List<FairScorer> scorers = new ArrayList<FairScorer>();
+          for (int i = 0; i < Math.max(1, Main.config.numThreads); ++i) {
+            scorers.add(new FairScorer(points, contention.copy(), this.binner,
+                cutoffContention, highestBindex, allScores));
+          }
+          final int best = GuidedScheduler.findMax(numPoints, scorers,
+              this.workers);
+          samples.setScores(points, allScores, numPoints);
+          if (best >= 0) {
+            final Receiver r = new Receiver();
+            r.score = AdaptiveFairExperiment.calculateScore(points[best],
+                contention, cutoffContention, r);
+            r.setLocation(points[best]);
+            if (maxReceiver == null || r.score > maxReceiver.score) {
+              highestBindex = this.binner.getBindex((int) r.score);
+              maxReceiver = r;
             }
           }
+          final long duration = System.currentTimeMillis() - start;
+          log.info(String.format("Computed %,d comparisons in %,dms.\n",
+              numComparisons, duration));
 
-        } catch (final InterruptedException e) {
-          e.printStackTrace();
-        }
-        final long duration = System.currentTimeMillis() - start;
-        log.info(String.format("Computed %,d comparisons in %,dms.\n",
-            numComparisons, duration));
+          if (maxReceiver == null) {
 
-        if (maxReceiver == null) {
+            if (highestBindex == 0) {
+              break receiverLoop;
+            }
 
-          if (highestBindex == 0) {
-            break receiverLoop;
+            highestBindex = this.binner.getMaxBindex();
+            samples.clear();
+            maxChecked.clear();
+            continue recursiveLoop;
           }
 
-          highestBindex = this.binner.getMaxBindex();
-          alreadyChecked.clear();
-          maxChecked.clear();
-          continue recursiveLoop;
-        }
+          samples.forget(maxReceiver);
 
-        alreadyChecked.remove(maxReceiver);
+          log.info("Max receiver score: {}", maxReceiver.score);
 
-        log.info("Max receiver score: {}", maxReceiver.score);
-
-        if (highestBindex == 0) {
-          float max = maxReceiver.score;
-          if (max > this.minRebinValue) {
-            this.binner.rebin(1, (int)(max / 2));
+          if (highestBindex == 0) {
+            float max = maxReceiver.score;
+            if (max > this.minRebinValue) {
+              this.binner.rebin(1, (int)(max / 2), this.workers);
+            }
           }
-        }
 
-        if (previousMaxScore == 0 || maxReceiver.score != previousMaxScore) {
-          // Try again, this time digging deeper around the maximum area.
-          float width = (maxX - minX) / 4;
-          float height = (maxY - minY) / 4;
-          minX = (float) maxReceiver.getX() - width;
-          maxX = (float) maxReceiver.getX() + width;
-          minY = (float) maxReceiver.getY() - height;
-          maxY = (float) maxReceiver.getY() + height;
-          highestBindex = this.binner.getBindex((int)maxReceiver.score);
-          random = Main.config.isRandomized() ? ((width + height) / 2) * 0.01f
-              : 0f;
-          this.binner.putAll(this.generateSolutionPoints(minX, maxX, minY,
-              maxY, random, this.config.transmitters), (int)maxReceiver.score);
-        }
+          if (previousMaxScore == 0 || maxReceiver.score != previousMaxScore) {
+            // Try again, this time digging deeper around the maximum area.
+            float width = (maxX - minX) / 4;
+            float height = (maxY - minY) / 4;
+            minX = (float) maxReceiver.getX() - width;
+            maxX = (float) maxReceiver.getX() + width;
+            minY = (float) maxReceiver.getY() - height;
+            maxY = (float) maxReceiver.getY() + height;
+            highestBindex = this.binner.getBindex((int)maxReceiver.score);
+            random = Main.config.isRandomized() ? ((width + height) / 2) * 0.01f
+                : 0f;
+            this.binner.putAll(samples.refine(minX, maxX, minY, maxY,
+                random), (int)maxReceiver.score);
+          }
 
-      } while (previousMaxScore == 0 || maxReceiver.score > previousMaxScore);
+        } while (previousMaxScore == 0 || maxReceiver.score > previousMaxScore);
 
-      log.info(String.format("Adding %,d max points, instead of %,d total.",
-          maxChecked.size(), alreadyChecked.size()));
+        log.info(String.format("Adding %,d max points, instead of %,d total.",
+            maxChecked.size(), samples.numEvaluated()));
 
-      this.binner.putAll(maxChecked, (int)maxReceiver.score);
+        this.binner.putAll(maxChecked, (int)maxReceiver.score);
+      }
 
       minX = 0;
       maxX = Main.config.universeWidth;
@@ -541,12 +927,6 @@ public class AdaptiveFairExperiment implements Experiment {
       // Add the newest receiver and remove newly covered points and disks
       this.config.receivers.add(maxReceiver);
 
-      // Add captures to each transmitter's capture set for collision
-      // calculations
-      for (final CaptureDisk disk : maxReceiver.coveringDisks) {
-        capturedCollisions.get(disk.t1).add(disk.t2);
-        disk.t1.addCoveredDisk(disk);
-      }
       disks.removeAll(maxReceiver.coveringDisks);
 
       // Calculate collision rates for each transmitter
@@ -554,12 +934,12 @@ public class AdaptiveFairExperiment implements Experiment {
       float mean_contention = 0.0f;
       float min_contention = this.config.numTransmitters;
       float max_contention = 0.0f;
-      for (final Transmitter txer : this.config.transmitters) {
+      for (int t = 0; t < counters.numTransmitters(); ++t) {
         // Calculate the number of transmitters in contention
         // Subtract 1 because this transmitter can never be in contention with
         // itself
         final int num_in_contention = this.config.numTransmitters - 1
-            - capturedCollisions.get(txer).size();
+            - counters.coveredDisks[t];
         min_contention = Math.min(num_in_contention, min_contention);
         max_contention = Math.max(num_in_contention, max_contention);
         mean_contention += (float) num_in_contention
@@ -578,7 +958,7 @@ public class AdaptiveFairExperiment implements Experiment {
             this.binner.getBinMins());
 
         // display.setSolutionPoints(this.binner.getMaxBin());
-        this.render.setCaptureDisks(disks);
+        this.render.setCaptureDisks(disks.getLiveDisks());
         this.render.setReceiverPoints(this.config.receivers);
 
         final String saveName = String.format(this.saveDirectory
@@ -602,121 +982,4 @@ public class AdaptiveFairExperiment implements Experiment {
     return Boolean.TRUE;
   }
 
-  static boolean checkPointInDisk(final Point2D p, final CaptureDisk d) {
-    final double dist1 = Math.sqrt(Math.pow(p.getX() - d.t1.getX(), 2)
-        + Math.pow(p.getY() - d.t1.getY(), 2));
-    final double dist2 = Math.sqrt(Math.pow(p.getX() - d.t2.getX(), 2)
-        + Math.pow(p.getY() - d.t2.getY(), 2));
-    // This point is too far away from the transmitters for this disk
-    if (dist1 > Main.config.maxRangeMeters
-        && dist2 > Main.config.maxRangeMeters) {
-      return false;
-    }
-    return d.disk.contains(p);
-
-  }
-
-  private static Collection<Point2D> generateSolutionPoints(final float minX,
-      final float maxX, final float minY, final float maxY, final float random,
-      final Collection<Transmitter> transmitters) {
-
-    log.info(String
-        .format(
-            "Generating [(%,.2f, %,.2f)x(%,.2f, %,.2f)] dense: %,.1f, random: %,.2f",
-            minX, maxX, minY, maxY, Main.config.getGridDensity(), random));
-
-    final Collection<Point2D> solutionPoints = new HashSet<Point2D>();
-    float density = Main.config.getGridDensity();
-    float xStep = (maxX - minX) / density;
-    float yStep = (maxY - minY) / density;
-
-    // Build a grid assuming some density of points per unit-square
-
-    for (float xIndex = minX; xIndex <= maxX; xIndex += xStep) {
-      for (float yIndex = minY; yIndex <= maxY; yIndex += yStep) {
-        final float x = xIndex
-            + (float) (Main.rand.nextBoolean() ? (Main.rand.nextDouble() * random)
-                : (-Main.rand.nextDouble() * random));
-        if (x < 0 || x > Main.config.universeWidth) {
-          continue;
-        }
-        final float y = yIndex
-            + (float) (Main.rand.nextBoolean() ? (Main.rand.nextDouble() * random)
-                : (-Main.rand.nextDouble() * random));
-        if (y < 0 || y > Main.config.universeHeight) {
-          continue;
-        }
-        Point2D.Float pnt = new Point2D.Float(x, y);
-        if (AdaptiveFairExperiment.checkPointInRange(pnt, transmitters)) {
-          solutionPoints.add(pnt);
-        }
-      }
-
-    }
-
-    return solutionPoints;
-  }
-
-  /**
-   * Returns true if a point is within the transmit radius of at least one
-   * transmitter, else false.
-   * 
-   * @param p
-   *          the point to test.
-   * @return {@code true} if the point is within the transmit radius of at
-   *         leaset one transmitter.
-   */
-  private static boolean checkPointInRange(final Point2D p,
-      final Collection<Transmitter> transmitters) {
-    for (final Transmitter t : transmitters) {
-      final double d = Math.sqrt(Math.pow(p.getX() - t.getX(), 2)
-          + Math.pow(p.getY() - t.getY(), 2));
-      if (d < Main.config.maxRangeMeters) {
-        return true;
-      }
-    }
-    return false;
-  }
-
-  static float calculateScore(Point2D pnt,
-      final Collection<Transmitter> transmitters,
-      final Collection<CaptureDisk> returnedDisks, int minContention) {
-
-    // NASTY hack here. Duplicating all of the state!
-    Collection<Transmitter> startingTxers = new LinkedList<Transmitter>();
-    for (Transmitter tx : transmitters) {
-      if (tx.getContention() > minContention) {
-        startingTxers.add(tx);
-      }
-    }
-
-    // TODO: Make this more efficient. Have points track their disks?
-
-    Object[] txAndDisk = Main.clone(startingTxers);
-    Map<CaptureDisk, CaptureDisk> cloneToOrig = (Map<CaptureDisk, CaptureDisk>) txAndDisk[1];
-    Collection<Transmitter> txers = (Collection<Transmitter>) txAndDisk[0];
-    Map<Transmitter, Integer> origScores = new HashMap<Transmitter, Integer>();
-    for (Transmitter t : txers) {
-      origScores.put(t, t.getContention());
-    }
-
-    HashSet<Transmitter> uniqueTxers = new HashSet<Transmitter>();
-    for (final CaptureDisk d : cloneToOrig.keySet()) {
-      if (checkPointInDisk(pnt, d)) {
-        d.t1.addCoveredDisk(d);
-        returnedDisks.add(cloneToOrig.get(d));
-      }
-    }
-    float score = 0;
-    for (Transmitter tx : txers) {
-      if (tx.getContention() < origScores.get(tx)) {
-        uniqueTxers.add(tx);
-        score += origScores.get(tx) - tx.getContention();
-      }
-    }
-
-    // return uniqueTxers.size();
-    return uniqueTxers.isEmpty() ? 0 : score/uniqueTxers.size();
-  }
-
 }
@@ -138,16 +138,10 @@ public class AnnealingExperimentTask {
       this.render.clear();
     }
 
-    Collection<CaptureDisk> disks = new HashSet<CaptureDisk>();
     // Compute all possible capture disks
-    for (Transmitter t1 : this.config.transmitters) {
-      for (Transmitter t2 : this.config.transmitters) {
-        CaptureDisk someDisk = Main.generateCaptureDisk(t1, t2);
-        if (someDisk != null) {
-          disks.add(someDisk);
-        }
-      }
-    }
+    CaptureDiskTable diskTable = Main.generateCaptureDisks(
+        this.config.transmitters, this.workers);
+    Collection<CaptureDisk> disks = diskTable.getLiveDisks();
     System.out.println("[" + this.config.trialNumber + "] Generated "
         + disks.size() + " disks.");
     if (Main.gfxConfig.generateImages) {
@@ -158,7 +152,7 @@ public class AnnealingExperimentTask {
     }
 
     Collection<Point2D> solutionPoints = AnnealingExperimentTask.generateSolutionPoints(
-        disks, this.config.transmitters, adjacencies);
+        diskTable, this.config.transmitters, adjacencies);
     // Adjacency list is now populated from possible points
     // This occurs in the generateSolutionPoints function
 
@@ -318,13 +312,18 @@ public class AnnealingExperimentTask {
    * Generate solution points and populate the adjacency list.
    */
   private static Collection<Point2D> generateSolutionPoints(
-      Collection<CaptureDisk> disks, Collection<Transmitter> transmitters,
+      CaptureDiskTable disks, Collection<Transmitter> transmitters,
       TreeMap<Point2D, HashSet<Point2D>> adjacencies) {
+    final TransmitterGrid txGrid = new TransmitterGrid(transmitters,
+        Main.config.maxRangeMeters);
     System.out.println("Building solution points and adjacencies");
     // Add center points of all capture disks as solutions
     Collection<Point2D> solutionPoints = new HashSet<Point2D>();
     int disk_num = 0;
-    for (CaptureDisk d1 : disks) {
+    DiskGrid grid = new DiskGrid(disks);
+    int[] overlapping = new int[disks.length()];
+    for (int i = disks.nextLive(0); i >= 0; i = disks.nextLive(i + 1)) {
+      CaptureDisk d1 = disks.get(i);
       disk_num += 1;
       System.out.println("On disk number "+disk_num+" out of "+disks.size());
       // Build an adjacency list disk by disk
@@ -336,7 +335,8 @@ public class AnnealingExperimentTask {
           && d1.disk.getCenterY() < Main.config.universeHeight) {
         Point2D.Float center = new Point2D.Float((float) d1.disk.getCenterX(),
             (float) d1.disk.getCenterY());
-        if (AnnealingExperimentTask.checkPointInRange(center, transmitters)) {
+        if (txGrid.anyWithin(center.x, center.y,
+            Main.config.maxRangeMeters)) {
           solutionPoints.add(center);
           // Add this new solution point to the adjacency list
           adjacencies.put(center, new HashSet<Point2D>());
@@ -351,12 +351,15 @@ public class AnnealingExperimentTask {
           pointsInDisk.add(center);
         }
       }
-      // Add intersection of all capture disks as solutions
-      for (CaptureDisk d2 : disks) {
+      // Add intersection of all overlapping capture disks as solutions
+      int numOverlapping = grid.collectOverlapping(i, false, overlapping);
+      for (int k = 0; k < numOverlapping; ++k) {
+        CaptureDisk d2 = disks.get(overlapping[k]);
         Collection<Point2D> intersections = Main.generateIntersections(d1, d2);
         if (intersections != null && !intersections.isEmpty()) {
           for (Point2D p : intersections) {
-            if (AnnealingExperimentTask.checkPointInRange(p, transmitters)) {
+            if (txGrid.anyWithin(p.getX(), p.getY(),
+                Main.config.maxRangeMeters)) {
               //Add this as a solution point
               solutionPoints.add(p);
               // Add this new solution point to the adjacency list
@@ -409,25 +412,4 @@ public class AnnealingExperimentTask {
     return coverage;
   }
 
-  /**
-   * Returns true if a point is within the transmit radius of at least one
-   * transmitter, else false.
-   * 
-   * @param p
-   *          the point to test.
-   * @return {@code true} if the point is within the transmit radius of at
-   *         leaset one transmitter.
-   */
-  private static boolean checkPointInRange(Point2D p,
-      Collection<Transmitter> transmitters) {
-    for (Transmitter t : transmitters) {
-      double d = Math.sqrt(Math.pow(p.getX() - t.getX(), 2)
-          + Math.pow(p.getY() - t.getY(), 2));
-      if (d < Main.config.maxRangeMeters) {
-        return true;
-      }
-    }
-    return false;
-  }
-
 }
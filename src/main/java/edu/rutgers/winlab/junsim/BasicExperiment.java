@@ -22,16 +22,10 @@ import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 
@@ -91,90 +85,6 @@ public class BasicExperiment implements Experiment {
         Integer.valueOf(this.config.trialNumber)));
   }
 
-  /**
-   * Private class used to parallelize the checking of possible solution points.
-   * 
-   * @author Robert Moore
-   * 
-   */
-  private static final class SolutionCheckTask implements Callable<Receiver> {
-
-    private static final Logger log = LoggerFactory.getLogger(SolutionCheckTask.class);
-    
-    /**
-     * Set of points this task should check.
-     */
-    Collection<Point2D> solutionPoints;
-    /**
-     * Set of capture disks to check for intersections
-     */
-    Collection<CaptureDisk> disks;
-
-    /**
-     * Creates a new solution check task.
-     */
-    public SolutionCheckTask() {
-      super();
-    }
-
-    @Override
-    public Receiver call() {
-
-        
-      
-      Point2D maxPoint = null;
-      Collection<CaptureDisk> maxPointDisks = null;
-      int maxDisks = 0;
-      final int totalDisks = this.disks.size();
-      log.info(String.format("Computing %,d points for %,d disks.",this.solutionPoints.size(),totalDisks));
-      /*
-       * Determine the number of disks that intersect this point. If the number
-       * is the new max, then save it. If there are no intersections, remove it.
-       */
-      points: for (final Iterator<Point2D> iter = this.solutionPoints.iterator(); iter.hasNext();) {
-        final Point2D p = iter.next();
-        final Collection<CaptureDisk> pDisk = new HashSet<CaptureDisk>();
-//        int numIntersect = 0;
-//        int diskIndex = 0;
-        
-        
-        for (final CaptureDisk d : this.disks) {
-          if (BasicExperiment.checkPointInDisk(p, d)) {
-            pDisk.add(d);
-//            ++numIntersect;
-          }
-//          ++diskIndex;
-//          if((numIntersect + (totalDisks -diskIndex)) < maxDisks){
-//            continue points;
-//          }
-        }
-        if (pDisk.size() > maxDisks) {
-          maxDisks = pDisk.size();
-          maxPoint = p;
-          maxPointDisks = pDisk;
-        }
-//      Remove points that have no overlaps
-        else if(pDisk.isEmpty()){
-          iter.remove();
-        }
-      }
-      final Receiver maxReceiver = new Receiver();
-      // Remove the highest point and its solution disks
-      if (maxPoint != null) {
-
-        maxReceiver.setLocation(maxPoint);
-        maxReceiver.coveringDisks = maxPointDisks;
-
-      }
-      // No solutions found?
-      else {
-        return null;
-      }
-
-      return maxReceiver;
-    }
-  }
-
   public Boolean perform() {
     final FileRenderer display = new FileRenderer(Main.gfxConfig);
 
@@ -189,19 +99,13 @@ public class BasicExperiment implements Experiment {
 
     }
 
-    final Collection<CaptureDisk> disks = new HashSet<CaptureDisk>();
     // Compute all possible capture disks
-    for (final Transmitter t1 : this.config.transmitters) {
-      for (final Transmitter t2 : this.config.transmitters) {
-        final CaptureDisk someDisk = Main.generateCaptureDisk(t1, t2);
-        if (someDisk != null) {
-          disks.add(someDisk);
-        }
-      }
-    }
+    final CaptureDiskTable disks = Main
+        .generateCaptureDisks(this.config.transmitters, this.workers);
+    final DiskGrid diskIndex = new DiskGrid(disks);
     if (Main.gfxConfig.generateImages) {
       display.setTransmitters(this.config.transmitters);
-      display.setCaptureDisks(disks);
+      display.setCaptureDisks(disks.getLiveDisks());
 
       final String saveName = this.saveDirectory
           + File.separator + "1000";
@@ -213,126 +117,55 @@ public class BasicExperiment implements Experiment {
         + disks.size() + " disks.");
     
 
-    Collection<Point2D> solutionPoints = BasicExperiment
-        .generateSolutionPoints(disks, this.config.transmitters);
-    log.info(String.format("[%d] Generated %,d solution points.\n",
-        this.config.trialNumber, solutionPoints.size()));
-    
+    PointCoverageIndex coverage = this.buildCoverage(disks, diskIndex);
 
     final int totalCaptureDisks = disks.size();
-    final int totalSolutionPoints = solutionPoints.size();
     int m = 0;
 
     // Keep going while there are either solution points or capture disks
 //    final Collection<Receiver> receivers = new LinkedList<Receiver>();
-    // Keep track of which collisions are captured so that packet loss
-    // probabilities can be quickly calculated
-    final ConcurrentHashMap<Transmitter, HashSet<Transmitter>> capturedCollisions = new ConcurrentHashMap<Transmitter, HashSet<Transmitter>>();
-    // Add an empty set for each transmitter
-    for (final Transmitter txer : this.config.transmitters) {
-      capturedCollisions.put(txer, new HashSet<Transmitter>());
-    }
+    // Removed disks are counted as covered, and each covered disk is one
+    // captured collision of its transmitter
+    final TransmitterCounters counters = disks.getCounters();
 
-    while (m < this.config.numReceivers && !solutionPoints.isEmpty()
-        && !disks.isEmpty()) {
+    while (m < this.config.numReceivers && !disks.isEmpty()) {
       log.info("[" + this.config.trialNumber
           + "] Calculating position for receiver " + (m + 1) + ".");
       // HashMap<Point2D, Collection<CaptureDisk>> bipartiteGraph = new
       // HashMap<Point2D, Collection<CaptureDisk>>();
 
-      final int numTasks = Main.config.numThreads;
-      final int numPoints = solutionPoints.size();
-      final int pointsPerTask = (numPoints / numTasks) + 1;
-      final long numComparisons = disks.size() * (long) numPoints;
-
-      final Collection<SolutionCheckTask> tasks = new LinkedList<BasicExperiment.SolutionCheckTask>();
-      final Iterator<Point2D> pointIter = solutionPoints.iterator();
-      SolutionCheckTask task = new SolutionCheckTask();
-      task.solutionPoints = new LinkedList<Point2D>();
-      task.disks = disks;
-      // task.parent = this;
-      tasks.add(task);
-      for (int i = 0; pointIter.hasNext(); ++i) {
-        task.solutionPoints.add(pointIter.next());
-        if (i == pointsPerTask) {
-          i = 0;
-          task = new SolutionCheckTask();
-          task.solutionPoints = new LinkedList<Point2D>();
-          task.disks = disks;
-          // task.parent = this;
-          tasks.add(task);
-        }
-      }
-      int sumTasks = 0;
-      for (final SolutionCheckTask t : tasks) {
-        log.info(String.format("Task (%,d)\n", t.solutionPoints.size()));
-        sumTasks += t.solutionPoints.size();
-      }
-
-      log.info(String.format("Divided %,d/%,d points.\n", sumTasks, numPoints));
-      final long start = System.currentTimeMillis();
-      Receiver maxReceiver = null;
-      try {
-        final List<Future<Receiver>> solutions = this.workers.invokeAll(tasks);
-
-        for (final Future<Receiver> future : solutions) {
-          if (future.isCancelled() || !future.isDone()) {
-           log.error("One of the tasks was cancelled! Double-check the code!");
-            return Boolean.FALSE;
-          }
-          try {
-            final Receiver r = future.get();
-            if (r == null) {
-              continue;
-            }
-            if (maxReceiver == null
-                || r.coveringDisks.size() > maxReceiver.coveringDisks.size()) {
-              maxReceiver = r;
-            }
-          } catch (final ExecutionException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-          }
-        }
-
-      } catch (final InterruptedException e) {
-        e.printStackTrace();
-      }
-      final long duration = System.currentTimeMillis() - start;
-      log.info(String.format("Computed %,d comparisons in %,dms.\n", numComparisons,
-          duration));
-
-      if (maxReceiver == null) {
+      final int best = coverage.best();
+      if (best < 0) {
         break;
       }
-
-      solutionPoints.clear();
-      for (final SolutionCheckTask t : tasks) {
-        solutionPoints.addAll(t.solutionPoints);
-      }
+      final Point2D bestPoint = coverage.get(best);
+      final Receiver maxReceiver = new Receiver();
+      maxReceiver.setLocation(bestPoint);
+      maxReceiver.coveringDisks = diskIndex.collectCovering(bestPoint.getX(),
+          bestPoint.getY());
 
       // Add the newest receiver and remove newly covered points and disks
       this.config.receivers.add(maxReceiver);
-      solutionPoints.remove(maxReceiver);
-      // Add captures to each transmitter's capture set for collision
-      // calculations
-      for (final CaptureDisk disk : maxReceiver.coveringDisks) {
-        capturedCollisions.get(disk.t1).add(disk.t2);
-        disk.t1.addCoveredDisk(disk);
-      }
+      coverage.removePoint(best);
       disks.removeAll(maxReceiver.coveringDisks);
+      diskIndex.removeAll(maxReceiver.coveringDisks);
+      final long start = System.currentTimeMillis();
+      final int numUpdated = coverage.removeDisks(maxReceiver.coveringDisks);
+      log.info(String.format("Updated %,d point counts in %,dms.\n",
+          Integer.valueOf(numUpdated),
+          Long.valueOf(System.currentTimeMillis() - start)));
 
       // Calculate collision rates for each transmitter
       // Store the min, max, and mean
       float mean_contention = 0.0f;
       float min_contention = this.config.numTransmitters;
       float max_contention = 0.0f;
-      for (final Transmitter txer : this.config.transmitters) {
+      for (int t = 0; t < counters.numTransmitters(); ++t) {
         // Calculate the number of transmitters in contention
         // Subtract 1 because this transmitter can never be in contention with
         // itself
         final int num_in_contention = this.config.numTransmitters - 1
-            - capturedCollisions.get(txer).size();
+            - counters.coveredDisks[t];
         
         min_contention = Math.min(num_in_contention, min_contention);
         max_contention = Math.max(num_in_contention, max_contention);
@@ -348,8 +181,8 @@ public class BasicExperiment implements Experiment {
       // Debugging stuff
       if (Main.gfxConfig.generateImages) {
         display.setTransmitters(this.config.transmitters);
-        display.setSolutionPoints(solutionPoints);
-        display.setCaptureDisks(disks);
+        display.setSolutionPoints(coverage.remainingPoints());
+        display.setCaptureDisks(disks.getLiveDisks());
         display.setReceiverPoints(this.config.receivers);
 
         final String saveName = String.format(this.saveDirectory + File.separator
@@ -363,91 +196,130 @@ public class BasicExperiment implements Experiment {
       ++m;
       // Recompute solution points based on remaining disks
       if (Main.config.stripSolutionPoints) {
-        solutionPoints.clear();
-        solutionPoints = BasicExperiment.generateSolutionPoints(disks,
-            this.config.transmitters);
-        log.info("[" + this.config.trialNumber + "] Regenerated "
-            + solutionPoints.size() + " solution points.");
+        coverage = this.buildCoverage(disks, diskIndex);
       }
 
     } // End for each receiver
 
     // }
     disks.clear();
-    solutionPoints.clear();
     this.config.transmitters.clear();
     Runtime.getRuntime().gc();
     return Boolean.TRUE;
   }
 
-  static boolean checkPointInDisk(final Point2D p, final CaptureDisk d) {
-    final double dist1 = Math.sqrt(Math.pow(p.getX() - d.t1.getX(), 2)
-        + Math.pow(p.getY() - d.t1.getY(), 2));
-    final double dist2 = Math.sqrt(Math.pow(p.getX() - d.t2.getX(), 2)
-        + Math.pow(p.getY() - d.t2.getY(), 2));
-    // This point is too far away from the transmitters for this disk
-    if (dist1 > Main.config.maxRangeMeters
-        && dist2 > Main.config.maxRangeMeters) {
-      return false;
+  /**
+   * Generates the solution points of the live disks and tests them against
+   * the disks as they are generated, building the coverage counts used for the
+   * rest of the receiver rounds. Points that are not covered by any disk are
+   * dropped.
+   * 
+   * @param disks
+   *          the live disks.
+   * @param diskIndex
+   *          the spatial index of the live disks.
+   * @return the coverage index of the covered points.
+   */
+  private PointCoverageIndex buildCoverage(final CaptureDiskTable disks,
+      final DiskGrid diskIndex) {
+    final long start = System.currentTimeMillis();
+    final List<PointCoverageIndex.BlockCoverage> consumers = new ArrayList<PointCoverageIndex.BlockCoverage>();
+    for (int i = 0; i < Math.max(1, Main.config.numThreads); ++i) {
+      consumers.add(new PointCoverageIndex.BlockCoverage(diskIndex));
     }
-    return d.disk.contains(p);
+    final CandidateStream stream = new CandidateStream(true,
+        Main.config.pointEpsilon);
+    stream.start(consumers, this.workers);
+    boolean generated = false;
+    try {
+      BasicExperiment.generateSolutionPoints(disks, this.config.transmitters,
+          stream);
+      generated = true;
+    } finally {
+      if (!generated) {
+        stream.cancel();
+      }
+    }
+    final int numGenerated = stream.finish();
+    final PointCoverageIndex coverage = new PointCoverageIndex(consumers,
+        stream.numBlocks(), disks);
+    log.info(String.format(
+        "[%d] Generated %,d solution points, %,d covered by %,d point-disk pairs in %,dms.\n",
+        Integer.valueOf(this.config.trialNumber),
+        Integer.valueOf(numGenerated), Integer.valueOf(coverage.size()),
+        Long.valueOf(coverage.numIncidences()),
+        Long.valueOf(System.currentTimeMillis() - start)));
+    return coverage;
+  }
 
+  /**
+   * Generates the solution points for the live disks, in the same order as
+   * they are streamed to "basic", so that ties are broken the same way.
+   * 
+   * @param disks
+   *          the live disks.
+   * @param transmitters
+   *          the transmitters.
+   * @return the distinct solution points, in the order they were generated.
+   */
+  static Collection<Point2D> generateSolutionPoints(
+      final CaptureDiskTable disks, final Collection<Transmitter> transmitters) {
+    final PointSet solutionPoints = new PointSet(disks.size() * 4,
+        Main.config.pointEpsilon);
+    BasicExperiment.generateSolutionPoints(disks, transmitters,
+        solutionPoints);
+    return solutionPoints.toPointList();
   }
 
-  private static Collection<Point2D> generateSolutionPoints(
-      final Collection<CaptureDisk> disks, final Collection<Transmitter> transmitters) {
+  /**
+   * Generates the centers of the live disks and the intersections of every
+   * pair of overlapping disks that are in range of a transmitter.
+   * 
+   * @param disks
+   *          the live disks.
+   * @param transmitters
+   *          the transmitters.
+   * @param solutionPoints
+   *          the sink to pass the points to.
+   */
+  static void generateSolutionPoints(final CaptureDiskTable disks,
+      final Collection<Transmitter> transmitters,
+      final PointSink solutionPoints) {
+    final TransmitterGrid txGrid = new TransmitterGrid(transmitters,
+        Main.config.maxRangeMeters);
     // Add center points of all capture disks as solutions
-    final Collection<Point2D> solutionPoints = new HashSet<Point2D>();
-    for (final CaptureDisk disk : disks) {
-      if (disk.disk.getCenterX() < 0
-          || disk.disk.getCenterX() >= Main.config.universeWidth
-          || disk.disk.getCenterY() < 0
-          || disk.disk.getCenterY() > Main.config.universeHeight) {
+    for (int i = disks.nextLive(0); i >= 0; i = disks.nextLive(i + 1)) {
+      final float cx = disks.centerX[i];
+      final float cy = disks.centerY[i];
+      if (cx < 0 || cx >= Main.config.universeWidth || cy < 0
+          || cy > Main.config.universeHeight) {
         continue;
       }
-      final Point2D.Float center = new Point2D.Float((float) disk.disk.getCenterX(),
-          (float) disk.disk.getCenterY());
-      if (BasicExperiment.checkPointInRange(center, transmitters)) {
-        solutionPoints.add(center);
+      if (txGrid.anyWithin(cx, cy, Main.config.maxRangeMeters)) {
+        solutionPoints.add(cx, cy);
       }
     }
 
-    // Add intersection of all capture disks as solutions
-    for (final CaptureDisk d1 : disks) {
-      for (final CaptureDisk d2 : disks) {
-        final Collection<Point2D> intersections = Main.generateIntersections(d1, d2);
-        if (intersections != null && !intersections.isEmpty()) {
-          for (final Point2D p : intersections) {
-            if (BasicExperiment.checkPointInRange(p, transmitters)) {
-              solutionPoints.add(p);
-            }
+    // Add intersection of all overlapping capture disks as solutions
+    final DiskGrid grid = new DiskGrid(disks);
+    final int[] overlapping = new int[disks.length()];
+    final float[] intersections = new float[4];
+    for (int i = disks.nextLive(0); i >= 0; i = disks.nextLive(i + 1)) {
+      final int numOverlapping = grid.collectOverlapping(i, true, overlapping);
+      for (int k = 0; k < numOverlapping; ++k) {
+        final int j = overlapping[k];
+        final int numPoints = Main.intersect(disks.centerX[i],
+            disks.centerY[i], disks.radius[i], disks.centerX[j],
+            disks.centerY[j], disks.radius[j], intersections, 0);
+        for (int n = 0; n < numPoints; ++n) {
+          final float px = intersections[2 * n];
+          final float py = intersections[2 * n + 1];
+          if (txGrid.anyWithin(px, py, Main.config.maxRangeMeters)) {
+            solutionPoints.add(px, py);
           }
         }
       }
     }
-
-    return solutionPoints;
-  }
-
-  /**
-   * Returns true if a point is within the transmit radius of at least one
-   * transmitter, else false.
-   * 
-   * @param p
-   *          the point to test.
-   * @return {@code true} if the point is within the transmit radius of at
-   *         leaset one transmitter.
-   */
-  private static boolean checkPointInRange(final Point2D p,
-      final Collection<Transmitter> transmitters) {
-    for (final Transmitter t : transmitters) {
-      final double d = Math.sqrt(Math.pow(p.getX() - t.getX(), 2)
-          + Math.pow(p.getY() - t.getY(), 2));
-      if (d < Main.config.maxRangeMeters) {
-        return true;
-      }
-    }
-    return false;
   }
 
 }
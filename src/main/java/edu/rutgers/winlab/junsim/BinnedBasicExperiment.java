@@ -22,18 +22,12 @@ import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 
@@ -108,90 +102,6 @@ public class BinnedBasicExperiment implements Experiment {
 
   }
 
-  /**
-   * Private class used to parallelize the checking of possible solution points.
-   * 
-   * @author Robert Moore
-   */
-  private static final class SolutionCheckTask implements Callable<Receiver> {
-
-    private static final Logger log = LoggerFactory
-        .getLogger(SolutionCheckTask.class);
-
-    /**
-     * Set of points this task should check.
-     */
-    Collection<Point2D> solutionPoints;
-    /**
-     * Set of capture disks to check for intersections
-     */
-    Collection<CaptureDisk> disks;
-
-    /**
-     * Reference to the bins for points.
-     */
-    Binner binner;
-
-    int desiredBin = 0;
-
-    /**
-     * Creates a new solution check task.
-     */
-    public SolutionCheckTask() {
-      super();
-    }
-
-    @Override
-    public Receiver call() {
-
-      Point2D maxPoint = null;
-      Collection<CaptureDisk> maxPointDisks = null;
-      int maxDisks = 0;
-      final int totalDisks = this.disks.size();
-      log.info(String.format("Computing %,d points for %,d disks.",
-          this.solutionPoints.size(), totalDisks));
-      /*
-       * Determine the number of disks that intersect this point. If the number
-       * is the new max, then save it. If there are no intersections, remove it.
-       */
-      points: for (final Iterator<Point2D> iter = this.solutionPoints
-          .iterator(); iter.hasNext();) {
-        final Point2D p = iter.next();
-        final Collection<CaptureDisk> pDisk = new HashSet<CaptureDisk>();
-
-        for (final CaptureDisk d : this.disks) {
-          if (BinnedBasicExperiment.checkPointInDisk(p, d)) {
-            pDisk.add(d);
-          }
-        }
-        int size = pDisk.size();
-
-        if (size > 0) {
-          int bindex = this.binner.put(p, size);
-          // Add to bin
-          if (size > maxDisks && bindex >= this.desiredBin) {
-            maxDisks = size;
-            maxPoint = p;
-            maxPointDisks = pDisk;
-          }
-        }
-
-      }
-      final Receiver maxReceiver = new Receiver();
-      // Remove the highest point and its solution disks
-      if (maxPoint != null) {
-        maxReceiver.setLocation(maxPoint);
-        maxReceiver.coveringDisks = maxPointDisks;
-      }
-      // No solutions found?
-      else {
-        return null;
-      }
-
-      return maxReceiver;
-    }
-  }
-
   public Boolean perform() {
     final FileRenderer display = new FileRenderer(Main.gfxConfig);
 
@@ -204,19 +114,13 @@ public class BinnedBasicExperiment implements Experiment {
 
     }
 
-    final Collection<CaptureDisk> disks = new HashSet<CaptureDisk>();
     // Compute all possible capture disks
-    for (final Transmitter t1 : this.config.transmitters) {
-      for (final Transmitter t2 : this.config.transmitters) {
-        final CaptureDisk someDisk = Main.generateCaptureDisk(t1, t2);
-        if (someDisk != null) {
-          disks.add(someDisk);
-        }
-      }
-    }
+    final CaptureDiskTable disks = Main
+        .generateCaptureDisks(this.config.transmitters, this.workers);
+    final DiskGrid diskIndex = new DiskGrid(disks);
     if (Main.gfxConfig.generateImages) {
       display.setTransmitters(this.config.transmitters);
-      display.setCaptureDisks(disks);
+      display.setCaptureDisks(disks.getLiveDisks());
       final String saveName = this.saveDirectory + File.separator + "1000";
       Main.saveImage(display, saveName);
       display.clear();
@@ -225,27 +129,17 @@ public class BinnedBasicExperiment implements Experiment {
     log.info("[" + this.config.trialNumber + "] Generated " + disks.size()
         + " disks.");
 
-    Collection<Point2D> startingPoints = BinnedBasicExperiment
-        .generateSolutionPoints(disks, this.config.transmitters);
-    log.info(String.format("[%d] Generated %,d solution points.\n",
-        this.config.trialNumber, startingPoints.size()));
-
     final int totalCaptureDisks = disks.size();
-    // final int startingSolutionPoints = startingPoints.size();
     int m = 0;
 
     // Keep going while there are either solution points or capture disks
 //    final Collection<Receiver> receivers = new LinkedList<Receiver>();
-    // Keep track of which collisions are captured so that packet loss
-    // probabilities can be quickly calculated
-    final ConcurrentHashMap<Transmitter, HashSet<Transmitter>> capturedCollisions = new ConcurrentHashMap<Transmitter, HashSet<Transmitter>>();
-    // Add an empty set for each transmitter
-    for (final Transmitter txer : this.config.transmitters) {
-      capturedCollisions.put(txer, new HashSet<Transmitter>());
-    }
+    // Removed disks are counted as covered, and each covered disk is one
+    // captured collision of its transmitter
+    final TransmitterCounters counters = disks.getCounters();
 
     this.binner = new Binner(this.numBins, 1, disks.size() / 3);
-    this.binner.set(startingPoints, 1);
+    this.streamSolutionPoints(disks, diskIndex);
 
     int highestBindex = 0;
     while (m < this.config.numReceivers && !disks.isEmpty()) {
@@ -254,76 +148,27 @@ public class BinnedBasicExperiment implements Experiment {
       log.info("[" + this.config.trialNumber
           + "] Calculating position for receiver " + (m + 1) + ".");
 
-      Set<Point2D> thePoints = this.binner.getMaxBin();
+      final Point2D[] points = this.binner.takeMaxBin();
 
-      if (thePoints == null) {
+      if (points == null) {
         log.info("No more points available in the bins.");
         break;
       }
 
-      final int numTasks = Main.config.numThreads;
-      final int numPoints = thePoints.size();
-      final int pointsPerTask = (numPoints / numTasks) + 1;
+      final int numPoints = points.length;
       final long numComparisons = disks.size() * (long) numPoints;
 
-      final Collection<SolutionCheckTask> tasks = new LinkedList<BinnedBasicExperiment.SolutionCheckTask>();
-      final Iterator<Point2D> pointIter = thePoints.iterator();
-      SolutionCheckTask task = new SolutionCheckTask();
-      task.solutionPoints = new LinkedList<Point2D>();
-      task.disks = disks;
-      task.desiredBin = highestBindex;
-      task.binner = this.binner;
-      // task.parent = this;
-      tasks.add(task);
-      for (int i = 0; pointIter.hasNext(); ++i) {
-        task.solutionPoints.add(pointIter.next());
-        pointIter.remove();
-        if (i == pointsPerTask) {
-          i = 0;
-          task = new SolutionCheckTask();
-          task.solutionPoints = new LinkedList<Point2D>();
-          task.disks = disks;
-          task.binner = this.binner;
-          task.desiredBin = highestBindex;
-          // task.parent = this;
-          tasks.add(task);
-        }
-      }
-      int sumTasks = 0;
-      for (final SolutionCheckTask t : tasks) {
-        log.info(String.format("Task (%,d)", t.solutionPoints.size()));
-        sumTasks += t.solutionPoints.size();
-      }
-
-      log.info(String.format("Divided %,d/%,d points.\n", sumTasks, numPoints));
       final long start = System.currentTimeMillis();
       Receiver maxReceiver = null;
-      try {
-        final List<Future<Receiver>> solutions = this.workers.invokeAll(tasks);
-
-        for (final Future<Receiver> future : solutions) {
-          if (future.isCancelled() || !future.isDone()) {
-            log.error("One of the tasks was cancelled! Double-check the code!");
-            return Boolean.FALSE;
-          }
-          try {
-            final Receiver r = future.get();
-            if (r == null) {
-              continue;
-            }
-            if (maxReceiver == null
-                || r.coveringDisks.size() > maxReceiver.coveringDisks.size()) {
-              highestBindex = this.binner.getBindex(r.coveringDisks.size());
-              maxReceiver = r;
-            }
-          } catch (final ExecutionException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-          }
-        }
-
-      } catch (final InterruptedException e) {
-        e.printStackTrace();
+      final int best = GuidedScheduler.findMax(numPoints, CoverageScorer
+          .create(points, diskIndex, this.binner, highestBindex), this.workers);
+      if (best >= 0) {
+        maxReceiver = new Receiver();
+        maxReceiver.setLocation(points[best]);
+        maxReceiver.coveringDisks = diskIndex.collectCovering(
+            points[best].getX(), points[best].getY());
+        highestBindex = this.binner.getBindex(maxReceiver.coveringDisks
+            .size());
       }
       final long duration = System.currentTimeMillis() - start;
       log.info(String.format("Computed %,d comparisons in %,dms.\n",
@@ -340,32 +185,27 @@ public class BinnedBasicExperiment implements Experiment {
       if (highestBindex == 0) {
         int max = maxReceiver.coveringDisks.size();
         if (max > this.minRebinValue) {
-          this.binner.rebin(1, max / 2);
+          this.binner.rebin(1, max / 2, this.workers);
         }
       }
 
       // Add the newest receiver and remove newly covered points and disks
       this.config.receivers.add(maxReceiver);
 
-      // Add captures to each transmitter's capture set for collision
-      // calculations
-      for (final CaptureDisk disk : maxReceiver.coveringDisks) {
-        capturedCollisions.get(disk.t1).add(disk.t2);
-        disk.t1.addCoveredDisk(disk);
-      }
       disks.removeAll(maxReceiver.coveringDisks);
+      diskIndex.removeAll(maxReceiver.coveringDisks);
 
       // Calculate collision rates for each transmitter
       // Store the min, max, and mean
       float mean_contention = 0.0f;
       float min_contention = this.config.numTransmitters;
       float max_contention = 0.0f;
-      for (final Transmitter txer : this.config.transmitters) {
+      for (int t = 0; t < counters.numTransmitters(); ++t) {
         // Calculate the number of transmitters in contention
         // Subtract 1 because this transmitter can never be in contention with
         // itself
         final int num_in_contention = this.config.numTransmitters - 1
-            - capturedCollisions.get(txer).size();
+            - counters.coveredDisks[t];
         min_contention = Math.min(num_in_contention, min_contention);
         max_contention = Math.max(num_in_contention, max_contention);
         mean_contention += (float) num_in_contention
@@ -384,7 +224,7 @@ public class BinnedBasicExperiment implements Experiment {
             this.binner.getBinMins());
 
         // display.setSolutionPoints(this.binner.getMaxBin());
-        // display.setCaptureDisks(disks);
+        // display.setCaptureDisks(disks.getLiveDisks());
         display.setReceiverPoints(this.config.receivers);
 
         final String saveName = String.format(this.saveDirectory
@@ -401,89 +241,100 @@ public class BinnedBasicExperiment implements Experiment {
 
     // }
     disks.clear();
-    startingPoints.clear();
     this.binner.clear();
     this.config.transmitters.clear();
     Runtime.getRuntime().gc();
     return Boolean.TRUE;
   }
 
-  static boolean checkPointInDisk(final Point2D p, final CaptureDisk d) {
-    final double dist1 = Math.sqrt(Math.pow(p.getX() - d.t1.getX(), 2)
-        + Math.pow(p.getY() - d.t1.getY(), 2));
-    final double dist2 = Math.sqrt(Math.pow(p.getX() - d.t2.getX(), 2)
-        + Math.pow(p.getY() - d.t2.getY(), 2));
-    // This point is too far away from the transmitters for this disk
-    if (dist1 > Main.config.maxRangeMeters
-        && dist2 > Main.config.maxRangeMeters) {
-      return false;
+  /**
+   * Generates the solution points and tests them against the disks as they
+   * are generated, putting each covered point into the bins by its coverage
+   * count.
+   * 
+   * @param disks
+   *          the live disks.
+   * @param diskIndex
+   *          the spatial index of the live disks.
+   * @return the number of covered points.
+   */
+  private int streamSolutionPoints(final CaptureDiskTable disks,
+      final DiskGrid diskIndex) {
+    final List<BinningConsumer> consumers = new ArrayList<BinningConsumer>();
+    for (int i = 0; i < Math.max(1, Main.config.numThreads); ++i) {
+      consumers.add(new BinningConsumer(diskIndex, this.binner));
     }
-    return d.disk.contains(p);
-
+    final CandidateStream stream = new CandidateStream(true,
+        Main.config.pointEpsilon);
+    stream.start(consumers, this.workers);
+    boolean generated = false;
+    try {
+      BinnedBasicExperiment.generateSolutionPoints(disks,
+          this.config.transmitters, stream);
+      generated = true;
+    } finally {
+      if (!generated) {
+        stream.cancel();
+      }
+    }
+    final int numGenerated = stream.finish();
+    int numCovered = 0;
+    for (final BinningConsumer consumer : consumers) {
+      numCovered += consumer.numCovered;
+    }
+    log.info(String.format("[%d] Generated %,d solution points, %,d covered.\n",
+        Integer.valueOf(this.config.trialNumber),
+        Integer.valueOf(numGenerated), Integer.valueOf(numCovered)));
+    return numCovered;
   }
 
-  private static Collection<Point2D> generateSolutionPoints(
-      final Collection<CaptureDisk> disks,
-      final Collection<Transmitter> transmitters) {
-
-    final Collection<Point2D> solutionPoints = new HashSet<Point2D>();
-
-    // Add intersection of all capture disks as solutions
-    for (final CaptureDisk d1 : disks) {
-      boolean hadIntersection = false;
-      for (final CaptureDisk d2 : disks) {
-        final Collection<Point2D> intersections = Main.generateIntersections(
-            d1, d2);
-        if (intersections != null && !intersections.isEmpty()) {
-          for (final Point2D p : intersections) {
-            if (BinnedBasicExperiment.checkPointInRange(p, transmitters)) {
-              hadIntersection = true;
-              solutionPoints.add(p);
-            }
+  private static void generateSolutionPoints(final CaptureDiskTable disks,
+      final Collection<Transmitter> transmitters,
+      final PointSink solutionPoints) {
+    final TransmitterGrid txGrid = new TransmitterGrid(transmitters,
+        Main.config.maxRangeMeters);
+
+
+    // Add intersection of all overlapping capture disks as solutions
+    final DiskGrid grid = new DiskGrid(disks);
+    final int[] overlapping = new int[disks.length()];
+    final boolean[] hadIntersection = new boolean[disks.length()];
+    final float[] intersections = new float[4];
+    for (int i = disks.nextLive(0); i >= 0; i = disks.nextLive(i + 1)) {
+      final int numOverlapping = grid.collectOverlapping(i, true, overlapping);
+      for (int k = 0; k < numOverlapping; ++k) {
+        final int j = overlapping[k];
+        final int numPoints = Main.intersect(disks.centerX[i],
+            disks.centerY[i], disks.radius[i], disks.centerX[j],
+            disks.centerY[j], disks.radius[j], intersections, 0);
+        for (int n = 0; n < numPoints; ++n) {
+          final float px = intersections[2 * n];
+          final float py = intersections[2 * n + 1];
+          if (txGrid.anyWithin(px, py, Main.config.maxRangeMeters)) {
+            hadIntersection[i] = true;
+            hadIntersection[j] = true;
+            solutionPoints.add(px, py);
           }
         }
       }// End inner disk
+    }
 
+    for (int i = disks.nextLive(0); i >= 0; i = disks.nextLive(i + 1)) {
+      final float cx = disks.centerX[i];
+      final float cy = disks.centerY[i];
       /*
        * Skip the center point if there was an intersection or if the center is
        * outside the "universe".
        */
 
-      if (hadIntersection || d1.disk.getCenterX() < 0
-          || d1.disk.getCenterX() >= Main.config.universeWidth
-          || d1.disk.getCenterY() < 0
-          || d1.disk.getCenterY() > Main.config.universeHeight) {
+      if (hadIntersection[i] || cx < 0 || cx >= Main.config.universeWidth
+          || cy < 0 || cy > Main.config.universeHeight) {
         continue;
       }
-      final Point2D.Float center = new Point2D.Float(
-          (float) d1.disk.getCenterX(), (float) d1.disk.getCenterY());
-      if (BinnedBasicExperiment.checkPointInRange(center, transmitters)) {
-        solutionPoints.add(center);
-      }
-    }
-
-    return solutionPoints;
-  }
-
-  /**
-   * Returns true if a point is within the transmit radius of at least one
-   * transmitter, else false.
-   * 
-   * @param p
-   *          the point to test.
-   * @return {@code true} if the point is within the transmit radius of at
-   *         leaset one transmitter.
-   */
-  private static boolean checkPointInRange(final Point2D p,
-      final Collection<Transmitter> transmitters) {
-    for (final Transmitter t : transmitters) {
-      final double d = Math.sqrt(Math.pow(p.getX() - t.getX(), 2)
-          + Math.pow(p.getY() - t.getY(), 2));
-      if (d < Main.config.maxRangeMeters) {
-        return true;
+      if (txGrid.anyWithin(cx, cy, Main.config.maxRangeMeters)) {
+        solutionPoints.add(cx, cy);
       }
     }
-    return false;
   }
 
 }
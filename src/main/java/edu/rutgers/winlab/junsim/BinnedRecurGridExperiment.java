@@ -22,18 +22,13 @@ import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 
@@ -110,110 +105,17 @@ public class BinnedRecurGridExperiment implements Experiment {
     this.render = new FileRenderer(Main.gfxConfig);
   }
 
-  /**
-   * Private class used to parallelize the checking of possible solution points.
-   * 
-   * @author Robert Moore
-   */
-  private static final class SolutionCheckTask implements Callable<Receiver> {
-
-    private static final Logger log = LoggerFactory
-        .getLogger(SolutionCheckTask.class);
-
-    /**
-     * Set of points this task should check.
-     */
-    Collection<Point2D> solutionPoints;
-    /**
-     * Set of capture disks to check for intersections
-     */
-    Collection<CaptureDisk> disks;
-
-    /**
-     * Reference to the bins for points.
-     */
-    Binner binner;
-
-    int desiredBin = 0;
-
-    /**
-     * Creates a new solution check task.
-     */
-    public SolutionCheckTask() {
-      super();
-    }
-
-    @Override
-    public Receiver call() {
-
-      Point2D maxPoint = null;
-      Collection<CaptureDisk> maxPointDisks = null;
-      int maxDisks = 0;
-      final int totalDisks = this.disks.size();
-      log.info(String.format(
-          "Computing %,d points for %,d disks. Desired bin: %d.",
-          this.solutionPoints.size(), totalDisks, desiredBin));
-
-      /*
-       * Determine the number of disks that intersect this point. If the number
-       * is the new max, then save it. If there are no intersections, remove it.
-       */
-      points: for (final Iterator<Point2D> iter = this.solutionPoints
-          .iterator(); iter.hasNext();) {
-        final Point2D p = iter.next();
-        final Collection<CaptureDisk> pDisk = new HashSet<CaptureDisk>();
-
-        for (final CaptureDisk d : this.disks) {
-          if (BinnedRecurGridExperiment.checkPointInDisk(p, d)) {
-            pDisk.add(d);
-          }
-        }
-        int size = pDisk.size();
-
-        if (size > 0) {
-          int bindex = this.binner.put(p, size);
-
-          // Add to bin
-          if (size > maxDisks && bindex >= this.desiredBin) {
-            maxDisks = size;
-            maxPoint = p;
-            maxPointDisks = pDisk;
-          }
-        }
-
-      }
-      final Receiver maxReceiver = new Receiver();
-      // Remove the highest point and its solution disks
-      if (maxPoint != null) {
-        maxReceiver.setLocation(maxPoint);
-        maxReceiver.coveringDisks = maxPointDisks;
-      }
-      // No solutions found?
-      else {
-        return null;
-      }
-
-      return maxReceiver;
-    }
-  }
-
   public Boolean perform() {
     // final ExperimentRender display = new AnimatedRenderer(Main.gfxConfig);
 
-    final Collection<CaptureDisk> disks = new HashSet<CaptureDisk>();
     // Compute all possible capture disks
-    for (final Transmitter t1 : this.config.transmitters) {
-      for (final Transmitter t2 : this.config.transmitters) {
-        final CaptureDisk someDisk = Main.generateCaptureDisk(t1, t2);
-        if (someDisk != null) {
-          disks.add(someDisk);
-        }
-      }
-    }
+    final CaptureDiskTable disks = Main
+        .generateCaptureDisks(this.config.transmitters, this.workers);
+    final DiskGrid diskIndex = new DiskGrid(disks);
 
     if (Main.gfxConfig.generateImages) {
       this.render.setTransmitters(this.config.transmitters);
-      this.render.setCaptureDisks(disks);
+      this.render.setCaptureDisks(disks.getLiveDisks());
 
       final String saveName = this.saveDirectory + File.separator + "1000";
       Main.saveImage(this.render, saveName);
@@ -237,14 +139,6 @@ public class BinnedRecurGridExperiment implements Experiment {
 
     // Keep going while there are either solution points or capture disks
     // final Collection<Receiver> receivers = new LinkedList<Receiver>();
-    // Keep track of which collisions are captured so that packet loss
-    // probabilities can be quickly calculated
-    final ConcurrentHashMap<Transmitter, HashSet<Transmitter>> capturedCollisions = new ConcurrentHashMap<Transmitter, HashSet<Transmitter>>();
-    // Add an empty set for each transmitter
-    for (final Transmitter txer : this.config.transmitters) {
-      capturedCollisions.put(txer, new HashSet<Transmitter>());
-    }
-
     this.binner = new Binner(this.numBins, 1, disks.size() / 3);
 
     int highestBindex = 0;
@@ -261,307 +155,200 @@ public class BinnedRecurGridExperiment implements Experiment {
           + "] Evaluating existing receiver position " + (m + 1) + ".");
       // ////////////////////////////////////////////////////////////////////
 
-      SolutionCheckTask task = new SolutionCheckTask();
-      task.solutionPoints = new LinkedList<Point2D>();
-      task.solutionPoints.add(rxer);
-      task.disks = disks;
-      task.binner = this.binner;
-      task.desiredBin = 0;
-
-      try {
-        final Future<Receiver> future = this.workers.submit(task);
-
-        try {
-          final Receiver r = future.get();
-          if(r != null) {
-            highestBindex = this.binner.getBindex(r.coveringDisks.size());
-            rxer.coveringDisks = r.coveringDisks;
-          }
-
-        } catch (final ExecutionException e) {
-          // TODO Auto-generated catch block
-          e.printStackTrace();
-        }
-
-      } catch (final InterruptedException e) {
-        e.printStackTrace();
+      final Collection<CaptureDisk> covering = diskIndex.collectCovering(
+          rxer.getX(), rxer.getY());
+      if (!covering.isEmpty()) {
+        this.binner.put(rxer, covering.size());
+        highestBindex = this.binner.getBindex(covering.size());
+        rxer.coveringDisks = covering;
       }
 
       log.info("Receiver score: {}", rxer.coveringDisks.size());
 
-      // Add captures to each transmitter's capture set for collision
-      // calculations
-      for (final CaptureDisk disk : rxer.coveringDisks) {
-        capturedCollisions.get(disk.t1).add(disk.t2);
-        disk.t1.addCoveredDisk(disk);
-      }
-      disks.removeAll(rxer.coveringDisks);
-
-      // Calculate collision rates for each transmitter
-      // Store the min, max, and mean
-      float mean_contention = 0.0f;
-      float min_contention = this.config.numTransmitters;
-      float max_contention = 0.0f;
-      for (final Transmitter txer : this.config.transmitters) {
-        // Calculate the number of transmitters in contention
-        // Subtract 1 because this transmitter can never be in contention with
-        // itself
-        final int num_in_contention = this.config.numTransmitters - 1
-            - capturedCollisions.get(txer).size();
-        min_contention = Math.min(num_in_contention, min_contention);
-        max_contention = Math.max(num_in_contention, max_contention);
-        mean_contention += (float) num_in_contention
-            / this.config.numTransmitters;
-      }
-      this.stats[m].addContention(mean_contention);
-      this.stats[m].addMinContention(min_contention);
-      this.stats[m].addMaxContention(max_contention);
-
-      final float capturedDisks = totalCaptureDisks - disks.size();
-      final float captureRatio = (capturedDisks / totalCaptureDisks);
-      // Debugging stuff
-      if (Main.gfxConfig.generateImages) {
-        this.render.setTransmitters(this.config.transmitters);
-        this.render.setRankedSolutionPoints(this.binner.getBins(),
-            this.binner.getBinMins());
-
-        // display.setSolutionPoints(this.binner.getMaxBin());
-        this.render.setCaptureDisks(disks);
-        this.render.setReceiverPoints(this.config.receivers);
-
-        final String saveName = String.format(this.saveDirectory
-            + File.separator + "1%03d", (m + 1));
-        Main.saveImage(this.render, saveName);
-        this.render.clear();
-
-      }
-
-      this.stats[m].addCoverage(captureRatio);
+      this.recordReceiver(rxer, disks, diskIndex, m, totalCaptureDisks);
       ++m;
     }
 
-    // Finding new positions
-    Collection<Point2D> startingPoints = BinnedRecurGridExperiment
-        .generateSolutionPoints(minX, maxX, minY, maxY, random,
-            this.config.transmitters);
-    log.info(String.format("[%d] Generated %,d solution points.\n",
-        this.config.trialNumber, startingPoints.size()));
+    final int numGiven = m;
+    // Receivers placed by this trial
+    final List<Receiver> placed = new ArrayList<Receiver>();
 
-    this.binner.set(startingPoints, 1);
-
-    receiverLoop: while (m < this.config.numReceivers && !disks.isEmpty()) {
+    final File checkpointFile = new File(Main.buildPath(String.format(
+        "checkpoint_s%d_t%d_x%d.bin", Long.valueOf(Main.config.randomSeed),
+        Integer.valueOf(this.config.numTransmitters),
+        Integer.valueOf(this.config.trialNumber))));
+    final Checkpoint resumed = Main.config.resume ? this.readCheckpoint(
+        checkpointFile, totalCaptureDisks, numGiven) : null;
+
+    // Grid samples of every zoom level, shared across receivers
+    final RefinementQuadTree samples = new RefinementQuadTree(
+        this.config.transmitters, this.config.taskRandom(
+            TaskConfig.JITTER_PHASE, 0));
+    Collection<Point2D> startingPoints;
+    if (resumed != null) {
+      // Replay the saved receivers, then pick up the search where it stopped
+      for (int i = 0; i < resumed.receivers.length
+          && m < this.config.numReceivers; i += 2) {
+        final Receiver rxer = new Receiver();
+        rxer.x = resumed.receivers[i];
+        rxer.y = resumed.receivers[i + 1];
+        rxer.coveringDisks = diskIndex.collectCovering(rxer.getX(),
+            rxer.getY());
+        this.config.receivers.add(rxer);
+        placed.add(rxer);
+        this.recordReceiver(rxer, disks, diskIndex, m, totalCaptureDisks);
+        ++m;
+      }
+      resumed.restoreBins(this.binner);
+      highestBindex = resumed.highestBindex;
+      startingPoints = new LinkedList<Point2D>();
+      log.info(String.format("[%d] Resumed from %s with %,d receivers.",
+          Integer.valueOf(this.config.trialNumber), checkpointFile,
+          Integer.valueOf(placed.size())));
+    } else {
+      // Finding new positions
+      startingPoints = samples.refine(minX, maxX, minY, maxY, random);
+      log.info(String.format("[%d] Generated %,d solution points.\n",
+          this.config.trialNumber, startingPoints.size()));
+
+      this.binner.set(startingPoints, 1);
+    }
 
-      log.info("[" + this.config.trialNumber
-          + "] Calculating position for receiver " + (m + 1) + ".");
-      Receiver maxReceiver = null;
-      int previousMaxScore = 0;
-      HashSet<Point2D> alreadyChecked = new HashSet<Point2D>();
-      HashSet<Point2D> maxChecked = new HashSet<Point2D>();
-      recursiveLoop: do {
-        this.binner.printBins();
+    final CheckpointWriter checkpoints = Main.config.checkpoints ? new CheckpointWriter(
+        checkpointFile) : null;
 
-        if (maxReceiver != null) {
-          previousMaxScore = maxReceiver.coveringDisks.size();
-        }
-        log.info("Using bin {}", this.binner.getMaxBindex());
-        Set<Point2D> possiblePoints = this.binner.getMaxBin();
-        if (possiblePoints == null) {
-          log.info("No more points available in the bins.");
-          break;
-        }
-        Set<Point2D> thePoints = new HashSet<Point2D>();
-        for (Iterator<Point2D> iter = possiblePoints.iterator(); iter.hasNext();) {
-          Point2D pnt = iter.next();
-          iter.remove();
-          if (alreadyChecked.contains(pnt)) {
-            maxChecked.add(pnt);
-          } else {
-            thePoints.add(pnt);
-          }
+    try {
+      receiverLoop: while (m < this.config.numReceivers && !disks.isEmpty()) {
 
-        }
+        log.info("[" + this.config.trialNumber
+            + "] Calculating position for receiver " + (m + 1) + ".");
+        Receiver maxReceiver = null;
+        int previousMaxScore = 0;
+        // Scores from the previous receiver are stale
+        samples.clear();
+        HashSet<Point2D> maxChecked = new HashSet<Point2D>();
+        recursiveLoop: do {
+          this.binner.printBins();
 
-        final int numTasks = Main.config.numThreads;
-        final int numPoints = thePoints.size();
-        final int pointsPerTask = (numPoints / numTasks) + 1;
-        final long numComparisons = disks.size() * (long) numPoints;
-
-        final Collection<SolutionCheckTask> tasks = new LinkedList<BinnedRecurGridExperiment.SolutionCheckTask>();
-        final Iterator<Point2D> pointIter = thePoints.iterator();
-        SolutionCheckTask task = new SolutionCheckTask();
-        task.solutionPoints = new LinkedList<Point2D>();
-        task.disks = disks;
-        task.desiredBin = highestBindex;
-        task.binner = this.binner;
-        // task.parent = this;
-        tasks.add(task);
-        for (int i = 0; pointIter.hasNext(); ++i) {
-          Point2D pnt = pointIter.next();
-          task.solutionPoints.add(pnt);
-          alreadyChecked.add(pnt);
-          pointIter.remove();
-          if (i == pointsPerTask) {
-            i = 0;
-            task = new SolutionCheckTask();
-            task.solutionPoints = new LinkedList<Point2D>();
-            task.disks = disks;
-            task.binner = this.binner;
-            task.desiredBin = highestBindex;
-            // task.parent = this;
-            tasks.add(task);
+          if (maxReceiver != null) {
+            previousMaxScore = maxReceiver.coveringDisks.size();
           }
-        }
-        int sumTasks = 0;
-        for (final SolutionCheckTask t : tasks) {
-          log.info(String.format("Task (%,d)", t.solutionPoints.size()));
-          sumTasks += t.solutionPoints.size();
-        }
-
-        log.info(String
-            .format("Divided %,d/%,d points.\n", sumTasks, numPoints));
-        final long start = System.currentTimeMillis();
+          log.info("Using bin {}", this.binner.getMaxBindex());
+          final Point2D[] possiblePoints = this.binner.takeMaxBin();
+          if (possiblePoints == null) {
+            log.info("No more points available in the bins.");
+            break;
+          }
+          // Ties go to the first point, so keep the order the bin gave
+          List<Point2D> thePoints = new ArrayList<Point2D>();
+          for (final Point2D pnt : possiblePoints) {
+            if (samples.isEvaluated(pnt)) {
+              maxChecked.add(pnt);
+            } else {
+              thePoints.add(pnt);
+            }
 
-        try {
-          final List<Future<Receiver>> solutions = this.workers
-              .invokeAll(tasks);
+          }
 
-          for (final Future<Receiver> future : solutions) {
-            if (future.isCancelled() || !future.isDone()) {
-              log.error("One of the tasks was cancelled! Double-check the code!");
-              return Boolean.FALSE;
-            }
-            try {
-              final Receiver r = future.get();
-              if (r == null) {
-                log.warn("No receiver returned.");
-                continue;
-              }
-              if (maxReceiver == null
-                  || r.coveringDisks.size() > maxReceiver.coveringDisks.size()) {
-                highestBindex = this.binner.getBindex(r.coveringDisks.size());
-                maxReceiver = r;
-              }
-            } catch (final ExecutionException e) {
-              // TODO Auto-generated catch block
-              e.printStackTrace();
+          final Point2D[] points = thePoints.toArray(new Point2D[thePoints
+              .size()]);
+          thePoints.clear();
+          final int numPoints = points.length;
+          final long numComparisons = disks.size() * (long) numPoints;
+
+          final long start = System.currentTimeMillis();
+          final float[] allScores = new float[numPoints];
+          final int best = GuidedScheduler.findMax(numPoints,
+              CoverageScorer.create(points, diskIndex, this.binner,
+                  highestBindex, allScores), this.workers);
+          samples.setScores(points, allScores, numPoints);
+          if (best >= 0) {
+            final Receiver r = new Receiver();
+            r.setLocation(points[best]);
+            r.coveringDisks = diskIndex.collectCovering(points[best].getX(),
+                points[best].getY());
+            if (maxReceiver == null
+                || r.coveringDisks.size() > maxReceiver.coveringDisks.size()) {
+              highestBindex = this.binner.getBindex(r.coveringDisks.size());
+              maxReceiver = r;
             }
           }
+          final long duration = System.currentTimeMillis() - start;
+          log.info(String.format("Computed %,d comparisons in %,dms.\n",
+              numComparisons, duration));
 
-        } catch (final InterruptedException e) {
-          e.printStackTrace();
-        }
-        final long duration = System.currentTimeMillis() - start;
-        log.info(String.format("Computed %,d comparisons in %,dms.\n",
-            numComparisons, duration));
+          if (maxReceiver == null) {
 
-        if (maxReceiver == null) {
+            if (highestBindex == 0) {
+              break receiverLoop;
+            }
 
-          if (highestBindex == 0) {
-            break receiverLoop;
+            highestBindex = this.binner.getMaxBindex();
+            samples.clear();
+            maxChecked.clear();
+            continue recursiveLoop;
           }
 
-          highestBindex = this.binner.getMaxBindex();
-          alreadyChecked.clear();
-          maxChecked.clear();
-          continue recursiveLoop;
-        }
-
-        alreadyChecked.remove(maxReceiver);
+          samples.forget(maxReceiver);
 
-        log.info("Max receiver score: {}", maxReceiver.coveringDisks.size());
+          log.info("Max receiver score: {}", maxReceiver.coveringDisks.size());
 
-        if (highestBindex == 0) {
-          int max = maxReceiver.coveringDisks.size();
-          if (max > this.minRebinValue) {
-            this.binner.rebin(1, max / 2);
+          if (highestBindex == 0) {
+            int max = maxReceiver.coveringDisks.size();
+            if (max > this.minRebinValue) {
+              this.binner.rebin(1, max / 2, this.workers);
+            }
           }
-        }
 
-        if (previousMaxScore == 0
-            || maxReceiver.coveringDisks.size() != previousMaxScore) {
-          // Try again, this time digging deeper around the maximum area.
-          float width = (maxX - minX) / 4;
-          float height = (maxY - minY) / 4;
-          minX = (float) maxReceiver.getX() - width;
-          maxX = (float) maxReceiver.getX() + width;
-          minY = (float) maxReceiver.getY() - height;
-          maxY = (float) maxReceiver.getY() + height;
-          highestBindex = this.binner.getBindex(maxReceiver.coveringDisks
-              .size());
-          random = Main.config.isRandomized() ? ((width + height) / 2) * 0.01f
-              : 0f;
-          this.binner.putAll(this.generateSolutionPoints(minX, maxX, minY,
-              maxY, random, this.config.transmitters),
-              maxReceiver.coveringDisks.size());
-        }
+          if (previousMaxScore == 0
+              || maxReceiver.coveringDisks.size() != previousMaxScore) {
+            // Try again, this time digging deeper around the maximum area.
+            float width = (maxX - minX) / 4;
+            float height = (maxY - minY) / 4;
+            minX = (float) maxReceiver.getX() - width;
+            maxX = (float) maxReceiver.getX() + width;
+            minY = (float) maxReceiver.getY() - height;
+            maxY = (float) maxReceiver.getY() + height;
+            highestBindex = this.binner.getBindex(maxReceiver.coveringDisks
+                .size());
+            random = Main.config.isRandomized() ? ((width + height) / 2) * 0.01f
+                : 0f;
+            this.binner.putAll(samples.refine(minX, maxX, minY, maxY, random),
+                maxReceiver.coveringDisks.size());
+          }
 
-      } while (previousMaxScore == 0
-          || maxReceiver.coveringDisks.size() != previousMaxScore);
+        } while (previousMaxScore == 0
+            || maxReceiver.coveringDisks.size() != previousMaxScore);
 
-      log.info(String.format("Adding %,d max points, instead of %,d total.",
-          maxChecked.size(), alreadyChecked.size()));
+        log.info(String.format("Adding %,d max points, instead of %,d total.",
+            maxChecked.size(), samples.numEvaluated()));
 
-      this.binner.putAll(maxChecked, maxReceiver.coveringDisks.size());
+        this.binner.putAll(maxChecked, maxReceiver.coveringDisks.size());
 
-      minX = 0;
-      maxX = Main.config.universeWidth;
-      minY = 0;
-      maxY = Main.config.universeHeight;
+        minX = 0;
+        maxX = Main.config.universeWidth;
+        minY = 0;
+        maxY = Main.config.universeHeight;
 
-      // Add the newest receiver and remove newly covered points and disks
-      this.config.receivers.add(maxReceiver);
+        // Add the newest receiver and remove newly covered points and disks
+        this.config.receivers.add(maxReceiver);
+        placed.add(maxReceiver);
 
-      // Add captures to each transmitter's capture set for collision
-      // calculations
-      for (final CaptureDisk disk : maxReceiver.coveringDisks) {
-        capturedCollisions.get(disk.t1).add(disk.t2);
-        disk.t1.addCoveredDisk(disk);
-      }
-      disks.removeAll(maxReceiver.coveringDisks);
-
-      // Calculate collision rates for each transmitter
-      // Store the min, max, and mean
-      float mean_contention = 0.0f;
-      float min_contention = this.config.numTransmitters;
-      float max_contention = 0.0f;
-      for (final Transmitter txer : this.config.transmitters) {
-        // Calculate the number of transmitters in contention
-        // Subtract 1 because this transmitter can never be in contention with
-        // itself
-        final int num_in_contention = this.config.numTransmitters - 1
-            - capturedCollisions.get(txer).size();
-        min_contention = Math.min(num_in_contention, min_contention);
-        max_contention = Math.max(num_in_contention, max_contention);
-        mean_contention += (float) num_in_contention
-            / this.config.numTransmitters;
-      }
-      this.stats[m].addContention(mean_contention);
-      this.stats[m].addMinContention(min_contention);
-      this.stats[m].addMaxContention(max_contention);
-
-      final float capturedDisks = totalCaptureDisks - disks.size();
-      final float captureRatio = (capturedDisks / totalCaptureDisks);
-      // Debugging stuff
-      if (Main.gfxConfig.generateImages) {
-        this.render.setTransmitters(this.config.transmitters);
-        this.render.setRankedSolutionPoints(this.binner.getBins(),
-            this.binner.getBinMins());
-
-        // display.setSolutionPoints(this.binner.getMaxBin());
-        this.render.setCaptureDisks(disks);
-        this.render.setReceiverPoints(this.config.receivers);
-
-        final String saveName = String.format(this.saveDirectory
-            + File.separator + "1%03d", (m + 1));
-        Main.saveImage(this.render, saveName);
-        this.render.clear();
+        this.recordReceiver(maxReceiver, disks, diskIndex, m,
+            totalCaptureDisks);
+        if (checkpoints != null) {
+          checkpoints.submit(this.createCheckpoint(totalCaptureDisks, numGiven,
+              placed, highestBindex));
+        }
+        ++m;
 
+      } // End for each receiver
+    } finally {
+      // Wait for the queued checkpoints even if the trial failed
+      if (checkpoints != null) {
+        checkpoints.close();
       }
-
-      this.stats[m].addCoverage(captureRatio);
-      ++m;
-
-    } // End for each receiver
+    }
 
     // }
     disks.clear();
@@ -572,80 +359,137 @@ public class BinnedRecurGridExperiment implements Experiment {
     return Boolean.TRUE;
   }
 
-  static boolean checkPointInDisk(final Point2D p, final CaptureDisk d) {
-    final double dist1 = Math.sqrt(Math.pow(p.getX() - d.t1.getX(), 2)
-        + Math.pow(p.getY() - d.t1.getY(), 2));
-    final double dist2 = Math.sqrt(Math.pow(p.getX() - d.t2.getX(), 2)
-        + Math.pow(p.getY() - d.t2.getY(), 2));
-    // This point is too far away from the transmitters for this disk
-    if (dist1 > Main.config.maxRangeMeters
-        && dist2 > Main.config.maxRangeMeters) {
-      return false;
-    }
-    return d.disk.contains(p);
-
+  /**
+   * Captures the state of the trial after a receiver has been placed.
+   * 
+   * @param numDisks
+   *          the number of disks in the trial.
+   * @param numGiven
+   *          the number of receivers given to the trial.
+   * @param placed
+   *          the receivers placed by the trial.
+   * @param highestBindex
+   *          the index of the highest bin to score points for.
+   * @return the new checkpoint.
+   */
+  private Checkpoint createCheckpoint(final int numDisks, final int numGiven,
+      final List<Receiver> placed, final int highestBindex) {
+    final Checkpoint checkpoint = new Checkpoint();
+    checkpoint.trialNumber = this.config.trialNumber;
+    checkpoint.layoutHash = Checkpoint.hashLayout(this.config.transmitters);
+    checkpoint.numDisks = numDisks;
+    checkpoint.numGiven = numGiven;
+    checkpoint.highestBindex = highestBindex;
+    checkpoint.receivers = Checkpoint.toCoordinates(placed);
+    checkpoint.setBins(this.binner);
+    return checkpoint;
   }
 
-  private static Collection<Point2D> generateSolutionPoints(final float minX,
-      final float maxX, final float minY, final float maxY, final float random,
-      final Collection<Transmitter> transmitters) {
-
-    log.info(String
-        .format(
-            "Generating [(%,.2f, %,.2f)x(%,.2f, %,.2f)] dense: %,.1f, random: %,.2f",
-            minX, maxX, minY, maxY, Main.config.getGridDensity(), random));
-
-    final Collection<Point2D> solutionPoints = new HashSet<Point2D>();
-    float density = Main.config.getGridDensity();
-    float xStep = (maxX - minX) / density;
-    float yStep = (maxY - minY) / density;
-
-    // Build a grid assuming some density of points per unit-square
-
-    for (float xIndex = minX; xIndex <= maxX; xIndex += xStep) {
-      for (float yIndex = minY; yIndex <= maxY; yIndex += yStep) {
-        final float x = xIndex
-            + (float) (Main.rand.nextBoolean() ? (Main.rand.nextDouble() * random)
-                : (-Main.rand.nextDouble() * random));
-        if (x < 0 || x > Main.config.universeWidth) {
-          continue;
-        }
-        final float y = yIndex
-            + (float) (Main.rand.nextBoolean() ? (Main.rand.nextDouble() * random)
-                : (-Main.rand.nextDouble() * random));
-        if (y < 0 || y > Main.config.universeHeight) {
-          continue;
-        }
-        Point2D.Float pnt = new Point2D.Float(x, y);
-        if (BinnedRecurGridExperiment.checkPointInRange(pnt, transmitters)) {
-          solutionPoints.add(pnt);
-        }
-      }
-
+  /**
+   * Reads the checkpoint of this trial, if it has one and it matches the
+   * trial.
+   * 
+   * @param file
+   *          the checkpoint file.
+   * @param numDisks
+   *          the number of disks in the trial.
+   * @param numGiven
+   *          the number of receivers given to the trial.
+   * @return the checkpoint, or {@code null} if the trial should start from
+   *         the beginning.
+   */
+  private Checkpoint readCheckpoint(final File file, final int numDisks,
+      final int numGiven) {
+    if (!file.exists()) {
+      log.info("[{}] No checkpoint to resume from.",
+          Integer.valueOf(this.config.trialNumber));
+      return null;
     }
-
-    return solutionPoints;
+    final Checkpoint checkpoint;
+    try {
+      checkpoint = Checkpoint.read(file);
+    } catch (final IOException e) {
+      log.error("Unable to read checkpoint " + file + ".", e);
+      return null;
+    }
+    if (checkpoint.trialNumber != this.config.trialNumber
+        || checkpoint.layoutHash != Checkpoint
+            .hashLayout(this.config.transmitters)
+        || checkpoint.numDisks != numDisks || checkpoint.numGiven != numGiven
+        || checkpoint.binMins.length != this.numBins) {
+      log.warn("Checkpoint {} doesn't match trial {}, starting over.", file,
+          Integer.valueOf(this.config.trialNumber));
+      return null;
+    }
+    return checkpoint;
   }
 
   /**
-   * Returns true if a point is within the transmit radius of at least one
-   * transmitter, else false.
+   * Records the disks covered by a newly placed receiver, removes them from
+   * the remaining disks, and adds the resulting contention and coverage to
+   * the statistics.
    * 
-   * @param p
-   *          the point to test.
-   * @return {@code true} if the point is within the transmit radius of at
-   *         leaset one transmitter.
+   * @param rxer
+   *          the receiver, with its covering disks.
+   * @param disks
+   *          the disks that aren't covered yet.
+   * @param diskIndex
+   *          the index of the uncovered disks.
+   * @param m
+   *          the number of receivers placed before this one.
+   * @param totalCaptureDisks
+   *          the number of disks in the trial.
    */
-  private static boolean checkPointInRange(final Point2D p,
-      final Collection<Transmitter> transmitters) {
-    for (final Transmitter t : transmitters) {
-      final double d = Math.sqrt(Math.pow(p.getX() - t.getX(), 2)
-          + Math.pow(p.getY() - t.getY(), 2));
-      if (d < Main.config.maxRangeMeters) {
-        return true;
-      }
+  private void recordReceiver(final Receiver rxer,
+      final CaptureDiskTable disks, final DiskGrid diskIndex,
+      final int m, final int totalCaptureDisks) {
+    disks.removeAll(rxer.coveringDisks);
+    diskIndex.removeAll(rxer.coveringDisks);
+
+    // Removed disks are counted as covered, and each covered disk is one
+    // captured collision of its transmitter
+    final TransmitterCounters counters = disks.getCounters();
+
+    // Calculate collision rates for each transmitter
+    // Store the min, max, and mean
+    float mean_contention = 0.0f;
+    float min_contention = this.config.numTransmitters;
+    float max_contention = 0.0f;
+    for (int t = 0; t < counters.numTransmitters(); ++t) {
+      // Calculate the number of transmitters in contention
+      // Subtract 1 because this transmitter can never be in contention with
+      // itself
+      final int num_in_contention = this.config.numTransmitters - 1
+          - counters.coveredDisks[t];
+      min_contention = Math.min(num_in_contention, min_contention);
+      max_contention = Math.max(num_in_contention, max_contention);
+      mean_contention += (float) num_in_contention
+          / this.config.numTransmitters;
     }
-    return false;
+    this.stats[m].addContention(mean_contention);
+    this.stats[m].addMinContention(min_contention);
+    this.stats[m].addMaxContention(max_contention);
+
+    final float capturedDisks = totalCaptureDisks - disks.size();
+    final float captureRatio = (capturedDisks / totalCaptureDisks);
+    // Debugging stuff
+    if (Main.gfxConfig.generateImages) {
+      this.render.setTransmitters(this.config.transmitters);
+      this.render.setRankedSolutionPoints(this.binner.getBins(),
+          this.binner.getBinMins());
+
+      // display.setSolutionPoints(this.binner.getMaxBin());
+      this.render.setCaptureDisks(disks.getLiveDisks());
+      this.render.setReceiverPoints(this.config.receivers);
+
+      final String saveName = String.format(this.saveDirectory
+          + File.separator + "1%03d", (m + 1));
+      Main.saveImage(this.render, saveName);
+      this.render.clear();
+
+    }
+
+    this.stats[m].addCoverage(captureRatio);
   }
 
 }
@@ -18,84 +18,334 @@
 package edu.rutgers.winlab.junsim;
 
 import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Sorts points into bins by their scores. The bins are evenly spaced, so the
+ * bin for a score is found arithmetically, and each bin keeps its points and
+ * their scores in primitive arrays. A bin is split into independently locked
+ * stripes so that many workers can add to it at once. The stripe is picked
+ * from a hash of the point's coordinates, not by thread, so a point added
+ * twice always meets its earlier copy: like a set, a bin keeps each point
+ * only once, with the higher of its scores.
+ * 
  * @author Robert Moore
  */
 public class Binner {
 
   private static final Logger log = LoggerFactory.getLogger(Binner.class);
 
-  private final Set<Point2D>[] bins;
-  
+  /**
+   * Number of independently locked buffers in each bin. Must be a power of 2.
+   */
+  static final int NUM_STRIPES = 8;
+
+  /**
+   * Orders points by x, then y. Bins are taken in this order, so ties between
+   * points don't depend on the order in which workers added them.
+   */
+  static final Comparator<Point2D> POINT_ORDER = new Comparator<Point2D>() {
+    @Override
+    public int compare(final Point2D p1, final Point2D p2) {
+      final int byX = Double.compare(p1.getX(), p2.getX());
+      return byX != 0 ? byX : Double.compare(p1.getY(), p2.getY());
+    }
+  };
+
+  /**
+   * Points and their scores, moved out of a bin.
+   * 
+   * @author Robert Moore
+   */
+  static final class Buffer {
+    float[] x;
+    float[] y;
+    int[] score;
+    int size = 0;
+
+    Buffer(final int capacity) {
+      super();
+      this.x = new float[capacity];
+      this.y = new float[capacity];
+      this.score = new int[capacity];
+    }
+  }
+
+  /**
+   * A share of the points of a bin, each kept once with the highest score it
+   * was added with, so that the result doesn't depend on the order of adds.
+   * 
+   * @author Robert Moore
+   */
+  static final class Stripe {
+    PointSet points = new PointSet(16, 0f);
+    int[] score = new int[16];
+
+    synchronized void add(final float px, final float py, final int s) {
+      final int existing = this.points.indexOf(px, py);
+      if (existing >= 0) {
+        if (s > this.score[existing]) {
+          this.score[existing] = s;
+        }
+        return;
+      }
+      this.points.add(px, py);
+      final int i = this.points.size() - 1;
+      if (i == this.score.length) {
+        this.score = Arrays.copyOf(this.score, i * 2);
+      }
+      this.score[i] = s;
+    }
+
+    synchronized int size() {
+      return this.points.size();
+    }
+
+    /**
+     * Moves the points of this stripe to the end of a buffer, leaving this
+     * stripe empty.
+     */
+    synchronized void drainTo(final Buffer to) {
+      final int size = this.points.size();
+      System.arraycopy(this.points.x, 0, to.x, to.size, size);
+      System.arraycopy(this.points.y, 0, to.y, to.size, size);
+      System.arraycopy(this.score, 0, to.score, to.size, size);
+      to.size += size;
+      this.clear();
+    }
+
+    /**
+     * Moves the points of this stripe into a new buffer, leaving this stripe
+     * empty.
+     */
+    synchronized Buffer drain() {
+      final Buffer drained = new Buffer(this.points.size());
+      this.drainTo(drained);
+      return drained;
+    }
+
+    synchronized void clear() {
+      this.points = new PointSet(16, 0f);
+      this.score = new int[16];
+    }
+  }
+
+  /**
+   * A bin, split into several stripes so that workers adding points seldom
+   * wait on each other. A point always goes to the same stripe, so it is
+   * kept only once in the bin.
+   * 
+   * @author Robert Moore
+   */
+  static final class Bin {
+    final Stripe[] stripes = new Stripe[NUM_STRIPES];
+
+    Bin() {
+      super();
+      for (int i = 0; i < this.stripes.length; ++i) {
+        this.stripes[i] = new Stripe();
+      }
+    }
+
+    void add(final float px, final float py, final int s) {
+      // Adding zero turns negative zero into zero, which the stripe's point
+      // set treats as equal
+      int hash = Float.floatToIntBits(px + 0f) * 31
+          + Float.floatToIntBits(py + 0f);
+      hash ^= hash >>> 16;
+      this.stripes[hash & (NUM_STRIPES - 1)].add(px, py, s);
+    }
+
+    int size() {
+      int size = 0;
+      for (final Stripe stripe : this.stripes) {
+        size += stripe.size();
+      }
+      return size;
+    }
+
+    boolean isEmpty() {
+      for (final Stripe stripe : this.stripes) {
+        if (stripe.size() > 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Moves every point of this bin into a single buffer.
+     */
+    Buffer drain() {
+      final Buffer drained = new Buffer(this.size());
+      for (final Stripe stripe : this.stripes) {
+        synchronized (stripe) {
+          if (drained.size + stripe.size() > drained.x.length) {
+            // Points were added since the bin was measured
+            final int capacity = drained.size + stripe.size();
+            drained.x = Arrays.copyOf(drained.x, capacity);
+            drained.y = Arrays.copyOf(drained.y, capacity);
+            drained.score = Arrays.copyOf(drained.score, capacity);
+          }
+          stripe.drainTo(drained);
+        }
+      }
+      return drained;
+    }
+
+    void clear() {
+      for (final Stripe stripe : this.stripes) {
+        stripe.clear();
+      }
+    }
+  }
+
+  private final Bin[] bins;
+
   private final int[] binMins;
 
+  /**
+   * Score at which bin 1 would start if its width were that of the others.
+   */
+  private int min;
+
+  /**
+   * Width of each bin, in scores.
+   */
+  private int step;
+
   public Binner(int numBins, int min, int max) {
     super();
     this.binMins = new int[numBins];
     this.binMins[0] = min;
-    int step = (int)Math.ceil((max*1f - min)/numBins);
-    if(step < 1){
-      step = 1;
-    }
-    
-    int binStart = min+step;
-    for(int i = 1; i < this.binMins.length; ++i, binStart+=step){
-      this.binMins[i] = binStart;
-    }
-    
-    this.bins = new Set[numBins];
+    this.setBounds(min, max);
+
+    this.bins = new Bin[numBins];
     for (int i = 0; i < this.bins.length; ++i) {
-      this.bins[i] = Collections
-          .newSetFromMap(new ConcurrentHashMap<Point2D, Boolean>());
+      this.bins[i] = new Bin();
     }
   }
-  
-  public void rebin(final int min, final int max){
-    int step = (int)Math.ceil((max*1f - min)/this.bins.length);
-    if(step < 1){
+
+  private void setBounds(final int min, final int max) {
+    int step = (int) Math.ceil((max * 1f - min) / this.binMins.length);
+    if (step < 1) {
       step = 1;
     }
-    int binStart = min+step;
-    for(int i = 1; i < this.binMins.length; ++i, binStart+=step){
+    this.min = min;
+    this.step = step;
+    int binStart = min + step;
+    for (int i = 1; i < this.binMins.length; ++i, binStart += step) {
       this.binMins[i] = binStart;
     }
   }
 
+  /**
+   * Moves a buffer of points into the bins for their scores.
+   * 
+   * @author Robert Moore
+   */
+  private final class RebinTask implements Callable<Boolean> {
+    private final Buffer points;
+
+    RebinTask(final Buffer points) {
+      super();
+      this.points = points;
+    }
+
+    @Override
+    public Boolean call() {
+      for (int i = 0; i < this.points.size; ++i) {
+        Binner.this.bins[Binner.this.getBindex(this.points.score[i])].add(
+            this.points.x[i], this.points.y[i], this.points.score[i]);
+      }
+      return Boolean.TRUE;
+    }
+  }
+
+  /**
+   * Spreads the bins evenly over new scores and moves every point to the bin
+   * for its score.
+   * 
+   * @param min
+   *          the lowest score of the second bin's range, less one bin width.
+   * @param max
+   *          the score near which the last bin starts.
+   * @param workers
+   *          worker threadpool to move the points with, or {@code null} to
+   *          move them on the calling thread.
+   */
+  public void rebin(final int min, final int max, final ExecutorService workers) {
+    final List<RebinTask> tasks = new ArrayList<RebinTask>();
+    for (final Bin bin : this.bins) {
+      for (final Stripe stripe : bin.stripes) {
+        final Buffer points = stripe.drain();
+        if (points.size > 0) {
+          tasks.add(new RebinTask(points));
+        }
+      }
+    }
+    this.setBounds(min, max);
+    Main.runAll(tasks, workers);
+  }
+
   public int put(Point2D point, int score) {
+    return this.put((float) point.getX(), (float) point.getY(), score);
+  }
+
+  public int put(final float x, final float y, final int score) {
     int bindex = getBindex(score);
-    this.bins[bindex].add(point);
+    this.bins[bindex].add(x, y, score);
     return bindex;
   }
-  
-  public int putAll(Collection<Point2D> points, int score){
+
+  public int putAll(Collection<? extends Point2D> points, int score) {
     int bindex = getBindex(score);
-    this.bins[bindex].addAll(points);
+    for (final Point2D point : points) {
+      this.bins[bindex].add((float) point.getX(), (float) point.getY(), score);
+    }
     return bindex;
   }
 
-  public void set(Collection<Point2D> points, int score) {
-    int bindex = getBindex(score);
-    this.bins[bindex].addAll(points);
+  public void set(Collection<? extends Point2D> points, int score) {
+    this.putAll(points, score);
   }
 
-  public Set<Point2D> getMaxBin() {
+  /**
+   * Removes the points of the highest-ranked non-empty bin.
+   * 
+   * @return the points of the bin in {@link #POINT_ORDER}, or
+   *         {@code null} if every bin is empty.
+   */
+  public Point2D[] takeMaxBin() {
     for (int i = this.bins.length - 1; i >= 0; --i) {
       if (!this.bins[i].isEmpty()) {
-        return this.bins[i];
+        return Binner.toPoints(this.bins[i].drain());
       }
     }
     return null;
   }
+
+  /**
+   * Copies a buffer into an array of points in {@link #POINT_ORDER}.
+   */
+  private static Point2D[] toPoints(final Buffer buffer) {
+    final Point2D[] points = new Point2D[buffer.size];
+    for (int i = 0; i < buffer.size; ++i) {
+      points[i] = new Point2D.Float(buffer.x[i], buffer.y[i]);
+    }
+    Arrays.sort(points, POINT_ORDER);
+    return points;
+  }
   
   /**
    * Returns the index of the highest-ranked non-empty bin.
@@ -119,23 +369,23 @@ public class Binner {
    * @return the bin index is goes into.
    */
   public int getBindex(int origCount) {
-    int bindex =0;
-    for(; bindex < this.binMins.length-1; ++bindex){
-      if(this.binMins[bindex+1] > origCount){
-        break;
-      }
+    final int bindex = (origCount - this.min) / this.step;
+    if (bindex < 0) {
+      return 0;
     }
-    return bindex;
+    return bindex < this.bins.length ? bindex : this.bins.length - 1;
   }
 
   public void printBins() {
 
     StringBuilder sb = new StringBuilder();
 
+    final int[] sizes = new int[this.bins.length];
     int maxSize = 0;
     for (int i = 0; i < this.bins.length; ++i) {
-      if (this.bins[i].size() > maxSize) {
-        maxSize = this.bins[i].size();
+      sizes[i] = this.bins[i].size();
+      if (sizes[i] > maxSize) {
+        maxSize = sizes[i];
       }
     }
 
@@ -146,7 +396,7 @@ public class Binner {
     boolean skip = true;
 
     for (int i = this.bins.length - 1; i >= 0; --i) {
-      int binSize = this.bins[i].size();
+      int binSize = sizes[i];
       if (binSize == 0 && skip) {
         continue;
       }
@@ -170,24 +420,123 @@ public class Binner {
   }
   
   public void clear(){
-    for(Set<Point2D> bin : this.bins){
+    for(Bin bin : this.bins){
       bin.clear();
     }
   }
   
   /**
-   * Returns bins in the order of highest-ranked to lowest-ranked.
+   * Returns copies of the bins in the order of lowest-ranked to
+   * highest-ranked.
    * 
-   * @return bins in the order of highest-ranked to lowest-ranked.
+   * @return copies of the bins in the order of lowest-ranked to
+   *         highest-ranked.
    */
   public List<Collection<Point2D>> getBins(){
     LinkedList<Collection<Point2D>> returnedList = new LinkedList<Collection<Point2D>>();
-    for(Set<Point2D> set : this.bins){
-      returnedList.add(set);
+    for (int i = 0; i < this.bins.length; ++i) {
+      final float[] coords = this.getBinCoordinates(i);
+      final List<Point2D> points = new ArrayList<Point2D>(coords.length / 2);
+      for (int j = 0; j < coords.length; j += 2) {
+        points.add(new Point2D.Float(coords[j], coords[j + 1]));
+      }
+      returnedList.add(points);
     }
     return returnedList;
   }
-  
+
+  /**
+   * Copies the locations of the points in a bin.
+   * 
+   * @param bindex
+   *          the index of the bin.
+   * @return the coordinates of the points, as consecutive (x, y) pairs.
+   */
+  public float[] getBinCoordinates(final int bindex) {
+    final float[] coords = new float[this.bins[bindex].size() * 2];
+    int n = 0;
+    for (final Stripe stripe : this.bins[bindex].stripes) {
+      synchronized (stripe) {
+        for (int i = 0; i < stripe.points.size() && n < coords.length; ++i) {
+          coords[n++] = stripe.points.x[i];
+          coords[n++] = stripe.points.y[i];
+        }
+      }
+    }
+    return n == coords.length ? coords : Arrays.copyOf(coords, n);
+  }
+
+  /**
+   * Copies the scores of the points in a bin, in the same order as
+   * {@link #getBinCoordinates(int)}.
+   * 
+   * @param bindex
+   *          the index of the bin.
+   * @return the scores of the points.
+   */
+  public int[] getBinScores(final int bindex) {
+    final int[] scores = new int[this.bins[bindex].size()];
+    int n = 0;
+    for (final Stripe stripe : this.bins[bindex].stripes) {
+      synchronized (stripe) {
+        for (int i = 0; i < stripe.points.size() && n < scores.length; ++i) {
+          scores[n++] = stripe.score[i];
+        }
+      }
+    }
+    return n == scores.length ? scores : Arrays.copyOf(scores, n);
+  }
+
+  /**
+   * Adds a point directly to a bin, regardless of its score.
+   * 
+   * @param bindex
+   *          the index of the bin.
+   * @param x
+   *          the x coordinate of the point.
+   * @param y
+   *          the y coordinate of the point.
+   * @param score
+   *          the score of the point.
+   */
+  public void putInBin(final int bindex, final float x, final float y,
+      final int score) {
+    this.bins[bindex].add(x, y, score);
+  }
+
+  /**
+   * Replaces the minimum score of every bin, such as when restoring a
+   * previous state of the bins. Every bin but the first must be the same
+   * width.
+   * 
+   * @param mins
+   *          the minimum score of each bin.
+   */
+  public void setBinMins(final int[] mins) {
+    if (mins.length != this.binMins.length) {
+      throw new IllegalArgumentException("Expected " + this.binMins.length
+          + " bin minimums, but got " + mins.length + ".");
+    }
+    int step = 1;
+    if (mins.length > 2) {
+      step = mins[2] - mins[1];
+    } else if (mins.length == 2) {
+      step = mins[1] - mins[0];
+    }
+    for (int i = 2; i < mins.length; ++i) {
+      if (mins[i] - mins[i - 1] != step) {
+        throw new IllegalArgumentException(
+            "Bin minimums must be evenly spaced.");
+      }
+    }
+    if (step < 1) {
+      throw new IllegalArgumentException("Bin minimums must be increasing.");
+    }
+    System.arraycopy(mins, 0, this.binMins, 0, mins.length);
+    this.step = step;
+    this.min = mins.length > 1 ? mins[1] - step : mins[0];
+  }
+
   public List<Integer> getBinMins(){
     LinkedList<Integer> list = new LinkedList<Integer>();
     for(int min : this.binMins){
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+
+/**
+ * Counts the disks covering each streamed block of points, and puts the
+ * covered points into a {@link Binner} by their count. Points that are not
+ * covered by any disk are dropped without being stored.
+ * 
+ * @author Robert Moore
+ */
+class BinningConsumer extends CandidateStream.Consumer {
+
+  /**
+   * The disks to test against.
+   */
+  final DiskGrid diskIndex;
+  /**
+   * The bins to put covered points into.
+   */
+  final Binner binner;
+  /**
+   * Tests blocks of points against the disks.
+   */
+  private final CoverageEvaluator evaluator = Main.createCoverageEvaluator();
+  /**
+   * Buffers reused by every call to the disk index.
+   */
+  private final DiskGrid.CoverageScratch scratch =
+      new DiskGrid.CoverageScratch();
+  /**
+   * Coverage count of each point of the current block.
+   */
+  private final int[] counts = new int[CandidateStream.BLOCK_SIZE];
+  /**
+   * Number of points put into the bins.
+   */
+  int numCovered = 0;
+
+  BinningConsumer(final DiskGrid diskIndex, final Binner binner) {
+    super();
+    this.diskIndex = diskIndex;
+    this.binner = binner;
+  }
+
+  @Override
+  void accept(final CandidateStream.Block block) {
+    this.diskIndex.countCoverage(block.x, block.y, block.size, this.evaluator,
+        this.counts, this.scratch);
+    for (int p = 0; p < block.size; ++p) {
+      if (this.counts[p] > 0) {
+        this.binner.put(block.x[p], block.y[p], this.counts[p]);
+        ++this.numCovered;
+      }
+    }
+  }
+}
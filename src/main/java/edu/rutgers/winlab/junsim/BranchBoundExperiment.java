@@ -0,0 +1,506 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Greedy receiver placement that finds the deepest point of the capture disks
+ * in the universe by branch and bound. The search starts from the part of the
+ * universe that the live disks overlap. Each cell keeps the live disks that
+ * could cover some point in it, which bounds the score of every point of the
+ * cell from above, and the score of its center bounds the best score from
+ * below. Cells that cannot beat the best point found so far are dropped.
+ * <p>
+ * A point is covered by a disk when it is inside the disk and within range of
+ * one of the disk's transmitters, so the deepest region is bounded by disk
+ * boundaries and transmitter range limits. Small cells therefore sweep the
+ * arcs of their disks' boundaries and their transmitters' range limits that
+ * lie inside the cell for the deepest arc, as {@link SweepExperiment} does. If
+ * the deepest region of a cell doesn't contain the whole cell, its boundary
+ * crosses the cell on one of those circles, and otherwise the center of the
+ * cell is in it, so each receiver covers as many disks as the deepest point
+ * of the universe.
+ * </p>
+ * 
+ * @author Robert Moore
+ */
+public class BranchBoundExperiment implements Experiment {
+
+  private static final Logger log = LoggerFactory
+      .getLogger(BranchBoundExperiment.class);
+
+  /**
+   * Cells with this many disks or fewer are not split further.
+   */
+  static final int LEAF_DISKS = 8;
+
+  /**
+   * Cells no wider or taller than this, in meters, are not split further.
+   */
+  static final float MIN_CELL_SIZE = 0.5f;
+
+  /**
+   * Added to each radius, in meters, when deciding whether a disk reaches a
+   * cell, so that intersection points rounded just outside a disk still find
+   * it.
+   */
+  static final float MARGIN = 1e-3f;
+
+  /**
+   * Configuration for this task.
+   */
+  final TaskConfig config;
+  /**
+   * Statistics to update.
+   */
+  final ExperimentStats stats[];
+  /**
+   * Name of the directory in which to save images.
+   */
+  String saveDirectory = null;
+  /**
+   * Pool of worker threads to utilize.
+   */
+  private final ExecutorService workers;
+
+  /**
+   * Creates a new experiment task with the specific configuration, global stats
+   * to update, and worker pool.
+   * 
+   * @param config
+   *          configuration to use.
+   * @param stats
+   *          statistics to update at the end
+   * @param workers
+   *          worker threadpool to utilize.
+   */
+  public BranchBoundExperiment(final TaskConfig config,
+      final ExperimentStats[] stats, final ExecutorService workers) {
+    super();
+    this.workers = workers;
+    this.config = config;
+    this.stats = stats;
+    this.saveDirectory = Main.buildPath(String.format("s%d_t%d_x%d",
+        Long.valueOf(Main.config.randomSeed),
+        Integer.valueOf(this.config.numTransmitters),
+        Integer.valueOf(this.config.trialNumber)));
+  }
+
+  /**
+   * A rectangle of the universe and the live disks that may cover part of it.
+   * 
+   * @author Robert Moore
+   */
+  static final class Cell {
+    final float minX;
+    final float maxX;
+    final float minY;
+    final float maxY;
+    /**
+     * Indices of the disks that reach this cell, in increasing order.
+     */
+    final int[] disks;
+    /**
+     * Number of disks in {@link #disks}, an upper bound on the score of any
+     * point of this cell.
+     */
+    final int numDisks;
+    /**
+     * Creation order of this cell, used to break ties between bounds.
+     */
+    final int sequence;
+
+    Cell(final float minX, final float maxX, final float minY,
+        final float maxY, final int[] disks, final int numDisks,
+        final int sequence) {
+      super();
+      this.minX = minX;
+      this.maxX = maxX;
+      this.minY = minY;
+      this.maxY = maxY;
+      this.disks = disks;
+      this.numDisks = numDisks;
+      this.sequence = sequence;
+    }
+
+    boolean contains(final float x, final float y) {
+      return x >= this.minX && x <= this.maxX && y >= this.minY
+          && y <= this.maxY;
+    }
+  }
+
+  /**
+   * Orders cells by decreasing upper bound, then by creation.
+   */
+  static final Comparator<Cell> CELL_ORDER = new Comparator<Cell>() {
+    @Override
+    public int compare(final Cell c1, final Cell c2) {
+      if (c1.numDisks != c2.numDisks) {
+        return c2.numDisks - c1.numDisks;
+      }
+      return c1.sequence - c2.sequence;
+    }
+  };
+
+  /**
+   * Finds the point covered by the most live disks of a table.
+   * 
+   * @author Robert Moore
+   */
+  static final class Search {
+    final CaptureDiskTable table;
+    /**
+     * Score of the best point found so far.
+     */
+    int bestCount = 0;
+    float bestX = Float.NaN;
+    float bestY = Float.NaN;
+    int numCells = 0;
+    int numLeaves = 0;
+    int numPruned = 0;
+    private int numCreated = 0;
+    private final SweepExperiment.CircleSweep sweep = new SweepExperiment.CircleSweep();
+    /**
+     * Arcs of the circle being swept that lie inside the cell.
+     */
+    private final double[] clip = new double[16];
+    /**
+     * Last leaf in which each transmitter's range limit was swept.
+     */
+    private final int[] sweptRange;
+
+    Search(final CaptureDiskTable table) {
+      super();
+      this.table = table;
+      this.sweptRange = new int[table.txX.length];
+      Arrays.fill(this.sweptRange, -1);
+    }
+
+    /**
+     * Whether a disk may cover some point of a rectangle. Never
+     * {@code false} for a disk that
+     * {@link CaptureDiskTable#contains(int, double, double)} would accept at
+     * a point of the rectangle.
+     */
+    boolean reaches(final int disk, final float minX, final float maxX,
+        final float minY, final float maxY) {
+      final float cx = this.table.centerX[disk];
+      final float cy = this.table.centerY[disk];
+      final float r = this.table.radius[disk] + MARGIN;
+      if (cx - r > maxX || cx + r < minX || cy - r > maxY || cy + r < minY) {
+        return false;
+      }
+      final double dx = Math.max(minX, Math.min(maxX, cx)) - (double) cx;
+      final double dy = Math.max(minY, Math.min(maxY, cy)) - (double) cy;
+      return dx * dx + dy * dy <= CaptureDiskTable.coverRadiusSquared(r);
+    }
+
+    /**
+     * Creates a cell with the disks of {@code parent} that reach it.
+     */
+    Cell createCell(final float minX, final float maxX, final float minY,
+        final float maxY, final int[] parent, final int numParent) {
+      final int[] disks = new int[numParent];
+      int numDisks = 0;
+      for (int k = 0; k < numParent; ++k) {
+        if (this.reaches(parent[k], minX, maxX, minY, maxY)) {
+          disks[numDisks++] = parent[k];
+        }
+      }
+      return new Cell(minX, maxX, minY, maxY, disks, numDisks,
+          this.numCreated++);
+    }
+
+    /**
+     * Scores a point of a cell against the cell's disks and keeps it if it
+     * beats the best point so far.
+     */
+    void evaluate(final Cell cell, final float x, final float y) {
+      int count = 0;
+      for (int k = 0; k < cell.numDisks; ++k) {
+        if (this.table.contains(cell.disks[k], x, y)) {
+          ++count;
+        }
+      }
+      if (count > this.bestCount) {
+        this.bestCount = count;
+        this.bestX = x;
+        this.bestY = y;
+      }
+    }
+
+    /**
+     * Sweeps the arcs of a cell's disk boundaries and of the range limits of
+     * their transmitters that lie inside the cell, and tests the middle of the
+     * deepest arc of each. Every disk that covers a point of the cell is one
+     * of the cell's disks, so the depths are exact.
+     */
+    void sweepCircles(final Cell cell) {
+      final int numDisks = this.table.length();
+      final double maxRange = Math.sqrt(this.table.maxRangeSquared);
+      for (int a = 0; a < cell.numDisks; ++a) {
+        final int i = cell.disks[a];
+        this.sweepCircle(cell, i, this.table.centerX[i],
+            this.table.centerY[i], this.table.radius[i]);
+        final int tx1 = this.table.t1[i];
+        if (this.sweptRange[tx1] != cell.sequence) {
+          this.sweptRange[tx1] = cell.sequence;
+          this.sweepCircle(cell, numDisks + tx1, this.table.txX[tx1],
+              this.table.txY[tx1], maxRange);
+        }
+        final int tx2 = this.table.t2[i];
+        if (this.sweptRange[tx2] != cell.sequence) {
+          this.sweptRange[tx2] = cell.sequence;
+          this.sweepCircle(cell, numDisks + tx2, this.table.txX[tx2],
+              this.table.txY[tx2], maxRange);
+        }
+      }
+    }
+
+    /**
+     * Sweeps the arcs of one circle inside a cell, and if the deepest beats
+     * the best point so far, tests a point just inside the middle of the arc.
+     * The point's coordinates are rounded to {@code float}, so it is moved
+     * closer to the circle until it covers the depth of the arc, as in
+     * {@link SweepExperiment#placeReceiver}, and it is kept in the cell.
+     */
+    private void sweepCircle(final Cell cell, final int c, final double cx,
+        final double cy, final double r) {
+      if (!Search.crosses(cell, cx, cy, r)) {
+        return;
+      }
+      final int numClip = SweepExperiment.arcsInRect(cx, cy, r, cell.minX,
+          cell.maxX, cell.minY, cell.maxY, this.clip);
+      if (numClip == 0) {
+        return;
+      }
+      final int depth = this.sweep.sweep(this.table, c, cx, cy, r, cell.disks,
+          cell.numDisks, this.clip, numClip);
+      if (depth <= this.bestCount) {
+        return;
+      }
+      final double cos = Math.cos(this.sweep.angle);
+      final double sin = Math.sin(this.sweep.angle);
+      for (double fraction = SweepExperiment.INSET;; fraction /= 2) {
+        final boolean onCircle = fraction < SweepExperiment.MIN_INSET;
+        final double inset = onCircle ? r : r * (1 - fraction);
+        final float x = (float) (cx + inset * cos);
+        final float y = (float) (cy + inset * sin);
+        this.evaluate(cell, Math.max(cell.minX, Math.min(cell.maxX, x)),
+            Math.max(cell.minY, Math.min(cell.maxY, y)));
+        if (this.bestCount >= depth || onCircle) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Whether a circle passes through a cell, allowing for the margin of
+     * {@link #reaches}.
+     */
+    static boolean crosses(final Cell cell, final double cx, final double cy,
+        final double r) {
+      final double nearX = Math.max(cell.minX, Math.min(cell.maxX, cx)) - cx;
+      final double nearY = Math.max(cell.minY, Math.min(cell.maxY, cy)) - cy;
+      final double farX = Math.max(Math.abs(cell.minX - cx),
+          Math.abs(cell.maxX - cx));
+      final double farY = Math.max(Math.abs(cell.minY - cy),
+          Math.abs(cell.maxY - cy));
+      final double outer = r + MARGIN;
+      final double inner = Math.max(0, r - MARGIN);
+      return nearX * nearX + nearY * nearY <= outer * outer
+          && farX * farX + farY * farY >= inner * inner;
+    }
+
+    /**
+     * Searches the universe for the deepest point, starting from the part of
+     * it covered by the bounding box of the live disks.
+     * 
+     * @return {@code true} if a point covered by at least one disk was found.
+     */
+    boolean run() {
+      final int[] live = new int[this.table.size()];
+      int numLive = 0;
+      float minX = Float.POSITIVE_INFINITY;
+      float maxX = Float.NEGATIVE_INFINITY;
+      float minY = Float.POSITIVE_INFINITY;
+      float maxY = Float.NEGATIVE_INFINITY;
+      for (int i = this.table.nextLive(0); i >= 0; i = this.table
+          .nextLive(i + 1)) {
+        live[numLive++] = i;
+        final float r = this.table.radius[i];
+        minX = Math.min(minX, this.table.centerX[i] - r);
+        maxX = Math.max(maxX, this.table.centerX[i] + r);
+        minY = Math.min(minY, this.table.centerY[i] - r);
+        maxY = Math.max(maxY, this.table.centerY[i] + r);
+      }
+      minX = Math.max(minX, 0);
+      maxX = Math.min(maxX, Main.config.universeWidth);
+      minY = Math.max(minY, 0);
+      maxY = Math.min(maxY, Main.config.universeHeight);
+      if (numLive == 0 || minX > maxX || minY > maxY) {
+        return false;
+      }
+      final PriorityQueue<Cell> cells = new PriorityQueue<Cell>(64,
+          CELL_ORDER);
+      cells.add(this.createCell(minX, maxX, minY, maxY, live, numLive));
+
+      while (!cells.isEmpty()) {
+        final Cell cell = cells.poll();
+        // Cells come out by decreasing bound, so none of the rest can win
+        if (cell.numDisks <= this.bestCount) {
+          this.numPruned += cells.size() + 1;
+          break;
+        }
+        ++this.numCells;
+        final float midX = (cell.minX + cell.maxX) / 2;
+        final float midY = (cell.minY + cell.maxY) / 2;
+        this.evaluate(cell, midX, midY);
+
+        if (cell.numDisks <= LEAF_DISKS
+            || (cell.maxX - cell.minX <= MIN_CELL_SIZE && cell.maxY
+                - cell.minY <= MIN_CELL_SIZE)) {
+          ++this.numLeaves;
+          this.sweepCircles(cell);
+          continue;
+        }
+
+        final Cell[] children = {
+            this.createCell(cell.minX, midX, cell.minY, midY, cell.disks,
+                cell.numDisks),
+            this.createCell(midX, cell.maxX, cell.minY, midY, cell.disks,
+                cell.numDisks),
+            this.createCell(cell.minX, midX, midY, cell.maxY, cell.disks,
+                cell.numDisks),
+            this.createCell(midX, cell.maxX, midY, cell.maxY, cell.disks,
+                cell.numDisks) };
+        for (final Cell child : children) {
+          if (child.numDisks > this.bestCount) {
+            cells.add(child);
+          } else {
+            ++this.numPruned;
+          }
+        }
+      }
+      return this.bestCount > 0;
+    }
+  }
+
+  public Boolean perform() {
+    final FileRenderer display = new FileRenderer(Main.gfxConfig);
+
+    // Compute all possible capture disks
+    final CaptureDiskTable disks = Main
+        .generateCaptureDisks(this.config.transmitters, this.workers);
+    final DiskGrid diskIndex = new DiskGrid(disks);
+    if (Main.gfxConfig.generateImages) {
+      display.setTransmitters(this.config.transmitters);
+      display.setCaptureDisks(disks.getLiveDisks());
+
+      final String saveName = this.saveDirectory + File.separator + "1000";
+      Main.saveImage(display, saveName);
+      display.clear();
+    }
+    log.info("[" + this.config.trialNumber + "] Generated " + disks.size()
+        + " disks.");
+
+    final int totalCaptureDisks = disks.size();
+    int m = 0;
+
+    // Removed disks are counted as covered, and each covered disk is one
+    // captured collision of its transmitter
+    final TransmitterCounters counters = disks.getCounters();
+
+    while (m < this.config.numReceivers && !disks.isEmpty()) {
+      log.info("[" + this.config.trialNumber
+          + "] Calculating position for receiver " + (m + 1) + ".");
+
+      final long start = System.currentTimeMillis();
+      final Search search = new Search(disks);
+      if (!search.run()) {
+        break;
+      }
+      log.info(String.format(
+          "Searched %,d cells (%,d leaves, %,d pruned) in %,dms, best %,d.",
+          Integer.valueOf(search.numCells), Integer.valueOf(search.numLeaves),
+          Integer.valueOf(search.numPruned),
+          Long.valueOf(System.currentTimeMillis() - start),
+          Integer.valueOf(search.bestCount)));
+
+      final Receiver maxReceiver = new Receiver();
+      maxReceiver.setLocation(search.bestX, search.bestY);
+      maxReceiver.coveringDisks = diskIndex.collectCovering(
+          maxReceiver.getX(), maxReceiver.getY());
+
+      // Add the newest receiver and remove newly covered disks
+      this.config.receivers.add(maxReceiver);
+      disks.removeAll(maxReceiver.coveringDisks);
+      diskIndex.removeAll(maxReceiver.coveringDisks);
+
+      // Calculate collision rates for each transmitter
+      // Store the min, max, and mean
+      float mean_contention = 0.0f;
+      float min_contention = this.config.numTransmitters;
+      float max_contention = 0.0f;
+      for (int t = 0; t < counters.numTransmitters(); ++t) {
+        // Calculate the number of transmitters in contention
+        // Subtract 1 because this transmitter can never be in contention with
+        // itself
+        final int num_in_contention = this.config.numTransmitters - 1
+            - counters.coveredDisks[t];
+        min_contention = Math.min(num_in_contention, min_contention);
+        max_contention = Math.max(num_in_contention, max_contention);
+        mean_contention += (float) num_in_contention
+            / this.config.numTransmitters;
+      }
+      this.stats[m].addContention(mean_contention);
+      this.stats[m].addMinContention(min_contention);
+      this.stats[m].addMaxContention(max_contention);
+
+      final float capturedDisks = totalCaptureDisks - disks.size();
+      final float captureRatio = (capturedDisks / totalCaptureDisks);
+      // Debugging stuff
+      if (Main.gfxConfig.generateImages) {
+        display.setTransmitters(this.config.transmitters);
+        display.setCaptureDisks(disks.getLiveDisks());
+        display.setReceiverPoints(this.config.receivers);
+
+        final String saveName = String.format(this.saveDirectory
+            + File.separator + "1%03d", Integer.valueOf(m + 1));
+        Main.saveImage(display, saveName);
+        display.clear();
+      }
+
+      this.stats[m].addCoverage(captureRatio);
+      ++m;
+    } // End for each receiver
+
+    disks.clear();
+    this.config.transmitters.clear();
+    Runtime.getRuntime().gc();
+    return Boolean.TRUE;
+  }
+}
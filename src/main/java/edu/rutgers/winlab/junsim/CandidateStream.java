@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands candidate solution points to evaluation workers while they are still
+ * being generated. Points are deduplicated, packed into fixed-size blocks, and
+ * passed through a bounded queue to a set of {@link Consumer}s running on the
+ * worker pool, so that generation and evaluation overlap and only a few blocks
+ * of points are held at a time.
+ * <p>
+ * The generator runs on the calling thread, between {@link #start} and
+ * {@link #finish}. A generator that fails must call {@link #cancel} instead of
+ * {@link #finish}, or the consumers would wait forever for more blocks. Blocks are recycled once consumed, and the producer waits
+ * when every block is queued or in use. Each block carries a sequence number
+ * so that consumers can break ties the same way regardless of which worker
+ * handled which block.
+ * </p>
+ * 
+ * @author Robert Moore
+ */
+public class CandidateStream implements PointSink {
+
+  /**
+   * Number of points in each block.
+   */
+  static final int BLOCK_SIZE = 4096;
+
+  /**
+   * How long the producer waits on a full queue before checking whether the
+   * consumers have failed, in milliseconds.
+   */
+  private static final long OFFER_TIMEOUT = 100;
+
+  /**
+   * A block of candidate points.
+   * 
+   * @author Robert Moore
+   */
+  static final class Block {
+    /**
+     * X-coordinates of the points.
+     */
+    final float[] x = new float[BLOCK_SIZE];
+    /**
+     * Y-coordinates of the points.
+     */
+    final float[] y = new float[BLOCK_SIZE];
+    /**
+     * Number of points in this block.
+     */
+    int size = 0;
+    /**
+     * Position of this block in the stream, starting at 0.
+     */
+    int sequence = 0;
+  }
+
+  /**
+   * Evaluates the blocks of a stream. Each consumer runs as one task on the
+   * worker pool until the stream is finished.
+   * 
+   * @author Robert Moore
+   */
+  abstract static class Consumer implements Callable<Integer> {
+    /**
+     * The stream to take blocks from.
+     */
+    CandidateStream stream;
+
+    /**
+     * Evaluates a block of points. The block must not be retained after this
+     * method returns.
+     * 
+     * @param block
+     *          the block to evaluate.
+     */
+    abstract void accept(Block block);
+
+    @Override
+    public Integer call() throws InterruptedException {
+      int numBlocks = 0;
+      boolean done = false;
+      try {
+        for (Block block = this.stream.full.take(); block != END; block = this.stream.full
+            .take()) {
+          this.accept(block);
+          this.stream.empty.put(block);
+          ++numBlocks;
+        }
+        done = true;
+      } finally {
+        if (!done) {
+          this.stream.failed = true;
+        }
+      }
+      return Integer.valueOf(numBlocks);
+    }
+  }
+
+  /**
+   * Marks the end of the stream for one consumer.
+   */
+  static final Block END = new Block();
+
+  /**
+   * Points already passed to the consumers, or {@code null} if points are not
+   * deduplicated.
+   */
+  private final PointSet seen;
+  /**
+   * Blocks waiting to be consumed.
+   */
+  private BlockingQueue<Block> full;
+  /**
+   * Blocks available to the producer.
+   */
+  private BlockingQueue<Block> empty;
+  /**
+   * The consumers, run on the calling thread when there is no worker pool.
+   */
+  private List<? extends Consumer> consumers;
+  /**
+   * Results of the consumer tasks.
+   */
+  private final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+  /**
+   * Block being filled by the producer.
+   */
+  private Block current = null;
+  /**
+   * Number of blocks handed to the consumers.
+   */
+  private int numBlocks = 0;
+  /**
+   * Number of points handed to the consumers.
+   */
+  private int numPoints = 0;
+  /**
+   * Set when a consumer throws, so that the producer stops waiting for it.
+   */
+  volatile boolean failed = false;
+
+  /**
+   * Creates a new candidate stream.
+   * 
+   * @param deduplicate
+   *          whether to drop points that were already streamed.
+   * @param epsilon
+   *          the spacing of the grid used to merge nearby points when
+   *          deduplicating, or 0 to only merge equal points.
+   */
+  public CandidateStream(final boolean deduplicate, final float epsilon) {
+    super();
+    this.seen = deduplicate ? new PointSet(BLOCK_SIZE, epsilon) : null;
+  }
+
+  /**
+   * Starts the consumers on the worker pool. The queue holds two blocks per
+   * consumer.
+   * 
+   * @param consumers
+   *          the consumers to hand blocks to.
+   * @param workers
+   *          the worker pool, or {@code null} to evaluate each block on the
+   *          calling thread with the first consumer.
+   */
+  public void start(final List<? extends Consumer> consumers,
+      final ExecutorService workers) {
+    this.consumers = consumers;
+    if (workers == null) {
+      return;
+    }
+    // Up to two blocks in the queue per consumer, plus one being evaluated by
+    // each consumer and one being filled
+    final int depth = 2 * consumers.size();
+    final int numBuffers = depth + consumers.size() + 1;
+    this.full = new ArrayBlockingQueue<Block>(depth);
+    this.empty = new ArrayBlockingQueue<Block>(numBuffers);
+    for (int i = 0; i < numBuffers; ++i) {
+      this.empty.add(new Block());
+    }
+    for (final Consumer consumer : consumers) {
+      consumer.stream = this;
+      this.futures.add(workers.submit(consumer));
+    }
+  }
+
+  @Override
+  public boolean add(final float x, final float y) {
+    if (this.seen != null && !this.seen.add(x, y)) {
+      return false;
+    }
+    if (this.current == null) {
+      this.current = this.empty == null ? new Block() : this.take();
+      this.current.size = 0;
+      this.current.sequence = this.numBlocks++;
+    }
+    this.current.x[this.current.size] = x;
+    this.current.y[this.current.size] = y;
+    ++this.numPoints;
+    if (++this.current.size == BLOCK_SIZE) {
+      this.hand(this.current);
+      this.current = null;
+    }
+    return true;
+  }
+
+  /**
+   * Passes the last partial block to the consumers, tells them the stream has
+   * ended, and waits for them to finish.
+   * 
+   * @return the number of points streamed.
+   */
+  public int finish() {
+    if (this.current != null) {
+      this.hand(this.current);
+      this.current = null;
+    }
+    try {
+      if (this.full != null) {
+        for (int i = 0; i < this.futures.size(); ++i) {
+          this.offer(END);
+        }
+      }
+      for (final Future<Integer> future : this.futures) {
+        future.get();
+      }
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException("Candidate consumer failed.",
+          e.getCause());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(
+          "Interrupted while waiting for candidate consumers.", e);
+    }
+    return this.numPoints;
+  }
+
+  /**
+   * Stops the consumers without waiting for them, after the generator has
+   * failed. Every consumer is sent the end of the stream and its task is
+   * cancelled, so none of them keeps a worker waiting for more blocks.
+   */
+  public void cancel() {
+    this.current = null;
+    if (this.full != null) {
+      this.full.clear();
+      for (int i = 0; i < this.futures.size(); ++i) {
+        this.full.offer(END);
+      }
+    }
+    for (final Future<Integer> future : this.futures) {
+      future.cancel(true);
+    }
+  }
+
+  /**
+   * Cancels the consumers after one of them has failed, and throws its cause.
+   */
+  private void abort() {
+    Throwable cause = null;
+    for (final Future<Integer> future : this.futures) {
+      if (cause == null && future.isDone()) {
+        try {
+          future.get();
+        } catch (final ExecutionException e) {
+          cause = e.getCause();
+        } catch (final Exception e) {
+          cause = e;
+        }
+      }
+      future.cancel(true);
+    }
+    throw new IllegalStateException("Candidate consumer failed.", cause);
+  }
+
+  /**
+   * The number of blocks streamed so far.
+   * 
+   * @return the number of blocks.
+   */
+  public int numBlocks() {
+    return this.numBlocks;
+  }
+
+  /**
+   * Passes a block to the consumers, or evaluates it directly when there is
+   * no worker pool.
+   * 
+   * @param block
+   *          the block to pass on.
+   */
+  private void hand(final Block block) {
+    if (this.full == null) {
+      this.consumers.get(0).accept(block);
+      return;
+    }
+    try {
+      this.offer(block);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(
+          "Interrupted while streaming candidates.", e);
+    }
+  }
+
+  /**
+   * Queues a block, giving up if a consumer has failed.
+   * 
+   * @param block
+   *          the block to queue.
+   * @throws InterruptedException
+   *           if interrupted while waiting for space in the queue.
+   */
+  private void offer(final Block block) throws InterruptedException {
+    while (!this.full.offer(block, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+      if (this.failed) {
+        this.abort();
+      }
+    }
+  }
+
+  /**
+   * Takes an empty block, giving up if a consumer has failed.
+   * 
+   * @return an empty block.
+   */
+  private Block take() {
+    try {
+      Block block;
+      while ((block = this.empty.poll(OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) == null) {
+        if (this.failed) {
+          this.abort();
+        }
+      }
+      return block;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(
+          "Interrupted while streaming candidates.", e);
+    }
+  }
+}
@@ -37,6 +37,11 @@ public class CaptureDisk implements Drawable {
    * The transmitter that collides.
    */
   public Transmitter t2;
+  /**
+   * Position of this disk in its trial's {@code CaptureDiskTable}, or -1 if it
+   * has not been added to one.
+   */
+  int index = -1;
 
   @Override
   public boolean equals(Object o) {
@@ -0,0 +1,585 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Primitive-backed storage for all of the capture disks of a single trial. The
+ * geometry of each disk is kept in parallel arrays so that the point-in-disk
+ * tests of the solution check tasks become a linear sweep over contiguous
+ * memory instead of chasing {@code CaptureDisk}, {@code Circle} and
+ * {@code Transmitter} references.
+ * <p>
+ * Disks are never moved once added; removing a disk only clears its "live"
+ * bit. The original {@code CaptureDisk} objects are retained so that receivers,
+ * transmitters and the renderer can continue to use them.
+ * </p>
+ *
+ * @author Robert Moore
+ */
+public class CaptureDiskTable implements Iterable<CaptureDisk> {
+
+  /**
+   * Initial capacity of the disk arrays.
+   */
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * X-coordinate of each disk center.
+   */
+  float[] centerX;
+  /**
+   * Y-coordinate of each disk center.
+   */
+  float[] centerY;
+  /**
+   * Radius of each disk.
+   */
+  float[] radius;
+  /**
+   * Index of the capturing transmitter (t1) of each disk.
+   */
+  int[] t1;
+  /**
+   * Index of the colliding transmitter (t2) of each disk.
+   */
+  int[] t2;
+  /**
+   * The disk objects, in the same order as the arrays.
+   */
+  CaptureDisk[] disks;
+
+  /**
+   * X-coordinate of each transmitter, by transmitter index.
+   */
+  final float[] txX;
+  /**
+   * Y-coordinate of each transmitter, by transmitter index.
+   */
+  final float[] txY;
+
+  /**
+   * Maps each transmitter to its index in this table.
+   */
+  private final IdentityHashMap<Transmitter, Integer> txIndex;
+
+  /**
+   * Per-transmitter counters, or {@code null} until
+   * {@link #buildCounters()} is called.
+   */
+  private TransmitterCounters counters = null;
+
+  /**
+   * Set bits are disks that have not yet been removed.
+   */
+  private final BitSet live = new BitSet();
+
+  /**
+   * Number of disks added to this table.
+   */
+  private int length = 0;
+
+  /**
+   * Number of disks not yet removed.
+   */
+  private int numLive = 0;
+
+  /**
+   * Square of the maximum range of a transmitter, cached from the
+   * configuration.
+   */
+  final double maxRangeSquared;
+
+  /**
+   * Creates a new, empty disk table for the provided transmitters. Every disk
+   * added to the table must be between two of these transmitters.
+   *
+   * @param transmitters
+   *          the transmitters of the trial.
+   */
+  public CaptureDiskTable(final Collection<Transmitter> transmitters) {
+    super();
+    final int numTx = transmitters.size();
+    this.txX = new float[numTx];
+    this.txY = new float[numTx];
+    this.txIndex = new IdentityHashMap<Transmitter, Integer>(numTx * 2);
+    int i = 0;
+    for (final Transmitter tx : transmitters) {
+      this.txX[i] = tx.x;
+      this.txY[i] = tx.y;
+      this.txIndex.put(tx, Integer.valueOf(i));
+      ++i;
+    }
+    this.centerX = new float[DEFAULT_CAPACITY];
+    this.centerY = new float[DEFAULT_CAPACITY];
+    this.radius = new float[DEFAULT_CAPACITY];
+    this.t1 = new int[DEFAULT_CAPACITY];
+    this.t2 = new int[DEFAULT_CAPACITY];
+    this.disks = new CaptureDisk[DEFAULT_CAPACITY];
+    final double maxRange = Main.config.maxRangeMeters;
+    this.maxRangeSquared = maxRange * maxRange;
+  }
+
+  /**
+   * Adds a capture disk to the end of this table and sets its index.
+   *
+   * @param disk
+   *          the disk to add.
+   * @return the index of the disk.
+   */
+  public int add(final CaptureDisk disk) {
+    final int index = this.reserve(1);
+    this.put(index, disk);
+    return index;
+  }
+
+  /**
+   * Reserves space for {@code count} disks at the end of this table and marks
+   * them as live. The reserved slots must each be filled by a call to
+   * {@link #put(int, CaptureDisk)} before the table is used.
+   *
+   * @param count
+   *          the number of disks to reserve.
+   * @return the index of the first reserved slot.
+   */
+  public int reserve(final int count) {
+    while (this.length + count > this.disks.length) {
+      this.grow();
+    }
+    final int base = this.length;
+    this.length += count;
+    this.live.set(base, this.length);
+    this.numLive += count;
+    return base;
+  }
+
+  /**
+   * Stores a disk in a previously-reserved slot and sets its index. Different
+   * slots may be filled concurrently by different threads.
+   *
+   * @param index
+   *          the reserved slot.
+   * @param disk
+   *          the disk to store.
+   */
+  public void put(final int index, final CaptureDisk disk) {
+    this.centerX[index] = disk.disk.center.x;
+    this.centerY[index] = disk.disk.center.y;
+    this.radius[index] = disk.disk.radius;
+    this.t1[index] = this.txIndex.get(disk.t1).intValue();
+    this.t2[index] = this.txIndex.get(disk.t2).intValue();
+    this.disks[index] = disk;
+    disk.index = index;
+  }
+
+  /**
+   * Doubles the capacity of the disk arrays.
+   */
+  private void grow() {
+    final int capacity = this.disks.length * 2;
+    float[] newFloats = new float[capacity];
+    System.arraycopy(this.centerX, 0, newFloats, 0, this.length);
+    this.centerX = newFloats;
+    newFloats = new float[capacity];
+    System.arraycopy(this.centerY, 0, newFloats, 0, this.length);
+    this.centerY = newFloats;
+    newFloats = new float[capacity];
+    System.arraycopy(this.radius, 0, newFloats, 0, this.length);
+    this.radius = newFloats;
+    int[] newInts = new int[capacity];
+    System.arraycopy(this.t1, 0, newInts, 0, this.length);
+    this.t1 = newInts;
+    newInts = new int[capacity];
+    System.arraycopy(this.t2, 0, newInts, 0, this.length);
+    this.t2 = newInts;
+    final CaptureDisk[] newDisks = new CaptureDisk[capacity];
+    System.arraycopy(this.disks, 0, newDisks, 0, this.length);
+    this.disks = newDisks;
+  }
+
+  /**
+   * Determines whether a point lies within a disk, and within range of at
+   * least one of the disk's transmitters. This is the coverage test shared by
+   * every experiment; it compares squared distances, so it never touches any
+   * objects or takes any square roots.
+   *
+   * @param index
+   *          the index of the disk.
+   * @param x
+   *          the x-coordinate of the point.
+   * @param y
+   *          the y-coordinate of the point.
+   * @return {@code true} if the point is covered by the disk.
+   */
+  public boolean contains(final int index, final double x, final double y) {
+    final float cx = this.centerX[index];
+    final float cy = this.centerY[index];
+    final float r = this.radius[index];
+    // Quick bounding-box check
+    if (cx - r > x || cx + r < x || cy - r > y || cy + r < y) {
+      return false;
+    }
+    // This point is too far away from the transmitters for this disk
+    final int tx1 = this.t1[index];
+    final int tx2 = this.t2[index];
+    final double dx1 = x - this.txX[tx1];
+    final double dy1 = y - this.txY[tx1];
+    final double dx2 = x - this.txX[tx2];
+    final double dy2 = y - this.txY[tx2];
+    if (dx1 * dx1 + dy1 * dy1 > this.maxRangeSquared
+        && dx2 * dx2 + dy2 * dy2 > this.maxRangeSquared) {
+      return false;
+    }
+    final double dx = x - cx;
+    final double dy = y - cy;
+    return dx * dx + dy * dy <= CaptureDiskTable.coverRadiusSquared(r);
+  }
+
+  /**
+   * Determines whether a disk could cover some point of a square: whether the
+   * square overlaps the disk and the range of one of the disk's transmitters.
+   * The test is conservative, so it may return {@code true} when the square
+   * only overlaps each of them separately.
+   *
+   * @param index
+   *          the index of the disk.
+   * @param x
+   *          the x-coordinate of the center of the square.
+   * @param y
+   *          the y-coordinate of the center of the square.
+   * @param halfSize
+   *          half the width of the square.
+   * @return {@code false} if no point of the square is covered by the disk.
+   */
+  public boolean mayContain(final int index, final double x, final double y,
+      final double halfSize) {
+    if (CaptureDiskTable.squaredDistance(this.centerX[index],
+        this.centerY[index], x, y, halfSize) > CaptureDiskTable
+        .coverRadiusSquared(this.radius[index])) {
+      return false;
+    }
+    final int tx1 = this.t1[index];
+    final int tx2 = this.t2[index];
+    return CaptureDiskTable.squaredDistance(this.txX[tx1], this.txY[tx1], x,
+        y, halfSize) <= this.maxRangeSquared
+        || CaptureDiskTable.squaredDistance(this.txX[tx2], this.txY[tx2], x,
+            y, halfSize) <= this.maxRangeSquared;
+  }
+
+  /**
+   * The squared distance from a point to the nearest point of a square.
+   */
+  private static double squaredDistance(final double px, final double py,
+      final double x, final double y, final double halfSize) {
+    final double dx = Math.max(Math.abs(px - x) - halfSize, 0);
+    final double dy = Math.max(Math.abs(py - y) - halfSize, 0);
+    return dx * dx + dy * dy;
+  }
+
+  /**
+   * The squared distance from the center of a disk within which a point is
+   * covered. {@code Circle.contains} rounds the distance to a {@code float}
+   * before comparing it to the radius, so the true cutoff is half a unit in
+   * the last place beyond the radius. The result is exact, since the square
+   * of a 25-bit mantissa fits in a {@code double}.
+   *
+   * @param r
+   *          the radius of the disk.
+   * @return the squared cutoff distance.
+   */
+  static double coverRadiusSquared(final float r) {
+    final double cutoff = r + Math.ulp(r) * 0.5;
+    return cutoff * cutoff;
+  }
+
+  /**
+   * Returns the index of the first live disk at or after {@code from}.
+   *
+   * @param from
+   *          the index to start searching from.
+   * @return the index of the next live disk, or -1 if there are none.
+   */
+  public int nextLive(final int from) {
+    return this.live.nextSetBit(from);
+  }
+
+  /**
+   * Whether the disk at {@code index} has not been removed.
+   *
+   * @param index
+   *          the index of the disk.
+   * @return {@code true} if the disk is still live.
+   */
+  public boolean isLive(final int index) {
+    return this.live.get(index);
+  }
+
+  /**
+   * Returns the disk object at some index.
+   *
+   * @param index
+   *          the index of the disk.
+   * @return the disk.
+   */
+  public CaptureDisk get(final int index) {
+    return this.disks[index];
+  }
+
+  /**
+   * Removes a single disk from the live set.
+   *
+   * @param index
+   *          the index of the disk.
+   * @return {@code true} if the disk was live before this call.
+   */
+  public boolean remove(final int index) {
+    if (!this.live.get(index)) {
+      return false;
+    }
+    this.live.clear(index);
+    --this.numLive;
+    if (this.counters != null) {
+      this.counters.cover(this.t1[index]);
+    }
+    return true;
+  }
+
+  /**
+   * Counts the disks of each transmitter and attaches the counters to the
+   * transmitters. From then on, every removed disk is counted as covered. Call
+   * this once all disks have been added.
+   * 
+   * @return the new counters.
+   */
+  public TransmitterCounters buildCounters() {
+    this.counters = new TransmitterCounters(this);
+    for (final Map.Entry<Transmitter, Integer> entry : this.txIndex.entrySet()) {
+      entry.getKey().setCounters(this.counters, entry.getValue().intValue());
+    }
+    return this.counters;
+  }
+
+  /**
+   * The per-transmitter counters, or {@code null} if they have not been built.
+   */
+  public TransmitterCounters getCounters() {
+    return this.counters;
+  }
+
+  /**
+   * Removes a collection of disks from the live set. The disks must have been
+   * added to this table.
+   *
+   * @param toRemove
+   *          the disks to remove.
+   */
+  public void removeAll(final Collection<CaptureDisk> toRemove) {
+    final DiskBitmap bitmap = CaptureDiskTable.toBitmap(toRemove);
+    for (int i = bitmap.nextSetBit(0); i >= 0; i = bitmap.nextSetBit(i + 1)) {
+      this.remove(i);
+    }
+  }
+
+  /**
+   * Returns a read-only collection of the disks whose indices are in a bitmap.
+   * The bitmap must not be modified afterwards.
+   *
+   * @param bitmap
+   *          the disk indices.
+   * @return a collection view of the disks.
+   */
+  public Collection<CaptureDisk> view(final DiskBitmap bitmap) {
+    return new BitmapView(this, bitmap);
+  }
+
+  /**
+   * Returns the indices of a collection of disks as a bitmap. For a
+   * collection returned by {@link #view(DiskBitmap)} this is the bitmap
+   * itself.
+   *
+   * @param disks
+   *          disks that have been added to a table.
+   * @return the indices of the disks.
+   */
+  static DiskBitmap toBitmap(final Collection<CaptureDisk> disks) {
+    if (disks instanceof BitmapView) {
+      return ((BitmapView) disks).bitmap;
+    }
+    final DiskBitmap bitmap = new DiskBitmap();
+    for (final CaptureDisk d : disks) {
+      bitmap.add(d.index);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Read-only collection of the disks of a table whose indices are in a
+   * bitmap.
+   *
+   * @author Robert Moore
+   */
+  static final class BitmapView extends AbstractCollection<CaptureDisk> {
+    /**
+     * The table holding the disks.
+     */
+    final CaptureDiskTable table;
+    /**
+     * Indices of the disks in this collection.
+     */
+    final DiskBitmap bitmap;
+    /**
+     * Number of disks in this collection.
+     */
+    private final int size;
+
+    BitmapView(final CaptureDiskTable table, final DiskBitmap bitmap) {
+      super();
+      this.table = table;
+      this.bitmap = bitmap;
+      this.size = bitmap.cardinality();
+    }
+
+    @Override
+    public int size() {
+      return this.size;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+      if (!(o instanceof CaptureDisk)) {
+        return false;
+      }
+      final int index = ((CaptureDisk) o).index;
+      return this.bitmap.contains(index) && this.table.disks[index] == o;
+    }
+
+    @Override
+    public Iterator<CaptureDisk> iterator() {
+      return new Iterator<CaptureDisk>() {
+        private int next = BitmapView.this.bitmap.nextSetBit(0);
+
+        @Override
+        public boolean hasNext() {
+          return this.next >= 0;
+        }
+
+        @Override
+        public CaptureDisk next() {
+          if (this.next < 0) {
+            throw new NoSuchElementException();
+          }
+          final CaptureDisk d = BitmapView.this.table.disks[this.next];
+          this.next = BitmapView.this.bitmap.nextSetBit(this.next + 1);
+          return d;
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+
+  /**
+   * The number of live disks in this table.
+   *
+   * @return the number of disks not yet removed.
+   */
+  public int size() {
+    return this.numLive;
+  }
+
+  /**
+   * The total number of disks ever added to this table, which is also one
+   * greater than the highest disk index.
+   *
+   * @return the number of disks added.
+   */
+  public int length() {
+    return this.length;
+  }
+
+  public boolean isEmpty() {
+    return this.numLive == 0;
+  }
+
+  /**
+   * Returns a new list of the live disks, suitable for rendering.
+   *
+   * @return a list of the live disks.
+   */
+  public List<CaptureDisk> getLiveDisks() {
+    final List<CaptureDisk> list = new ArrayList<CaptureDisk>(this.numLive);
+    for (final CaptureDisk d : this) {
+      list.add(d);
+    }
+    return list;
+  }
+
+  /**
+   * Removes all disks from this table.
+   */
+  public void clear() {
+    for (int i = 0; i < this.length; ++i) {
+      this.disks[i] = null;
+    }
+    this.live.clear();
+    this.length = 0;
+    this.numLive = 0;
+  }
+
+  /**
+   * Iterates over the live disks in index order.
+   */
+  @Override
+  public Iterator<CaptureDisk> iterator() {
+    return new Iterator<CaptureDisk>() {
+      private int next = CaptureDiskTable.this.live.nextSetBit(0);
+
+      @Override
+      public boolean hasNext() {
+        return this.next >= 0;
+      }
+
+      @Override
+      public CaptureDisk next() {
+        if (this.next < 0) {
+          throw new NoSuchElementException();
+        }
+        final CaptureDisk d = CaptureDiskTable.this.disks[this.next];
+        this.next = CaptureDiskTable.this.live.nextSetBit(this.next + 1);
+        return d;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+}
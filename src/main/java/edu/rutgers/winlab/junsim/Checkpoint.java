@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.awt.geom.Point2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * The state of a {@link BinnedRecurGridExperiment} trial after a receiver is
+ * placed. Captured disks, contention and statistics aren't stored, since they
+ * follow from replaying the receiver positions against the trial's disks.
+ * Only the binned candidate points and a few counters need to be saved so
+ * that the search continues exactly where it stopped.
+ * <p>
+ * Checkpoints are written in a compact binary format: a short header,
+ * followed by the receiver coordinates as 32-bit floats and then, for each
+ * bin, the coordinates of its points as 32-bit floats and their scores as
+ * 32-bit integers.
+ * </p>
+ * 
+ * @author Robert Moore
+ */
+public final class Checkpoint {
+
+  /**
+   * Identifies checkpoint files ("PGRC").
+   */
+  private static final int MAGIC = 0x50475243;
+
+  /**
+   * Version of the file format.
+   */
+  private static final int VERSION = 3;
+
+  /**
+   * The trial the checkpoint belongs to.
+   */
+  int trialNumber;
+
+  /**
+   * Hash of the transmitter locations, used to detect a different layout.
+   */
+  long layoutHash;
+
+  /**
+   * Number of capture disks in the trial.
+   */
+  int numDisks;
+
+  /**
+   * Number of receivers that were given to the trial rather than placed.
+   */
+  int numGiven;
+
+  /**
+   * Index of the highest bin to score candidate points for.
+   */
+  int highestBindex;
+
+  /**
+   * Coordinates of the placed receivers, as consecutive (x, y) pairs.
+   */
+  float[] receivers;
+
+  /**
+   * Minimum score of each bin.
+   */
+  int[] binMins;
+
+  /**
+   * Coordinates of the points in each bin, as consecutive (x, y) pairs.
+   */
+  float[][] bins;
+
+  /**
+   * Scores of the points in each bin, in the same order as {@link #bins}.
+   */
+  int[][] binScores;
+
+  /**
+   * Hashes the locations of a set of transmitters.
+   * 
+   * @param txers
+   *          the transmitters.
+   * @return the hash of their locations.
+   */
+  static long hashLayout(final Collection<Transmitter> txers) {
+    long hash = txers.size();
+    for (final Transmitter txer : txers) {
+      hash = hash * 31 + Float.floatToIntBits(txer.x);
+      hash = hash * 31 + Float.floatToIntBits(txer.y);
+    }
+    return hash;
+  }
+
+  /**
+   * Copies the locations of a collection of points.
+   * 
+   * @param points
+   *          the points to copy.
+   * @return the coordinates of the points, as consecutive (x, y) pairs.
+   */
+  static float[] toCoordinates(final Collection<? extends Point2D> points) {
+    final float[] coords = new float[points.size() * 2];
+    int i = 0;
+    for (final Point2D point : points) {
+      coords[i++] = (float) point.getX();
+      coords[i++] = (float) point.getY();
+    }
+    return coords;
+  }
+
+  /**
+   * Copies the bins of a binner.
+   * 
+   * @param binner
+   *          the binner to copy.
+   */
+  void setBins(final Binner binner) {
+    final int numBins = binner.getBinMins().size();
+    this.binMins = new int[numBins];
+    this.bins = new float[numBins][];
+    this.binScores = new int[numBins][];
+    int i = 0;
+    for (final Integer min : binner.getBinMins()) {
+      this.binMins[i++] = min.intValue();
+    }
+    for (i = 0; i < numBins; ++i) {
+      this.bins[i] = binner.getBinCoordinates(i);
+      this.binScores[i] = binner.getBinScores(i);
+    }
+  }
+
+  /**
+   * Restores the bins of a binner. The binner should be empty.
+   * 
+   * @param binner
+   *          the binner to restore.
+   */
+  void restoreBins(final Binner binner) {
+    binner.setBinMins(this.binMins);
+    for (int i = 0; i < this.bins.length; ++i) {
+      final float[] coords = this.bins[i];
+      final int[] scores = this.binScores[i];
+      for (int j = 0; j < scores.length; ++j) {
+        binner.putInBin(i, coords[2 * j], coords[2 * j + 1], scores[j]);
+      }
+    }
+  }
+
+  /**
+   * Writes this checkpoint to a file. The data is written to a temporary file
+   * first, so an interrupted write never replaces a good checkpoint.
+   * 
+   * @param file
+   *          the file to write.
+   * @throws IOException
+   *           if the file cannot be written.
+   */
+  void write(final File file) throws IOException {
+    final File tempFile = new File(file.getPath() + ".tmp");
+    final DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(tempFile)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(this.trialNumber);
+      out.writeLong(this.layoutHash);
+      out.writeInt(this.numDisks);
+      out.writeInt(this.numGiven);
+      out.writeInt(this.highestBindex);
+      Checkpoint.writeFloats(out, this.receivers);
+      out.writeInt(this.binMins.length);
+      for (int i = 0; i < this.binMins.length; ++i) {
+        out.writeInt(this.binMins[i]);
+        Checkpoint.writeFloats(out, this.bins[i]);
+        Checkpoint.writeInts(out, this.binScores[i]);
+      }
+    } finally {
+      out.close();
+    }
+    if (!tempFile.renameTo(file)) {
+      // Some platforms won't rename over an existing file
+      file.delete();
+      if (!tempFile.renameTo(file)) {
+        throw new IOException("Unable to replace " + file + ".");
+      }
+    }
+  }
+
+  /**
+   * Reads a checkpoint from a file.
+   * 
+   * @param file
+   *          the file to read.
+   * @return the checkpoint.
+   * @throws IOException
+   *           if the file cannot be read or isn't a checkpoint.
+   */
+  static Checkpoint read(final File file) throws IOException {
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(file + " is not a checkpoint.");
+      }
+      final int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported checkpoint version " + version
+            + " in " + file + ".");
+      }
+      final Checkpoint checkpoint = new Checkpoint();
+      checkpoint.trialNumber = in.readInt();
+      checkpoint.layoutHash = in.readLong();
+      checkpoint.numDisks = in.readInt();
+      checkpoint.numGiven = in.readInt();
+      checkpoint.highestBindex = in.readInt();
+      checkpoint.receivers = Checkpoint.readFloats(in);
+      final int numBins = in.readInt();
+      checkpoint.binMins = new int[numBins];
+      checkpoint.bins = new float[numBins][];
+      checkpoint.binScores = new int[numBins][];
+      for (int i = 0; i < numBins; ++i) {
+        checkpoint.binMins[i] = in.readInt();
+        checkpoint.bins[i] = Checkpoint.readFloats(in);
+        checkpoint.binScores[i] = Checkpoint.readInts(in);
+      }
+      return checkpoint;
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void writeFloats(final DataOutputStream out,
+      final float[] values) throws IOException {
+    out.writeInt(values.length);
+    for (final float value : values) {
+      out.writeFloat(value);
+    }
+  }
+
+  private static float[] readFloats(final DataInputStream in)
+      throws IOException {
+    final float[] values = new float[in.readInt()];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = in.readFloat();
+    }
+    return values;
+  }
+
+  private static void writeInts(final DataOutputStream out, final int[] values)
+      throws IOException {
+    out.writeInt(values.length);
+    for (final int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(final DataInputStream in) throws IOException {
+    final int[] values = new int[in.readInt()];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = in.readInt();
+    }
+    return values;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes checkpoints to a file on a background thread, so that the
+ * simulation doesn't wait for the disk. Checkpoints are written in the order
+ * they are submitted, each replacing the last.
+ * 
+ * @author Robert Moore
+ */
+public class CheckpointWriter {
+
+  private static final Logger log = LoggerFactory
+      .getLogger(CheckpointWriter.class);
+
+  /**
+   * The file to write.
+   */
+  final File file;
+
+  /**
+   * Thread that writes the checkpoints. It is a daemon so that a trial that
+   * fails without closing the writer doesn't keep the JVM alive; checkpoints
+   * are written to a temporary file first, so an interrupted write never
+   * replaces the last complete one.
+   */
+  private final ExecutorService writer = Executors
+      .newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+          final Thread thread = new Thread(r, "checkpoint-writer");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  /**
+   * Creates a writer for a checkpoint file.
+   * 
+   * @param file
+   *          the file to write.
+   */
+  public CheckpointWriter(final File file) {
+    super();
+    this.file = file;
+  }
+
+  /**
+   * Queues a checkpoint to be written. The checkpoint must not be changed
+   * afterwards.
+   * 
+   * @param checkpoint
+   *          the checkpoint to write.
+   */
+  public void submit(final Checkpoint checkpoint) {
+    this.writer.execute(new Runnable() {
+      @Override
+      public void run() {
+        final long start = System.currentTimeMillis();
+        try {
+          checkpoint.write(CheckpointWriter.this.file);
+          log.debug("Wrote {} in {}ms.", CheckpointWriter.this.file,
+              Long.valueOf(System.currentTimeMillis() - start));
+        } catch (final IOException e) {
+          log.error("Unable to write checkpoint " + CheckpointWriter.this.file
+              + ".", e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Waits for every queued checkpoint to be written and stops the writer
+   * thread.
+   */
+  public void close() {
+    this.writer.shutdown();
+    try {
+      this.writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while writing checkpoint {}.", this.file);
+    }
+  }
+}
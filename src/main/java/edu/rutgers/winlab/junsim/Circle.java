@@ -28,19 +28,19 @@ import java.awt.geom.Point2D;
  * 
  */
 public class Circle implements Drawable {
-  static int nextId = 0;
-  private static synchronized int getId(){
-    return nextId++;
-  }
   
   public float radius = 0f;
   public Point2D.Float center = new Point2D.Float();
   
   private final int id;
   
-  public Circle(){
+  /**
+   * Creates a new circle.
+   * @param id identifier of the circle, unique within a trial.
+   */
+  public Circle(final int id){
     super();
-    this.id = getId();
+    this.id = id;
   }
   
   @Override
@@ -62,6 +62,13 @@ public class Config {
    */
   long numTrials = 1l;
 
+  /**
+   * Number of the first trial to run. Each trial's random numbers only
+   * depend on the random seed and the trial number, so a single trial can be
+   * rerun by setting this to its number and numTrials to 1.
+   */
+  int firstTrial = 0;
+
   /**
    * File name for output statistics in non-display mode.
    */
@@ -73,6 +80,20 @@ public class Config {
    */
   int numThreads = 1;
 
+  /**
+   * Number of trials to run at the same time. Each trial thread takes the
+   * place of one worker thread, so the total number of threads stays at
+   * numThreads, and at most numThreads - 1 trials run at once. Values less
+   * than 2 run the trials one after another.
+   */
+  int concurrentTrials = 1;
+
+  /**
+   * Number of refinement windows the "fair" experiment searches at once.
+   * Values less than 2 refine a single window around the best point found.
+   */
+  int refinementWindows = 1;
+
   /**
    * Whether or not to remove solution points related to capture disks that
    * are removed.
@@ -96,7 +117,8 @@ public class Config {
 
   /**
    * Type of experiment to run.
-   * "basic", "binned", "grid", "recursive", "fair"
+   * "basic", "binned", "grid", "recursive", "fair", "lazy",
+   * "sweep", "branchbound"
    */
   String experimentType = "basic";
   
@@ -132,6 +154,33 @@ public class Config {
    */
   boolean randomized=false;
 
+  /**
+   * How solution points are tested against capture disks.
+   * "scalar", "blocked"
+   */
+  String coverageEvaluator = "scalar";
+
+  /**
+   * Spacing of the grid used to merge nearby candidate solution points. 0
+   * only merges points with equal coordinates.
+   */
+  float pointEpsilon = 0f;
+
+  /**
+   * Whether to save a checkpoint of each trial after every receiver is
+   * placed. Only supported by the "recursive" experiment.
+   */
+  boolean checkpoints = false;
+
+  /**
+   * Whether to continue trials from their saved checkpoints. The transmitter
+   * layout is then taken from the layout file that the checkpointed run saved
+   * next to its checkpoints, or regenerated from the random seed if that run
+   * generated its layouts. The transmitters file is never read, and is only
+   * written if the layouts are generated.
+   */
+  boolean resume = false;
+
   public int getNumTransmitters() {
     return numTransmitters;
   }
@@ -188,6 +237,14 @@ public class Config {
     this.numTrials = numTrials;
   }
 
+  public int getFirstTrial() {
+    return firstTrial;
+  }
+
+  public void setFirstTrial(int firstTrial) {
+    this.firstTrial = firstTrial;
+  }
+
   public String getOutputFileName() {
     return outputFileName;
   }
@@ -204,6 +261,22 @@ public class Config {
     this.numThreads = numThreads;
   }
 
+  public int getConcurrentTrials() {
+    return concurrentTrials;
+  }
+
+  public void setConcurrentTrials(int concurrentTrials) {
+    this.concurrentTrials = concurrentTrials;
+  }
+
+  public int getRefinementWindows() {
+    return refinementWindows;
+  }
+
+  public void setRefinementWindows(int refinementWindows) {
+    this.refinementWindows = refinementWindows;
+  }
+
   public float getGridDensity() {
     return gridDensity;
   }
@@ -228,6 +301,22 @@ public class Config {
     this.randomized = randomized;
   }
 
+  public boolean isCheckpoints() {
+    return checkpoints;
+  }
+
+  public void setCheckpoints(boolean checkpoints) {
+    this.checkpoints = checkpoints;
+  }
+
+  public boolean isResume() {
+    return resume;
+  }
+
+  public void setResume(boolean resume) {
+    this.resume = resume;
+  }
+
   public String getTransmittersFile() {
     return transmittersFile;
   }
@@ -259,4 +348,20 @@ public class Config {
   public void setTransmitterDistribution(String transmitterDistribution) {
     this.transmitterDistribution = transmitterDistribution;
   }
+
+  public String getCoverageEvaluator() {
+    return coverageEvaluator;
+  }
+
+  public void setCoverageEvaluator(String coverageEvaluator) {
+    this.coverageEvaluator = coverageEvaluator;
+  }
+
+  public float getPointEpsilon() {
+    return pointEpsilon;
+  }
+
+  public void setPointEpsilon(float pointEpsilon) {
+    this.pointEpsilon = pointEpsilon;
+  }
 }
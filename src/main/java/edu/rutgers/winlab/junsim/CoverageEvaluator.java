@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+/**
+ * Counts how many disks cover each point of a block of points. Points and
+ * disks are both passed as primitive arrays so that implementations can work
+ * on contiguous memory.
+ * <p>
+ * The coverage test is the one of
+ * {@link CaptureDiskTable#contains(int, double, double)}: every implementation
+ * must produce the same counts.
+ * </p>
+ *
+ * @author Robert Moore
+ */
+public interface CoverageEvaluator {
+
+  /**
+   * Adds to {@code counts[p]} the number of disks in
+   * {@code diskIndices[fromDisk]} through {@code diskIndices[toDisk-1]} that
+   * cover point {@code p}, for each of the first {@code numPoints} points.
+   *
+   * @param px
+   *          the x-coordinates of the points.
+   * @param py
+   *          the y-coordinates of the points.
+   * @param numPoints
+   *          the number of points in the block.
+   * @param disks
+   *          the table holding the disk geometry.
+   * @param diskIndices
+   *          indices into {@code disks}.
+   * @param fromDisk
+   *          the first entry of {@code diskIndices} to use.
+   * @param toDisk
+   *          one past the last entry of {@code diskIndices} to use.
+   * @param counts
+   *          the coverage count of each point, incremented in place.
+   */
+  public void countCoverage(float[] px, float[] py, int numPoints,
+      CaptureDiskTable disks, int[] diskIndices, int fromDisk, int toDisk,
+      int[] counts);
+}
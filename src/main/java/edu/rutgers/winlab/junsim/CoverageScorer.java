@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scores solution points by the number of disks covering them, for the binned
+ * experiments. Every covered point is put back into the bins by its count, but
+ * only points that land in the desired bin or higher can be chosen.
+ * 
+ * @author Robert Moore
+ */
+class CoverageScorer extends GuidedScheduler.RangeScorer {
+
+  /**
+   * The points being scored.
+   */
+  final Point2D[] points;
+  /**
+   * The disks to test against.
+   */
+  final DiskGrid diskIndex;
+  /**
+   * The bins to put covered points into.
+   */
+  final Binner binner;
+  /**
+   * Lowest bin whose points may be chosen.
+   */
+  final int desiredBin;
+  /**
+   * Storage for the count of every point, or {@code null}.
+   */
+  final float[] allScores;
+  /**
+   * Tests ranges of points against the disks.
+   */
+  private final CoverageEvaluator evaluator = Main.createCoverageEvaluator();
+  /**
+   * Buffers reused by every call to the disk index.
+   */
+  private final DiskGrid.CoverageScratch scratch =
+      new DiskGrid.CoverageScratch();
+  /**
+   * X-coordinates of the current range.
+   */
+  private float[] px = new float[GuidedScheduler.MIN_CHUNK];
+  /**
+   * Y-coordinates of the current range.
+   */
+  private float[] py = new float[GuidedScheduler.MIN_CHUNK];
+  /**
+   * Coverage counts of the current range.
+   */
+  private int[] counts = new int[GuidedScheduler.MIN_CHUNK];
+
+  CoverageScorer(final Point2D[] points, final DiskGrid diskIndex,
+      final Binner binner, final int desiredBin, final float[] allScores) {
+    super();
+    this.points = points;
+    this.diskIndex = diskIndex;
+    this.binner = binner;
+    this.desiredBin = desiredBin;
+    this.allScores = allScores;
+  }
+
+  /**
+   * Creates one scorer per worker thread.
+   * 
+   * @param points
+   *          the points to score.
+   * @param diskIndex
+   *          the live disks.
+   * @param binner
+   *          the bins to put covered points into.
+   * @param desiredBin
+   *          the lowest bin whose points may be chosen.
+   * @return the scorers.
+   */
+  static List<CoverageScorer> create(final Point2D[] points,
+      final DiskGrid diskIndex, final Binner binner, final int desiredBin) {
+    return CoverageScorer.create(points, diskIndex, binner, desiredBin, null);
+  }
+
+  /**
+   * Creates one scorer per worker thread, which also record the count of
+   * every point, whether or not it can be chosen.
+   * 
+   * @param points
+   *          the points to score.
+   * @param diskIndex
+   *          the live disks.
+   * @param binner
+   *          the bins to put covered points into.
+   * @param desiredBin
+   *          the lowest bin whose points may be chosen.
+   * @param allScores
+   *          storage for the count of each point, or {@code null}.
+   * @return the scorers.
+   */
+  static List<CoverageScorer> create(final Point2D[] points,
+      final DiskGrid diskIndex, final Binner binner, final int desiredBin,
+      final float[] allScores) {
+    final int numScorers = Math.max(1, Main.config.numThreads);
+    final List<CoverageScorer> scorers = new ArrayList<CoverageScorer>(
+        numScorers);
+    for (int i = 0; i < numScorers; ++i) {
+      scorers.add(new CoverageScorer(points, diskIndex, binner, desiredBin,
+          allScores));
+    }
+    return scorers;
+  }
+
+  @Override
+  void score(final int from, final int to, final float[] scores) {
+    final int numPoints = to - from;
+    if (this.px.length < numPoints) {
+      this.px = new float[numPoints];
+      this.py = new float[numPoints];
+      this.counts = new int[numPoints];
+    }
+    for (int i = 0; i < numPoints; ++i) {
+      this.px[i] = (float) this.points[from + i].getX();
+      this.py[i] = (float) this.points[from + i].getY();
+    }
+    this.diskIndex.countCoverage(this.px, this.py, numPoints, this.evaluator,
+        this.counts, this.scratch);
+    for (int i = 0; i < numPoints; ++i) {
+      final int size = this.counts[i];
+      if (this.allScores != null) {
+        this.allScores[from + i] = size;
+      }
+      scores[i] = 0;
+      if (size > 0
+          && this.binner.put(this.points[from + i], size) >= this.desiredBin) {
+        scores[i] = size;
+      }
+    }
+  }
+}
@@ -0,0 +1,528 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of non-negative integers, used for sets of disk indices.
+ * Like a Roaring bitmap, the values are split by their high 16 bits into
+ * chunks, and each chunk is stored in whichever container is smallest: a
+ * sorted array of values, a plain 65536-bit bitmap, or a list of runs of
+ * consecutive values.
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @author Robert Moore
+ */
+public class DiskBitmap {
+
+  /**
+   * Largest number of values kept in an array container.
+   */
+  static final int ARRAY_MAX = 4096;
+
+  /**
+   * Number of 64-bit words in a bitmap container.
+   */
+  static final int BITMAP_WORDS = 1024;
+
+  /**
+   * High 16 bits of the values in each container, in ascending order.
+   */
+  private char[] keys = new char[4];
+  /**
+   * The containers, in the same order as {@link #keys}.
+   */
+  private Container[] containers = new Container[4];
+  /**
+   * Number of containers in use.
+   */
+  private int numContainers = 0;
+
+  /**
+   * Creates a new, empty bitmap.
+   */
+  public DiskBitmap() {
+    super();
+  }
+
+  /**
+   * Adds a value to this bitmap.
+   *
+   * @param value
+   *          the value to add, which must not be negative.
+   */
+  public void add(final int value) {
+    final char key = (char) (value >>> 16);
+    final int i = this.indexOf(key);
+    if (i >= 0) {
+      this.containers[i] = this.containers[i].add((char) value);
+      return;
+    }
+    final Container container = new ArrayContainer();
+    container.add((char) value);
+    this.insert(-i - 1, key, container);
+  }
+
+  /**
+   * Determines whether a value is in this bitmap.
+   *
+   * @param value
+   *          the value to look for.
+   * @return {@code true} if the value is in this bitmap.
+   */
+  public boolean contains(final int value) {
+    if (value < 0) {
+      return false;
+    }
+    final int i = this.indexOf((char) (value >>> 16));
+    return i >= 0 && this.containers[i].contains((char) value);
+  }
+
+  /**
+   * The number of values in this bitmap.
+   *
+   * @return the number of values.
+   */
+  public int cardinality() {
+    int sum = 0;
+    for (int i = 0; i < this.numContainers; ++i) {
+      sum += this.containers[i].cardinality();
+    }
+    return sum;
+  }
+
+  /**
+   * Whether this bitmap has no values.
+   *
+   * @return {@code true} if this bitmap is empty.
+   */
+  public boolean isEmpty() {
+    return this.numContainers == 0;
+  }
+
+  /**
+   * Returns the smallest value in this bitmap that is at least {@code from}.
+   *
+   * @param from
+   *          the value to start searching from.
+   * @return the next value, or -1 if there are none.
+   */
+  public int nextSetBit(final int from) {
+    final int fromKey = from >>> 16;
+    int i = this.indexOf((char) fromKey);
+    if (i >= 0) {
+      final int low = this.containers[i].next(from & 0xFFFF);
+      if (low >= 0) {
+        return (fromKey << 16) | low;
+      }
+      ++i;
+    } else {
+      i = -i - 1;
+    }
+    if (i < this.numContainers) {
+      return (this.keys[i] << 16) | this.containers[i].next(0);
+    }
+    return -1;
+  }
+
+  /**
+   * Converts every container to its smallest representation, which may be a
+   * list of runs.
+   */
+  public void runOptimize() {
+    final long[] bits = new long[BITMAP_WORDS];
+    for (int i = 0; i < this.numContainers; ++i) {
+      Arrays.fill(bits, 0L);
+      this.containers[i].orInto(bits);
+      this.containers[i] = DiskBitmap.fromBits(bits);
+    }
+  }
+
+  /**
+   * Approximate number of bytes used by the containers of this bitmap.
+   *
+   * @return the approximate size in bytes.
+   */
+  public int sizeInBytes() {
+    int sum = 3 * this.numContainers;
+    for (int i = 0; i < this.numContainers; ++i) {
+      sum += this.containers[i].sizeInBytes();
+    }
+    return sum;
+  }
+
+  /**
+   * Binary search for a container key.
+   *
+   * @param key
+   *          the key to find.
+   * @return the index of the key, or {@code -(insertion point) - 1}.
+   */
+  private int indexOf(final char key) {
+    int lo = 0;
+    int hi = this.numContainers - 1;
+    while (lo <= hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (this.keys[mid] < key) {
+        lo = mid + 1;
+      } else if (this.keys[mid] > key) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(lo + 1);
+  }
+
+  private void insert(final int index, final char key,
+      final Container container) {
+    if (this.numContainers == this.keys.length) {
+      this.keys = Arrays.copyOf(this.keys, this.numContainers * 2);
+      this.containers = Arrays.copyOf(this.containers, this.numContainers * 2);
+    }
+    System.arraycopy(this.keys, index, this.keys, index + 1,
+        this.numContainers - index);
+    System.arraycopy(this.containers, index, this.containers, index + 1,
+        this.numContainers - index);
+    this.keys[index] = key;
+    this.containers[index] = container;
+    ++this.numContainers;
+  }
+
+  /**
+   * Picks the smallest container for a chunk of values.
+   *
+   * @param bits
+   *          the values of the chunk as a bitmap, which is not modified.
+   * @return a new container, or {@code null} if the chunk is empty.
+   */
+  static Container fromBits(final long[] bits) {
+    int card = 0;
+    int runs = 0;
+    long previousHigh = 0;
+    for (int w = 0; w < BITMAP_WORDS; ++w) {
+      final long word = bits[w];
+      card += Long.bitCount(word);
+      // A run starts at each set bit whose lower neighbor is clear
+      runs += Long.bitCount(word & ~((word << 1) | previousHigh));
+      previousHigh = word >>> 63;
+    }
+    if (card == 0) {
+      return null;
+    }
+    final int arrayBytes = 2 * card;
+    final int runBytes = 4 * runs;
+    if (runBytes < arrayBytes && runBytes < 8 * BITMAP_WORDS) {
+      return new RunContainer(bits, runs);
+    }
+    if (card <= ARRAY_MAX) {
+      return new ArrayContainer(bits, card);
+    }
+    return new BitmapContainer(bits.clone(), card);
+  }
+
+  /**
+   * The values of one 65536-value chunk.
+   */
+  abstract static class Container {
+    abstract boolean contains(char value);
+
+    /**
+     * Adds a value, possibly converting to a different kind of container.
+     *
+     * @return the container now holding the values.
+     */
+    abstract Container add(char value);
+
+    abstract int cardinality();
+
+    /**
+     * @return the smallest value at least {@code from}, or -1.
+     */
+    abstract int next(int from);
+
+    /**
+     * Sets the bits of this container's values in a bitmap.
+     */
+    abstract void orInto(long[] bits);
+
+    abstract int sizeInBytes();
+  }
+
+  /**
+   * Sorted array of values.
+   */
+  static final class ArrayContainer extends Container {
+    char[] values;
+    int card;
+
+    ArrayContainer() {
+      super();
+      this.values = new char[4];
+      this.card = 0;
+    }
+
+    ArrayContainer(final long[] bits, final int card) {
+      super();
+      this.values = new char[card];
+      this.card = card;
+      int n = 0;
+      for (int w = 0; w < BITMAP_WORDS; ++w) {
+        long word = bits[w];
+        while (word != 0) {
+          this.values[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+    }
+
+    @Override
+    boolean contains(final char value) {
+      return Arrays.binarySearch(this.values, 0, this.card, value) >= 0;
+    }
+
+    @Override
+    Container add(final char value) {
+      final int i = Arrays.binarySearch(this.values, 0, this.card, value);
+      if (i >= 0) {
+        return this;
+      }
+      if (this.card == ARRAY_MAX) {
+        final long[] bits = new long[BITMAP_WORDS];
+        this.orInto(bits);
+        final BitmapContainer bitmap = new BitmapContainer(bits, this.card);
+        return bitmap.add(value);
+      }
+      if (this.card == this.values.length) {
+        this.values = Arrays.copyOf(this.values, this.card * 2);
+      }
+      final int at = -i - 1;
+      System.arraycopy(this.values, at, this.values, at + 1, this.card - at);
+      this.values[at] = value;
+      ++this.card;
+      return this;
+    }
+
+    @Override
+    int cardinality() {
+      return this.card;
+    }
+
+    @Override
+    int next(final int from) {
+      int i = Arrays.binarySearch(this.values, 0, this.card, (char) from);
+      if (i < 0) {
+        i = -i - 1;
+      }
+      return i < this.card ? this.values[i] : -1;
+    }
+
+    @Override
+    void orInto(final long[] bits) {
+      for (int i = 0; i < this.card; ++i) {
+        bits[this.values[i] >>> 6] |= 1L << this.values[i];
+      }
+    }
+
+
+    @Override
+    int sizeInBytes() {
+      return 2 * this.card;
+    }
+  }
+
+  /**
+   * Plain bitmap of all 65536 values.
+   */
+  static final class BitmapContainer extends Container {
+    final long[] bits;
+    int card;
+
+    BitmapContainer(final long[] bits, final int card) {
+      super();
+      this.bits = bits;
+      this.card = card;
+    }
+
+    @Override
+    boolean contains(final char value) {
+      return (this.bits[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    Container add(final char value) {
+      final long mask = 1L << value;
+      if ((this.bits[value >>> 6] & mask) == 0) {
+        this.bits[value >>> 6] |= mask;
+        ++this.card;
+      }
+      return this;
+    }
+
+    @Override
+    int cardinality() {
+      return this.card;
+    }
+
+    @Override
+    int next(final int from) {
+      int w = from >>> 6;
+      if (w >= BITMAP_WORDS) {
+        return -1;
+      }
+      long word = this.bits[w] & (-1L << from);
+      while (true) {
+        if (word != 0) {
+          return (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+        if (++w == BITMAP_WORDS) {
+          return -1;
+        }
+        word = this.bits[w];
+      }
+    }
+
+    @Override
+    void orInto(final long[] target) {
+      for (int w = 0; w < BITMAP_WORDS; ++w) {
+        target[w] |= this.bits[w];
+      }
+    }
+
+
+    @Override
+    int sizeInBytes() {
+      return 8 * BITMAP_WORDS;
+    }
+  }
+
+  /**
+   * Runs of consecutive values, each stored as a start and a length minus
+   * one.
+   */
+  static final class RunContainer extends Container {
+    final char[] starts;
+    final char[] lengths;
+    final int card;
+
+    RunContainer(final long[] bits, final int numRuns) {
+      super();
+      this.starts = new char[numRuns];
+      this.lengths = new char[numRuns];
+      int run = 0;
+      int total = 0;
+      int value = DiskBitmap.nextBit(bits, 0);
+      while (value >= 0) {
+        int end = value;
+        while (end + 1 < 65536 && (bits[(end + 1) >>> 6] & (1L << (end + 1))) != 0) {
+          ++end;
+        }
+        this.starts[run] = (char) value;
+        this.lengths[run] = (char) (end - value);
+        ++run;
+        total += end - value + 1;
+        value = end + 1 < 65536 ? DiskBitmap.nextBit(bits, end + 1) : -1;
+      }
+      this.card = total;
+    }
+
+    /**
+     * Index of the last run starting at or before {@code value}, or -1.
+     */
+    private int runBefore(final int value) {
+      int lo = 0;
+      int hi = this.starts.length - 1;
+      while (lo <= hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (this.starts[mid] <= value) {
+          lo = mid + 1;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      return hi;
+    }
+
+    @Override
+    boolean contains(final char value) {
+      final int r = this.runBefore(value);
+      return r >= 0 && value <= this.starts[r] + this.lengths[r];
+    }
+
+    @Override
+    Container add(final char value) {
+      if (this.contains(value)) {
+        return this;
+      }
+      final long[] bits = new long[BITMAP_WORDS];
+      this.orInto(bits);
+      bits[value >>> 6] |= 1L << value;
+      return DiskBitmap.fromBits(bits);
+    }
+
+    @Override
+    int cardinality() {
+      return this.card;
+    }
+
+    @Override
+    int next(final int from) {
+      final int r = this.runBefore(from);
+      if (r >= 0 && from <= this.starts[r] + this.lengths[r]) {
+        return from;
+      }
+      return r + 1 < this.starts.length ? this.starts[r + 1] : -1;
+    }
+
+    @Override
+    void orInto(final long[] bits) {
+      for (int r = 0; r < this.starts.length; ++r) {
+        final int end = this.starts[r] + this.lengths[r];
+        for (int v = this.starts[r]; v <= end; ++v) {
+          bits[v >>> 6] |= 1L << v;
+        }
+      }
+    }
+
+
+    @Override
+    int sizeInBytes() {
+      return 4 * this.starts.length;
+    }
+  }
+
+  /**
+   * Returns the first set bit of a chunk bitmap at or after {@code from}.
+   */
+  static int nextBit(final long[] bits, final int from) {
+    int w = from >>> 6;
+    long word = bits[w] & (-1L << from);
+    while (true) {
+      if (word != 0) {
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+      }
+      if (++w == BITMAP_WORDS) {
+        return -1;
+      }
+      word = bits[w];
+    }
+  }
+}
@@ -0,0 +1,530 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A uniform bucket grid over the bounding boxes of the disks in a
+ * {@code CaptureDiskTable}. Each disk is stored in every cell that its
+ * bounding box overlaps, so disks that might intersect each other, or that
+ * might cover a point, can be found without examining every disk.
+ * <p>
+ * Disks can be removed from the grid as receivers are placed. Queries may run
+ * concurrently with each other, but not with removals.
+ * </p>
+ *
+ * @author Robert Moore
+ */
+public class DiskGrid {
+
+  /**
+   * Upper bound on the number of cells per disk, so that a few large disks
+   * can't cause a huge grid to be allocated.
+   */
+  private static final int MAX_CELLS_PER_DISK = 4;
+
+  /**
+   * The indexed disks.
+   */
+  final CaptureDiskTable table;
+
+  /**
+   * Left edge of the grid.
+   */
+  private final float minX;
+  /**
+   * Top edge of the grid.
+   */
+  private final float minY;
+  /**
+   * Width and height of each cell.
+   */
+  private final float cellSize;
+  /**
+   * Number of cell columns.
+   */
+  private final int columns;
+  /**
+   * Number of cell rows.
+   */
+  private final int rows;
+  /**
+   * Start offset of each cell in {@link #cellItems}.
+   */
+  private final int[] cellStart;
+  /**
+   * End offset (exclusive) of the disks remaining in each cell.
+   */
+  private final int[] cellEnd;
+  /**
+   * Disk indices, grouped by cell and in ascending order within each cell.
+   */
+  private final int[] cellItems;
+
+  /**
+   * Builds a grid over the disks of {@code table} that are live when the grid
+   * is created.
+   *
+   * @param table
+   *          the disks to index.
+   */
+  public DiskGrid(final CaptureDiskTable table) {
+    super();
+    this.table = table;
+
+    float loX = Float.MAX_VALUE;
+    float loY = Float.MAX_VALUE;
+    float hiX = -Float.MAX_VALUE;
+    float hiY = -Float.MAX_VALUE;
+    double sumDiameter = 0;
+    final int numDisks = table.size();
+    for (int i = table.nextLive(0); i >= 0; i = table.nextLive(i + 1)) {
+      final float r = table.radius[i];
+      loX = Math.min(loX, table.centerX[i] - r);
+      loY = Math.min(loY, table.centerY[i] - r);
+      hiX = Math.max(hiX, table.centerX[i] + r);
+      hiY = Math.max(hiY, table.centerY[i] + r);
+      sumDiameter += 2 * r;
+    }
+    if (numDisks == 0) {
+      loX = loY = hiX = hiY = 0;
+    }
+    this.minX = loX;
+    this.minY = loY;
+
+    float size = numDisks == 0 ? 1f : (float) (sumDiameter / numDisks);
+    if (size <= 0) {
+      size = 1f;
+    }
+    final long maxCells = MAX_CELLS_PER_DISK * (long) numDisks + 1;
+    while (((long) ((hiX - loX) / size) + 1)
+        * ((long) ((hiY - loY) / size) + 1) > maxCells) {
+      size *= 2;
+    }
+    this.cellSize = size;
+    this.columns = (int) ((hiX - loX) / size) + 1;
+    this.rows = (int) ((hiY - loY) / size) + 1;
+
+    // Count, then fill, the disks of each cell
+    final int numCells = this.columns * this.rows;
+    this.cellStart = new int[numCells + 1];
+    for (int i = table.nextLive(0); i >= 0; i = table.nextLive(i + 1)) {
+      final int minCol = this.minColumn(i);
+      final int maxCol = this.maxColumn(i);
+      final int maxRow = this.maxRow(i);
+      for (int row = this.minRow(i); row <= maxRow; ++row) {
+        for (int col = minCol; col <= maxCol; ++col) {
+          ++this.cellStart[row * this.columns + col + 1];
+        }
+      }
+    }
+    for (int c = 0; c < numCells; ++c) {
+      this.cellStart[c + 1] += this.cellStart[c];
+    }
+    this.cellItems = new int[this.cellStart[numCells]];
+    final int[] fill = new int[numCells];
+    for (int i = table.nextLive(0); i >= 0; i = table.nextLive(i + 1)) {
+      final int minCol = this.minColumn(i);
+      final int maxCol = this.maxColumn(i);
+      final int maxRow = this.maxRow(i);
+      for (int row = this.minRow(i); row <= maxRow; ++row) {
+        for (int col = minCol; col <= maxCol; ++col) {
+          final int c = row * this.columns + col;
+          this.cellItems[this.cellStart[c] + fill[c]++] = i;
+        }
+      }
+    }
+    this.cellEnd = new int[numCells];
+    System.arraycopy(this.cellStart, 1, this.cellEnd, 0, numCells);
+  }
+
+  /**
+   * The cell column of an x-coordinate, clamped to the grid.
+   *
+   * @param x
+   *          the x-coordinate.
+   * @return the column index.
+   */
+  private int column(final double x) {
+    final int col = (int) Math.floor((x - this.minX) / this.cellSize);
+    return col < 0 ? 0 : (col >= this.columns ? this.columns - 1 : col);
+  }
+
+  /**
+   * The cell row of a y-coordinate, clamped to the grid.
+   *
+   * @param y
+   *          the y-coordinate.
+   * @return the row index.
+   */
+  private int row(final double y) {
+    final int row = (int) Math.floor((y - this.minY) / this.cellSize);
+    return row < 0 ? 0 : (row >= this.rows ? this.rows - 1 : row);
+  }
+
+  private int minColumn(final int disk) {
+    return this.column(this.table.centerX[disk] - this.table.radius[disk]);
+  }
+
+  private int maxColumn(final int disk) {
+    return this.column(this.table.centerX[disk] + this.table.radius[disk]);
+  }
+
+  private int minRow(final int disk) {
+    return this.row(this.table.centerY[disk] - this.table.radius[disk]);
+  }
+
+  private int maxRow(final int disk) {
+    return this.row(this.table.centerY[disk] + this.table.radius[disk]);
+  }
+
+  /**
+   * Determines whether the bounding boxes of two disks overlap.
+   *
+   * @param i
+   *          the index of the first disk.
+   * @param j
+   *          the index of the second disk.
+   * @return {@code true} if the bounding boxes overlap or touch.
+   */
+  private boolean boundsOverlap(final int i, final int j) {
+    final float[] cx = this.table.centerX;
+    final float[] cy = this.table.centerY;
+    final float[] r = this.table.radius;
+    return Math.abs(cx[i] - cx[j]) <= r[i] + r[j]
+        && Math.abs(cy[i] - cy[j]) <= r[i] + r[j];
+  }
+
+  /**
+   * Collects the indexed disks whose bounding boxes overlap the bounding box of
+   * disk {@code i}. Each disk is collected at most once, and {@code i} itself
+   * is never collected. When {@code higherOnly} is set, only disks with an
+   * index greater than {@code i} are collected, so that calling this for every
+   * disk visits each unordered pair exactly once.
+   *
+   * @param i
+   *          the index of the disk.
+   * @param higherOnly
+   *          whether to skip disks with an index lower than {@code i}.
+   * @param overlapping
+   *          storage for the returned indices, at least
+   *          {@link CaptureDiskTable#length()} long.
+   * @return the number of indices stored in {@code overlapping}.
+   */
+  public int collectOverlapping(final int i, final boolean higherOnly,
+      final int[] overlapping) {
+    final int minCol = this.minColumn(i);
+    final int maxCol = this.maxColumn(i);
+    final int minRow = this.minRow(i);
+    final int maxRow = this.maxRow(i);
+    int count = 0;
+    for (int row = minRow; row <= maxRow; ++row) {
+      for (int col = minCol; col <= maxCol; ++col) {
+        final int c = row * this.columns + col;
+        for (int k = this.cellStart[c]; k < this.cellEnd[c]; ++k) {
+          final int j = this.cellItems[k];
+          if (j == i || (higherOnly && j < i)) {
+            continue;
+          }
+          /*
+           * Only report a pair from the first cell (in scan order) that both
+           * disks occupy, so that it isn't reported once per shared cell.
+           */
+          if (col != Math.max(minCol, this.minColumn(j))
+              || row != Math.max(minRow, this.minRow(j))) {
+            continue;
+          }
+          if (this.boundsOverlap(i, j)) {
+            overlapping[count++] = j;
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Collects the indexed disks whose bounding boxes overlap the bounding box of
+   * a circle. Each disk is collected at most once.
+   *
+   * @param x
+   *          the x-coordinate of the center of the circle.
+   * @param y
+   *          the y-coordinate of the center of the circle.
+   * @param r
+   *          the radius of the circle.
+   * @param overlapping
+   *          storage for the returned indices, at least
+   *          {@link CaptureDiskTable#length()} long.
+   * @return the number of indices stored in {@code overlapping}.
+   */
+  public int collectOverlapping(final double x, final double y,
+      final double r, final int[] overlapping) {
+    final float[] cx = this.table.centerX;
+    final float[] cy = this.table.centerY;
+    final float[] radius = this.table.radius;
+    final int minCol = this.column(x - r);
+    final int maxCol = this.column(x + r);
+    final int minRow = this.row(y - r);
+    final int maxRow = this.row(y + r);
+    int count = 0;
+    for (int row = minRow; row <= maxRow; ++row) {
+      for (int col = minCol; col <= maxCol; ++col) {
+        final int c = row * this.columns + col;
+        for (int k = this.cellStart[c]; k < this.cellEnd[c]; ++k) {
+          final int j = this.cellItems[k];
+          // Only report a disk from the first cell it shares with the circle
+          if (col != Math.max(minCol, this.minColumn(j))
+              || row != Math.max(minRow, this.minRow(j))) {
+            continue;
+          }
+          if (Math.abs(cx[j] - x) <= radius[j] + r
+              && Math.abs(cy[j] - y) <= radius[j] + r) {
+            overlapping[count++] = j;
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Collects the indexed disks whose bounding boxes contain a point. The
+   * caller is responsible for the exact point-in-disk test.
+   *
+   * @param x
+   *          the x-coordinate of the point.
+   * @param y
+   *          the y-coordinate of the point.
+   * @param containing
+   *          storage for the returned indices, at least
+   *          {@link CaptureDiskTable#length()} long.
+   * @return the number of indices stored in {@code containing}.
+   */
+  public int collectContaining(final double x, final double y,
+      final int[] containing) {
+    final float[] cx = this.table.centerX;
+    final float[] cy = this.table.centerY;
+    final float[] r = this.table.radius;
+    final int c = this.row(y) * this.columns + this.column(x);
+    int count = 0;
+    for (int k = this.cellStart[c]; k < this.cellEnd[c]; ++k) {
+      final int j = this.cellItems[k];
+      if (cx[j] - r[j] > x || cx[j] + r[j] < x || cy[j] - r[j] > y
+          || cy[j] + r[j] < y) {
+        continue;
+      }
+      containing[count++] = j;
+    }
+    return count;
+  }
+
+  /**
+   * Collects the indexed disks that cover a point, using
+   * {@link CaptureDiskTable#contains(int, double, double)}.
+   *
+   * @param x
+   *          the x-coordinate of the point.
+   * @param y
+   *          the y-coordinate of the point.
+   * @return a new, read-only collection of the disks covering the point,
+   *         backed by a bitmap of their indices.
+   */
+  public Collection<CaptureDisk> collectCovering(final double x,
+      final double y) {
+    final DiskBitmap covering = new DiskBitmap();
+    final int c = this.row(y) * this.columns + this.column(x);
+    for (int k = this.cellStart[c]; k < this.cellEnd[c]; ++k) {
+      final int j = this.cellItems[k];
+      if (this.table.contains(j, x, y)) {
+        covering.add(j);
+      }
+    }
+    covering.runOptimize();
+    return this.table.view(covering);
+  }
+
+  /**
+   * Counts the indexed disks that cover a point, using
+   * {@link CaptureDiskTable#contains(int, double, double)}.
+   *
+   * @param x
+   *          the x-coordinate of the point.
+   * @param y
+   *          the y-coordinate of the point.
+   * @return the number of disks covering the point.
+   */
+  public int countCovering(final double x, final double y) {
+    final int c = this.row(y) * this.columns + this.column(x);
+    int count = 0;
+    for (int k = this.cellStart[c]; k < this.cellEnd[c]; ++k) {
+      if (this.table.contains(this.cellItems[k], x, y)) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Reusable buffers for
+   * {@link DiskGrid#countCoverage(float[], float[], int, CoverageEvaluator, int[], CoverageScratch)}.
+   * Not thread-safe, so each worker keeps its own.
+   * 
+   * @author Robert Moore
+   */
+  public static final class CoverageScratch {
+    /**
+     * Cell of each point in the high 32 bits, and the point in the low 32.
+     */
+    long[] keys = new long[0];
+    float[] blockX = new float[0];
+    float[] blockY = new float[0];
+    int[] blockCounts = new int[0];
+
+    void ensureCapacity(final int numPoints) {
+      if (this.keys.length < numPoints) {
+        this.keys = new long[numPoints];
+        this.blockX = new float[numPoints];
+        this.blockY = new float[numPoints];
+        this.blockCounts = new int[numPoints];
+      }
+    }
+  }
+
+  /**
+   * Counts the indexed disks that cover each point of a block, using new
+   * buffers.
+   *
+   * @see #countCoverage(float[], float[], int, CoverageEvaluator, int[],
+   *      CoverageScratch)
+   */
+  public void countCoverage(final float[] px, final float[] py,
+      final int numPoints, final CoverageEvaluator evaluator,
+      final int[] counts) {
+    this.countCoverage(px, py, numPoints, evaluator, counts,
+        new CoverageScratch());
+  }
+
+  /**
+   * Counts the indexed disks that cover each point of a block. Points are
+   * grouped by the cell they fall in, and each group is handed to the
+   * evaluator together with the disks of that cell, so the evaluator only sees
+   * disks that can possibly cover the points. Only the block's points are
+   * sorted, so the cost doesn't depend on the number of cells.
+   *
+   * @param px
+   *          the x-coordinates of the points.
+   * @param py
+   *          the y-coordinates of the points.
+   * @param numPoints
+   *          the number of points.
+   * @param evaluator
+   *          the evaluator used for each cell.
+   * @param counts
+   *          storage for the coverage count of each point, at least
+   *          {@code numPoints} long. Existing values are overwritten.
+   * @param scratch
+   *          buffers to reuse between calls.
+   */
+  public void countCoverage(final float[] px, final float[] py,
+      final int numPoints, final CoverageEvaluator evaluator,
+      final int[] counts, final CoverageScratch scratch) {
+    scratch.ensureCapacity(numPoints);
+    // Sort the points by cell, keeping their order within a cell
+    final long[] keys = scratch.keys;
+    for (int p = 0; p < numPoints; ++p) {
+      final long c = this.row(py[p]) * this.columns + this.column(px[p]);
+      keys[p] = (c << 32) | p;
+    }
+    Arrays.sort(keys, 0, numPoints);
+
+    final float[] blockX = scratch.blockX;
+    final float[] blockY = scratch.blockY;
+    final int[] blockCounts = scratch.blockCounts;
+    int from = 0;
+    while (from < numPoints) {
+      final int c = (int) (keys[from] >>> 32);
+      int to = from + 1;
+      while (to < numPoints && (int) (keys[to] >>> 32) == c) {
+        ++to;
+      }
+      final int blockSize = to - from;
+      if (this.cellStart[c] == this.cellEnd[c]) {
+        for (int k = from; k < to; ++k) {
+          counts[(int) keys[k]] = 0;
+        }
+      } else {
+        for (int k = from; k < to; ++k) {
+          final int p = (int) keys[k];
+          blockX[k - from] = px[p];
+          blockY[k - from] = py[p];
+        }
+        Arrays.fill(blockCounts, 0, blockSize, 0);
+        evaluator.countCoverage(blockX, blockY, blockSize, this.table,
+            this.cellItems, this.cellStart[c], this.cellEnd[c], blockCounts);
+        for (int k = from; k < to; ++k) {
+          counts[(int) keys[k]] = blockCounts[k - from];
+        }
+      }
+      from = to;
+    }
+  }
+
+  /**
+   * Removes a disk from every cell that it occupies. The disk is not removed
+   * from the underlying table.
+   *
+   * @param i
+   *          the index of the disk.
+   */
+  public void remove(final int i) {
+    final int minCol = this.minColumn(i);
+    final int maxCol = this.maxColumn(i);
+    final int maxRow = this.maxRow(i);
+    for (int row = this.minRow(i); row <= maxRow; ++row) {
+      for (int col = minCol; col <= maxCol; ++col) {
+        final int c = row * this.columns + col;
+        for (int k = this.cellStart[c]; k < this.cellEnd[c]; ++k) {
+          if (this.cellItems[k] == i) {
+            // Shift the rest of the cell down to keep it in ascending order
+            System.arraycopy(this.cellItems, k + 1, this.cellItems, k,
+                this.cellEnd[c] - k - 1);
+            --this.cellEnd[c];
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes a collection of disks from this grid. The disks are not removed
+   * from the underlying table.
+   *
+   * @param toRemove
+   *          the disks to remove.
+   */
+  public void removeAll(final Collection<CaptureDisk> toRemove) {
+    final DiskBitmap bitmap = CaptureDiskTable.toBitmap(toRemove);
+    for (int i = bitmap.nextSetBit(0); i >= 0; i = bitmap.nextSetBit(i + 1)) {
+      this.remove(i);
+    }
+  }
+}
@@ -17,6 +17,7 @@
  */
 package edu.rutgers.winlab.junsim;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -68,6 +69,25 @@ public class ExperimentStats {
     }
   }
 
+  /**
+   * Appends every statistic recorded in {@code other} to this object.
+   *
+   * @param other
+   *          the statistics to add.
+   */
+  void addAll(final ExperimentStats other) {
+    for (int i = 0; i < this.statistics.length; ++i) {
+      final List<Float> values;
+      synchronized (other.statistics[i]) {
+        values = new ArrayList<Float>(other.statistics[i]);
+      }
+      synchronized (this.statistics[i]) {
+        this.statistics[i].addAll(values);
+        this.sorted[i] = false;
+      }
+    }
+  }
+
   void addCoverage(float coverage) {
     addStatistic(coverage, COVERAGE);
   }
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the best-scoring candidate of an array by scoring ranges of it in
+ * parallel. Instead of giving each worker a fixed share of the candidates,
+ * workers repeatedly claim the next range from a shared counter. Ranges start
+ * large and shrink as the candidates run out (guided self-scheduling), so a
+ * worker that draws expensive candidates, such as those in a dense cluster of
+ * disks, does not hold up the others.
+ * <p>
+ * The result does not depend on how the ranges were divided between workers:
+ * the highest score wins, and ties go to the lowest index.
+ * </p>
+ * 
+ * @author Robert Moore
+ */
+public final class GuidedScheduler {
+
+  /**
+   * Smallest range claimed at once, so that the counter is not contended and
+   * each range is large enough to be tested as a batch.
+   */
+  static final int MIN_CHUNK = 256;
+
+  private GuidedScheduler() {
+    super();
+  }
+
+  /**
+   * Scores ranges of candidates for one worker. Each worker is given its own
+   * scorer, so scorers may keep scratch space.
+   * 
+   * @author Robert Moore
+   */
+  abstract static class RangeScorer {
+    /**
+     * Scores the candidates {@code from} (inclusive) to {@code to}
+     * (exclusive).
+     * 
+     * @param from
+     *          the first candidate to score.
+     * @param to
+     *          one past the last candidate to score.
+     * @param scores
+     *          storage for the score of each candidate, starting at 0. A score
+     *          of 0 or less means the candidate cannot be chosen.
+     */
+    abstract void score(int from, int to, float[] scores);
+  }
+
+  /**
+   * Claims and scores ranges until none are left, and keeps the best
+   * candidate it has seen.
+   * 
+   * @author Robert Moore
+   */
+  private static final class ChunkTask implements Callable<Integer> {
+    /**
+     * First candidate that has not been claimed.
+     */
+    final AtomicInteger next;
+    /**
+     * Number of candidates.
+     */
+    final int numItems;
+    /**
+     * Number of workers sharing the candidates.
+     */
+    final int numWorkers;
+    /**
+     * Scorer for this worker.
+     */
+    final RangeScorer scorer;
+    /**
+     * Score of each candidate of the current range.
+     */
+    float[] scores = new float[MIN_CHUNK];
+    /**
+     * Best score seen by this worker.
+     */
+    float bestScore = 0;
+    /**
+     * Index of the best candidate seen by this worker, or -1.
+     */
+    int bestIndex = -1;
+
+    ChunkTask(final AtomicInteger next, final int numItems,
+        final int numWorkers, final RangeScorer scorer) {
+      super();
+      this.next = next;
+      this.numItems = numItems;
+      this.numWorkers = numWorkers;
+      this.scorer = scorer;
+    }
+
+    @Override
+    public Integer call() {
+      int numChunks = 0;
+      while (true) {
+        int from;
+        int to;
+        do {
+          from = this.next.get();
+          if (from >= this.numItems) {
+            return Integer.valueOf(numChunks);
+          }
+          final int remaining = this.numItems - from;
+          to = from
+              + Math.min(remaining,
+                  Math.max(MIN_CHUNK, remaining / (2 * this.numWorkers)));
+        } while (!this.next.compareAndSet(from, to));
+
+        if (this.scores.length < to - from) {
+          this.scores = new float[to - from];
+        }
+        this.scorer.score(from, to, this.scores);
+        // Ranges are claimed in increasing order, so earlier indices win ties
+        for (int i = from; i < to; ++i) {
+          final float score = this.scores[i - from];
+          if (score > this.bestScore) {
+            this.bestScore = score;
+            this.bestIndex = i;
+          }
+        }
+        ++numChunks;
+      }
+    }
+  }
+
+  /**
+   * Scores every candidate and returns the index of the best one.
+   * 
+   * @param numItems
+   *          the number of candidates.
+   * @param scorers
+   *          one scorer per worker.
+   * @param workers
+   *          the worker pool, or {@code null} to score on the calling thread.
+   * @return the index of the highest-scoring candidate, the lowest such index
+   *         if there is a tie, or -1 if no candidate has a positive score.
+   */
+  static int findMax(final int numItems,
+      final List<? extends RangeScorer> scorers, final ExecutorService workers) {
+    final AtomicInteger next = new AtomicInteger(0);
+    final List<ChunkTask> tasks = new ArrayList<ChunkTask>(scorers.size());
+    for (final RangeScorer scorer : scorers) {
+      tasks.add(new ChunkTask(next, numItems, scorers.size(), scorer));
+    }
+    Main.runAll(tasks, workers);
+
+    float bestScore = 0;
+    int bestIndex = -1;
+    for (final ChunkTask task : tasks) {
+      if (task.bestIndex < 0) {
+        continue;
+      }
+      if (task.bestScore > bestScore
+          || (task.bestScore == bestScore && task.bestIndex < bestIndex)) {
+        bestScore = task.bestScore;
+        bestIndex = task.bestIndex;
+      }
+    }
+    return bestIndex;
+  }
+}
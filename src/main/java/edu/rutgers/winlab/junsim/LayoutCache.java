@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Stores randomly generated transmitter layouts so that configurations that
+ * only differ in parameters that don't affect the layout, such as the
+ * experiment type or grid density, can share them. Layouts are stored as
+ * coordinates, and every lookup returns new transmitters since experiments
+ * attach capture disks to them.
+ * 
+ * @author Robert Moore
+ */
+public class LayoutCache {
+
+  /**
+   * Transmitter coordinates, as consecutive (x, y) pairs, keyed by the
+   * parameters that generated them.
+   */
+  private final Map<String, float[]> layouts = new HashMap<String, float[]>();
+
+  /**
+   * Number of lookups that found a stored layout.
+   */
+  private int hits = 0;
+
+  /**
+   * Builds the key of a trial's layout from the parameters of the current
+   * configuration that determine it.
+   * 
+   * @param trialNumber
+   *          the number of the trial.
+   * @return the key of the layout.
+   */
+  static String key(final int trialNumber) {
+    return String.format("%s|%d|%s|%s|%s|%s|%d|%d",
+        Main.config.getTransmitterDistribution(),
+        Integer.valueOf(Main.config.numTransmitters),
+        Float.valueOf(Main.config.squareWidth),
+        Float.valueOf(Main.config.squareHeight),
+        Float.valueOf(Main.config.universeWidth),
+        Float.valueOf(Main.config.universeHeight),
+        Long.valueOf(Main.config.randomSeed), Integer.valueOf(trialNumber));
+  }
+
+  /**
+   * Returns a copy of a stored layout.
+   * 
+   * @param key
+   *          the key of the layout.
+   * @return new transmitters at the stored locations, or {@code null} if
+   *         there is no layout for the key.
+   */
+  public synchronized Collection<Transmitter> get(final String key) {
+    final float[] coords = this.layouts.get(key);
+    if (coords == null) {
+      return null;
+    }
+    ++this.hits;
+    final LinkedList<Transmitter> txers = new LinkedList<Transmitter>();
+    for (int i = 0; i < coords.length; i += 2) {
+      final Transmitter txer = new Transmitter();
+      txer.x = coords[i];
+      txer.y = coords[i + 1];
+      txers.add(txer);
+    }
+    return txers;
+  }
+
+  /**
+   * Stores the locations of a layout.
+   * 
+   * @param key
+   *          the key of the layout.
+   * @param txers
+   *          the transmitters of the layout.
+   */
+  public synchronized void put(final String key,
+      final Collection<Transmitter> txers) {
+    final float[] coords = new float[txers.size() * 2];
+    int i = 0;
+    for (final Transmitter txer : txers) {
+      coords[i++] = txer.x;
+      coords[i++] = txer.y;
+    }
+    this.layouts.put(key, coords);
+  }
+
+  /**
+   * The number of layouts stored.
+   * 
+   * @return the number of layouts.
+   */
+  public synchronized int size() {
+    return this.layouts.size();
+  }
+
+  /**
+   * The number of lookups that found a stored layout.
+   * 
+   * @return the number of cache hits.
+   */
+  public synchronized int getHits() {
+    return this.hits;
+  }
+}
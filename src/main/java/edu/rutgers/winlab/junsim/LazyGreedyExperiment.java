@@ -0,0 +1,461 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lazy-greedy (CELF) version of {@link BasicExperiment}. Removing disks can
+ * only lower the number of disks covering a point, so the number computed for
+ * a point in an earlier round is an upper bound on its current value.
+ * Candidate points are kept in a heap keyed by their last computed value, and
+ * each round only the top of the heap is re-evaluated until the same point
+ * stays on top. Ties go to the point that comes first in the solution point
+ * collection, so the receivers placed are the same as those of
+ * {@code BasicExperiment}.
+ * 
+ * @author Robert Moore
+ * 
+ */
+public class LazyGreedyExperiment implements Experiment {
+
+  private static final Logger log = LoggerFactory
+      .getLogger(LazyGreedyExperiment.class);
+
+  /**
+   * Number of points evaluated by each initial evaluation task.
+   */
+  private static final int POINTS_PER_TASK = 4096;
+
+  /**
+   * Configuration for this task.
+   */
+  final TaskConfig config;
+  /**
+   * Statistics to update.
+   */
+  final ExperimentStats stats[];
+  /**
+   * Name of the directory in which to save images.
+   */
+  String saveDirectory = null;
+  /**
+   * Pool of worker threads to utilize.
+   */
+  private final ExecutorService workers;
+
+  /**
+   * Creates a new experiment task with the specific configuration, global stats
+   * to update, and worker pool.
+   * 
+   * @param config
+   *          configuration to use.
+   * @param stats
+   *          statistics to update at the end
+   * @param workers
+   *          worker threadpool to utilize.
+   */
+  public LazyGreedyExperiment(final TaskConfig config,
+      final ExperimentStats[] stats, final ExecutorService workers) {
+    super();
+    this.workers = workers;
+    this.config = config;
+    this.stats = stats;
+    this.saveDirectory = Main.buildPath(String.format("s%d_t%d_x%d"
+        + (Main.config.stripSolutionPoints ? "_S" : ""),
+        Long.valueOf(Main.config.randomSeed),
+        Integer.valueOf(this.config.numTransmitters),
+        Integer.valueOf(this.config.trialNumber)));
+  }
+
+  /**
+   * Computes the initial coverage count of one block of points.
+   * 
+   * @author Robert Moore
+   * 
+   */
+  private static final class InitialGainTask implements Callable<Integer> {
+    /**
+     * All of the points.
+     */
+    final Point2D[] points;
+    /**
+     * Coverage count of each point, filled in by this task.
+     */
+    final int[] gains;
+    /**
+     * The disks to test against.
+     */
+    final DiskGrid diskIndex;
+    /**
+     * First point of the block.
+     */
+    final int from;
+    /**
+     * One past the last point of the block.
+     */
+    final int to;
+
+    InitialGainTask(final Point2D[] points, final int[] gains,
+        final DiskGrid diskIndex, final int from, final int to) {
+      super();
+      this.points = points;
+      this.gains = gains;
+      this.diskIndex = diskIndex;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public Integer call() {
+      final int numPoints = this.to - this.from;
+      final float[] px = new float[numPoints];
+      final float[] py = new float[numPoints];
+      for (int p = 0; p < numPoints; ++p) {
+        px[p] = (float) this.points[this.from + p].getX();
+        py[p] = (float) this.points[this.from + p].getY();
+      }
+      final int[] counts = new int[numPoints];
+      this.diskIndex.countCoverage(px, py, numPoints,
+          Main.createCoverageEvaluator(), counts);
+      System.arraycopy(counts, 0, this.gains, this.from, numPoints);
+      return Integer.valueOf(numPoints);
+    }
+  }
+
+  /**
+   * Binary max-heap of point indices, ordered by gain and then by lowest
+   * index.
+   * 
+   * @author Robert Moore
+   * 
+   */
+  private static final class GainHeap {
+    /**
+     * Point index of each heap entry.
+     */
+    private final int[] points;
+    /**
+     * Gain of each heap entry.
+     */
+    private final int[] gains;
+    /**
+     * Round in which the gain of each heap entry was computed.
+     */
+    private final int[] rounds;
+    /**
+     * Number of entries in the heap.
+     */
+    private int size = 0;
+
+    GainHeap(final int capacity) {
+      super();
+      this.points = new int[capacity];
+      this.gains = new int[capacity];
+      this.rounds = new int[capacity];
+    }
+
+    boolean isEmpty() {
+      return this.size == 0;
+    }
+
+    int topPoint() {
+      return this.points[0];
+    }
+
+    int topGain() {
+      return this.gains[0];
+    }
+
+    int topRound() {
+      return this.rounds[0];
+    }
+
+    /**
+     * Whether entry {@code a} belongs above entry {@code b}.
+     */
+    private boolean above(final int a, final int b) {
+      return this.gains[a] > this.gains[b]
+          || (this.gains[a] == this.gains[b] && this.points[a] < this.points[b]);
+    }
+
+    private void swap(final int a, final int b) {
+      int tmp = this.points[a];
+      this.points[a] = this.points[b];
+      this.points[b] = tmp;
+      tmp = this.gains[a];
+      this.gains[a] = this.gains[b];
+      this.gains[b] = tmp;
+      tmp = this.rounds[a];
+      this.rounds[a] = this.rounds[b];
+      this.rounds[b] = tmp;
+    }
+
+    void add(final int point, final int gain, final int round) {
+      int i = this.size++;
+      this.points[i] = point;
+      this.gains[i] = gain;
+      this.rounds[i] = round;
+      while (i > 0 && this.above(i, (i - 1) / 2)) {
+        this.swap(i, (i - 1) / 2);
+        i = (i - 1) / 2;
+      }
+    }
+
+    /**
+     * Replaces the gain of the top entry and restores the heap order.
+     */
+    void updateTop(final int gain, final int round) {
+      this.gains[0] = gain;
+      this.rounds[0] = round;
+      this.siftDown(0);
+    }
+
+    void removeTop() {
+      --this.size;
+      if (this.size > 0) {
+        this.swap(0, this.size);
+        this.siftDown(0);
+      }
+    }
+
+    private void siftDown(int i) {
+      while (true) {
+        final int left = 2 * i + 1;
+        if (left >= this.size) {
+          return;
+        }
+        int child = left;
+        if (left + 1 < this.size && this.above(left + 1, left)) {
+          child = left + 1;
+        }
+        if (!this.above(child, i)) {
+          return;
+        }
+        this.swap(i, child);
+        i = child;
+      }
+    }
+  }
+
+  /**
+   * Computes the coverage count of every solution point and fills a heap with
+   * the covered points.
+   * 
+   * @param points
+   *          the solution points.
+   * @param diskIndex
+   *          the live disks.
+   * @param round
+   *          the current round.
+   * @return a heap of the points covered by at least one disk.
+   */
+  private GainHeap buildHeap(final Point2D[] points, final DiskGrid diskIndex,
+      final int round) {
+    final long start = System.currentTimeMillis();
+    final int[] gains = new int[points.length];
+    final List<InitialGainTask> tasks = new ArrayList<InitialGainTask>();
+    for (int from = 0; from < points.length; from += POINTS_PER_TASK) {
+      tasks.add(new InitialGainTask(points, gains, diskIndex, from, Math.min(
+          points.length, from + POINTS_PER_TASK)));
+    }
+    Main.runAll(tasks, this.workers);
+    final GainHeap heap = new GainHeap(points.length);
+    for (int p = 0; p < points.length; ++p) {
+      if (gains[p] > 0) {
+        heap.add(p, gains[p], round);
+      }
+    }
+    log.info(String.format("Evaluated %,d points in %,dms.\n",
+        Integer.valueOf(points.length),
+        Long.valueOf(System.currentTimeMillis() - start)));
+    return heap;
+  }
+
+  /**
+   * Collects the solution points that have not been chosen as receivers.
+   * 
+   * @param points
+   *          the solution points.
+   * @param taken
+   *          the indices of the points chosen as receivers.
+   * @return the other points.
+   */
+  private static List<Point2D> remainingPoints(final Point2D[] points,
+      final BitSet taken) {
+    final List<Point2D> remaining = new ArrayList<Point2D>(points.length
+        - taken.cardinality());
+    for (int p = taken.nextClearBit(0); p < points.length; p = taken
+        .nextClearBit(p + 1)) {
+      remaining.add(points[p]);
+    }
+    return remaining;
+  }
+
+  public Boolean perform() {
+    final FileRenderer display = new FileRenderer(Main.gfxConfig);
+
+    if (Main.gfxConfig.generateImages) {
+      display.setTransmitters(this.config.transmitters);
+      final String saveName = this.saveDirectory + File.separator + "1000";
+      Main.saveImage(display, saveName);
+      display.clear();
+    }
+
+    // Compute all possible capture disks
+    final CaptureDiskTable disks = Main
+        .generateCaptureDisks(this.config.transmitters, this.workers);
+    final DiskGrid diskIndex = new DiskGrid(disks);
+    if (Main.gfxConfig.generateImages) {
+      display.setTransmitters(this.config.transmitters);
+      display.setCaptureDisks(disks.getLiveDisks());
+      final String saveName = this.saveDirectory + File.separator + "1000";
+      Main.saveImage(display, saveName);
+      display.clear();
+    }
+    log.info("[" + this.config.trialNumber + "] Generated " + disks.size()
+        + " disks.");
+
+    Collection<Point2D> solutionPoints = BasicExperiment
+        .generateSolutionPoints(disks, this.config.transmitters);
+    log.info(String.format("[%d] Generated %,d solution points.\n",
+        Integer.valueOf(this.config.trialNumber),
+        Integer.valueOf(solutionPoints.size())));
+
+    Point2D[] points = solutionPoints.toArray(new Point2D[solutionPoints
+        .size()]);
+    GainHeap heap = this.buildHeap(points, diskIndex, 0);
+    // Points already chosen as receivers, only needed to draw the rest
+    BitSet taken = new BitSet(points.length);
+
+    final int totalCaptureDisks = disks.size();
+    int m = 0;
+
+    // Removed disks are counted as covered, and each covered disk is one
+    // captured collision of its transmitter
+    final TransmitterCounters counters = disks.getCounters();
+
+    while (m < this.config.numReceivers && !heap.isEmpty() && !disks.isEmpty()) {
+      log.info("[" + this.config.trialNumber
+          + "] Calculating position for receiver " + (m + 1) + ".");
+
+      /*
+       * Re-evaluate the top of the heap until a point that was evaluated in
+       * this round is on top. Points that are no longer covered by any disk
+       * are dropped.
+       */
+      int evaluations = 0;
+      while (!heap.isEmpty() && heap.topRound() != m) {
+        final Point2D p = points[heap.topPoint()];
+        final int gain = diskIndex.countCovering(p.getX(), p.getY());
+        ++evaluations;
+        if (gain == 0) {
+          heap.removeTop();
+        } else {
+          heap.updateTop(gain, m);
+        }
+      }
+      log.info(String.format("Re-evaluated %,d points.\n",
+          Integer.valueOf(evaluations)));
+      if (heap.isEmpty()) {
+        break;
+      }
+      final Point2D bestPoint = points[heap.topPoint()];
+      taken.set(heap.topPoint());
+      heap.removeTop();
+
+      final Receiver maxReceiver = new Receiver();
+      maxReceiver.setLocation(bestPoint);
+      maxReceiver.coveringDisks = diskIndex.collectCovering(bestPoint.getX(),
+          bestPoint.getY());
+
+      // Add the newest receiver and remove newly covered disks
+      this.config.receivers.add(maxReceiver);
+      disks.removeAll(maxReceiver.coveringDisks);
+      diskIndex.removeAll(maxReceiver.coveringDisks);
+
+      // Calculate collision rates for each transmitter
+      // Store the min, max, and mean
+      float mean_contention = 0.0f;
+      float min_contention = this.config.numTransmitters;
+      float max_contention = 0.0f;
+      for (int t = 0; t < counters.numTransmitters(); ++t) {
+        // Calculate the number of transmitters in contention
+        // Subtract 1 because this transmitter can never be in contention with
+        // itself
+        final int num_in_contention = this.config.numTransmitters - 1
+            - counters.coveredDisks[t];
+
+        min_contention = Math.min(num_in_contention, min_contention);
+        max_contention = Math.max(num_in_contention, max_contention);
+        mean_contention += (float) num_in_contention
+            / this.config.numTransmitters;
+      }
+      this.stats[m].addContention(mean_contention);
+      this.stats[m].addMinContention(min_contention);
+      this.stats[m].addMaxContention(max_contention);
+
+      final float capturedDisks = totalCaptureDisks - disks.size();
+      final float captureRatio = (capturedDisks / totalCaptureDisks);
+      // Debugging stuff
+      if (Main.gfxConfig.generateImages) {
+        display.setTransmitters(this.config.transmitters);
+        display.setSolutionPoints(LazyGreedyExperiment.remainingPoints(
+            points, taken));
+        display.setCaptureDisks(disks.getLiveDisks());
+        display.setReceiverPoints(this.config.receivers);
+
+        final String saveName = String.format(this.saveDirectory
+            + File.separator + "1%03d", Integer.valueOf(m + 1));
+        Main.saveImage(display, saveName);
+        display.clear();
+      }
+
+      this.stats[m].addCoverage(captureRatio);
+      ++m;
+      // Recompute solution points based on remaining disks
+      if (Main.config.stripSolutionPoints) {
+        solutionPoints.clear();
+        solutionPoints = BasicExperiment.generateSolutionPoints(disks,
+            this.config.transmitters);
+        log.info("[" + this.config.trialNumber + "] Regenerated "
+            + solutionPoints.size() + " solution points.");
+        points = solutionPoints.toArray(new Point2D[solutionPoints.size()]);
+        heap = this.buildHeap(points, diskIndex, m);
+        taken = new BitSet(points.length);
+      }
+
+    } // End for each receiver
+
+    disks.clear();
+    solutionPoints.clear();
+    this.config.transmitters.clear();
+    Runtime.getRuntime().gc();
+    return Boolean.TRUE;
+  }
+}
@@ -28,13 +28,19 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
@@ -64,20 +70,40 @@ public class Main {
   static RenderConfig gfxConfig = new RenderConfig();
 
   /**
-   * Random number generator.
+   * Random number generator for the transmitter locations of the current
+   * trial.
    */
   static Random rand;
 
   /**
-   * Worker threads for executing parallel tasks.
+   * Worker threads for executing parallel tasks. While trials run
+   * concurrently, the pool gives up one thread for each trial thread.
    */
-  static ExecutorService workers = null;
+  static ThreadPoolExecutor workers = null;
 
   /**
    * Maximum number of worker threads to use.
    */
   static int maxConcurrentTasks = 1;
 
+  /**
+   * Threads for running trials concurrently, or {@code null} if trials are
+   * run one after another. Trials submit their parallel tasks to
+   * {@link #workers}.
+   */
+  static ExecutorService trialWorkers = null;
+
+  /**
+   * Previously generated transmitter layouts, or {@code null} to generate
+   * every layout again.
+   */
+  static LayoutCache layouts = null;
+
+  /**
+   * Column headings of the results table.
+   */
+  static final String STATS_HEADER = "# Tx, # Rx, Min % Covered, Med. % Covered, Mean % Covered, 95% Coverage, Max % Covered, Min Contention, Med. Contention, Mean Contention, 95% Contention, Max Contention";
+
   /**
    * Parses the commandline arguments and starts the simulation.
    * 
@@ -96,8 +122,17 @@ public class Main {
     } else {
       System.out.println("Using built-in default configuration.");
     }
-    rand = new Random(Main.config.randomSeed);
+    Main.initialize();
+    doSimulation();
+
+  }
 
+  /**
+   * Reads the rendering configuration and starts the worker threads, based
+   * on the current configuration.
+   */
+  static void initialize() {
+    XStream configReader = new XStream();
     try {
       RenderConfig rConf = (RenderConfig) configReader.fromXML(new File(
           config.renderConfig));
@@ -111,12 +146,12 @@ public class Main {
 
     if (Main.config.numThreads < 1) {
       Main.config.numThreads = Runtime.getRuntime().availableProcessors();
-      workers = Executors.newFixedThreadPool(Main.config.numThreads);
+      workers = Main.createWorkers(Main.config.numThreads);
       maxConcurrentTasks = Main.config.numThreads;
       System.out.println("Using " + Main.config.numThreads
           + " threads based on process availability.");
     } else {
-      workers = Executors.newFixedThreadPool(Main.config.numThreads);
+      workers = Main.createWorkers(Main.config.numThreads);
       maxConcurrentTasks = Main.config.numThreads;
       System.out.println("Using " + Main.config.numThreads
           + " threads based on configuration file.");
@@ -127,11 +162,40 @@ public class Main {
       @Override
       public void run() {
         Main.workers.shutdownNow();
+        if (Main.trialWorkers != null) {
+          Main.trialWorkers.shutdownNow();
+        }
       }
     });
+  }
 
-    doSimulation();
+  /**
+   * Creates a fixed-size pool of worker threads that can be resized later.
+   * 
+   * @param numThreads
+   *          the number of threads.
+   * @return the new pool.
+   */
+  static ThreadPoolExecutor createWorkers(final int numThreads) {
+    return new ThreadPoolExecutor(numThreads, numThreads, 0L,
+        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+  }
 
+  /**
+   * Changes the number of worker threads. Threads beyond the new size exit
+   * once their current task finishes.
+   * 
+   * @param numThreads
+   *          the new number of threads.
+   */
+  static void resizeWorkers(final int numThreads) {
+    if (numThreads < workers.getCorePoolSize()) {
+      workers.setCorePoolSize(numThreads);
+      workers.setMaximumPoolSize(numThreads);
+    } else {
+      workers.setMaximumPoolSize(numThreads);
+      workers.setCorePoolSize(numThreads);
+    }
   }
 
   /**
@@ -160,6 +224,39 @@ public class Main {
     // PrintWriter receiverWriter = new PrintWriter(new FileWriter(
     // Main.buildPath(config.getReceiversFile())));
 
+    fileWriter.println(STATS_HEADER);
+
+    ExperimentStats[] stats = Main.runTrials();
+
+    workers.shutdown();
+    System.out.println("Waiting up to 60 seconds for threadpool to terminate.");
+    try {
+      workers.awaitTermination(60, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      // TODO Auto-generated catch block
+      e.printStackTrace();
+    }
+
+    // # Tx, # Rx, Min % Covered, Med. %
+    // Covered, Mean % Covered, Max % Covered, 95% Coverage
+    for (ExperimentStats s : stats) {
+      fileWriter.printf("%s\n", Main.formatStats(s));
+    }
+    fileWriter.flush();
+    fileWriter.close();
+  }
+
+  /**
+   * Runs every trial of the current configuration and collects their
+   * statistics. Receiver and transmitter locations are read from the
+   * configured files if they exist, except that a resumed run takes its
+   * transmitter layout from the layout file of the run being resumed.
+   * 
+   * @return the statistics of all trials, one for each number of receivers.
+   * @throws IOException
+   *           if an input or output file cannot be read or written.
+   */
+  static ExperimentStats[] runTrials() throws IOException {
     Collection<Receiver> receivers = new LinkedList<Receiver>();
     File receiversFile = null;
     if (config.getReceiversFile() != null
@@ -193,223 +290,501 @@ public class Main {
         && config.getTransmittersFile().trim().length() > 0) {
       transmittersFile = new File(Main.buildPath(config.getTransmittersFile()
           .trim()));
-      if (transmittersFile.exists() && transmittersFile.canRead()) {
-        BufferedReader txReader = new BufferedReader(new FileReader(
-            transmittersFile));
-        String line = null;
-        while ((line = txReader.readLine()) != null) {
-          String[] components = line.split("\\s+");
-          if (components.length < 2) {
-            log.info("Skipping line \"{}\".", line);
-            continue;
-          }
-          float xPos = Float.parseFloat(components[0]);
-          float yPos = Float.parseFloat(components[1]);
-          final Transmitter txer = new Transmitter();
-          txer.x = xPos;
-          txer.y = yPos;
-          transmitters.add(txer);
-        }
+      if (Main.config.resume) {
+        transmitters = Main.resumeLayout(transmittersFile);
+      } else if (transmittersFile.exists() && transmittersFile.canRead()) {
+        transmitters = Main.readTransmitters(transmittersFile);
       }
 
     }
     boolean generateTransmitters = transmitters.isEmpty();
-
-    ExperimentStats[] stats = new ExperimentStats[Main.config.numReceivers];
-    for (int i = 0; i < stats.length; ++i) {
-      stats[i] = new ExperimentStats();
-      stats[i].numberReceivers = i + 1;
-      stats[i].numberTransmitters = generateTransmitters ? Main.config.numTransmitters
-          : transmitters.size();
+    if (Main.config.checkpoints) {
+      Main.writeLayout(generateTransmitters ? new LinkedList<Transmitter>()
+          : transmitters);
     }
 
-    fileWriter
-        .println("# Tx, # Rx, Min % Covered, Med. % Covered, Mean % Covered, 95% Coverage, Max % Covered, Min Contention, Med. Contention, Mean Contention, 95% Contention, Max Contention");
+    ExperimentStats[] stats = Main
+        .createStats(generateTransmitters ? Main.config.numTransmitters
+            : transmitters.size());
+
+    final SeedSequence masterSeeds = new SeedSequence(Main.config.randomSeed);
+    final LinkedList<Future<ExperimentStats[]>> pendingTrials = new LinkedList<Future<ExperimentStats[]>>();
+    // Each trial thread generates disks and candidates itself, so it takes
+    // the place of a worker thread
+    final int numTrialThreads = (int) Math.min(Math.min(
+        Main.config.concurrentTrials, Main.config.numTrials),
+        maxConcurrentTasks - 1);
+    if (numTrialThreads > 1) {
+      trialWorkers = Executors.newFixedThreadPool(numTrialThreads);
+      Main.resizeWorkers(maxConcurrentTasks - numTrialThreads);
+    }
 
     // Iterate through some number of trials
-    for (int trialNumber = 0; trialNumber < Main.config.numTrials; ++trialNumber) {
+    final long lastTrial = Main.config.firstTrial + Main.config.numTrials;
+    for (int trialNumber = Main.config.firstTrial; trialNumber < lastTrial; ++trialNumber) {
+      final SeedSequence trialSeeds = masterSeeds.child(trialNumber);
 
       // Randomly generate transmitter locations
       if (generateTransmitters) {
-        if (Main.config.getTransmitterDistribution().startsWith("clustered")) {
-
-          float probability = 0.5f;
-          float radius = 0.1f;
-          String[] parts = Main.config.getTransmitterDistribution()
-              .split("\\s");
-          if (parts.length > 1 && parts[1].length() > 0) {
-            probability = Float.parseFloat(parts[1]);
-            if (parts.length > 2 && parts[2].length() > 0) {
-              radius = Float.parseFloat(parts[2]);
-            }
+        final String layoutKey = LayoutCache.key(trialNumber);
+        transmitters = Main.layouts == null ? null : Main.layouts
+            .get(layoutKey);
+        if (transmitters == null) {
+          Main.rand = trialSeeds.child(TaskConfig.LAYOUT_PHASE).newRandom();
+          transmitters = Main.generateTransmitterLocations();
+          if (Main.layouts != null) {
+            Main.layouts.put(layoutKey, transmitters);
           }
-          transmitters = Main.generateClusteredTransmitterLocations(
-              Main.config.numTransmitters, probability, radius);
         }
-        // "Rectangled" distribution (inside big box, outside small box)
-        else if (Main.config.getTransmitterDistribution().startsWith(
-            "rectangled")) {
-          float width = Math.min(Main.config.squareWidth,
-              Main.config.squareHeight) * .1f;
+        PrintWriter txWriter = new PrintWriter(new FileWriter(
+            Main.buildPath(Main.config.getTransmittersFile())));
+        for (Transmitter txer : transmitters) {
+          txWriter.printf("%.2f %.2f\n", txer.x, txer.y);
+        }
+        txWriter.flush();
+        txWriter.close();
+      }
 
-          String[] parts = Main.config.getTransmitterDistribution()
-              .split("\\s");
-          if (parts.length > 1 && parts[1].length() > 0) {
-            width = Float.parseFloat(parts[1]);
+      TaskConfig conf = new TaskConfig();
+      conf.trialNumber = trialNumber;
+      conf.numTransmitters = transmitters.size();
+      conf.numReceivers = Main.config.numReceivers;
+      conf.seeds = trialSeeds;
 
-          }
-          transmitters = Main.generateRectangledTransmitterLocations(
-              Main.config.numTransmitters, width);
-        }
-        // "Circled" distribution (inside big box, outside small box)
-        else if (Main.config.getTransmitterDistribution().startsWith("circled")) {
-          float width = Math.min(Main.config.squareWidth,
-              Main.config.squareHeight) * .1f;
+      // Every trial gets its own copies, whether or not it runs concurrently,
+      // since trials add the receivers they place and clear the transmitters
+      // when they finish
+      conf.transmitters = Main.copyTransmitters(transmitters);
+      conf.receivers = Main.copyReceivers(receivers);
 
-          String[] parts = Main.config.getTransmitterDistribution()
-              .split("\\s");
-          if (parts.length > 1 && parts[1].length() > 0) {
-            width = Float.parseFloat(parts[1]);
+      if (trialWorkers == null) {
+        Main.runTrial(conf, stats);
+        continue;
+      }
 
-          }
-          transmitters = Main.generateCircledTransmitterLocations(
-              Main.config.numTransmitters, width);
-        }
-        // "Sine wave" distribution
-        else if (Main.config.getTransmitterDistribution().startsWith("sine")) {
-          float radius = Math.min(Main.config.squareWidth,
-              Main.config.squareHeight) * .2f;
+      while (pendingTrials.size() >= Main.config.concurrentTrials) {
+        Main.mergeTrial(pendingTrials.removeFirst(), stats);
+      }
+      pendingTrials.add(trialWorkers.submit(new TrialTask(conf, Main
+          .createStats(conf.numTransmitters))));
+    } // End number of trials
 
-          String[] parts = Main.config.getTransmitterDistribution()
-              .split("\\s");
-          if (parts.length > 1 && parts[1].length() > 0) {
-            radius = Float.parseFloat(parts[1]);
+    while (!pendingTrials.isEmpty()) {
+      Main.mergeTrial(pendingTrials.removeFirst(), stats);
+    }
+    if (trialWorkers != null) {
+      trialWorkers.shutdown();
+      trialWorkers = null;
+      Main.resizeWorkers(maxConcurrentTasks);
+    }
+    return stats;
+  }
 
-          }
-          transmitters = Main.generateSineTransmitterLocations(
-              Main.config.numTransmitters, radius);
-        }
-        // "Dumbbell" distribution
-        else if (Main.config.getTransmitterDistribution()
-            .startsWith("dumbbell")) {
-          float width = Math.min(Main.config.squareWidth,
-              Main.config.squareHeight) * .2f;
+  /**
+   * The file next to the checkpoints that records the transmitter layout of a
+   * checkpointed run: the layout it read from the transmitters file, or
+   * nothing if it generated its layouts.
+   * 
+   * @return the layout file of the current configuration.
+   */
+  static File layoutFile() {
+    return new File(Main.buildPath(String.format("checkpoint_s%d_layout.ssv",
+        Long.valueOf(Main.config.randomSeed))));
+  }
 
-          String[] parts = Main.config.getTransmitterDistribution()
-              .split("\\s");
-          if (parts.length > 1 && parts[1].length() > 0) {
-            width = Float.parseFloat(parts[1]);
+  /**
+   * Records the transmitter layout of a checkpointed run in its layout file,
+   * at full precision so that the checkpoints' layout hashes still match when
+   * it is read back.
+   * 
+   * @param transmitters
+   *          the layout read from the transmitters file, or an empty
+   *          collection if layouts are generated.
+   * @throws IOException
+   *           if the layout file cannot be written.
+   */
+  static void writeLayout(final Collection<Transmitter> transmitters)
+      throws IOException {
+    final File layoutFile = Main.layoutFile();
+    if (layoutFile.getParentFile() != null) {
+      layoutFile.getParentFile().mkdirs();
+    }
+    final PrintWriter layoutWriter = new PrintWriter(new FileWriter(layoutFile));
+    for (final Transmitter txer : transmitters) {
+      layoutWriter.printf("%s %s\n", Float.toString(txer.x),
+          Float.toString(txer.y));
+    }
+    layoutWriter.flush();
+    layoutWriter.close();
+  }
 
-          }
-          transmitters = Main.generateDumbbellTransmitterLocations(
-              Main.config.numTransmitters, width);
+  /**
+   * Finds the transmitter layout of the run being resumed. The transmitters
+   * file is only an output of runs that generate their layouts, so it is never
+   * read; the layout file says whether the run read a layout, and holds it if
+   * so.
+   * 
+   * @param transmittersFile
+   *          the configured transmitters file.
+   * @return the layout of the run being resumed, or an empty collection if it
+   *         generated its layouts.
+   * @throws IOException
+   *           if the layout file cannot be read, or is missing while the
+   *           transmitters file may be an input.
+   */
+  static Collection<Transmitter> resumeLayout(final File transmittersFile)
+      throws IOException {
+    final File layoutFile = Main.layoutFile();
+    if (layoutFile.exists()) {
+      final Collection<Transmitter> transmitters = Main
+          .readTransmitters(layoutFile);
+      log.info("Resuming with the transmitter layout {}.",
+          transmitters.isEmpty() ? "generated from the random seed"
+              : "saved in " + layoutFile);
+      return transmitters;
+    }
+    if (transmittersFile.exists() && transmittersFile.length() > 0) {
+      throw new IOException("Unable to resume: " + layoutFile
+          + " is missing, so " + transmittersFile
+          + " may be an input layout that would be overwritten."
+          + " If the interrupted run wrote it, delete it and resume again.");
+    }
+    return new LinkedList<Transmitter>();
+  }
+
+  /**
+   * Reads transmitter locations, one "x y" pair per line.
+   * 
+   * @param file
+   *          the file to read.
+   * @return the transmitters, in the order they were listed.
+   * @throws IOException
+   *           if the file cannot be read.
+   */
+  static Collection<Transmitter> readTransmitters(final File file)
+      throws IOException {
+    final Collection<Transmitter> transmitters = new LinkedList<Transmitter>();
+    BufferedReader txReader = new BufferedReader(new FileReader(file));
+    try {
+      String line = null;
+      while ((line = txReader.readLine()) != null) {
+        String[] components = line.split("\\s+");
+        if (components.length < 2) {
+          log.info("Skipping line \"{}\".", line);
+          continue;
         }
-        // "Plus" (+) distribution
-        else if (Main.config.getTransmitterDistribution().startsWith("plus")) {
-          float width = .2f;
+        float xPos = Float.parseFloat(components[0]);
+        float yPos = Float.parseFloat(components[1]);
+        final Transmitter txer = new Transmitter();
+        txer.x = xPos;
+        txer.y = yPos;
+        transmitters.add(txer);
+      }
+    } finally {
+      txReader.close();
+    }
+    return transmitters;
+  }
 
-          String[] parts = Main.config.getTransmitterDistribution()
-              .split("\\s");
-          if (parts.length > 1 && parts[1].length() > 0) {
-            width = Float.parseFloat(parts[1]);
+  /**
+   * Formats the statistics for one number of receivers as a row of the
+   * results table.
+   * 
+   * @param s
+   *          the statistics to format.
+   * @return the row of comma-separated values, without a line terminator.
+   */
+  static String formatStats(final ExperimentStats s) {
+    return String.format(
+        "%d, %d, %.4f, %.4f, %.4f, %.4f, %.4f, %.5f, %.5f, %.5f, %.5f, %.5f",
+        Integer.valueOf(s.numberTransmitters),
+        Integer.valueOf(s.numberReceivers),
+        Float.valueOf(s.getMinCoverage()),
+        Float.valueOf(s.getMedianCoverage()),
+        Float.valueOf(s.getMeanCoverage()),
+        Float.valueOf(s.get95PercentileCoverage()),
+        Float.valueOf(s.getMaxCoverage()),
+        Float.valueOf(s.getMinContention()),
+        Float.valueOf(s.getMedianContention()),
+        Float.valueOf(s.getMeanContention()),
+        Float.valueOf(s.get95PercentileContention()),
+        Float.valueOf(s.getMaxContention()));
+  }
 
-          }
-          transmitters = Main.generatePlusTransmitterLocations(
-              Main.config.numTransmitters, width);
-        }
-        // Random with "holes" distribution
-        else if (Main.config.getTransmitterDistribution().startsWith("2-holes")) {
-          float width = .2f;
+  /**
+   * Creates the statistics for each number of receivers in a trial.
+   * 
+   * @param numTransmitters
+   *          the number of transmitters in each trial.
+   * @return one statistics object for each number of receivers.
+   */
+  static ExperimentStats[] createStats(final int numTransmitters) {
+    ExperimentStats[] stats = new ExperimentStats[Main.config.numReceivers];
+    for (int i = 0; i < stats.length; ++i) {
+      stats[i] = new ExperimentStats();
+      stats[i].numberReceivers = i + 1;
+      stats[i].numberTransmitters = numTransmitters;
+    }
+    return stats;
+  }
 
-          String[] parts = Main.config.getTransmitterDistribution()
-              .split("\\s");
-          if (parts.length > 1 && parts[1].length() > 0) {
-            width = Float.parseFloat(parts[1]);
+  /**
+   * Places the receivers of a single trial, records the statistics and writes
+   * the receiver locations to the trial's receivers file.
+   * 
+   * @param conf
+   *          the configuration of the trial.
+   * @param stats
+   *          the statistics to record the results in.
+   * @throws IOException
+   *           if the receivers file cannot be written.
+   */
+  static void runTrial(final TaskConfig conf, final ExperimentStats[] stats)
+      throws IOException {
+    Experiment task;
+    if ("binned".equalsIgnoreCase(config.experimentType)) {
+      task = new BinnedBasicExperiment(conf, stats, workers);
+    } else if ("grid".equalsIgnoreCase(config.experimentType)) {
+      task = new BinnedGridExperiment(conf, stats, workers);
+    } else if ("recursive".equalsIgnoreCase(config.experimentType)) {
+      task = new BinnedRecurGridExperiment(conf, stats, workers);
+    } else if ("fair".equalsIgnoreCase(config.experimentType)){
+       task = new AdaptiveFairExperiment(conf, stats, workers);
+    } else if ("lazy".equalsIgnoreCase(config.experimentType)) {
+      task = new LazyGreedyExperiment(conf, stats, workers);
+    } else if ("sweep".equalsIgnoreCase(config.experimentType)) {
+      task = new SweepExperiment(conf, stats, workers);
+    } else if ("branchbound".equalsIgnoreCase(config.experimentType)) {
+      task = new BranchBoundExperiment(conf, stats, workers);
+    }else {
+      task = new BasicExperiment(conf, stats, workers);
+    }
+    task.perform();
+    String prefix = "";
+    if (Main.config.numTrials > 1 || Main.config.firstTrial > 0) {
+      prefix = Integer.valueOf(conf.trialNumber).toString();
+    }
+    PrintWriter rxWriter = new PrintWriter(new FileWriter(
+        Main.buildPath(prefix + Main.config.getReceiversFile())));
+    for (Receiver rxer : conf.receivers) {
+      rxWriter.printf("%.2f %.2f %d\n", rxer.x, rxer.y,
+          rxer.coveringDisks.size());
+    }
+    rxWriter.flush();
+    rxWriter.close();
+  }
 
-          }
-          transmitters = Main.generate2HolesTransmitterLocations(
-              Main.config.numTransmitters, width);
-        }
-        // Basic uniform random distribution
-        else {
-          transmitters = Main
-              .generateUniformTransmitterLocations(Main.config.numTransmitters);
-        }
-        PrintWriter txWriter = new PrintWriter(new FileWriter(
-            Main.buildPath(Main.config.getTransmittersFile())));
-        for (Transmitter txer : transmitters) {
-          txWriter.printf("%.2f %.2f\n", txer.x, txer.y);
+  /**
+   * Runs a single trial on one of the trial threads, recording its results in
+   * statistics of its own.
+   * 
+   * @author Robert Moore
+   */
+  private static final class TrialTask implements
+      Callable<ExperimentStats[]> {
+    /**
+     * Configuration of the trial.
+     */
+    final TaskConfig conf;
+    /**
+     * Statistics of this trial only.
+     */
+    final ExperimentStats[] stats;
+
+    TrialTask(final TaskConfig conf, final ExperimentStats[] stats) {
+      super();
+      this.conf = conf;
+      this.stats = stats;
+    }
+
+    @Override
+    public ExperimentStats[] call() throws IOException {
+      Main.runTrial(this.conf, this.stats);
+      return this.stats;
+    }
+  }
+
+  /**
+   * Waits for a concurrent trial to complete and adds its statistics to the
+   * overall results. Trials are merged in the order they were started so that
+   * the results don't depend on which trial finishes first.
+   * 
+   * @param trial
+   *          the pending trial.
+   * @param stats
+   *          the overall statistics.
+   * @throws IOException
+   *           if the trial was unable to write its output.
+   */
+  private static void mergeTrial(final Future<ExperimentStats[]> trial,
+      final ExperimentStats[] stats) throws IOException {
+    final ExperimentStats[] trialStats;
+    try {
+      trialStats = trial.get();
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IllegalStateException("Trial failed.", e.getCause());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for trial.",
+          e);
+    }
+    for (int i = 0; i < stats.length; ++i) {
+      stats[i].addAll(trialStats[i]);
+    }
+  }
+
+  /**
+   * Copies the locations of a set of transmitters, without any of their
+   * capture disks.
+   * 
+   * @param txers
+   *          the transmitters to copy.
+   * @return new transmitters at the same locations.
+   */
+  static Collection<Transmitter> copyTransmitters(
+      final Collection<Transmitter> txers) {
+    LinkedList<Transmitter> copies = new LinkedList<Transmitter>();
+    for (Transmitter tx : txers) {
+      Transmitter copy = new Transmitter();
+      copy.x = tx.x;
+      copy.y = tx.y;
+      copies.add(copy);
+    }
+    return copies;
+  }
+
+  /**
+   * Copies the locations of a set of receivers, without their covering disks.
+   * 
+   * @param rxers
+   *          the receivers to copy.
+   * @return new receivers at the same locations.
+   */
+  static Collection<Receiver> copyReceivers(final Collection<Receiver> rxers) {
+    LinkedList<Receiver> copies = new LinkedList<Receiver>();
+    for (Receiver rx : rxers) {
+      Receiver copy = new Receiver();
+      copy.x = rx.x;
+      copy.y = rx.y;
+      copies.add(copy);
+    }
+    return copies;
+  }
+
+  /**
+   * Randomly generates transmitter locations using the distribution named in
+   * the configuration and the current layout random number generator.
+   * 
+   * @return the generated transmitters.
+   */
+  static Collection<Transmitter> generateTransmitterLocations() {
+    if (Main.config.getTransmitterDistribution().startsWith("clustered")) {
+
+      float probability = 0.5f;
+      float radius = 0.1f;
+      String[] parts = Main.config.getTransmitterDistribution()
+          .split("\\s");
+      if (parts.length > 1 && parts[1].length() > 0) {
+        probability = Float.parseFloat(parts[1]);
+        if (parts.length > 2 && parts[2].length() > 0) {
+          radius = Float.parseFloat(parts[2]);
         }
-        txWriter.flush();
-        txWriter.close();
-      } else {
-        Main.generateUniformTransmitterLocations(Main.config.numTransmitters);
       }
+      return Main.generateClusteredTransmitterLocations(
+          Main.config.numTransmitters, probability, radius);
+    }
+    // "Rectangled" distribution (inside big box, outside small box)
+    else if (Main.config.getTransmitterDistribution().startsWith(
+        "rectangled")) {
+      float width = Math.min(Main.config.squareWidth,
+          Main.config.squareHeight) * .1f;
+
+      String[] parts = Main.config.getTransmitterDistribution()
+          .split("\\s");
+      if (parts.length > 1 && parts[1].length() > 0) {
+        width = Float.parseFloat(parts[1]);
 
-      TaskConfig conf = new TaskConfig();
-      conf.trialNumber = trialNumber;
-      conf.numTransmitters = transmitters.size();
-      conf.transmitters = transmitters;
-      conf.numReceivers = Main.config.numReceivers;
-      conf.receivers = receivers;
-
-      Experiment task;
-      if ("binned".equalsIgnoreCase(config.experimentType)) {
-        task = new BinnedBasicExperiment(conf, stats, workers);
-      } else if ("grid".equalsIgnoreCase(config.experimentType)) {
-        task = new BinnedGridExperiment(conf, stats, workers);
-      } else if ("recursive".equalsIgnoreCase(config.experimentType)) {
-        task = new BinnedRecurGridExperiment(conf, stats, workers);
-      } else if ("fair".equalsIgnoreCase(config.experimentType)){
-         task = new AdaptiveFairExperiment(conf, stats, workers);
-      }else {
-        task = new BasicExperiment(conf, stats, workers);
       }
-      task.perform();
-      String prefix = "";
-      if (Main.config.numTrials > 1) {
-        prefix = Integer.valueOf(trialNumber).toString();
+      return Main.generateRectangledTransmitterLocations(
+          Main.config.numTransmitters, width);
+    }
+    // "Circled" distribution (inside big box, outside small box)
+    else if (Main.config.getTransmitterDistribution().startsWith("circled")) {
+      float width = Math.min(Main.config.squareWidth,
+          Main.config.squareHeight) * .1f;
+
+      String[] parts = Main.config.getTransmitterDistribution()
+          .split("\\s");
+      if (parts.length > 1 && parts[1].length() > 0) {
+        width = Float.parseFloat(parts[1]);
+
       }
-      PrintWriter rxWriter = new PrintWriter(new FileWriter(
-          Main.buildPath(prefix + Main.config.getReceiversFile())));
-      for (Receiver rxer : conf.receivers) {
-        rxWriter.printf("%.2f %.2f %d\n", rxer.x, rxer.y,
-            rxer.coveringDisks.size());
+      return Main.generateCircledTransmitterLocations(
+          Main.config.numTransmitters, width);
+    }
+    // "Sine wave" distribution
+    else if (Main.config.getTransmitterDistribution().startsWith("sine")) {
+      float radius = Math.min(Main.config.squareWidth,
+          Main.config.squareHeight) * .2f;
+
+      String[] parts = Main.config.getTransmitterDistribution()
+          .split("\\s");
+      if (parts.length > 1 && parts[1].length() > 0) {
+        radius = Float.parseFloat(parts[1]);
+
       }
-      rxWriter.flush();
-      rxWriter.close();
-    } // End number of trials
+      return Main.generateSineTransmitterLocations(
+          Main.config.numTransmitters, radius);
+    }
+    // "Dumbbell" distribution
+    else if (Main.config.getTransmitterDistribution()
+        .startsWith("dumbbell")) {
+      float width = Math.min(Main.config.squareWidth,
+          Main.config.squareHeight) * .2f;
 
-    workers.shutdown();
-    System.out.println("Waiting up to 60 seconds for threadpool to terminate.");
-    try {
-      workers.awaitTermination(60, TimeUnit.SECONDS);
-    } catch (InterruptedException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
+      String[] parts = Main.config.getTransmitterDistribution()
+          .split("\\s");
+      if (parts.length > 1 && parts[1].length() > 0) {
+        width = Float.parseFloat(parts[1]);
+
+      }
+      return Main.generateDumbbellTransmitterLocations(
+          Main.config.numTransmitters, width);
     }
+    // "Plus" (+) distribution
+    else if (Main.config.getTransmitterDistribution().startsWith("plus")) {
+      float width = .2f;
 
-    // # Tx, # Rx, Min % Covered, Med. %
-    // Covered, Mean % Covered, Max % Covered, 95% Coverage
-    for (ExperimentStats s : stats) {
-      fileWriter
-          .printf(
-              "%d, %d, %.4f, %.4f, %.4f, %.4f, %.4f, %.5f, %.5f, %.5f, %.5f, %.5f\n",
-              Integer.valueOf(s.numberTransmitters),
-              Integer.valueOf(s.numberReceivers),
-              Float.valueOf(s.getMinCoverage()),
-              Float.valueOf(s.getMedianCoverage()),
-              Float.valueOf(s.getMeanCoverage()),
-              Float.valueOf(s.get95PercentileCoverage()),
-              Float.valueOf(s.getMaxCoverage()),
-              Float.valueOf(s.getMinContention()),
-              Float.valueOf(s.getMedianContention()),
-              Float.valueOf(s.getMeanContention()),
-              Float.valueOf(s.get95PercentileContention()),
-              Float.valueOf(s.getMaxContention()));
+      String[] parts = Main.config.getTransmitterDistribution()
+          .split("\\s");
+      if (parts.length > 1 && parts[1].length() > 0) {
+        width = Float.parseFloat(parts[1]);
+
+      }
+      return Main.generatePlusTransmitterLocations(
+          Main.config.numTransmitters, width);
+    }
+    // Random with "holes" distribution
+    else if (Main.config.getTransmitterDistribution().startsWith("2-holes")) {
+      float width = .2f;
+
+      String[] parts = Main.config.getTransmitterDistribution()
+          .split("\\s");
+      if (parts.length > 1 && parts[1].length() > 0) {
+        width = Float.parseFloat(parts[1]);
+
+      }
+      return Main.generate2HolesTransmitterLocations(
+          Main.config.numTransmitters, width);
+    }
+    // Basic uniform random distribution
+    else {
+      return Main
+          .generateUniformTransmitterLocations(Main.config.numTransmitters);
     }
-    fileWriter.flush();
-    fileWriter.close();
   }
 
   /**
@@ -885,23 +1260,32 @@ public class Main {
   }
 
   /**
-   * Computes the capture disk of transmitter t1. Uses the constant parameter
-   * Beta from the global configuration.
+   * Number of transmitters handled by each disk generation task. Fixed so that
+   * the partitioning, and therefore the disk order, doesn't depend on the
+   * number of threads.
+   */
+  private static final int TRANSMITTERS_PER_DISK_TASK = 64;
+
+  /**
+   * Computes the capture disk of transmitter t1 when the distance between the
+   * two transmitters is already known. Uses the constant parameter Beta from
+   * the global configuration. Does not check whether the transmitters are
+   * within range of each other.
    * 
    * @param t1
    *          the captured transmitter.
    * @param t2
    *          the uncaptured (colliding) transmitter.
-   * @return the capture disk of transmitter t1, else {@code null} if none
-   *         exists.
+   * @param euclideanDistance
+   *          the distance between t1 and t2.
+   * @param id
+   *          the identifier of the disk within its trial.
+   * @return the capture disk of transmitter t1.
    */
   static CaptureDisk generateCaptureDisk(final Transmitter t1,
-      final Transmitter t2) {
-    if (t1 == t2 || t1.equals(t2)) {
-      return null;
-    }
+      final Transmitter t2, final double euclideanDistance, final int id) {
     CaptureDisk captureDisk = new CaptureDisk();
-    captureDisk.disk = new Circle();
+    captureDisk.disk = new Circle(id);
     captureDisk.t1 = t1;
     captureDisk.t2 = t2;
     double betaSquared = Math.pow(Main.config.beta, 2);
@@ -910,26 +1294,239 @@ public class Main {
     double centerX = (t1.getX() - (betaSquared * t2.getX())) / denominator;
     double centerY = (t1.getY() - (betaSquared * t2.getY())) / denominator;
 
-    double euclideanDistance = Math.sqrt(Math.pow(t1.getX() - t2.getX(), 2)
-        + Math.pow(t1.getY() - t2.getY(), 2));
+    double radius = (Main.config.beta * euclideanDistance) / denominator;
 
+    captureDisk.disk.radius = (float) radius;
+    captureDisk.disk.center.x = (float) centerX;
+    captureDisk.disk.center.y = (float) centerY;
+
+    return captureDisk;
+  }
+
+  /**
+   * Finds the pairs of transmitters, among a contiguous range of "first"
+   * transmitters, that are close enough to have capture disks.
+   * 
+   * @author Robert Moore
+   */
+  private static final class PairSearchTask implements Callable<Integer> {
     /**
-     * TODO: Improve the cutting based on transmit distance. This is overly
-     * simplistic.
+     * Grid of all transmitters.
      */
-    if (euclideanDistance > (2 * Main.config.maxRangeMeters)) {
-      return null;
+    final TransmitterGrid grid;
+    /**
+     * First transmitter index (inclusive) handled by this task.
+     */
+    final int from;
+    /**
+     * Last transmitter index (exclusive) handled by this task.
+     */
+    final int to;
+    /**
+     * Lower transmitter index of each pair found.
+     */
+    int[] first = new int[256];
+    /**
+     * Higher transmitter index of each pair found.
+     */
+    int[] second = new int[256];
+    /**
+     * Distance between the transmitters of each pair.
+     */
+    double[] distance = new double[256];
+    /**
+     * Number of pairs found.
+     */
+    int numPairs = 0;
+    /**
+     * Index of the first disk generated by this task.
+     */
+    int baseIndex = 0;
+
+    PairSearchTask(final TransmitterGrid grid, final int from, final int to) {
+      super();
+      this.grid = grid;
+      this.from = from;
+      this.to = to;
     }
 
-    double radius = (Main.config.beta * euclideanDistance) / denominator;
+    @Override
+    public Integer call() {
+      final Transmitter[] txers = this.grid.transmitters;
+      final int[] neighbors = new int[txers.length];
+      final float pairRange = 2 * Main.config.maxRangeMeters;
+      for (int i = this.from; i < this.to; ++i) {
+        final Transmitter t1 = txers[i];
+        final int numNeighbors = this.grid.collectNeighbors(i, pairRange,
+            neighbors);
+        for (int k = 0; k < numNeighbors; ++k) {
+          final Transmitter t2 = txers[neighbors[k]];
+          if (t1.equals(t2)) {
+            continue;
+          }
+          final double euclideanDistance = Math.sqrt(Math.pow(
+              t1.getX() - t2.getX(), 2) + Math.pow(t1.getY() - t2.getY(), 2));
+          /*
+           * TODO: Improve the cutting based on transmit distance. This is
+           * overly simplistic.
+           */
+          if (euclideanDistance > pairRange) {
+            continue;
+          }
+          if (this.numPairs == this.first.length) {
+            final int capacity = this.numPairs * 2;
+            int[] newInts = new int[capacity];
+            System.arraycopy(this.first, 0, newInts, 0, this.numPairs);
+            this.first = newInts;
+            newInts = new int[capacity];
+            System.arraycopy(this.second, 0, newInts, 0, this.numPairs);
+            this.second = newInts;
+            final double[] newDoubles = new double[capacity];
+            System.arraycopy(this.distance, 0, newDoubles, 0, this.numPairs);
+            this.distance = newDoubles;
+          }
+          this.first[this.numPairs] = i;
+          this.second[this.numPairs] = neighbors[k];
+          this.distance[this.numPairs] = euclideanDistance;
+          ++this.numPairs;
+        }
+      }
+      return Integer.valueOf(this.numPairs);
+    }
+  }
 
-    captureDisk.disk.radius = (float) radius;
-    captureDisk.disk.center.x = (float) centerX;
-    captureDisk.disk.center.y = (float) centerY;
+  /**
+   * Builds the two capture disks of each pair found by a
+   * {@code PairSearchTask} and stores them in their reserved table slots.
+   * 
+   * @author Robert Moore
+   */
+  private static final class DiskBuildTask implements Callable<Integer> {
+    /**
+     * The pairs to build disks for.
+     */
+    final PairSearchTask pairs;
+    /**
+     * The table to store the disks in.
+     */
+    final CaptureDiskTable table;
 
-    t1.addDisk(captureDisk);
+    DiskBuildTask(final PairSearchTask pairs, final CaptureDiskTable table) {
+      super();
+      this.pairs = pairs;
+      this.table = table;
+    }
 
-    return captureDisk;
+    @Override
+    public Integer call() {
+      final Transmitter[] txers = this.pairs.grid.transmitters;
+      int index = this.pairs.baseIndex;
+      for (int k = 0; k < this.pairs.numPairs; ++k) {
+        final Transmitter t1 = txers[this.pairs.first[k]];
+        final Transmitter t2 = txers[this.pairs.second[k]];
+        final double euclideanDistance = this.pairs.distance[k];
+        this.table.put(index,
+            Main.generateCaptureDisk(t1, t2, euclideanDistance, index));
+        ++index;
+        this.table.put(index,
+            Main.generateCaptureDisk(t2, t1, euclideanDistance, index));
+        ++index;
+      }
+      return Integer.valueOf(this.pairs.numPairs);
+    }
+  }
+
+  /**
+   * Creates a new coverage evaluator of the type named in the configuration.
+   * Evaluators may keep scratch space, so each thread needs its own.
+   * 
+   * @return a new coverage evaluator.
+   */
+  static CoverageEvaluator createCoverageEvaluator() {
+    if ("blocked".equalsIgnoreCase(Main.config.coverageEvaluator)) {
+      return new BlockedCoverageEvaluator();
+    }
+    return new ScalarCoverageEvaluator();
+  }
+
+  /**
+   * Computes the capture disks of every ordered pair of transmitters and
+   * stores them in a new disk table. Transmitters are bucketed into a grid so
+   * that only pairs within range of each other are examined, and both disks
+   * of a pair are generated from a single distance computation.
+   * <p>
+   * The work is split into fixed-size blocks of transmitters that are executed
+   * on {@code workers}, and the results are merged in block order. Disk
+   * indices (and circle identifiers) are therefore the same no matter how many
+   * threads are used.
+   * </p>
+   * 
+   * @param transmitters
+   *          the transmitters of the trial.
+   * @param workers
+   *          the threadpool to generate disks on, or {@code null} to generate
+   *          them on the calling thread.
+   * @return a table containing every capture disk of the transmitters.
+   */
+  static CaptureDiskTable generateCaptureDisks(
+      final Collection<Transmitter> transmitters, final ExecutorService workers) {
+    final CaptureDiskTable disks = new CaptureDiskTable(transmitters);
+    final Transmitter[] txers = transmitters
+        .toArray(new Transmitter[transmitters.size()]);
+    final TransmitterGrid grid = new TransmitterGrid(txers,
+        2 * Main.config.maxRangeMeters);
+
+    final List<PairSearchTask> searches = new ArrayList<PairSearchTask>();
+    for (int from = 0; from < txers.length; from += TRANSMITTERS_PER_DISK_TASK) {
+      searches.add(new PairSearchTask(grid, from, Math.min(txers.length, from
+          + TRANSMITTERS_PER_DISK_TASK)));
+    }
+    Main.runAll(searches, workers);
+
+    // Reserve a contiguous block of slots for each task, in task order
+    final List<DiskBuildTask> builds = new ArrayList<DiskBuildTask>(
+        searches.size());
+    for (final PairSearchTask search : searches) {
+      search.baseIndex = disks.reserve(search.numPairs * 2);
+      builds.add(new DiskBuildTask(search, disks));
+    }
+    Main.runAll(builds, workers);
+
+    disks.buildCounters();
+    return disks;
+  }
+
+  /**
+   * Executes a set of tasks on a threadpool and waits for all of them to
+   * complete. Exceptions thrown by the tasks are rethrown to the caller.
+   * 
+   * @param tasks
+   *          the tasks to run.
+   * @param workers
+   *          the threadpool to use, or {@code null} to run the tasks on the
+   *          calling thread.
+   */
+  static <T> void runAll(final Collection<? extends Callable<T>> tasks,
+      final ExecutorService workers) {
+    try {
+      if (workers == null) {
+        for (final Callable<T> task : tasks) {
+          task.call();
+        }
+        return;
+      }
+      for (final Future<T> future : workers.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException("Worker task failed.", e.getCause());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for tasks.",
+          e);
+    } catch (final Exception e) {
+      throw new IllegalStateException("Worker task failed.", e);
+    }
   }
 
   /**
@@ -948,102 +1545,88 @@ public class Main {
     if (cd1.equals(cd2) || cd1 == cd2) {
       return null;
     }
+    final float[] coords = new float[4];
+    final int numPoints = Main.intersect(cd1.disk.getCenterX(),
+        cd1.disk.getCenterY(), cd1.disk.radius, cd2.disk.getCenterX(),
+        cd2.disk.getCenterY(), cd2.disk.radius, coords, 0);
+    if (numPoints < 0) {
+      return null;
+    }
+    LinkedList<Point2D> points = new LinkedList<Point2D>();
+    for (int i = 0; i < numPoints; ++i) {
+      points.add(new Point2D.Float(coords[2 * i], coords[2 * i + 1]));
+    }
+    return points;
+  }
 
-    double d = Math.sqrt(Math.pow(
-        cd1.disk.getCenterX() - cd2.disk.getCenterX(), 2)
-        + Math.pow(cd1.disk.getCenterY() - cd2.disk.getCenterY(), 2));
-
-    double r1 = cd1.disk.radius;
-    double r2 = cd2.disk.radius;
-    double d1 = (Math.pow(r1, 2) - Math.pow(r2, 2) + Math.pow(d, 2)) / (2 * d);
+  /**
+   * Computes the intersection points of two circles without allocating any
+   * objects. The coordinates of each intersection point that lies within the
+   * universe are written to {@code out} as consecutive (x, y) pairs, starting
+   * at {@code offset}.
+   * 
+   * @param x1
+   *          x-coordinate of the center of the first circle.
+   * @param y1
+   *          y-coordinate of the center of the first circle.
+   * @param r1
+   *          radius of the first circle.
+   * @param x2
+   *          x-coordinate of the center of the second circle.
+   * @param y2
+   *          y-coordinate of the center of the second circle.
+   * @param r2
+   *          radius of the second circle.
+   * @param out
+   *          storage for the coordinates, with room for at least 4 values
+   *          after {@code offset}.
+   * @param offset
+   *          the index in {@code out} of the first coordinate to write.
+   * @return the number of points written (0, 1 or 2), or -1 if the circles do
+   *         not intersect.
+   */
+  static int intersect(final double x1, final double y1, final double r1,
+      final double x2, final double y2, final double r2, final float[] out,
+      final int offset) {
+    final double dx = x2 - x1;
+    final double dy = y2 - y1;
+    final double d = Math.sqrt(dx * dx + dy * dy);
 
     // Circles are too far apart to overlap.
     if (d > (r1 + r2)) {
-      return null;
+      return -1;
     }
 
-    double h = Math.sqrt(Math.pow(r1, 2) - Math.pow(d1, 2));
-
-    double x3 = cd1.disk.getCenterX()
-        + (d1 * (cd2.disk.getCenterX() - cd1.disk.getCenterX())) / d;
+    final double d1 = (r1 * r1 - r2 * r2 + d * d) / (2 * d);
+    final double h = Math.sqrt(r1 * r1 - d1 * d1);
 
-    double y3 = cd1.disk.getCenterY()
-        + (d1 * (cd2.disk.getCenterY() - cd1.disk.getCenterY())) / d;
+    final double x3 = x1 + (d1 * dx) / d;
+    final double y3 = y1 + (d1 * dy) / d;
 
-    double x4i = x3 + (h * (cd2.disk.getCenterY() - cd1.disk.getCenterY())) / d;
-    double y4i = y3 - (h * (cd2.disk.getCenterX() - cd1.disk.getCenterX())) / d;
-    double x4ii = x3 - (h * (cd2.disk.getCenterY() - cd1.disk.getCenterY()))
-        / d;
-    double y4ii = y3 + (h * (cd2.disk.getCenterX() - cd1.disk.getCenterX()))
-        / d;
+    final double x4i = x3 + (h * dy) / d;
+    final double y4i = y3 - (h * dx) / d;
+    final double x4ii = x3 - (h * dy) / d;
+    final double y4ii = y3 + (h * dx) / d;
 
     if (Double.isNaN(x4i) || Double.isNaN(y4i) || Double.isNaN(x4ii)
         || Double.isNaN(y4ii)) {
-      return null;
+      return -1;
     }
 
-    LinkedList<Point2D> points = new LinkedList<Point2D>();
+    int numPoints = 0;
     if (x4i >= 0 && x4i <= Main.config.universeWidth && y4i >= 0
         && y4i <= Main.config.universeHeight) {
-      points.add(new Point2D.Float((float) x4i, (float) y4i));
+      out[offset] = (float) x4i;
+      out[offset + 1] = (float) y4i;
+      ++numPoints;
     }
     if (x4ii >= 0 && x4ii <= Main.config.universeWidth && y4ii >= 0
         && y4ii <= Main.config.universeHeight) {
-      points.add(new Point2D.Float((float) x4ii, (float) y4ii));
+      out[offset + 2 * numPoints] = (float) x4ii;
+      out[offset + 2 * numPoints + 1] = (float) y4ii;
+      ++numPoints;
     }
-    return points;
-  }
-
-  /**
-   * Returns a collection of transmitters and capture disks, in that order, that
-   * are "clones" of the transmitter
-   * collection provided.
-   * 
-   * @param txers
-   *          the transmitters to "clone".
-   * @return an array containing two elements: a collection of "cloned"
-   *         transmitters, and a collection of "cloned"
-   *         capture disks, respectively.
-   */
-  public static Object[] clone(final Collection<Transmitter> txers) {
-    final HashMap<Transmitter, Transmitter> copyTxers = new HashMap<Transmitter, Transmitter>();
-    final HashMap<CaptureDisk,CaptureDisk> cloneToOrig = new HashMap<CaptureDisk,CaptureDisk>();
-
-    for (Transmitter tx : txers) {
-
-      Transmitter ctx = new Transmitter();
-      ctx.x = tx.x;
-      ctx.y = tx.y;
-      copyTxers.put(ctx, ctx);
-
-    }
-    for (Transmitter tx : txers) {
-
-      for (CaptureDisk d : tx.getDisks()) {
-        if (!cloneToOrig.containsValue(d)) {
-          CaptureDisk clone = new CaptureDisk();
-          clone.disk = d.disk;
-          clone.t1 = copyTxers.get(d.t1);
-          //
-          if (clone.t1 == null) {
-            log.error("WTF?");
-          }
-          clone.t2 = copyTxers.get(d.t2);
-          if (clone.t2 == null) {
-            Transmitter ctx = new Transmitter();
-            ctx.x = d.t2.x;
-            ctx.y = d.t2.y;
-            // copyTxers.put(ctx, ctx);
-            clone.t2 = ctx;
-          }
-          clone.t1.addDisk(clone);
-          cloneToOrig.put(clone,d);
-        }
-      }
-
-    }
-
-    return new Object[] { copyTxers.values(), cloneToOrig };
+    return numPoints;
   }
 
   public static void saveImage(final FileRenderer display, final String fileName) {
@@ -0,0 +1,431 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Coverage counts of a fixed set of solution points, together with a grid of
+ * the points so that the points inside a capture disk can be found quickly.
+ * The index is built once per trial; when the disks covered by a new receiver
+ * are removed, only the counts of the points inside those disks are updated,
+ * instead of testing every point against every remaining disk again. The
+ * points inside a disk are found when it is removed rather than stored, so
+ * memory grows with the number of points and not with the number of
+ * point-disk pairs.
+ *
+ * @author Robert Moore
+ */
+public class PointCoverageIndex {
+
+  /**
+   * Average number of points in each cell of the point grid.
+   */
+  static final int POINTS_PER_CELL = 8;
+
+  /**
+   * The disks the points were tested against.
+   */
+  private final CaptureDiskTable table;
+  /**
+   * X-coordinates of the covered solution points, in the order they were
+   * streamed.
+   */
+  final float[] x;
+  /**
+   * Y-coordinates of the covered solution points.
+   */
+  final float[] y;
+  /**
+   * Number of live disks covering each point.
+   */
+  final int[] counts;
+  /**
+   * Total number of point-in-disk incidences when this index was built.
+   */
+  private final long numIncidences;
+  /**
+   * Left edge of the point grid.
+   */
+  private final float minX;
+  /**
+   * Bottom edge of the point grid.
+   */
+  private final float minY;
+  /**
+   * Width and height of each cell of the point grid.
+   */
+  private final float cellSize;
+  private final int columns;
+  private final int rows;
+  /**
+   * Start offset of each cell in {@link #cellPoints}, by cell index.
+   */
+  private final int[] cellStart;
+  /**
+   * Indices of the points in each cell, grouped by cell.
+   */
+  private final int[] cellPoints;
+  /**
+   * Set bits are points that have been chosen as receivers.
+   */
+  private final BitSet removedPoints = new BitSet();
+  /**
+   * Set bits are disks whose points have already been decremented.
+   */
+  private final BitSet removedDisks = new BitSet();
+
+  /**
+   * Finds the number of disks covering each streamed block of points, and
+   * keeps the points that are covered by at least one disk.
+   *
+   * @author Robert Moore
+   */
+  static final class BlockCoverage extends CandidateStream.Consumer {
+    /**
+     * The disks to test against.
+     */
+    final DiskGrid diskIndex;
+    /**
+     * Scratch space for the disks near a point.
+     */
+    private final int[] candidates;
+    /**
+     * Sequence number of each block consumed.
+     */
+    int[] blockSequence = new int[16];
+    /**
+     * Index of the first kept point of each block consumed.
+     */
+    int[] blockStart = new int[16];
+    /**
+     * Number of blocks consumed.
+     */
+    int numBlocks = 0;
+    /**
+     * X-coordinates of the kept points.
+     */
+    float[] x = new float[1024];
+    /**
+     * Y-coordinates of the kept points.
+     */
+    float[] y = new float[1024];
+    /**
+     * Number of disks covering each kept point.
+     */
+    int[] counts = new int[1024];
+    /**
+     * Number of kept points.
+     */
+    int numPoints = 0;
+
+    BlockCoverage(final DiskGrid diskIndex) {
+      super();
+      this.diskIndex = diskIndex;
+      this.candidates = new int[diskIndex.table.length()];
+    }
+
+    @Override
+    void accept(final CandidateStream.Block block) {
+      if (this.numBlocks == this.blockSequence.length) {
+        this.blockSequence = Arrays.copyOf(this.blockSequence,
+            this.numBlocks * 2);
+        this.blockStart = Arrays.copyOf(this.blockStart, this.numBlocks * 2);
+      }
+      this.blockSequence[this.numBlocks] = block.sequence;
+      this.blockStart[this.numBlocks] = this.numPoints;
+      ++this.numBlocks;
+
+      final CaptureDiskTable table = this.diskIndex.table;
+      for (int p = 0; p < block.size; ++p) {
+        final float x = block.x[p];
+        final float y = block.y[p];
+        final int numCandidates = this.diskIndex.collectContaining(x, y,
+            this.candidates);
+        int count = 0;
+        for (int k = 0; k < numCandidates; ++k) {
+          if (table.contains(this.candidates[k], x, y)) {
+            ++count;
+          }
+        }
+        if (count == 0) {
+          continue;
+        }
+        if (this.numPoints == this.x.length) {
+          this.x = Arrays.copyOf(this.x, this.numPoints * 2);
+          this.y = Arrays.copyOf(this.y, this.numPoints * 2);
+          this.counts = Arrays.copyOf(this.counts, this.numPoints * 2);
+        }
+        this.x[this.numPoints] = x;
+        this.y[this.numPoints] = y;
+        this.counts[this.numPoints] = count;
+        ++this.numPoints;
+      }
+    }
+
+    /**
+     * The index of the first kept point after a block.
+     *
+     * @param block
+     *          the position of the block among those consumed.
+     * @return one past the last kept point of the block.
+     */
+    int blockEnd(final int block) {
+      return block + 1 < this.numBlocks ? this.blockStart[block + 1]
+          : this.numPoints;
+    }
+  }
+
+  /**
+   * Assembles the coverage counts and the point grid from the blocks of a
+   * finished candidate stream. Points are ordered as they were streamed, and
+   * only covered points are kept.
+   *
+   * @param consumers
+   *          the consumers of the stream.
+   * @param numBlocks
+   *          the number of blocks streamed.
+   * @param table
+   *          the disks the points were tested against.
+   */
+  public PointCoverageIndex(final List<BlockCoverage> consumers,
+      final int numBlocks, final CaptureDiskTable table) {
+    super();
+    this.table = table;
+    // Find the consumer of each block
+    final BlockCoverage[] owner = new BlockCoverage[numBlocks];
+    final int[] ownerBlock = new int[numBlocks];
+    long totalPoints = 0;
+    for (final BlockCoverage consumer : consumers) {
+      for (int b = 0; b < consumer.numBlocks; ++b) {
+        owner[consumer.blockSequence[b]] = consumer;
+        ownerBlock[consumer.blockSequence[b]] = b;
+      }
+      totalPoints += consumer.numPoints;
+    }
+    if (totalPoints > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException("Too many covered points to index: "
+          + totalPoints);
+    }
+    final int numPoints = (int) totalPoints;
+
+    this.x = new float[numPoints];
+    this.y = new float[numPoints];
+    this.counts = new int[numPoints];
+    long incidences = 0;
+    int p = 0;
+    for (int seq = 0; seq < numBlocks; ++seq) {
+      final BlockCoverage consumer = owner[seq];
+      final int b = ownerBlock[seq];
+      final int end = consumer.blockEnd(b);
+      for (int k = consumer.blockStart[b]; k < end; ++k, ++p) {
+        this.x[p] = consumer.x[k];
+        this.y[p] = consumer.y[k];
+        this.counts[p] = consumer.counts[k];
+        incidences += consumer.counts[k];
+      }
+    }
+    this.numIncidences = incidences;
+
+    // Size the cells so that each holds a few points on average
+    float minX = Float.POSITIVE_INFINITY;
+    float maxX = Float.NEGATIVE_INFINITY;
+    float minY = Float.POSITIVE_INFINITY;
+    float maxY = Float.NEGATIVE_INFINITY;
+    for (p = 0; p < numPoints; ++p) {
+      minX = Math.min(minX, this.x[p]);
+      maxX = Math.max(maxX, this.x[p]);
+      minY = Math.min(minY, this.y[p]);
+      maxY = Math.max(maxY, this.y[p]);
+    }
+    if (numPoints == 0) {
+      minX = maxX = minY = maxY = 0;
+    }
+    final double width = Math.max(maxX - minX, 1e-3);
+    final double height = Math.max(maxY - minY, 1e-3);
+    final double numCells = Math.max(1.0, numPoints / (double) POINTS_PER_CELL);
+    this.cellSize = (float) Math.sqrt(width * height / numCells);
+    this.minX = minX;
+    this.minY = minY;
+    this.columns = (int) Math.min(Math.ceil(width / this.cellSize), numCells) + 1;
+    this.rows = (int) Math.min(Math.ceil(height / this.cellSize), numCells) + 1;
+
+    // Counting sort of the points by cell
+    this.cellStart = new int[this.columns * this.rows + 1];
+    final int[] cellOf = new int[numPoints];
+    for (p = 0; p < numPoints; ++p) {
+      cellOf[p] = this.row(this.y[p]) * this.columns + this.column(this.x[p]);
+      ++this.cellStart[cellOf[p] + 1];
+    }
+    for (int c = 0; c + 1 < this.cellStart.length; ++c) {
+      this.cellStart[c + 1] += this.cellStart[c];
+    }
+    this.cellPoints = new int[numPoints];
+    final int[] fill = new int[this.columns * this.rows];
+    for (p = 0; p < numPoints; ++p) {
+      final int c = cellOf[p];
+      this.cellPoints[this.cellStart[c] + fill[c]++] = p;
+    }
+  }
+
+  /**
+   * The cell column of an x-coordinate, clamped to the grid.
+   */
+  private int column(final double x) {
+    final int col = (int) Math.floor((x - this.minX) / this.cellSize);
+    return col < 0 ? 0 : (col >= this.columns ? this.columns - 1 : col);
+  }
+
+  /**
+   * The cell row of a y-coordinate, clamped to the grid.
+   */
+  private int row(final double y) {
+    final int row = (int) Math.floor((y - this.minY) / this.cellSize);
+    return row < 0 ? 0 : (row >= this.rows ? this.rows - 1 : row);
+  }
+
+  /**
+   * The number of points in this index, including removed points.
+   *
+   * @return the number of points.
+   */
+  public int size() {
+    return this.counts.length;
+  }
+
+  /**
+   * The total number of point-in-disk incidences found when this index was
+   * built.
+   *
+   * @return the number of (point, disk) pairs.
+   */
+  public long numIncidences() {
+    return this.numIncidences;
+  }
+
+  /**
+   * Returns the point at some index.
+   *
+   * @param index
+   *          the index of the point.
+   * @return the point.
+   */
+  public Point2D get(final int index) {
+    return new Point2D.Float(this.x[index], this.y[index]);
+  }
+  /**
+   * Finds the remaining point covered by the most live disks. Ties go to the
+   * point that was streamed first.
+   *
+   * @return the index of the best point, or -1 if no remaining point is
+   *         covered by any disk.
+   */
+  public int best() {
+    int bestIndex = -1;
+    int bestCount = 0;
+    for (int p = 0; p < this.counts.length; ++p) {
+      if (this.counts[p] > bestCount && !this.removedPoints.get(p)) {
+        bestCount = this.counts[p];
+        bestIndex = p;
+      }
+    }
+    return bestIndex;
+  }
+
+  /**
+   * Removes a point from consideration, normally because a receiver was
+   * placed there.
+   *
+   * @param index
+   *          the index of the point.
+   */
+  public void removePoint(final int index) {
+    this.removedPoints.set(index);
+  }
+
+  /**
+   * Decrements the count of every point covered by each of the disks. Disks
+   * that were already removed are ignored.
+   *
+   * @param disks
+   *          the disks being removed.
+   * @return the number of point counts updated.
+   */
+  public int removeDisks(final Collection<CaptureDisk> disks) {
+    int updated = 0;
+    final DiskBitmap bitmap = CaptureDiskTable.toBitmap(disks);
+    for (int d = bitmap.nextSetBit(0); d >= 0; d = bitmap.nextSetBit(d + 1)) {
+      if (this.removedDisks.get(d)) {
+        continue;
+      }
+      this.removedDisks.set(d);
+      updated += this.removeDisk(d);
+    }
+    return updated;
+  }
+
+  /**
+   * Decrements the count of every point inside a disk.
+   *
+   * @param d
+   *          the index of the disk.
+   * @return the number of point counts updated.
+   */
+  private int removeDisk(final int d) {
+    final float cx = this.table.centerX[d];
+    final float cy = this.table.centerY[d];
+    final float r = this.table.radius[d];
+    final int maxCol = this.column(cx + r);
+    final int maxRow = this.row(cy + r);
+    int updated = 0;
+    for (int row = this.row(cy - r); row <= maxRow; ++row) {
+      for (int col = this.column(cx - r); col <= maxCol; ++col) {
+        final int c = row * this.columns + col;
+        for (int k = this.cellStart[c]; k < this.cellStart[c + 1]; ++k) {
+          final int p = this.cellPoints[k];
+          if (this.table.contains(d, this.x[p], this.y[p])) {
+            --this.counts[p];
+            ++updated;
+          }
+        }
+      }
+    }
+    return updated;
+  }
+
+  /**
+   * Collects the points that have not been removed and are still covered by
+   * at least one live disk.
+   *
+   * @return the remaining points.
+   */
+  public Collection<Point2D> remainingPoints() {
+    final List<Point2D> remaining = new ArrayList<Point2D>();
+    for (int p = 0; p < this.counts.length; ++p) {
+      if (this.counts[p] > 0 && !this.removedPoints.get(p)) {
+        remaining.add(this.get(p));
+      }
+    }
+    return remaining;
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * A set of points stored as parallel {@code float} arrays, with an
+ * open-addressing hash table over the packed coordinates of each point.
+ * Candidate solution points are deduplicated here as they are generated, so
+ * that no objects are allocated per candidate.
+ * <p>
+ * With an epsilon of zero, points are equal when their coordinates are equal,
+ * treating negative zero as zero. With a positive epsilon, coordinates are
+ * quantised to a grid of that spacing, and a point is dropped if an earlier
+ * point fell into the same grid cell, so that nearly coincident intersections
+ * are only tested once.
+ * </p>
+ * 
+ * @author Robert Moore
+ */
+public class PointSet implements PointSink {
+
+  /**
+   * Initial capacity of the coordinate arrays.
+   */
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * X-coordinate of each point, in the order they were added.
+   */
+  float[] x;
+  /**
+   * Y-coordinate of each point, in the order they were added.
+   */
+  float[] y;
+  /**
+   * Key of each point, in the order they were added.
+   */
+  private long[] keys;
+  /**
+   * Hash table of point indices plus one, so that 0 marks an empty slot.
+   */
+  private int[] slots;
+  /**
+   * Number of points in this set.
+   */
+  private int size = 0;
+  /**
+   * Spacing of the quantisation grid, or 0 for exact equality.
+   */
+  private final float epsilon;
+
+  /**
+   * Creates a new, empty point set that only merges equal points.
+   */
+  public PointSet() {
+    this(DEFAULT_CAPACITY, 0f);
+  }
+
+  /**
+   * Creates a new, empty point set with space for {@code capacity} points.
+   * 
+   * @param capacity
+   *          the initial capacity.
+   * @param epsilon
+   *          the spacing of the grid used to merge nearby points, or 0 to
+   *          only merge equal points.
+   */
+  public PointSet(final int capacity, final float epsilon) {
+    super();
+    if (epsilon < 0 || Float.isNaN(epsilon)) {
+      throw new IllegalArgumentException("Epsilon must be non-negative: "
+          + epsilon);
+    }
+    this.epsilon = epsilon;
+    final int cap = Math.max(capacity, 1);
+    this.x = new float[cap];
+    this.y = new float[cap];
+    this.keys = new long[cap];
+    this.slots = new int[PointSet.tableSize(cap)];
+  }
+
+  /**
+   * The size of a hash table that keeps the load factor at or below one half.
+   * 
+   * @param capacity
+   *          the number of points to hold.
+   * @return a power of two at least twice {@code capacity}.
+   */
+  private static int tableSize(final int capacity) {
+    return Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+  }
+
+  /**
+   * Adds a point to this set if no equal (or, with an epsilon, nearby) point
+   * was added before.
+   * 
+   * @param px
+   *          the x-coordinate of the point.
+   * @param py
+   *          the y-coordinate of the point.
+   * @return {@code true} if the point was added.
+   */
+  @Override
+  public boolean add(final float px, final float py) {
+    final long key = this.key(px, py);
+    final int mask = this.slots.length - 1;
+    int slot = PointSet.hash(key) & mask;
+    while (this.slots[slot] != 0) {
+      if (this.keys[this.slots[slot] - 1] == key) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (this.size == this.x.length) {
+      final int cap = this.size * 2;
+      this.x = Arrays.copyOf(this.x, cap);
+      this.y = Arrays.copyOf(this.y, cap);
+      this.keys = Arrays.copyOf(this.keys, cap);
+    }
+    this.x[this.size] = px;
+    this.y[this.size] = py;
+    this.keys[this.size] = key;
+    ++this.size;
+    this.slots[slot] = this.size;
+    if (this.size * 2 > this.slots.length) {
+      this.rehash();
+    }
+    return true;
+  }
+
+  /**
+   * Determines whether this set holds a point equal (or, with an epsilon,
+   * nearby) to the given point.
+   * 
+   * @param px
+   *          the x-coordinate of the point.
+   * @param py
+   *          the y-coordinate of the point.
+   * @return {@code true} if adding the point would not change this set.
+   */
+  public boolean contains(final float px, final float py) {
+    return this.indexOf(px, py) >= 0;
+  }
+
+  /**
+   * Finds the point of this set that is equal (or, with an epsilon, nearby) to
+   * the given point.
+   * 
+   * @param px
+   *          the x-coordinate of the point.
+   * @param py
+   *          the y-coordinate of the point.
+   * @return the index of the point in the order points were added, or -1 if
+   *         there is none.
+   */
+  int indexOf(final float px, final float py) {
+    final long key = this.key(px, py);
+    final int mask = this.slots.length - 1;
+    for (int slot = PointSet.hash(key) & mask; this.slots[slot] != 0; slot = (slot + 1)
+        & mask) {
+      if (this.keys[this.slots[slot] - 1] == key) {
+        return this.slots[slot] - 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Doubles the hash table and reinserts every point.
+   */
+  private void rehash() {
+    this.slots = new int[this.slots.length * 2];
+    final int mask = this.slots.length - 1;
+    for (int i = 0; i < this.size; ++i) {
+      int slot = PointSet.hash(this.keys[i]) & mask;
+      while (this.slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      this.slots[slot] = i + 1;
+    }
+  }
+
+  /**
+   * Packs a point into a single key that is equal for points that should be
+   * merged.
+   * 
+   * @param px
+   *          the x-coordinate.
+   * @param py
+   *          the y-coordinate.
+   * @return the key of the point.
+   */
+  private long key(final float px, final float py) {
+    if (this.epsilon > 0) {
+      return ((long) (int) Math.floor(px / this.epsilon) << 32)
+          | ((int) Math.floor(py / this.epsilon) & 0xFFFFFFFFL);
+    }
+    // Adding zero turns -0.0 into 0.0
+    return ((long) Float.floatToIntBits(px + 0.0f) << 32)
+        | (Float.floatToIntBits(py + 0.0f) & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Mixes the bits of a key, so that nearby points spread across the table.
+   * 
+   * @param key
+   *          the key to hash.
+   * @return the hash of the key.
+   */
+  private static int hash(final long key) {
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  /**
+   * The number of points in this set.
+   * 
+   * @return the number of points.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  /**
+   * Removes all points from this set, keeping its capacity.
+   */
+  public void clear() {
+    Arrays.fill(this.slots, 0);
+    this.size = 0;
+  }
+
+  /**
+   * Copies the points of this set into a new set of {@code Point2D} objects.
+   * 
+   * @return a set containing every point of this set.
+   */
+  public Collection<Point2D> toPointSet() {
+    final Collection<Point2D> points = new HashSet<Point2D>(
+        (int) (this.size / 0.75f) + 1);
+    for (int i = 0; i < this.size; ++i) {
+      points.add(new Point2D.Float(this.x[i], this.y[i]));
+    }
+    return points;
+  }
+
+  /**
+   * Copies the points of this set into a new list of {@code Point2D} objects,
+   * in the order they were first added.
+   * 
+   * @return a list containing every point of this set.
+   */
+  public List<Point2D> toPointList() {
+    final List<Point2D> points = new ArrayList<Point2D>(this.size);
+    for (int i = 0; i < this.size; ++i) {
+      points.add(new Point2D.Float(this.x[i], this.y[i]));
+    }
+    return points;
+  }
+}
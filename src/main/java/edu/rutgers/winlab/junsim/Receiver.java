@@ -94,7 +94,7 @@ public class Receiver extends Point2D.Float implements Drawable {
     Stroke origStroke = g.getStroke();
     if (Main.gfxConfig.isDrawReceiverLines()) {
       for (Transmitter tx : coverageCounts.keySet()) {
-        int totalDisks = tx.getDisks().size();
+        int totalDisks = tx.getNumDisks();
         float coverageRate = ((float) coverageCounts.get(tx).intValue())
             / totalDisks;
 
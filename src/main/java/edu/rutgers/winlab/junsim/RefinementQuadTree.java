@@ -0,0 +1,540 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An adaptive quadtree over the universe that holds the grid samples of the
+ * recursive experiments. Samples lie on a lattice that halves its spacing at
+ * every zoom level, so the grid of a window contains the grid points of every
+ * coarser window over the same area, and those are returned as the same
+ * samples, together with their scores if they have been evaluated. Cells
+ * split only where samples accumulate, so memory follows the windows that
+ * were actually refined.
+ * 
+ * <p>
+ * The jitter of a lattice point is drawn from its coordinates and the seed of
+ * the tree, and scaled to the coarsest level it belongs to, so a point lands
+ * in the same place whichever window generates it.
+ * </p>
+ * 
+ * <p>
+ * Scores are only valid while the capture disks do not change, so
+ * {@link #clear()} must be called whenever a receiver is placed. It drops the
+ * samples as well, since the lattice generates them again exactly.
+ * </p>
+ * 
+ * <p>
+ * Windows may be refined and scored by several threads at once. Grids are
+ * generated without holding the lock; reading scores shares it, and only
+ * adding samples and recording scores take it exclusively, in batches.
+ * </p>
+ * 
+ * @author Robert Moore
+ */
+public final class RefinementQuadTree {
+
+  private static final Logger log = LoggerFactory
+      .getLogger(RefinementQuadTree.class);
+
+  /**
+   * Number of samples a cell holds before it is split.
+   */
+  static final int CELL_CAPACITY = 64;
+
+  /**
+   * Cells are not split below this depth, so that samples closer together
+   * than float precision cannot split forever.
+   */
+  static final int MAX_DEPTH = 20;
+
+  /**
+   * Deepest zoom level of the lattice. Finer windows reuse its spacing, which
+   * is already well below float precision.
+   */
+  static final int MAX_LEVEL = 40;
+
+  /**
+   * A square region of the universe. Leaf cells hold samples, and inner
+   * cells hold four children split at the center.
+   * 
+   * @author Robert Moore
+   */
+  private static final class Cell {
+    final float midX;
+    final float midY;
+    final float halfWidth;
+    final float halfHeight;
+    final int depth;
+    /**
+     * The samples of a leaf, or {@code null} once the cell is split.
+     */
+    Point2D.Float[] samples = new Point2D.Float[4];
+    /**
+     * The score of each sample, or {@code NaN} if it has not been evaluated.
+     */
+    float[] scores = new float[4];
+    int count = 0;
+    /**
+     * Children ordered (low x, low y), (high x, low y), (low x, high y),
+     * (high x, high y), or {@code null} for a leaf.
+     */
+    Cell[] children = null;
+
+    Cell(final float midX, final float midY, final float halfWidth,
+        final float halfHeight, final int depth) {
+      super();
+      this.midX = midX;
+      this.midY = midY;
+      this.halfWidth = halfWidth;
+      this.halfHeight = halfHeight;
+      this.depth = depth;
+    }
+
+    Cell child(final float x, final float y) {
+      return this.children[(x < this.midX ? 0 : 1) + (y < this.midY ? 0 : 2)];
+    }
+
+    int indexOf(final float x, final float y) {
+      for (int i = 0; i < this.count; ++i) {
+        if (this.samples[i].x == x && this.samples[i].y == y) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    void add(final Point2D.Float sample, final float score) {
+      if (this.count == this.samples.length) {
+        this.samples = Arrays.copyOf(this.samples, this.count * 2);
+        this.scores = Arrays.copyOf(this.scores, this.count * 2);
+      }
+      this.samples[this.count] = sample;
+      this.scores[this.count] = score;
+      ++this.count;
+    }
+
+    void split() {
+      final float w = this.halfWidth / 2;
+      final float h = this.halfHeight / 2;
+      this.children = new Cell[] {
+          new Cell(this.midX - w, this.midY - h, w, h, this.depth + 1),
+          new Cell(this.midX + w, this.midY - h, w, h, this.depth + 1),
+          new Cell(this.midX - w, this.midY + h, w, h, this.depth + 1),
+          new Cell(this.midX + w, this.midY + h, w, h, this.depth + 1) };
+      for (int i = 0; i < this.count; ++i) {
+        this.child(this.samples[i].x, this.samples[i].y).add(this.samples[i],
+            this.scores[i]);
+      }
+      this.samples = null;
+      this.scores = null;
+      this.count = 0;
+    }
+  }
+
+  /**
+   * Transmitters of the trial, for dropping samples out of everyone's range.
+   */
+  private final TransmitterGrid txGrid;
+
+  /**
+   * Lattice spacing of the whole universe.
+   */
+  private final double xStep;
+  private final double yStep;
+
+  /**
+   * Largest jitter of a lattice point of the whole universe, halved at every
+   * finer level.
+   */
+  private final double jitter;
+
+  /**
+   * Seed of the jitter of every lattice point.
+   */
+  private final long seed;
+
+  private Cell root;
+
+  /**
+   * Guards the cells, their scores and the counters below.
+   */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private int numSamples = 0;
+
+  private int numEvaluated = 0;
+
+  /**
+   * Creates an empty tree over the universe of the configuration.
+   * 
+   * @param transmitters
+   *          the transmitters of the trial.
+   * @param rand
+   *          the random stream that seeds the jitter of the lattice.
+   */
+  public RefinementQuadTree(final Collection<Transmitter> transmitters,
+      final Random rand) {
+    super();
+    this.txGrid = new TransmitterGrid(transmitters,
+        Main.config.maxRangeMeters);
+    final float width = Main.config.universeWidth;
+    final float height = Main.config.universeHeight;
+    this.xStep = width / (double) Main.config.getGridDensity();
+    this.yStep = height / (double) Main.config.getGridDensity();
+    this.jitter = Main.config.isRandomized() ? ((width + height) / 2) * 0.01f
+        : 0f;
+    this.seed = rand.nextLong();
+    this.root = RefinementQuadTree.createRoot();
+  }
+
+  private static Cell createRoot() {
+    final float halfWidth = Main.config.universeWidth / 2f;
+    final float halfHeight = Main.config.universeHeight / 2f;
+    return new Cell(halfWidth, halfHeight, halfWidth, halfHeight, 0);
+  }
+
+  /**
+   * Finds the leaf cell that holds, or would hold, a point.
+   */
+  private Cell leaf(final float x, final float y) {
+    Cell cell = this.root;
+    while (cell.children != null) {
+      cell = cell.child(x, y);
+    }
+    return cell;
+  }
+
+  /**
+   * Returns the sample at a point, adding a new, unevaluated one if there is
+   * none. Callers hold the write lock.
+   */
+  private Point2D intern(final float x, final float y) {
+    Cell cell = this.leaf(x, y);
+    final int i = cell.indexOf(x, y);
+    if (i >= 0) {
+      return cell.samples[i];
+    }
+    if (cell.count >= CELL_CAPACITY && cell.depth < MAX_DEPTH) {
+      cell.split();
+      cell = cell.child(x, y);
+    }
+    final Point2D.Float sample = new Point2D.Float(x, y);
+    cell.add(sample, Float.NaN);
+    ++this.numSamples;
+    return sample;
+  }
+
+  /**
+   * Generates the lattice points of a window, with the density of the
+   * configuration at the zoom level of the window's width, skipping points
+   * outside the universe or out of range of every transmitter. Grid points
+   * that were sampled before are returned as the existing samples.
+   * 
+   * @param minX
+   *          the left edge of the window.
+   * @param maxX
+   *          the right edge of the window.
+   * @param minY
+   *          the bottom edge of the window.
+   * @param maxY
+   *          the top edge of the window.
+   * @param random
+   *          how far outside the window a jittered point may lie.
+   * @return the samples of the window.
+   */
+  public Collection<Point2D> refine(final float minX, final float maxX,
+      final float minY, final float maxY, final float random) {
+    final int level = RefinementQuadTree.level(Main.config.universeWidth,
+        maxX - minX);
+    log.info(String
+        .format(
+            "Generating [(%,.2f, %,.2f)x(%,.2f, %,.2f)] dense: %,.1f, random: %,.2f, level: %d",
+            minX, maxX, minY, maxY, Main.config.getGridDensity(), random,
+            level));
+
+    float[] coords = new float[1024];
+    int numCoords = 0;
+    // Each point is generated at the coarsest level it belongs to
+    for (int h = 0; h <= level; ++h) {
+      final double xStep = Math.scalb(this.xStep, -h);
+      final double yStep = Math.scalb(this.yStep, -h);
+      final double jitter = Math.scalb(this.jitter, -h);
+      final long minI = (long) Math.ceil((minX - random - jitter) / xStep);
+      final long maxI = (long) Math.floor((maxX + random + jitter) / xStep);
+      final long minJ = (long) Math.ceil((minY - random - jitter) / yStep);
+      final long maxJ = (long) Math.floor((maxY + random + jitter) / yStep);
+      for (long i = minI; i <= maxI; ++i) {
+        for (long j = minJ; j <= maxJ; ++j) {
+          if (h > 0 && (i & 1) == 0 && (j & 1) == 0) {
+            continue;
+          }
+          final float x = (float) (i * xStep + jitter
+              * this.offset(h, i, j, 0));
+          if (x < 0 || x > Main.config.universeWidth || x < minX - random
+              || x > maxX + random) {
+            continue;
+          }
+          final float y = (float) (j * yStep + jitter
+              * this.offset(h, i, j, 1));
+          if (y < 0 || y > Main.config.universeHeight || y < minY - random
+              || y > maxY + random) {
+            continue;
+          }
+          if (this.txGrid.anyWithin(x, y, Main.config.maxRangeMeters)) {
+            if (numCoords == coords.length) {
+              coords = Arrays.copyOf(coords, numCoords * 2);
+            }
+            coords[numCoords++] = x;
+            coords[numCoords++] = y;
+          }
+        }
+      }
+    }
+
+    final List<Point2D> samples = new ArrayList<Point2D>(numCoords / 2);
+    final int numAdded;
+    this.lock.writeLock().lock();
+    try {
+      final int before = this.numSamples;
+      for (int k = 0; k < numCoords; k += 2) {
+        samples.add(this.intern(coords[k], coords[k + 1]));
+      }
+      numAdded = this.numSamples - before;
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+    log.debug("Reused {} of {} samples.",
+        Integer.valueOf(samples.size() - numAdded),
+        Integer.valueOf(samples.size()));
+    return samples;
+  }
+
+  /**
+   * The zoom level of a window, the number of times the universe is halved to
+   * reach its width.
+   */
+  static int level(final float universeWidth, final float width) {
+    if (!(width > 0)) {
+      return MAX_LEVEL;
+    }
+    final long level = Math.round(Math.log(universeWidth / (double) width)
+        / Math.log(2));
+    return (int) Math.max(0, Math.min(MAX_LEVEL, level));
+  }
+
+  /**
+   * The jitter of a lattice point along one axis, between -1 and 1 of the
+   * largest jitter of its level.
+   */
+  private double offset(final int level, final long i, final long j,
+      final int axis) {
+    long z = this.seed + (i * 0x9E3779B97F4A7C15L)
+        + (j * 0xC2B2AE3D27D4EB4FL) + ((level * 2L + axis) * 0x165667B19E3779F9L);
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z = z ^ (z >>> 31);
+    return (z >>> 11) * 0x1.0p-53 * 2 - 1;
+  }
+
+  /**
+   * Returns the score of a sample, or {@code NaN} if it has not been evaluated
+   * since the tree was last cleared.
+   * 
+   * @param p
+   *          the sample.
+   */
+  public float getScore(final Point2D p) {
+    this.lock.readLock().lock();
+    try {
+      return this.score((float) p.getX(), (float) p.getY());
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Looks up the scores of several samples.
+   * 
+   * @param points
+   *          the samples.
+   * @param scores
+   *          storage for the score of each sample, {@code NaN} if it has not
+   *          been evaluated since the tree was last cleared.
+   * @param numPoints
+   *          the number of samples to look up.
+   */
+  public void getScores(final Point2D[] points, final float[] scores,
+      final int numPoints) {
+    this.lock.readLock().lock();
+    try {
+      for (int i = 0; i < numPoints; ++i) {
+        scores[i] = this.score((float) points[i].getX(),
+            (float) points[i].getY());
+      }
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * The score at a point. Callers hold the lock.
+   */
+  private float score(final float x, final float y) {
+    final Cell cell = this.leaf(x, y);
+    final int i = cell.indexOf(x, y);
+    return i < 0 ? Float.NaN : cell.scores[i];
+  }
+
+  /**
+   * Whether a sample has been evaluated since the tree was last cleared.
+   * 
+   * @param p
+   *          the sample.
+   */
+  public boolean isEvaluated(final Point2D p) {
+    return !Float.isNaN(this.getScore(p));
+  }
+
+  /**
+   * Records the score of a sample, adding the sample if it is new.
+   * 
+   * @param p
+   *          the sample.
+   * @param score
+   *          its score.
+   */
+  public void setScore(final Point2D p, final float score) {
+    this.lock.writeLock().lock();
+    try {
+      this.setScore((float) p.getX(), (float) p.getY(), score);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Records the scores of several samples.
+   * 
+   * @param points
+   *          the samples.
+   * @param scores
+   *          the score of each sample.
+   * @param numPoints
+   *          the number of samples to record.
+   */
+  public void setScores(final Point2D[] points, final float[] scores,
+      final int numPoints) {
+    this.lock.writeLock().lock();
+    try {
+      for (int i = 0; i < numPoints; ++i) {
+        this.setScore((float) points[i].getX(), (float) points[i].getY(),
+            scores[i]);
+      }
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Records the score at a point. Callers hold the write lock.
+   */
+  private void setScore(final float x, final float y, final float score) {
+    this.intern(x, y);
+    final Cell cell = this.leaf(x, y);
+    final int i = cell.indexOf(x, y);
+    if (Float.isNaN(cell.scores[i]) && !Float.isNaN(score)) {
+      ++this.numEvaluated;
+    } else if (!Float.isNaN(cell.scores[i]) && Float.isNaN(score)) {
+      --this.numEvaluated;
+    }
+    cell.scores[i] = score;
+  }
+
+  /**
+   * Forgets the score of a sample, so it will be evaluated again.
+   * 
+   * @param p
+   *          the sample.
+   */
+  public void forget(final Point2D p) {
+    final float x = (float) p.getX();
+    final float y = (float) p.getY();
+    this.lock.writeLock().lock();
+    try {
+      final Cell cell = this.leaf(x, y);
+      final int i = cell.indexOf(x, y);
+      if (i >= 0 && !Float.isNaN(cell.scores[i])) {
+        cell.scores[i] = Float.NaN;
+        --this.numEvaluated;
+      }
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Drops all samples and their scores. Later windows generate the same
+   * lattice points again, unevaluated.
+   */
+  public void clear() {
+    this.lock.writeLock().lock();
+    try {
+      this.root = RefinementQuadTree.createRoot();
+      this.numSamples = 0;
+      this.numEvaluated = 0;
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * The number of samples in the tree.
+   */
+  public int numSamples() {
+    this.lock.readLock().lock();
+    try {
+      return this.numSamples;
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * The number of samples evaluated since the tree was last cleared.
+   */
+  public int numEvaluated() {
+    this.lock.readLock().lock();
+    try {
+      return this.numEvaluated;
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+}
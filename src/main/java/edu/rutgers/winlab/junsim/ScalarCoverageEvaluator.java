@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+/**
+ * Straightforward coverage evaluator that tests every point against every
+ * disk, one pair at a time.
+ *
+ * @author Robert Moore
+ */
+public class ScalarCoverageEvaluator implements CoverageEvaluator {
+
+  @Override
+  public void countCoverage(final float[] px, final float[] py,
+      final int numPoints, final CaptureDiskTable disks,
+      final int[] diskIndices, final int fromDisk, final int toDisk,
+      final int[] counts) {
+    for (int p = 0; p < numPoints; ++p) {
+      final double x = px[p];
+      final double y = py[p];
+      for (int k = fromDisk; k < toDisk; ++k) {
+        if (disks.contains(diskIndices[k], x, y)) {
+          ++counts[p];
+        }
+      }
+    }
+  }
+}
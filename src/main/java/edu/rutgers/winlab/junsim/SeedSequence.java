@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.util.Random;
+
+/**
+ * A node in a tree of random number seeds. Each node derives the seeds of
+ * its children with the SplitMix64 generator, so the stream a trial or task
+ * draws from only depends on the master seed and the node's path from the
+ * root, never on how many numbers other streams have used. Simulations
+ * therefore produce the same results no matter how many threads are used or
+ * in what order tasks run.
+ * <p>
+ * The tree used by the simulations has the master seed from the
+ * configuration at the root, then one node per trial, then one per phase of
+ * the trial (see {@link TaskConfig}), and finally one per task within the
+ * phase.
+ * </p>
+ * 
+ * @author Robert Moore
+ */
+public final class SeedSequence {
+
+  /**
+   * Increment of the SplitMix64 generator (the odd integer closest to
+   * 2<sup>64</sup> divided by the golden ratio).
+   */
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  /**
+   * The seed of this node.
+   */
+  private final long seed;
+
+  /**
+   * Creates the root of a seed tree.
+   * 
+   * @param seed
+   *          the master seed.
+   */
+  public SeedSequence(final long seed) {
+    super();
+    this.seed = seed;
+  }
+
+  /**
+   * Derives the seed of one of this node's children. Children with different
+   * indices have unrelated streams.
+   * 
+   * @param index
+   *          the index of the child, such as a trial or task number.
+   * @return the child node.
+   */
+  public SeedSequence child(final long index) {
+    return new SeedSequence(SeedSequence.mix64(this.seed + GOLDEN_GAMMA
+        * (index + 1)));
+  }
+
+  /**
+   * Creates a new random number generator seeded by this node. Each call
+   * returns a generator that produces the same sequence.
+   * 
+   * @return a new random number generator.
+   */
+  public Random newRandom() {
+    return new Random(SeedSequence.mix64(this.seed));
+  }
+
+  /**
+   * The SplitMix64 output function.
+   * 
+   * @param value
+   *          the value to mix.
+   * @return the mixed value.
+   */
+  private static long mix64(final long value) {
+    long z = value;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
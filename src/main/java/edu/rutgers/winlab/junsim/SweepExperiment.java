@@ -0,0 +1,755 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Greedy receiver placement that finds the deepest point of the capture disk
+ * arrangement by sweeping around circle boundaries, instead of generating and
+ * testing every disk center and pairwise intersection.
+ * <p>
+ * A point is covered by a disk when it is inside the disk and within range of
+ * one of the disk's transmitters, so the deepest region is bounded by disk
+ * boundaries and transmitter range limits, and always touches one of them.
+ * For each of these circles, the arcs covered by the nearby disks are sorted
+ * by angle and swept to find the deepest arc. Only the disks near one circle
+ * are held at a time, so each worker needs memory proportional to the number
+ * of disks, and the global set of candidate points is never built.
+ * </p>
+ * <p>
+ * The receiver is placed just inside the middle of the deepest arc, and the
+ * disks it covers are then determined with the same test as the other
+ * experiments. If rounding moves the receiver off a narrow arc, it is moved
+ * closer to the circle until it covers the arc's depth.
+ * </p>
+ * 
+ * @author Robert Moore
+ * 
+ */
+public class SweepExperiment implements Experiment {
+
+  private static final Logger log = LoggerFactory
+      .getLogger(SweepExperiment.class);
+
+  /**
+   * Number of circles swept by each task.
+   */
+  private static final int CIRCLES_PER_TASK = 64;
+
+  /**
+   * Fraction of the radius by which the receiver is moved inside the swept
+   * circle, so that it is not exactly on the boundary.
+   */
+  static final double INSET = 1e-5;
+
+  /**
+   * Smallest fraction of the radius tried before placing the receiver exactly
+   * on the swept circle. Below this, the inset is lost to {@code float}
+   * rounding anyway.
+   */
+  static final double MIN_INSET = 1e-9;
+
+  private static final double TWO_PI = 2 * Math.PI;
+
+  /**
+   * Configuration for this task.
+   */
+  final TaskConfig config;
+  /**
+   * Statistics to update.
+   */
+  final ExperimentStats stats[];
+  /**
+   * Name of the directory in which to save images.
+   */
+  String saveDirectory = null;
+  /**
+   * Pool of worker threads to utilize.
+   */
+  private final ExecutorService workers;
+
+  /**
+   * Creates a new experiment task with the specific configuration, global stats
+   * to update, and worker pool.
+   * 
+   * @param config
+   *          configuration to use.
+   * @param stats
+   *          statistics to update at the end
+   * @param workers
+   *          worker threadpool to utilize.
+   */
+  public SweepExperiment(final TaskConfig config,
+      final ExperimentStats[] stats, final ExecutorService workers) {
+    super();
+    this.workers = workers;
+    this.config = config;
+    this.stats = stats;
+    this.saveDirectory = Main.buildPath(String.format("s%d_t%d_x%d",
+        Long.valueOf(Main.config.randomSeed),
+        Integer.valueOf(this.config.numTransmitters),
+        Integer.valueOf(this.config.trialNumber)));
+  }
+
+  /**
+   * Sweeps one circle at a time for the deepest arc covered by a set of disks.
+   * Circles with an index below {@link CaptureDiskTable#length()} are the
+   * boundaries of the capture disks, the rest are the range limits of the
+   * transmitters. Not thread-safe, so each worker keeps its own.
+   * 
+   * @author Robert Moore
+   */
+  static final class CircleSweep {
+    /**
+     * Angle of the middle of the deepest arc of the last circle swept.
+     */
+    double angle = 0;
+
+    /**
+     * Arcs of one disk and of the range limits of its transmitters.
+     */
+    private final double[] diskArc = new double[4];
+    private final double[] range1Arc = new double[4];
+    private final double[] range2Arc = new double[4];
+    private final double[] rangeArcs = new double[8];
+    private final double[] coveredArcs = new double[12];
+    private final double[] clippedArcs = new double[20];
+    private double[] starts = new double[64];
+    private double[] ends = new double[64];
+
+    /**
+     * Finds the deepest arc of a circle. The disks that cover a point of the
+     * circle must all be among the candidates, or the depth will be too low.
+     * 
+     * @param table
+     *          the capture disks.
+     * @param c
+     *          the index of the circle.
+     * @param cx
+     *          the x-coordinate of the center of the circle.
+     * @param cy
+     *          the y-coordinate of the center of the circle.
+     * @param r
+     *          the radius of the circle.
+     * @param candidates
+     *          the indices of the disks that may cover part of the circle.
+     * @param numCandidates
+     *          the number of indices in {@code candidates}.
+     * @return the number of candidates covering the deepest arc, whose middle
+     *         is then stored in {@link #angle}.
+     */
+    int sweep(final CaptureDiskTable table, final int c, final double cx,
+        final double cy, final double r, final int[] candidates,
+        final int numCandidates) {
+      return this.sweep(table, c, cx, cy, r, candidates, numCandidates, null,
+          0);
+    }
+
+    /**
+     * Finds the deepest arc of a circle within some arcs of it, such as the
+     * arcs inside a rectangle from {@link SweepExperiment#arcsInRect}.
+     * 
+     * @param table
+     *          the capture disks.
+     * @param c
+     *          the index of the circle.
+     * @param cx
+     *          the x-coordinate of the center of the circle.
+     * @param cy
+     *          the y-coordinate of the center of the circle.
+     * @param r
+     *          the radius of the circle.
+     * @param candidates
+     *          the indices of the disks that may cover part of the circle.
+     * @param numCandidates
+     *          the number of indices in {@code candidates}.
+     * @param clip
+     *          the arcs to search, at most 5, or {@code null} for the whole
+     *          circle.
+     * @param numClip
+     *          the number of arcs in {@code clip}.
+     * @return the number of candidates covering the deepest arc, whose middle
+     *         is then stored in {@link #angle}.
+     */
+    int sweep(final CaptureDiskTable table, final int c, final double cx,
+        final double cy, final double r, final int[] candidates,
+        final int numCandidates, final double[] clip, final int numClip) {
+      final double maxRange = Math.sqrt(table.maxRangeSquared);
+      final int numDisks = table.length();
+      // Each disk covers at most 5 separate arcs of the circle, and at most 9
+      // of the arcs within the clip arcs
+      if (10 * numCandidates > this.starts.length) {
+        this.starts = new double[10 * numCandidates];
+        this.ends = new double[10 * numCandidates];
+      }
+      final double[] starts = this.starts;
+      final double[] ends = this.ends;
+      int numArcs = 0;
+      for (int k = 0; k < numCandidates; ++k) {
+        final int j = candidates[k];
+        final int numDisk = j == c ? fullArc(this.diskArc) : arcs(cx, cy, r,
+            table.centerX[j], table.centerY[j], table.radius[j], this.diskArc);
+        if (numDisk == 0) {
+          continue;
+        }
+        final int tx1 = table.t1[j];
+        final int tx2 = table.t2[j];
+        final int numRange1 = tx1 + numDisks == c ? fullArc(this.range1Arc)
+            : arcs(cx, cy, r, table.txX[tx1], table.txY[tx1], maxRange,
+                this.range1Arc);
+        final int numRange2 = tx2 + numDisks == c ? fullArc(this.range2Arc)
+            : arcs(cx, cy, r, table.txX[tx2], table.txY[tx2], maxRange,
+                this.range2Arc);
+        final int numRange = union(this.range1Arc, numRange1, this.range2Arc,
+            numRange2, this.rangeArcs);
+        int numCovered = intersect(this.diskArc, numDisk, this.rangeArcs,
+            numRange, this.coveredArcs);
+        double[] covered = this.coveredArcs;
+        if (clip != null) {
+          numCovered = intersect(covered, numCovered, clip, numClip,
+              this.clippedArcs);
+          covered = this.clippedArcs;
+        }
+        for (int a = 0; a < numCovered; ++a) {
+          starts[numArcs] = covered[2 * a];
+          ends[numArcs] = covered[2 * a + 1];
+          ++numArcs;
+        }
+      }
+      Arrays.sort(starts, 0, numArcs);
+      Arrays.sort(ends, 0, numArcs);
+
+      /*
+       * Merge the sorted starts and ends. Starts are processed before ends at
+       * the same angle because the disks are closed.
+       */
+      int depth = 0;
+      int maxDepth = 0;
+      double maxStart = 0;
+      double maxEnd = 0;
+      int s = 0;
+      int e = 0;
+      while (s < numArcs) {
+        if (starts[s] <= ends[e]) {
+          final double angle = starts[s++];
+          if (++depth > maxDepth) {
+            maxDepth = depth;
+            maxStart = angle;
+            maxEnd = s < numArcs ? Math.min(starts[s], ends[e]) : ends[e];
+          }
+        } else {
+          ++e;
+          --depth;
+        }
+      }
+      this.angle = (maxStart + maxEnd) / 2;
+      return maxDepth;
+    }
+  }
+
+  /**
+   * Sweeps a range of circles and keeps the deepest arc found. Ties go to the
+   * lowest circle index, then to the lowest angle.
+   * 
+   * @author Robert Moore
+   * 
+   */
+  static final class SweepTask implements Callable<Integer> {
+    /**
+     * The live disks.
+     */
+    final DiskGrid diskIndex;
+    /**
+     * First circle index to sweep.
+     */
+    final int from;
+    /**
+     * One past the last circle index to sweep.
+     */
+    final int to;
+    /**
+     * Depth of the deepest arc found.
+     */
+    int bestDepth = 0;
+    /**
+     * Index of the circle holding the deepest arc.
+     */
+    int bestCircle = -1;
+    /**
+     * Angle of the middle of the deepest arc.
+     */
+    double bestAngle = 0;
+
+    private final CircleSweep sweep = new CircleSweep();
+
+    SweepTask(final DiskGrid diskIndex, final int from, final int to) {
+      super();
+      this.diskIndex = diskIndex;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public Integer call() {
+      final CaptureDiskTable table = this.diskIndex.table;
+      final double maxRange = Math.sqrt(table.maxRangeSquared);
+      final int numDisks = table.length();
+      final int[] candidates = new int[numDisks + 1];
+      int swept = 0;
+      for (int c = this.from; c < this.to; ++c) {
+        final double cx;
+        final double cy;
+        final double r;
+        int numCandidates;
+        if (c < numDisks) {
+          if (!table.isLive(c)) {
+            continue;
+          }
+          cx = table.centerX[c];
+          cy = table.centerY[c];
+          r = table.radius[c];
+          numCandidates = this.diskIndex.collectOverlapping(c, false,
+              candidates);
+          candidates[numCandidates++] = c;
+        } else {
+          cx = table.txX[c - numDisks];
+          cy = table.txY[c - numDisks];
+          r = maxRange;
+          numCandidates = this.diskIndex.collectOverlapping(cx, cy, r,
+              candidates);
+        }
+        final int maxDepth = this.sweep.sweep(table, c, cx, cy, r,
+            candidates, numCandidates);
+        if (maxDepth > this.bestDepth) {
+          this.bestDepth = maxDepth;
+          this.bestCircle = c;
+          this.bestAngle = this.sweep.angle;
+        }
+        ++swept;
+      }
+      return Integer.valueOf(swept);
+    }
+  }
+
+  /**
+   * Stores the whole of a circle as a single arc.
+   * 
+   * @param out
+   *          storage for the arc.
+   * @return the number of arcs stored, always 1.
+   */
+  static int fullArc(final double[] out) {
+    out[0] = 0;
+    out[1] = TWO_PI;
+    return 1;
+  }
+
+  /**
+   * Computes the arc of circle {@code (cx, cy, r)} that lies within disk
+   * {@code (ox, oy, or)}. Angles are measured counter-clockwise from the
+   * positive x-axis, and an arc that passes through angle 0 is split in two.
+   * 
+   * @param cx
+   *          the x-coordinate of the center of the circle.
+   * @param cy
+   *          the y-coordinate of the center of the circle.
+   * @param r
+   *          the radius of the circle.
+   * @param ox
+   *          the x-coordinate of the center of the disk.
+   * @param oy
+   *          the y-coordinate of the center of the disk.
+   * @param or
+   *          the radius of the disk.
+   * @param out
+   *          storage for the start and end angle of each arc, in increasing
+   *          order.
+   * @return the number of arcs stored, from 0 to 2.
+   */
+  static int arcs(final double cx, final double cy, final double r,
+      final double ox, final double oy, final double or, final double[] out) {
+    final double dx = ox - cx;
+    final double dy = oy - cy;
+    final double d = Math.sqrt(dx * dx + dy * dy);
+    if (d + r <= or) {
+      return fullArc(out);
+    }
+    if (d > r + or || d + or <= r) {
+      return 0;
+    }
+    final double halfWidth = Math.acos(Math.max(-1,
+        Math.min(1, (r * r + d * d - or * or) / (2 * r * d))));
+    return arcAround(Math.atan2(dy, dx), halfWidth, out);
+  }
+
+  /**
+   * Stores the arc of angles within {@code halfWidth} of {@code center},
+   * split in two if it passes through angle 0.
+   * 
+   * @param center
+   *          the angle of the middle of the arc, from -pi to 2 pi.
+   * @param halfWidth
+   *          half the width of the arc, from 0 to pi.
+   * @param out
+   *          storage for the start and end angle of each arc, in increasing
+   *          order.
+   * @return the number of arcs stored, 1 or 2.
+   */
+  static int arcAround(final double center, final double halfWidth,
+      final double[] out) {
+    double start = center - halfWidth;
+    if (start < 0) {
+      start += TWO_PI;
+    }
+    final double end = start + 2 * halfWidth;
+    if (end > TWO_PI) {
+      out[0] = 0;
+      out[1] = end - TWO_PI;
+      out[2] = start;
+      out[3] = TWO_PI;
+      return 2;
+    }
+    out[0] = start;
+    out[1] = end;
+    return 1;
+  }
+
+  /**
+   * Computes the arcs of circle {@code (cx, cy, r)} that lie within a
+   * rectangle, as the intersection of the arcs on the inner side of each of
+   * its edges.
+   * 
+   * @param cx
+   *          the x-coordinate of the center of the circle.
+   * @param cy
+   *          the y-coordinate of the center of the circle.
+   * @param r
+   *          the radius of the circle.
+   * @param minX
+   *          the left edge of the rectangle.
+   * @param maxX
+   *          the right edge of the rectangle.
+   * @param minY
+   *          the bottom edge of the rectangle.
+   * @param maxY
+   *          the top edge of the rectangle.
+   * @param out
+   *          storage for the arcs, at least 16 long.
+   * @return the number of arcs stored in {@code out}, at most 5.
+   */
+  static int arcsInRect(final double cx, final double cy, final double r,
+      final double minX, final double maxX, final double minY,
+      final double maxY, final double[] out) {
+    final double[] edge = new double[4];
+    final double[] clipped = new double[16];
+    int num = fullArc(out);
+    // Each edge keeps the angles whose cosine from the edge's inward normal
+    // is at least the (signed) distance from the center to the edge over r
+    final double[] limits = { (minX - cx) / r, (cx - maxX) / r,
+        (minY - cy) / r, (cy - maxY) / r };
+    final double[] normals = { 0, Math.PI, Math.PI / 2, 3 * Math.PI / 2 };
+    for (int e = 0; e < 4 && num > 0; ++e) {
+      if (limits[e] <= -1) {
+        continue;
+      }
+      if (limits[e] > 1) {
+        return 0;
+      }
+      final int numEdge = arcAround(normals[e], Math.acos(limits[e]), edge);
+      num = intersect(out, num, edge, numEdge, clipped);
+      System.arraycopy(clipped, 0, out, 0, 2 * num);
+    }
+    return num;
+  }
+
+  /**
+   * Merges two ordered lists of disjoint arcs.
+   * 
+   * @param a
+   *          the first list of arcs.
+   * @param numA
+   *          the number of arcs in {@code a}.
+   * @param b
+   *          the second list of arcs.
+   * @param numB
+   *          the number of arcs in {@code b}.
+   * @param out
+   *          storage for the union, at least {@code 2 * (numA + numB)} long.
+   * @return the number of arcs stored in {@code out}.
+   */
+  static int union(final double[] a, final int numA, final double[] b,
+      final int numB, final double[] out) {
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < numA || j < numB) {
+      final double start;
+      final double end;
+      if (j == numB || (i < numA && a[2 * i] <= b[2 * j])) {
+        start = a[2 * i];
+        end = a[2 * i + 1];
+        ++i;
+      } else {
+        start = b[2 * j];
+        end = b[2 * j + 1];
+        ++j;
+      }
+      if (count > 0 && start <= out[2 * count - 1]) {
+        out[2 * count - 1] = Math.max(out[2 * count - 1], end);
+      } else {
+        out[2 * count] = start;
+        out[2 * count + 1] = end;
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Intersects two ordered lists of disjoint arcs.
+   * 
+   * @param a
+   *          the first list of arcs.
+   * @param numA
+   *          the number of arcs in {@code a}.
+   * @param b
+   *          the second list of arcs.
+   * @param numB
+   *          the number of arcs in {@code b}.
+   * @param out
+   *          storage for the intersection, at least {@code 2 * (numA + numB)}
+   *          long.
+   * @return the number of arcs stored in {@code out}.
+   */
+  static int intersect(final double[] a, final int numA, final double[] b,
+      final int numB, final double[] out) {
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < numA && j < numB) {
+      final double start = Math.max(a[2 * i], b[2 * j]);
+      final double end = Math.min(a[2 * i + 1], b[2 * j + 1]);
+      if (start <= end) {
+        out[2 * count] = start;
+        out[2 * count + 1] = end;
+        ++count;
+      }
+      if (a[2 * i + 1] < b[2 * j + 1]) {
+        ++i;
+      } else {
+        ++j;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Sweeps every live disk and every transmitter range limit, and returns the
+   * deepest arc.
+   * 
+   * @param diskIndex
+   *          the live disks.
+   * @return the task holding the deepest arc, or {@code null} if no point is
+   *         covered.
+   */
+  SweepTask findDeepest(final DiskGrid diskIndex) {
+    final List<SweepTask> tasks = new ArrayList<SweepTask>();
+    final int numCircles = diskIndex.table.length()
+        + diskIndex.table.txX.length;
+    for (int from = 0; from < numCircles; from += CIRCLES_PER_TASK) {
+      tasks.add(new SweepTask(diskIndex, from, Math.min(numCircles, from
+          + CIRCLES_PER_TASK)));
+    }
+    Main.runAll(tasks, this.workers);
+    SweepTask best = null;
+    for (final SweepTask task : tasks) {
+      if (task.bestCircle >= 0
+          && (best == null || task.bestDepth > best.bestDepth)) {
+        best = task;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Places a receiver just inside the middle of the deepest arc. The receiver's
+   * coordinates are rounded to {@code float}, which can move it off a narrow
+   * arc, so the inset is halved until the receiver covers {@code depth} disks,
+   * and finally the receiver is placed exactly on the circle.
+   * 
+   * @param diskIndex
+   *          the live disks.
+   * @param cx
+   *          the x-coordinate of the center of the swept circle.
+   * @param cy
+   *          the y-coordinate of the center of the swept circle.
+   * @param r
+   *          the radius of the swept circle.
+   * @param angle
+   *          the angle of the middle of the deepest arc.
+   * @param depth
+   *          the depth of the deepest arc.
+   * @return the receiver covering the most disks of the positions tried.
+   */
+  static Receiver placeReceiver(final DiskGrid diskIndex, final double cx,
+      final double cy, final double r, final double angle, final int depth) {
+    final double cos = Math.cos(angle);
+    final double sin = Math.sin(angle);
+    Receiver best = null;
+    for (double fraction = INSET;; fraction /= 2) {
+      final boolean onCircle = fraction < MIN_INSET;
+      final double inset = onCircle ? r : r * (1 - fraction);
+      final Point2D.Float witness = new Point2D.Float(
+          (float) (cx + inset * cos), (float) (cy + inset * sin));
+      final Collection<CaptureDisk> covering = diskIndex.collectCovering(
+          witness.getX(), witness.getY());
+      if (best == null || covering.size() > best.coveringDisks.size()) {
+        best = new Receiver();
+        best.setLocation(witness);
+        best.coveringDisks = covering;
+      }
+      if (best.coveringDisks.size() >= depth || onCircle) {
+        return best;
+      }
+    }
+  }
+
+  public Boolean perform() {
+    final FileRenderer display = new FileRenderer(Main.gfxConfig);
+
+    // Compute all possible capture disks
+    final CaptureDiskTable disks = Main
+        .generateCaptureDisks(this.config.transmitters, this.workers);
+    final DiskGrid diskIndex = new DiskGrid(disks);
+    if (Main.gfxConfig.generateImages) {
+      display.setTransmitters(this.config.transmitters);
+      display.setCaptureDisks(disks.getLiveDisks());
+      final String saveName = this.saveDirectory + File.separator + "1000";
+      Main.saveImage(display, saveName);
+      display.clear();
+    }
+    log.info("[" + this.config.trialNumber + "] Generated " + disks.size()
+        + " disks.");
+
+    final int totalCaptureDisks = disks.size();
+    int m = 0;
+
+    // Removed disks are counted as covered, and each covered disk is one
+    // captured collision of its transmitter
+    final TransmitterCounters counters = disks.getCounters();
+
+    while (m < this.config.numReceivers && !disks.isEmpty()) {
+      log.info("[" + this.config.trialNumber
+          + "] Calculating position for receiver " + (m + 1) + ".");
+      final long start = System.currentTimeMillis();
+      final SweepTask deepest = this.findDeepest(diskIndex);
+      if (deepest == null) {
+        break;
+      }
+      final CaptureDiskTable table = diskIndex.table;
+      final int c = deepest.bestCircle;
+      final double cx;
+      final double cy;
+      final double r;
+      if (c < table.length()) {
+        cx = table.centerX[c];
+        cy = table.centerY[c];
+        r = table.radius[c];
+      } else {
+        cx = table.txX[c - table.length()];
+        cy = table.txY[c - table.length()];
+        r = Main.config.maxRangeMeters;
+      }
+      final Receiver maxReceiver = SweepExperiment.placeReceiver(diskIndex,
+          cx, cy, r, deepest.bestAngle, deepest.bestDepth);
+      if (maxReceiver.coveringDisks.size() < deepest.bestDepth) {
+        log.warn(String.format(
+            "[%d] Receiver at %s covers %,d disks, fewer than the depth %,d of its arc.",
+            Integer.valueOf(this.config.trialNumber), maxReceiver,
+            Integer.valueOf(maxReceiver.coveringDisks.size()),
+            Integer.valueOf(deepest.bestDepth)));
+      }
+      log.info(String.format(
+          "Maximum depth %,d on circle %,d, receiver covers %,d disks (%,dms).",
+          Integer.valueOf(deepest.bestDepth), Integer.valueOf(c),
+          Integer.valueOf(maxReceiver.coveringDisks.size()),
+          Long.valueOf(System.currentTimeMillis() - start)));
+      if (maxReceiver.coveringDisks.isEmpty()) {
+        break;
+      }
+
+      this.config.receivers.add(maxReceiver);
+      disks.removeAll(maxReceiver.coveringDisks);
+      diskIndex.removeAll(maxReceiver.coveringDisks);
+
+      // Calculate collision rates for each transmitter
+      // Store the min, max, and mean
+      float mean_contention = 0.0f;
+      float min_contention = this.config.numTransmitters;
+      float max_contention = 0.0f;
+      for (int t = 0; t < counters.numTransmitters(); ++t) {
+        // Calculate the number of transmitters in contention
+        // Subtract 1 because this transmitter can never be in contention with
+        // itself
+        final int num_in_contention = this.config.numTransmitters - 1
+            - counters.coveredDisks[t];
+
+        min_contention = Math.min(num_in_contention, min_contention);
+        max_contention = Math.max(num_in_contention, max_contention);
+        mean_contention += (float) num_in_contention
+            / this.config.numTransmitters;
+      }
+      this.stats[m].addContention(mean_contention);
+      this.stats[m].addMinContention(min_contention);
+      this.stats[m].addMaxContention(max_contention);
+
+      final float capturedDisks = totalCaptureDisks - disks.size();
+      final float captureRatio = (capturedDisks / totalCaptureDisks);
+      // Debugging stuff
+      if (Main.gfxConfig.generateImages) {
+        display.setTransmitters(this.config.transmitters);
+        display.setCaptureDisks(disks.getLiveDisks());
+        display.setReceiverPoints(this.config.receivers);
+
+        final String saveName = String.format(this.saveDirectory
+            + File.separator + "1%03d", Integer.valueOf(m + 1));
+        Main.saveImage(display, saveName);
+        display.clear();
+      }
+
+      this.stats[m].addCoverage(captureRatio);
+      ++m;
+    } // End for each receiver
+
+    disks.clear();
+    this.config.transmitters.clear();
+    Runtime.getRuntime().gc();
+    return Boolean.TRUE;
+  }
+}
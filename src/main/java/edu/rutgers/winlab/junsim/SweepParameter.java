@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.util.List;
+
+/**
+ * One axis of a parameter sweep: a {@link Config} field and the values it
+ * takes. The values are either listed explicitly, or given as a range with
+ * {@code from}, {@code to} and {@code step}.
+ * 
+ * @author Robert Moore
+ */
+public class SweepParameter {
+
+  /**
+   * Name of the {@code Config} field to vary.
+   */
+  String name;
+
+  /**
+   * Explicit values of the field.
+   */
+  List<String> values;
+
+  /**
+   * First value of a range.
+   */
+  Double from;
+
+  /**
+   * Last value of a range (inclusive).
+   */
+  Double to;
+
+  /**
+   * Increment between the values of a range.
+   */
+  Double step;
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public List<String> getValues() {
+    return values;
+  }
+
+  public void setValues(List<String> values) {
+    this.values = values;
+  }
+
+  public Double getFrom() {
+    return from;
+  }
+
+  public void setFrom(Double from) {
+    this.from = from;
+  }
+
+  public Double getTo() {
+    return to;
+  }
+
+  public void setTo(Double to) {
+    this.to = to;
+  }
+
+  public Double getStep() {
+    return step;
+  }
+
+  public void setStep(Double step) {
+    this.step = step;
+  }
+}
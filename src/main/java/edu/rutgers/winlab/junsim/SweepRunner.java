@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Runs every point of a parameter sweep in a single JVM, and writes the
+ * results of all points to one table. Each point runs its trials on the
+ * shared worker threads (and, if configured, runs several trials at once),
+ * and transmitter layouts are generated once and shared by every point that
+ * uses the same layout parameters.
+ * <p>
+ * Points are run one after another because the simulation reads its
+ * parameters from {@link Main#config}.
+ * </p>
+ * 
+ * @author Robert Moore
+ */
+public class SweepRunner {
+
+  private static final Logger log = LoggerFactory.getLogger(SweepRunner.class);
+
+  /**
+   * Configuration fields that are the same at every point: the worker threads
+   * and the rendering configuration are set up once, and each point is given
+   * its own output directory.
+   */
+  private static final Set<String> FIXED_FIELDS = new HashSet<String>(
+      Arrays.asList("numThreads", "renderConfig", "outputBasePath"));
+
+  /**
+   * The sweep to run.
+   */
+  final SweepSpec spec;
+
+  /**
+   * Reads and writes configurations.
+   */
+  final XStream xstream;
+
+  /**
+   * The configuration every point starts from.
+   */
+  final Config baseConfig;
+
+  /**
+   * The values of each parameter, in the same order as the parameters of the
+   * sweep.
+   */
+  final List<String[]> values = new ArrayList<String[]>();
+
+  /**
+   * Parses the sweep file and runs the sweep.
+   * 
+   * @param args
+   *          the sweep file.
+   * @throws IOException
+   *           if a file cannot be read or written.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: SweepRunner <sweep file>");
+      return;
+    }
+    System.out.println("Using sweep file " + args[0]);
+    final XStream xstream = SweepRunner.createXStream();
+    final SweepSpec spec = (SweepSpec) xstream.fromXML(new File(args[0]));
+    final SweepRunner runner = new SweepRunner(spec, xstream);
+
+    // The base configuration decides the number of worker threads
+    Main.config = runner.baseConfig;
+    Main.initialize();
+    Main.layouts = new LayoutCache();
+
+    runner.run();
+
+    Main.workers.shutdown();
+    System.out.println("Waiting up to 60 seconds for threadpool to terminate.");
+    try {
+      Main.workers.awaitTermination(60, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Creates an XStream instance that reads sweep files.
+   * 
+   * @return the new XStream instance.
+   */
+  static XStream createXStream() {
+    final XStream xstream = new XStream();
+    xstream.alias("sweep", SweepSpec.class);
+    xstream.alias("parameter", SweepParameter.class);
+    xstream.addImplicitCollection(SweepParameter.class, "values", "value",
+        String.class);
+    return xstream;
+  }
+
+  /**
+   * Prepares a sweep, reading its base configuration and expanding the values
+   * of its parameters.
+   * 
+   * @param spec
+   *          the sweep to run.
+   * @param xstream
+   *          reads and writes configurations.
+   */
+  public SweepRunner(final SweepSpec spec, final XStream xstream) {
+    super();
+    this.spec = spec;
+    this.xstream = xstream;
+    this.baseConfig = (Config) xstream.fromXML(new File(spec.baseConfig));
+    for (final SweepParameter param : spec.parameters) {
+      this.values.add(SweepRunner.expand(param));
+    }
+  }
+
+  /**
+   * Lists the values a parameter takes.
+   * 
+   * @param param
+   *          the parameter.
+   * @return the values of the parameter, as they would appear in a
+   *         configuration file.
+   */
+  static String[] expand(final SweepParameter param) {
+    final Field field = SweepRunner.getField(param.name);
+    if (param.values != null && !param.values.isEmpty()) {
+      return param.values.toArray(new String[param.values.size()]);
+    }
+    if (param.from == null || param.to == null || param.step == null) {
+      throw new IllegalArgumentException("Parameter \"" + param.name
+          + "\" needs either values or a from/to/step range.");
+    }
+    final double from = param.from.doubleValue();
+    final double step = param.step.doubleValue();
+    if (!(step > 0) || param.to.doubleValue() < from) {
+      throw new IllegalArgumentException("Parameter \"" + param.name
+          + "\" has an empty range.");
+    }
+    final int count = (int) Math
+        .floor((param.to.doubleValue() - from) / step + 1e-9) + 1;
+    final Class<?> type = field.getType();
+    final boolean integral = type == int.class || type == long.class;
+    final String[] expanded = new String[count];
+    for (int i = 0; i < count; ++i) {
+      final double value = from + i * step;
+      expanded[i] = integral ? Long.toString(Math.round(value)) : Float
+          .toString((float) value);
+    }
+    return expanded;
+  }
+
+  /**
+   * Finds a configuration field that can be swept by name.
+   * 
+   * @param name
+   *          the name of the field.
+   * @return the field.
+   */
+  static Field getField(final String name) {
+    if (FIXED_FIELDS.contains(name)) {
+      throw new IllegalArgumentException("Configuration field \"" + name
+          + "\" cannot change between the points of a sweep.");
+    }
+    try {
+      final Field field = Config.class.getDeclaredField(name);
+      field.setAccessible(true);
+      return field;
+    } catch (final NoSuchFieldException e) {
+      throw new IllegalArgumentException("Unknown configuration field \""
+          + name + "\".", e);
+    }
+  }
+
+  /**
+   * Sets a configuration field from its textual value.
+   * 
+   * @param config
+   *          the configuration to change.
+   * @param name
+   *          the name of the field.
+   * @param value
+   *          the new value of the field.
+   */
+  static void setField(final Config config, final String name,
+      final String value) {
+    final Field field = SweepRunner.getField(name);
+    final Class<?> type = field.getType();
+    final String trimmed = value.trim();
+    try {
+      if (type == int.class) {
+        field.setInt(config, Integer.parseInt(trimmed));
+      } else if (type == long.class) {
+        field.setLong(config, Long.parseLong(trimmed));
+      } else if (type == float.class) {
+        field.setFloat(config, Float.parseFloat(trimmed));
+      } else if (type == double.class) {
+        field.setDouble(config, Double.parseDouble(trimmed));
+      } else if (type == boolean.class) {
+        field.setBoolean(config, Boolean.parseBoolean(trimmed));
+      } else if (type == String.class) {
+        field.set(config, value);
+      } else {
+        throw new IllegalArgumentException("Configuration field \"" + name
+            + "\" cannot be swept.");
+      }
+    } catch (final IllegalAccessException e) {
+      throw new IllegalStateException("Unable to set configuration field \""
+          + name + "\".", e);
+    }
+  }
+
+  /**
+   * Runs every point of the sweep and writes the combined results table.
+   * 
+   * @throws IOException
+   *           if a file cannot be read or written.
+   */
+  public void run() throws IOException {
+    int numPoints = 1;
+    for (final String[] paramValues : this.values) {
+      numPoints *= paramValues.length;
+    }
+
+    final File outputFile = new File(this.spec.outputBasePath,
+        this.spec.outputFileName);
+    if (outputFile.getParentFile() != null) {
+      outputFile.getParentFile().mkdirs();
+    }
+    final PrintWriter tableWriter = new PrintWriter(new FileWriter(outputFile));
+    try {
+      final StringBuilder header = new StringBuilder("# Point");
+      for (final SweepParameter param : this.spec.parameters) {
+        header.append(", ").append(param.name);
+      }
+      header.append(", ").append(Main.STATS_HEADER);
+      tableWriter.println(header);
+
+      final String baseXml = this.xstream.toXML(this.baseConfig);
+      final int[] indices = new int[this.values.size()];
+      for (int point = 0; point < numPoints; ++point) {
+        // Decode the point number, with the first parameter changing slowest
+        int remainder = point;
+        for (int i = indices.length - 1; i >= 0; --i) {
+          indices[i] = remainder % this.values.get(i).length;
+          remainder /= this.values.get(i).length;
+        }
+
+        final Config config = (Config) this.xstream.fromXML(baseXml);
+        final StringBuilder row = new StringBuilder();
+        row.append(point);
+        for (int i = 0; i < indices.length; ++i) {
+          final String value = this.resolve(this.values.get(i)[indices[i]],
+              indices);
+          SweepRunner.setField(config, this.spec.parameters.get(i).name, value);
+          row.append(", ").append(SweepRunner.quote(value));
+        }
+        // Each point keeps its own files, and shares the worker threads
+        config.outputBasePath = new File(this.spec.outputBasePath,
+            String.format("point-%d", Integer.valueOf(point))).getPath();
+        new File(config.outputBasePath).mkdirs();
+        config.numThreads = Main.maxConcurrentTasks;
+        Main.config = config;
+
+        log.info(String.format("Point %,d of %,d: %s",
+            Integer.valueOf(point + 1), Integer.valueOf(numPoints), row));
+        final long start = System.currentTimeMillis();
+        final ExperimentStats[] stats = Main.runTrials();
+        log.info(String.format("Point %,d finished in %,dms.",
+            Integer.valueOf(point + 1),
+            Long.valueOf(System.currentTimeMillis() - start)));
+
+        for (final ExperimentStats s : stats) {
+          tableWriter.printf("%s, %s\n", row, Main.formatStats(s));
+        }
+        tableWriter.flush();
+      }
+    } finally {
+      // Keep the rows of the points that finished
+      tableWriter.close();
+    }
+
+    log.info(String.format("Generated %,d transmitter layouts, reused %,d.",
+        Integer.valueOf(Main.layouts == null ? 0 : Main.layouts.size()),
+        Integer.valueOf(Main.layouts == null ? 0 : Main.layouts.getHits())));
+  }
+
+  /**
+   * Replaces each "${name}" in a value with the value that the parameter
+   * called name takes at a point of the sweep, so that, for example, each
+   * transmitter distribution can keep its own transmitters file.
+   * 
+   * @param value
+   *          the value to resolve.
+   * @param indices
+   *          the index of each parameter's value at the point.
+   * @return the value with every reference replaced.
+   */
+  String resolve(final String value, final int[] indices) {
+    final StringBuilder resolved = new StringBuilder();
+    int from = 0;
+    for (int start = value.indexOf("${"); start >= 0; start = value.indexOf(
+        "${", from)) {
+      final int end = value.indexOf('}', start);
+      if (end < 0) {
+        break;
+      }
+      final String name = value.substring(start + 2, end);
+      resolved.append(value, from, start).append(
+          this.valueOf(name, indices));
+      from = end + 1;
+    }
+    return resolved.append(value.substring(from)).toString();
+  }
+
+  /**
+   * The value a parameter takes at a point of the sweep.
+   * 
+   * @param name
+   *          the name of the parameter.
+   * @param indices
+   *          the index of each parameter's value at the point.
+   * @return the value of the parameter.
+   */
+  private String valueOf(final String name, final int[] indices) {
+    for (int i = 0; i < indices.length; ++i) {
+      if (this.spec.parameters.get(i).name.equals(name)) {
+        return this.values.get(i)[indices[i]];
+      }
+    }
+    throw new IllegalArgumentException("Unknown sweep parameter \"" + name
+        + "\".");
+  }
+
+  /**
+   * Quotes a value for the results table if it contains a comma or quote.
+   * 
+   * @param value
+   *          the value.
+   * @return the value, quoted if necessary.
+   */
+  private static String quote(final String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+      return value;
+    }
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+}
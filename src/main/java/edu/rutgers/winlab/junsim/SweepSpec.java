@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes a parameter sweep: a base configuration, and the configuration
+ * fields to vary. Every combination of the parameters' values is simulated.
+ * 
+ * @author Robert Moore
+ */
+public class SweepSpec {
+
+  /**
+   * Configuration file that every point of the sweep starts from.
+   */
+  String baseConfig = "config.xml";
+
+  /**
+   * Directory for the results table and the files of each point.
+   */
+  String outputBasePath = "sweep";
+
+  /**
+   * File name of the combined results table.
+   */
+  String outputFileName = "sweep.csv";
+
+  /**
+   * The parameters to vary. The first parameter changes most slowly.
+   */
+  List<SweepParameter> parameters = new ArrayList<SweepParameter>();
+
+  /**
+   * Fills in defaults for any elements missing from the sweep file.
+   * 
+   * @return this object.
+   */
+  private Object readResolve() {
+    if (this.baseConfig == null) {
+      this.baseConfig = "config.xml";
+    }
+    if (this.outputBasePath == null) {
+      this.outputBasePath = "sweep";
+    }
+    if (this.outputFileName == null) {
+      this.outputFileName = "sweep.csv";
+    }
+    if (this.parameters == null) {
+      this.parameters = new ArrayList<SweepParameter>();
+    }
+    return this;
+  }
+
+  public String getBaseConfig() {
+    return baseConfig;
+  }
+
+  public void setBaseConfig(String baseConfig) {
+    this.baseConfig = baseConfig;
+  }
+
+  public String getOutputBasePath() {
+    return outputBasePath;
+  }
+
+  public void setOutputBasePath(String outputBasePath) {
+    this.outputBasePath = outputBasePath;
+  }
+
+  public String getOutputFileName() {
+    return outputFileName;
+  }
+
+  public void setOutputFileName(String outputFileName) {
+    this.outputFileName = outputFileName;
+  }
+
+  public List<SweepParameter> getParameters() {
+    return parameters;
+  }
+
+  public void setParameters(List<SweepParameter> parameters) {
+    this.parameters = parameters;
+  }
+}
@@ -18,6 +18,7 @@
 package edu.rutgers.winlab.junsim;
 
 import java.util.Collection;
+import java.util.Random;
 
 /**
  * Configuration for a simulation task.
@@ -44,5 +45,33 @@ public class TaskConfig {
   
   Collection<Receiver> receivers;
   
+  /**
+   * Seed phase used to generate the transmitter locations.
+   */
+  static final int LAYOUT_PHASE = 0;
+  
+  /**
+   * Seed phase used to randomize the locations of candidate receivers.
+   */
+  static final int JITTER_PHASE = 1;
+  
+  /**
+   * Seeds of this trial.
+   */
+  SeedSequence seeds;
+  
+  /**
+   * Creates the random number generator of a single task of this trial.
+   * 
+   * @param phase
+   *          the phase of the trial the task belongs to.
+   * @param task
+   *          the number of the task within its phase.
+   * @return a new random number generator for the task.
+   */
+  Random taskRandom(final int phase, final long task) {
+    return this.seeds.child(phase).child(task).newRandom();
+  }
+  
   
 }
@@ -29,19 +29,38 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 
 /**
  * @author Robert Moore
  */
 public class Transmitter extends Point2D.Float implements Drawable {
 
-  private final Collection<CaptureDisk> disks = new HashSet<CaptureDisk>();
+  /**
+   * Disk counters of the current trial, or {@code null} before its disks are
+   * generated.
+   */
+  private TransmitterCounters counters = null;
 
-  private final Collection<CaptureDisk> coveredDisks = new HashSet<CaptureDisk>();
+  /**
+   * Index of this transmitter in {@link #counters}.
+   */
+  private int index = -1;
+
+  /**
+   * Attaches the disk counters of a trial to this transmitter.
+   * 
+   * @param counters
+   *          the counters of the trial.
+   * @param index
+   *          the index of this transmitter in the counters.
+   */
+  void setCounters(final TransmitterCounters counters, final int index) {
+    this.counters = counters;
+    this.index = index;
+  }
 
   public int getContention(){
-    return this.disks.size() - this.coveredDisks.size();
+    return this.counters == null ? 0 : this.counters.getContention(this.index);
   }
 
   @Override
@@ -83,21 +102,23 @@ public class Transmitter extends Point2D.Float implements Drawable {
 
   }
 
-  public void addDisk(final CaptureDisk disk) {
-    this.disks.add(disk);
-  }
-
   public Collection<CaptureDisk> getDisks() {
-    return this.disks;
+    if (this.counters == null) {
+      return Collections.emptyList();
+    }
+    return this.counters.getDisks(this.index);
   }
 
-  public void addCoveredDisk(final CaptureDisk disk) {
-    this.coveredDisks.add(disk);
+  /**
+   * The number of disks this transmitter captures, including covered ones.
+   */
+  public int getNumDisks() {
+    return this.counters == null ? 0 : this.counters.totalDisks[this.index];
   }
 
   public float getCaptureRatio() {
-    
-    return this.disks.isEmpty() ? 0 : ((float) this.coveredDisks.size()) / this.disks.size();
+    return this.counters == null ? 0 : this.counters
+        .getCaptureRatio(this.index);
   }
 
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.util.Collection;
+
+/**
+ * Per-transmitter disk counts for a single trial, indexed by each
+ * transmitter's index in the {@link CaptureDiskTable}. The disks captured by
+ * each transmitter are stored in compressed-row form: the table indices of
+ * transmitter {@code t}'s disks are {@code disks[diskStart[t]]} through
+ * {@code disks[diskStart[t + 1] - 1]}.
+ * 
+ * <p>
+ * The covered counts are maintained by the disk table, which counts a disk
+ * as covered when it is removed.
+ * </p>
+ * 
+ * @author Robert Moore
+ */
+public final class TransmitterCounters {
+
+  /**
+   * The table whose disks are counted.
+   */
+  final CaptureDiskTable table;
+
+  /**
+   * Number of disks captured by each transmitter.
+   */
+  final int[] totalDisks;
+
+  /**
+   * Number of removed (covered) disks captured by each transmitter.
+   */
+  final int[] coveredDisks;
+
+  /**
+   * Offset of each transmitter's first disk in {@link #disks}. Has one extra
+   * entry so that the last transmitter's disks end at {@code diskStart[n]}.
+   */
+  final int[] diskStart;
+
+  /**
+   * Table indices of the disks, grouped by capturing transmitter.
+   */
+  final int[] disks;
+
+  /**
+   * Counts the disks of each transmitter in a table. Every disk in the table
+   * should already be added and live.
+   * 
+   * @param table
+   *          the disk table of the trial.
+   */
+  TransmitterCounters(final CaptureDiskTable table) {
+    super();
+    this.table = table;
+    final int numTx = table.txX.length;
+    final int numDisks = table.length();
+    this.totalDisks = new int[numTx];
+    this.coveredDisks = new int[numTx];
+    this.diskStart = new int[numTx + 1];
+    this.disks = new int[numDisks];
+
+    for (int i = 0; i < numDisks; ++i) {
+      ++this.totalDisks[table.t1[i]];
+    }
+    for (int t = 0; t < numTx; ++t) {
+      this.diskStart[t + 1] = this.diskStart[t] + this.totalDisks[t];
+    }
+    final int[] next = new int[numTx];
+    System.arraycopy(this.diskStart, 0, next, 0, numTx);
+    for (int i = 0; i < numDisks; ++i) {
+      this.disks[next[table.t1[i]]++] = i;
+    }
+  }
+
+  /**
+   * Counts a disk as covered.
+   * 
+   * @param transmitter
+   *          the index of the disk's capturing transmitter.
+   */
+  void cover(final int transmitter) {
+    ++this.coveredDisks[transmitter];
+  }
+
+  /**
+   * Returns a read-only collection of the disks captured by a transmitter,
+   * including covered ones.
+   * 
+   * @param transmitter
+   *          the index of the transmitter.
+   */
+  public Collection<CaptureDisk> getDisks(final int transmitter) {
+    final DiskBitmap bitmap = new DiskBitmap();
+    for (int k = this.diskStart[transmitter]; k < this.diskStart[transmitter + 1]; ++k) {
+      bitmap.add(this.disks[k]);
+    }
+    return this.table.view(bitmap);
+  }
+
+  /**
+   * The number of transmitters counted.
+   */
+  public int numTransmitters() {
+    return this.totalDisks.length;
+  }
+
+  /**
+   * The number of uncovered disks captured by a transmitter.
+   * 
+   * @param transmitter
+   *          the index of the transmitter.
+   */
+  public int getContention(final int transmitter) {
+    return this.totalDisks[transmitter] - this.coveredDisks[transmitter];
+  }
+
+  /**
+   * The fraction of a transmitter's disks that are covered, or 0 if it has no
+   * disks.
+   * 
+   * @param transmitter
+   *          the index of the transmitter.
+   */
+  public float getCaptureRatio(final int transmitter) {
+    return this.totalDisks[transmitter] == 0 ? 0
+        : ((float) this.coveredDisks[transmitter])
+            / this.totalDisks[transmitter];
+  }
+}
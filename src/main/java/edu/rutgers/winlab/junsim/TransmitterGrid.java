@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import java.util.Collection;
+
+/**
+ * A uniform bucket grid over transmitter positions. Transmitters are sorted
+ * into square cells so that only transmitters in nearby cells need to be
+ * examined when looking for neighbors, or when checking whether a point is in
+ * range of any transmitter.
+ *
+ * @author Robert Moore
+ */
+public class TransmitterGrid {
+
+  /**
+   * Upper bound on the number of cells per transmitter, so that a small range
+   * over a large, sparse area doesn't allocate a huge grid.
+   */
+  private static final int MAX_CELLS_PER_TRANSMITTER = 4;
+
+  /**
+   * The transmitters, in index order.
+   */
+  final Transmitter[] transmitters;
+  /**
+   * X-coordinate of each transmitter.
+   */
+  final float[] x;
+  /**
+   * Y-coordinate of each transmitter.
+   */
+  final float[] y;
+
+  /**
+   * Left edge of the grid.
+   */
+  private final float minX;
+  /**
+   * Top edge of the grid.
+   */
+  private final float minY;
+  /**
+   * Width and height of each cell.
+   */
+  private final float cellSize;
+  /**
+   * Number of cell columns.
+   */
+  private final int columns;
+  /**
+   * Number of cell rows.
+   */
+  private final int rows;
+  /**
+   * Start offset of each cell in {@link #cellItems}. Cell {@code c} holds
+   * {@code cellItems[cellStart[c]]} through {@code cellItems[cellStart[c+1]-1]}
+   * .
+   */
+  private final int[] cellStart;
+  /**
+   * Transmitter indices, grouped by cell and in ascending order within each
+   * cell.
+   */
+  private final int[] cellItems;
+
+  /**
+   * Builds a grid over a collection of transmitters with cells of
+   * approximately {@code cellSize} on each side.
+   *
+   * @param transmitters
+   *          the transmitters to index.
+   * @param cellSize
+   *          the preferred cell size, normally the largest query range.
+   */
+  public TransmitterGrid(final Collection<Transmitter> transmitters,
+      final float cellSize) {
+    this(transmitters.toArray(new Transmitter[transmitters.size()]), cellSize);
+  }
+
+  /**
+   * Builds a grid over the transmitters with cells of approximately
+   * {@code cellSize} on each side.
+   *
+   * @param transmitters
+   *          the transmitters to index.
+   * @param cellSize
+   *          the preferred cell size, normally the largest query range.
+   */
+  public TransmitterGrid(final Transmitter[] transmitters, final float cellSize) {
+    super();
+    this.transmitters = transmitters;
+    final int n = transmitters.length;
+    this.x = new float[n];
+    this.y = new float[n];
+    float loX = Float.MAX_VALUE;
+    float loY = Float.MAX_VALUE;
+    float hiX = -Float.MAX_VALUE;
+    float hiY = -Float.MAX_VALUE;
+    for (int i = 0; i < n; ++i) {
+      this.x[i] = transmitters[i].x;
+      this.y[i] = transmitters[i].y;
+      loX = Math.min(loX, this.x[i]);
+      loY = Math.min(loY, this.y[i]);
+      hiX = Math.max(hiX, this.x[i]);
+      hiY = Math.max(hiY, this.y[i]);
+    }
+    if (n == 0) {
+      loX = loY = hiX = hiY = 0;
+    }
+    this.minX = loX;
+    this.minY = loY;
+
+    float size = cellSize > 0 ? cellSize : 1f;
+    final long maxCells = MAX_CELLS_PER_TRANSMITTER * (long) n + 1;
+    while (((long) ((hiX - loX) / size) + 1) * ((long) ((hiY - loY) / size) + 1) > maxCells) {
+      size *= 2;
+    }
+    this.cellSize = size;
+    this.columns = (int) ((hiX - loX) / size) + 1;
+    this.rows = (int) ((hiY - loY) / size) + 1;
+
+    // Counting sort of transmitters into cells
+    final int numCells = this.columns * this.rows;
+    this.cellStart = new int[numCells + 1];
+    final int[] cellOf = new int[n];
+    for (int i = 0; i < n; ++i) {
+      cellOf[i] = this.row(this.y[i]) * this.columns + this.column(this.x[i]);
+      ++this.cellStart[cellOf[i] + 1];
+    }
+    for (int c = 0; c < numCells; ++c) {
+      this.cellStart[c + 1] += this.cellStart[c];
+    }
+    this.cellItems = new int[n];
+    final int[] fill = new int[numCells];
+    for (int i = 0; i < n; ++i) {
+      final int c = cellOf[i];
+      this.cellItems[this.cellStart[c] + fill[c]++] = i;
+    }
+  }
+
+  /**
+   * The cell column of an x-coordinate, clamped to the grid.
+   *
+   * @param xCoord
+   *          the x-coordinate.
+   * @return the column index.
+   */
+  private int column(final double xCoord) {
+    final int col = (int) Math.floor((xCoord - this.minX) / this.cellSize);
+    return col < 0 ? 0 : (col >= this.columns ? this.columns - 1 : col);
+  }
+
+  /**
+   * The cell row of a y-coordinate, clamped to the grid.
+   *
+   * @param yCoord
+   *          the y-coordinate.
+   * @return the row index.
+   */
+  private int row(final double yCoord) {
+    final int row = (int) Math.floor((yCoord - this.minY) / this.cellSize);
+    return row < 0 ? 0 : (row >= this.rows ? this.rows - 1 : row);
+  }
+
+  /**
+   * The number of transmitters in this grid.
+   *
+   * @return the number of transmitters.
+   */
+  public int size() {
+    return this.x.length;
+  }
+
+  /**
+   * Collects the indices of every transmitter with a higher index than
+   * {@code i} whose cell may be within {@code range} of transmitter {@code i}.
+   * The caller is responsible for checking the actual distance. Indices are
+   * returned in a fixed order for a given grid.
+   *
+   * @param i
+   *          the index of the transmitter.
+   * @param range
+   *          the maximum distance of interest.
+   * @param neighbors
+   *          storage for the returned indices, at least {@link #size()} long.
+   * @return the number of indices stored in {@code neighbors}.
+   */
+  public int collectNeighbors(final int i, final double range,
+      final int[] neighbors) {
+    final int minCol = this.column(this.x[i] - range);
+    final int maxCol = this.column(this.x[i] + range);
+    final int minRow = this.row(this.y[i] - range);
+    final int maxRow = this.row(this.y[i] + range);
+    int count = 0;
+    for (int row = minRow; row <= maxRow; ++row) {
+      for (int col = minCol; col <= maxCol; ++col) {
+        final int c = row * this.columns + col;
+        for (int k = this.cellStart[c]; k < this.cellStart[c + 1]; ++k) {
+          final int j = this.cellItems[k];
+          if (j > i) {
+            neighbors[count++] = j;
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Determines whether a point is strictly within {@code range} of at least
+   * one transmitter. Only the transmitters in cells that overlap the range are
+   * examined.
+   *
+   * @param px
+   *          the x-coordinate of the point.
+   * @param py
+   *          the y-coordinate of the point.
+   * @param range
+   *          the range to test.
+   * @return {@code true} if some transmitter is closer than {@code range} to
+   *         the point.
+   */
+  public boolean anyWithin(final double px, final double py, final double range) {
+    final int minCol = this.column(px - range);
+    final int maxCol = this.column(px + range);
+    final int maxRow = this.row(py + range);
+    for (int row = this.row(py - range); row <= maxRow; ++row) {
+      for (int col = minCol; col <= maxCol; ++col) {
+        final int c = row * this.columns + col;
+        for (int k = this.cellStart[c]; k < this.cellStart[c + 1]; ++k) {
+          final int j = this.cellItems[k];
+          final double dx = px - this.x[j];
+          final double dy = py - this.y[j];
+          if (Math.sqrt(dx * dx + dy * dy) < range) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+}
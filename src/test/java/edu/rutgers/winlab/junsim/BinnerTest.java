@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link Binner}.
+ * 
+ * @author Robert Moore
+ */
+public class BinnerTest {
+
+  @Test
+  public void testDuplicatesKeptOnce() {
+    final Binner binner = new Binner(4, 0, 40);
+    for (int i = 0; i < 3; ++i) {
+      binner.put(1f, 2f, 25);
+      binner.put(3f, 4f, 25);
+    }
+    binner.put(-0f, 0f, 25);
+    binner.put(0f, -0f, 25);
+    final int bindex = binner.getBindex(25);
+    assertEquals(6, binner.getBinCoordinates(bindex).length);
+    assertEquals(3, binner.getBinScores(bindex).length);
+
+    final Point2D[] points = binner.takeMaxBin();
+    assertEquals(3, points.length);
+    assertEquals(new Point2D.Float(1f, 2f), points[1]);
+    assertEquals(new Point2D.Float(3f, 4f), points[2]);
+    assertTrue(binner.getBinCoordinates(bindex).length == 0);
+  }
+
+  @Test
+  public void testHighestScoreKept() {
+    final Binner binner = new Binner(4, 0, 40);
+    binner.putInBin(0, 1f, 2f, 3);
+    binner.putInBin(0, 1f, 2f, 7);
+    binner.putInBin(0, 1f, 2f, 5);
+    assertArrayEquals(new int[] { 7 }, binner.getBinScores(0));
+  }
+
+  @Test
+  public void testRebinMergesDuplicates() {
+    final Binner binner = new Binner(4, 0, 40);
+    binner.put(1f, 2f, 5);
+    binner.put(1f, 2f, 35);
+    binner.put(3f, 4f, 15);
+    // A single bin for every score
+    binner.rebin(100, 100, null);
+    int total = 0;
+    for (int i = 0; i < 4; ++i) {
+      total += binner.getBinScores(i).length;
+    }
+    assertEquals(2, total);
+    final int[] scores = binner.getBinScores(0);
+    Arrays.sort(scores);
+    assertArrayEquals(new int[] { 15, 35 }, scores);
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link BranchBoundExperiment} finds the deepest point of small
+ * random layouts.
+ * 
+ * @author Robert Moore
+ */
+public class BranchBoundExperimentTest {
+
+  private static final float UNIVERSE = 200f;
+
+  private static final float MAX_RANGE = 30f;
+
+  /**
+   * Generates the capture disks of transmitters placed uniformly at random in
+   * a square of the universe.
+   */
+  private static CaptureDiskTable createTable(final Random rand,
+      final int numTransmitters, final float minXY, final float maxXY) {
+    Main.config = new Config();
+    Main.config.universeWidth = UNIVERSE;
+    Main.config.universeHeight = UNIVERSE;
+    Main.config.maxRangeMeters = MAX_RANGE;
+    final List<Transmitter> txers = new ArrayList<Transmitter>();
+    for (int i = 0; i < numTransmitters; ++i) {
+      final Transmitter txer = new Transmitter();
+      txer.x = minXY + rand.nextFloat() * (maxXY - minXY);
+      txer.y = minXY + rand.nextFloat() * (maxXY - minXY);
+      txers.add(txer);
+    }
+    return Main.generateCaptureDisks(txers, null);
+  }
+
+  /**
+   * Counts the live disks covering a point.
+   */
+  private static int depth(final CaptureDiskTable table, final float x,
+      final float y) {
+    int count = 0;
+    for (int i = table.nextLive(0); i >= 0; i = table.nextLive(i + 1)) {
+      if (table.contains(i, x, y)) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * The depth of the deepest point of the plane, by sweeping every disk
+   * boundary and range limit against every live disk.
+   */
+  private static int sweepAll(final CaptureDiskTable table) {
+    final int[] live = new int[table.size()];
+    int numLive = 0;
+    for (int i = table.nextLive(0); i >= 0; i = table.nextLive(i + 1)) {
+      live[numLive++] = i;
+    }
+    final SweepExperiment.CircleSweep sweep = new SweepExperiment.CircleSweep();
+    final double maxRange = Math.sqrt(table.maxRangeSquared);
+    int best = 0;
+    for (int k = 0; k < numLive; ++k) {
+      final int i = live[k];
+      best = Math.max(best, sweep.sweep(table, i, table.centerX[i],
+          table.centerY[i], table.radius[i], live, numLive));
+    }
+    for (int t = 0; t < table.txX.length; ++t) {
+      best = Math.max(best, sweep.sweep(table, table.length() + t,
+          table.txX[t], table.txY[t], maxRange, live, numLive));
+    }
+    return best;
+  }
+
+  /**
+   * Places receivers greedily and checks each against a full sweep. The
+   * transmitters are far enough from the edges that every covered point is
+   * in the universe.
+   */
+  @Test
+  public void testMatchesSweep() {
+    final Random rand = new Random(11);
+    for (int trial = 0; trial < 8; ++trial) {
+      final CaptureDiskTable table = createTable(rand, 6 + trial, 50, 150);
+      for (int m = 0; m < 3 && !table.isEmpty(); ++m) {
+        final int expected = sweepAll(table);
+        final BranchBoundExperiment.Search search = new BranchBoundExperiment.Search(
+            table);
+        assertEquals(expected > 0, search.run());
+        assertEquals("Trial " + trial + ", receiver " + m, expected,
+            search.bestCount);
+        assertEquals(expected, depth(table, search.bestX, search.bestY));
+
+        final List<CaptureDisk> covered = new ArrayList<CaptureDisk>();
+        for (int i = table.nextLive(0); i >= 0; i = table.nextLive(i + 1)) {
+          if (table.contains(i, search.bestX, search.bestY)) {
+            covered.add(table.get(i));
+          }
+        }
+        table.removeAll(covered);
+      }
+    }
+  }
+
+  /**
+   * With transmitters near the corner of the universe, receivers stay inside
+   * it and are at least as deep as any point of a fine grid over it.
+   */
+  @Test
+  public void testStaysInUniverse() {
+    final Random rand = new Random(12);
+    for (int trial = 0; trial < 4; ++trial) {
+      final CaptureDiskTable table = createTable(rand, 8, 0, 25);
+      final BranchBoundExperiment.Search search = new BranchBoundExperiment.Search(
+          table);
+      assertTrue(search.run());
+      assertTrue(search.bestX >= 0 && search.bestX <= UNIVERSE);
+      assertTrue(search.bestY >= 0 && search.bestY <= UNIVERSE);
+      assertEquals(search.bestCount, depth(table, search.bestX, search.bestY));
+      int gridBest = 0;
+      for (float x = 0; x <= 60; x += 0.25f) {
+        for (float y = 0; y <= 60; y += 0.25f) {
+          gridBest = Math.max(gridBest, depth(table, x, y));
+        }
+      }
+      assertTrue(search.bestCount >= gridBest);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link CandidateStream} releases its workers.
+ * 
+ * @author Robert Moore
+ */
+public class CandidateStreamTest {
+
+  /**
+   * Counts the points it is handed.
+   */
+  private static final class Counter extends CandidateStream.Consumer {
+    int numPoints = 0;
+
+    @Override
+    void accept(final CandidateStream.Block block) {
+      this.numPoints += block.size;
+    }
+  }
+
+  private static List<Counter> createCounters(final int numCounters) {
+    final List<Counter> counters = new ArrayList<Counter>();
+    for (int i = 0; i < numCounters; ++i) {
+      counters.add(new Counter());
+    }
+    return counters;
+  }
+
+  /**
+   * Every point reaches a consumer exactly once.
+   */
+  @Test
+  public void testFinish() throws Exception {
+    final ExecutorService workers = Executors.newFixedThreadPool(2);
+    try {
+      final List<Counter> counters = createCounters(2);
+      final CandidateStream stream = new CandidateStream(false, 0f);
+      stream.start(counters, workers);
+      for (int i = 0; i < 3 * CandidateStream.BLOCK_SIZE + 5; ++i) {
+        stream.add(i, i);
+      }
+      assertEquals(3 * CandidateStream.BLOCK_SIZE + 5, stream.finish());
+      assertEquals(3 * CandidateStream.BLOCK_SIZE + 5,
+          counters.get(0).numPoints + counters.get(1).numPoints);
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  /**
+   * A cancelled stream hands its workers back, so later tasks still run.
+   */
+  @Test
+  public void testCancelReleasesWorkers() throws Exception {
+    final ExecutorService workers = Executors.newFixedThreadPool(2);
+    try {
+      final CandidateStream stream = new CandidateStream(true, 0f);
+      stream.start(createCounters(2), workers);
+      stream.add(1f, 2f);
+      stream.cancel();
+      final Integer result = workers.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          return Integer.valueOf(1);
+        }
+      }).get(10, TimeUnit.SECONDS);
+      assertEquals(1, result.intValue());
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link DiskBitmap} against {@link BitSet} for sparse, dense and
+ * run-heavy chunks, so that every kind of container is exercised.
+ * 
+ * @author Robert Moore
+ */
+public class DiskBitmapTest {
+
+  /**
+   * Largest value added by the random tests, spanning several chunks.
+   */
+  private static final int MAX_VALUE = 5 * 65536;
+
+  /**
+   * Adds random values to a bitmap and a bit set. Each chunk is filled to one
+   * of three densities, so that array, bitmap and run containers all appear.
+   */
+  private static void fill(final Random rand, final DiskBitmap bitmap,
+      final BitSet expected) {
+    for (int chunk = 0; chunk < MAX_VALUE >>> 16; ++chunk) {
+      final int base = chunk << 16;
+      switch (rand.nextInt(4)) {
+      case 0:
+        // Sparse: array container
+        for (int i = 0; i < 100; ++i) {
+          final int v = base + rand.nextInt(65536);
+          bitmap.add(v);
+          expected.set(v);
+        }
+        break;
+      case 1:
+        // Dense: bitmap container
+        for (int i = 0; i < 20000; ++i) {
+          final int v = base + rand.nextInt(65536);
+          bitmap.add(v);
+          expected.set(v);
+        }
+        break;
+      case 2:
+        // A few long ranges: run container after runOptimize
+        for (int i = 0; i < 5; ++i) {
+          final int start = base + rand.nextInt(60000);
+          final int length = 1 + rand.nextInt(5000);
+          for (int v = start; v < start + length; ++v) {
+            bitmap.add(v);
+            expected.set(v);
+          }
+        }
+        break;
+      default:
+        // Empty chunk
+        break;
+      }
+    }
+  }
+
+  private static void assertSame(final BitSet expected, final DiskBitmap actual) {
+    assertEquals(expected.cardinality(), actual.cardinality());
+    assertEquals(expected.isEmpty(), actual.isEmpty());
+    int e = expected.nextSetBit(0);
+    int a = actual.nextSetBit(0);
+    while (e >= 0) {
+      assertEquals(e, a);
+      assertTrue(actual.contains(e));
+      e = expected.nextSetBit(e + 1);
+      a = actual.nextSetBit(a + 1);
+    }
+    assertEquals(-1, a);
+  }
+
+  @Test
+  public void testAdd() {
+    final Random rand = new Random(1);
+    final DiskBitmap bitmap = new DiskBitmap();
+    final BitSet expected = new BitSet();
+    fill(rand, bitmap, expected);
+    assertSame(expected, bitmap);
+    for (int i = 0; i < 10000; ++i) {
+      final int v = rand.nextInt(MAX_VALUE);
+      assertEquals(expected.get(v), bitmap.contains(v));
+    }
+    assertFalse(bitmap.contains(-1));
+  }
+
+  @Test
+  public void testAddPastArrayLimit() {
+    final DiskBitmap bitmap = new DiskBitmap();
+    final BitSet expected = new BitSet();
+    // Every other value, so the chunk can't be stored as runs
+    for (int i = 0; i <= 2 * DiskBitmap.ARRAY_MAX; i += 2) {
+      bitmap.add(i);
+      expected.set(i);
+    }
+    assertSame(expected, bitmap);
+    bitmap.runOptimize();
+    assertSame(expected, bitmap);
+  }
+
+  @Test
+  public void testNextSetBit() {
+    final DiskBitmap bitmap = new DiskBitmap();
+    assertEquals(-1, bitmap.nextSetBit(0));
+    bitmap.add(5);
+    bitmap.add(65535);
+    bitmap.add(3 * 65536 + 7);
+    assertEquals(5, bitmap.nextSetBit(0));
+    assertEquals(5, bitmap.nextSetBit(5));
+    assertEquals(65535, bitmap.nextSetBit(6));
+    // Skips the empty chunks in between
+    assertEquals(3 * 65536 + 7, bitmap.nextSetBit(65536));
+    assertEquals(-1, bitmap.nextSetBit(3 * 65536 + 8));
+  }
+
+  @Test
+  public void testRunOptimize() {
+    final Random rand = new Random(5);
+    for (int trial = 0; trial < 5; ++trial) {
+      final DiskBitmap bitmap = new DiskBitmap();
+      final BitSet expected = new BitSet();
+      fill(rand, bitmap, expected);
+      final int before = bitmap.sizeInBytes();
+      bitmap.runOptimize();
+      assertSame(expected, bitmap);
+      assertTrue(bitmap.sizeInBytes() <= before);
+      // Containers must keep working after conversion
+      for (int i = 0; i < 1000; ++i) {
+        final int v = rand.nextInt(MAX_VALUE);
+        bitmap.add(v);
+        expected.set(v);
+      }
+      assertSame(expected, bitmap);
+    }
+  }
+
+  @Test
+  public void testRunContainerIsSmall() {
+    final DiskBitmap bitmap = new DiskBitmap();
+    for (int v = 0; v < 60000; ++v) {
+      bitmap.add(v);
+    }
+    bitmap.runOptimize();
+    assertEquals(60000, bitmap.cardinality());
+    assertTrue(bitmap.sizeInBytes() < 100);
+    assertEquals(59999, bitmap.nextSetBit(59999));
+    assertEquals(-1, bitmap.nextSetBit(60000));
+  }
+}
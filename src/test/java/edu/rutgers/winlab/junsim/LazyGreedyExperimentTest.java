@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link LazyGreedyExperiment} places the same receivers as
+ * {@link BasicExperiment}.
+ * 
+ * @author Robert Moore
+ */
+public class LazyGreedyExperimentTest {
+
+  private static final int NUM_RECEIVERS = 6;
+
+  /**
+   * A square lattice of transmitters, so that many points tie for the most
+   * disks covered.
+   */
+  private static List<Transmitter> createLattice() {
+    final List<Transmitter> txers = new ArrayList<Transmitter>();
+    for (int i = 0; i < 3; ++i) {
+      for (int j = 0; j < 3; ++j) {
+        final Transmitter txer = new Transmitter();
+        txer.x = 80f + 20f * i;
+        txer.y = 80f + 20f * j;
+        txers.add(txer);
+      }
+    }
+    return txers;
+  }
+
+  private static TaskConfig createTask() {
+    final TaskConfig task = new TaskConfig();
+    task.transmitters = createLattice();
+    task.numTransmitters = task.transmitters.size();
+    task.numReceivers = NUM_RECEIVERS;
+    task.receivers = new ArrayList<Receiver>();
+    return task;
+  }
+
+  private static ExperimentStats[] createStats() {
+    final ExperimentStats[] stats = new ExperimentStats[NUM_RECEIVERS];
+    for (int i = 0; i < stats.length; ++i) {
+      stats[i] = new ExperimentStats();
+    }
+    return stats;
+  }
+
+  /**
+   * Lazy and basic place identical receivers, in the same order, even though
+   * the symmetric layout leaves ties at every round.
+   */
+  @Test
+  public void testMatchesBasic() {
+    Main.config = new Config();
+    Main.config.universeWidth = 200f;
+    Main.config.universeHeight = 200f;
+    Main.config.maxRangeMeters = 40f;
+    Main.config.outputBasePath = System.getProperty("java.io.tmpdir");
+    Main.gfxConfig = new RenderConfig();
+
+    final TaskConfig basicTask = createTask();
+    new BasicExperiment(basicTask, createStats(), null).perform();
+    final TaskConfig lazyTask = createTask();
+    new LazyGreedyExperiment(lazyTask, createStats(), null).perform();
+
+    final List<Receiver> basic = new ArrayList<Receiver>(basicTask.receivers);
+    final List<Receiver> lazy = new ArrayList<Receiver>(lazyTask.receivers);
+    assertTrue(basic.size() > 1);
+    assertEquals(basic.size(), lazy.size());
+    for (int i = 0; i < basic.size(); ++i) {
+      assertEquals("Receiver " + i, basic.get(i).getX(), lazy.get(i).getX(), 0);
+      assertEquals("Receiver " + i, basic.get(i).getY(), lazy.get(i).getY(), 0);
+      assertEquals(basic.get(i).coveringDisks.size(),
+          lazy.get(i).coveringDisks.size());
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link PointSet}.
+ * 
+ * @author Robert Moore
+ */
+public class PointSetTest {
+
+  @Test
+  public void testExactEquality() {
+    final PointSet set = new PointSet();
+    assertTrue(set.isEmpty());
+    assertTrue(set.add(1f, 2f));
+    assertFalse(set.add(1f, 2f));
+    assertTrue(set.add(2f, 1f));
+    assertTrue(set.add(Math.nextUp(1f), 2f));
+    assertEquals(3, set.size());
+    assertTrue(set.contains(2f, 1f));
+    assertFalse(set.contains(1f, 1f));
+  }
+
+  @Test
+  public void testNegativeZero() {
+    final PointSet set = new PointSet();
+    assertTrue(set.add(0f, 0f));
+    assertFalse(set.add(-0f, 0f));
+    assertFalse(set.add(0f, -0f));
+    assertFalse(set.add(-0f, -0f));
+    assertTrue(set.contains(-0f, -0f));
+    assertEquals(1, set.size());
+  }
+
+  @Test
+  public void testEpsilon() {
+    final PointSet set = new PointSet(4, 0.5f);
+    assertTrue(set.add(1.1f, 1.1f));
+    // Same grid cell
+    assertFalse(set.add(1.4f, 1.0f));
+    assertTrue(set.contains(1.0f, 1.49f));
+    // Neighbouring cells
+    assertTrue(set.add(1.5f, 1.1f));
+    assertTrue(set.add(1.1f, 0.99f));
+    // Cells either side of zero are distinct
+    assertTrue(set.add(-0.1f, 0f));
+    assertTrue(set.add(0.1f, 0f));
+    assertFalse(set.add(-0f, 0.2f));
+    assertEquals(5, set.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeEpsilon() {
+    new PointSet(4, -1f);
+  }
+
+  @Test
+  public void testGrowthKeepsOrder() {
+    final PointSet set = new PointSet(1, 0f);
+    for (int i = 0; i < 10000; ++i) {
+      assertTrue(set.add(i, -i));
+    }
+    for (int i = 0; i < 10000; ++i) {
+      assertFalse(set.add(i, -i));
+    }
+    assertEquals(10000, set.size());
+    final List<Point2D> points = set.toPointList();
+    for (int i = 0; i < 10000; ++i) {
+      assertEquals(new Point2D.Float(i, -i), points.get(i));
+    }
+    assertEquals(10000, set.toPointSet().size());
+  }
+
+  @Test
+  public void testClear() {
+    final PointSet set = new PointSet();
+    set.add(1f, 1f);
+    set.clear();
+    assertTrue(set.isEmpty());
+    assertFalse(set.contains(1f, 1f));
+    assertTrue(set.add(1f, 1f));
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link RefinementQuadTree} reuses the samples of coarser
+ * windows.
+ * 
+ * @author Robert Moore
+ */
+public class RefinementQuadTreeTest {
+
+  private static RefinementQuadTree createTree(final boolean randomized) {
+    Main.config = new Config();
+    Main.config.universeWidth = 100f;
+    Main.config.universeHeight = 100f;
+    Main.config.maxRangeMeters = 200f;
+    Main.config.setGridDensity(10f);
+    Main.config.setRandomized(randomized);
+    final Transmitter txer = new Transmitter();
+    txer.x = 50f;
+    txer.y = 50f;
+    final List<Transmitter> txers = new ArrayList<Transmitter>();
+    txers.add(txer);
+    return new RefinementQuadTree(txers, new Random(3));
+  }
+
+  /**
+   * A window half the size of the universe reuses the scored samples of the
+   * universe's grid that fall inside it.
+   */
+  @Test
+  public void testChildReusesParent() {
+    for (final boolean randomized : new boolean[] { false, true }) {
+      final RefinementQuadTree tree = createTree(randomized);
+      final Collection<Point2D> parent = tree.refine(0, 100, 0, 100,
+          randomized ? 1f : 0f);
+      for (final Point2D p : parent) {
+        tree.setScore(p, 1f);
+      }
+      final int numParent = tree.numSamples();
+
+      final Collection<Point2D> child = tree.refine(25, 75, 25, 75,
+          randomized ? 0.25f : 0f);
+      int numReused = 0;
+      for (final Point2D p : child) {
+        if (tree.isEvaluated(p)) {
+          assertTrue(parent.contains(p));
+          ++numReused;
+        }
+      }
+      // Every other point of each row and column was sampled by the parent
+      assertTrue(numReused >= 25);
+      assertEquals(numParent + child.size() - numReused, tree.numSamples());
+    }
+  }
+
+  /**
+   * Clearing drops the samples, and the same windows generate the same points
+   * again.
+   */
+  @Test
+  public void testClear() {
+    final RefinementQuadTree tree = createTree(true);
+    final Set<Point2D> first = new HashSet<Point2D>(tree.refine(25, 75, 25,
+        75, 0.25f));
+    tree.setScore(first.iterator().next(), 2f);
+    tree.clear();
+    assertEquals(0, tree.numSamples());
+    assertEquals(0, tree.numEvaluated());
+    final Set<Point2D> second = new HashSet<Point2D>(tree.refine(25, 75, 25,
+        75, 0.25f));
+    assertEquals(first, second);
+    for (final Point2D p : second) {
+      assertTrue(!tree.isEvaluated(p));
+    }
+  }
+}
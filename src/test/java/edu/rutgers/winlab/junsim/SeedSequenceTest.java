@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SeedSequence}.
+ * 
+ * @author Robert Moore
+ */
+public class SeedSequenceTest {
+
+  @Test
+  public void testDeterministic() {
+    final Random a = new SeedSequence(42).child(3).child(1).newRandom();
+    final Random b = new SeedSequence(42).child(3).child(1).newRandom();
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(a.nextLong(), b.nextLong());
+    }
+  }
+
+  @Test
+  public void testIndependentOfSiblings() {
+    final SeedSequence root = new SeedSequence(42);
+    final Random first = root.child(2).newRandom();
+    // Drawing from another stream doesn't change this one
+    final Random other = root.child(1).newRandom();
+    for (int i = 0; i < 1000; ++i) {
+      other.nextLong();
+    }
+    final Random second = root.child(2).newRandom();
+    assertEquals(first.nextLong(), second.nextLong());
+  }
+
+  @Test
+  public void testChildrenDiffer() {
+    final SeedSequence root = new SeedSequence(1);
+    final Set<Long> firsts = new HashSet<Long>();
+    for (int i = 0; i < 1000; ++i) {
+      firsts.add(Long.valueOf(root.child(i).newRandom().nextLong()));
+    }
+    assertEquals(1000, firsts.size());
+    // A child differs from its parent and from the same path under another root
+    assertFalse(root.newRandom().nextLong() == root.child(0).newRandom()
+        .nextLong());
+    assertFalse(new SeedSequence(2).child(0).newRandom().nextLong() == root
+        .child(0).newRandom().nextLong());
+  }
+}
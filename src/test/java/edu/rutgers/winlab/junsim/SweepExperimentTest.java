@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2012 Robert Moore and Rutgers University
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package edu.rutgers.winlab.junsim;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the arc arithmetic of {@link SweepExperiment} and for its search
+ * for the deepest point.
+ * 
+ * @author Robert Moore
+ */
+public class SweepExperimentTest {
+
+  private static final double TWO_PI = 2 * Math.PI;
+
+  private static final double DELTA = 1e-9;
+
+  private static void assertArcs(final double[] expected, final double[] actual,
+      final int num) {
+    assertEquals(expected.length / 2, num);
+    assertArrayEquals(expected, Arrays.copyOf(actual, 2 * num), DELTA);
+  }
+
+  @Test
+  public void testArcsContained() {
+    final double[] out = new double[4];
+    // Circle entirely inside the disk
+    assertArcs(new double[] { 0, TWO_PI },
+        out, SweepExperiment.arcs(0, 0, 1, 0.5, 0, 2, out));
+  }
+
+  @Test
+  public void testArcsDisjoint() {
+    final double[] out = new double[4];
+    // Disk too far away
+    assertEquals(0, SweepExperiment.arcs(0, 0, 1, 5, 0, 1, out));
+    // Disk strictly inside the circle
+    assertEquals(0, SweepExperiment.arcs(0, 0, 3, 0.5, 0, 1, out));
+  }
+
+  @Test
+  public void testArcsSimple() {
+    final double[] out = new double[4];
+    // Disk centered on the positive y-axis, crossing the unit circle at 45
+    // degrees either side
+    final double d = Math.sqrt(2);
+    assertArcs(new double[] { Math.PI / 4, 3 * Math.PI / 4 }, out,
+        SweepExperiment.arcs(0, 0, 1, 0, d, 1, out));
+  }
+
+  @Test
+  public void testArcsWrapAroundZero() {
+    final double[] out = new double[4];
+    // Disk centered on the positive x-axis covers angle 0, so the arc is split
+    final double d = Math.sqrt(2);
+    assertArcs(new double[] { 0, Math.PI / 4, 7 * Math.PI / 4, TWO_PI },
+        out, SweepExperiment.arcs(0, 0, 1, d, 0, 1, out));
+    // Slightly below the axis, the arc still wraps
+    final int num = SweepExperiment.arcs(0, 0, 1, d * Math.cos(-0.1), d
+        * Math.sin(-0.1), 1, out);
+    assertArcs(new double[] { 0, Math.PI / 4 - 0.1, 7 * Math.PI / 4 - 0.1,
+        TWO_PI }, out, num);
+  }
+
+  @Test
+  public void testUnion() {
+    final double[] out = new double[8];
+    // Disjoint arcs are interleaved in order
+    assertArcs(new double[] { 0, 1, 2, 3, 4, 5 }, out, SweepExperiment.union(
+        new double[] { 0, 1, 4, 5 }, 2, new double[] { 2, 3 }, 1, out));
+    // Overlapping and touching arcs are merged
+    assertArcs(new double[] { 0, 3 }, out, SweepExperiment.union(
+        new double[] { 0, 1, 2, 3 }, 2, new double[] { 0.5, 2 }, 1, out));
+    // One side empty
+    assertArcs(new double[] { 1, 2 }, out, SweepExperiment.union(
+        new double[0], 0, new double[] { 1, 2 }, 1, out));
+  }
+
+  @Test
+  public void testUnionWrapAroundZero() {
+    final double[] a = new double[4];
+    final double[] b = new double[4];
+    final double[] out = new double[8];
+    final double d = Math.sqrt(2);
+    // Both arcs wrap through 0, at different widths
+    final int numA = SweepExperiment.arcs(0, 0, 1, d, 0, 1, a);
+    final int numB = SweepExperiment.arcs(0, 0, 1, 1.5, 0, 1, b);
+    final int num = SweepExperiment.union(a, numA, b, numB, out);
+    assertArcs(new double[] { 0, Math.PI / 4, 7 * Math.PI / 4, TWO_PI },
+        out, num);
+    // A wrapping arc and an arc on the other side of the circle
+    final int numC = SweepExperiment.arcs(0, 0, 1, -d, 0, 1, b);
+    assertArcs(new double[] { 0, Math.PI / 4, 3 * Math.PI / 4,
+        5 * Math.PI / 4, 7 * Math.PI / 4, TWO_PI }, out,
+        SweepExperiment.union(a, numA, b, numC, out));
+  }
+
+  @Test
+  public void testIntersect() {
+    final double[] out = new double[8];
+    assertArcs(new double[] { 0.5, 1, 2, 2.5 }, out,
+        SweepExperiment.intersect(new double[] { 0, 1, 2, 3 }, 2,
+            new double[] { 0.5, 2.5 }, 1, out));
+    // Touching arcs share a single angle, which is covered because disks are
+    // closed
+    assertArcs(new double[] { 1, 1 }, out, SweepExperiment.intersect(
+        new double[] { 0, 1 }, 1, new double[] { 1, 2 }, 1, out));
+    assertEquals(0, SweepExperiment.intersect(new double[] { 0, 1 }, 1,
+        new double[] { 2, 3 }, 1, out));
+  }
+
+  @Test
+  public void testIntersectWrapAroundZero() {
+    final double[] a = new double[4];
+    final double[] b = new double[4];
+    final double[] out = new double[8];
+    final double d = Math.sqrt(2);
+    // An arc around 0 and an arc around pi/2 only overlap below pi/4
+    final int numA = SweepExperiment.arcs(0, 0, 1, d, 0, 1, a);
+    final int numB = SweepExperiment.arcs(0, 0, 1, 0, 1.2, 1, b);
+    final double halfWidth = Math.acos(0.6);
+    assertArcs(new double[] { Math.PI / 2 - halfWidth, Math.PI / 4 }, out,
+        SweepExperiment.intersect(a, numA, b, numB, out));
+    // Two arcs that both wrap overlap on both sides of 0
+    final int numC = SweepExperiment.arcs(0, 0, 1, 1.5, 0, 1, b);
+    final int numBoth = SweepExperiment.intersect(a, numA, b, numC, out);
+    assertEquals(2, numBoth);
+    assertEquals(0, out[0], DELTA);
+    assertEquals(TWO_PI, out[3], DELTA);
+    // Intersecting with the full circle keeps both pieces
+    assertArcs(new double[] { 0, Math.PI / 4, 7 * Math.PI / 4, TWO_PI },
+        out, SweepExperiment.intersect(a, numA, new double[] { 0, TWO_PI },
+            1, out));
+  }
+
+  /**
+   * Builds a table of disks given as (x, y, radius) triples. Both
+   * transmitters of every disk are in range of the whole area, so only the
+   * disks decide coverage.
+   */
+  private static CaptureDiskTable createTable(final float[] disks) {
+    Main.config = new Config();
+    Main.config.maxRangeMeters = 10000f;
+    final Transmitter t1 = new Transmitter();
+    t1.x = 50f;
+    t1.y = 50f;
+    final Transmitter t2 = new Transmitter();
+    t2.x = 51f;
+    t2.y = 50f;
+    final List<Transmitter> txers = new ArrayList<Transmitter>();
+    txers.add(t1);
+    txers.add(t2);
+    final CaptureDiskTable table = new CaptureDiskTable(txers);
+    for (int i = 0; i < disks.length; i += 3) {
+      final CaptureDisk disk = new CaptureDisk();
+      disk.disk = new Circle(i / 3);
+      disk.disk.center.x = disks[i];
+      disk.disk.center.y = disks[i + 1];
+      disk.disk.radius = disks[i + 2];
+      disk.t1 = t1;
+      disk.t2 = t2;
+      table.add(disk);
+    }
+    table.buildCounters();
+    return table;
+  }
+
+  /**
+   * Number of disks within a small tolerance of a point.
+   */
+  private static int countNear(final CaptureDiskTable table, final double x,
+      final double y) {
+    int count = 0;
+    for (int i = table.nextLive(0); i >= 0; i = table.nextLive(i + 1)) {
+      final double dx = x - table.centerX[i];
+      final double dy = y - table.centerY[i];
+      if (Math.sqrt(dx * dx + dy * dy) <= table.radius[i] + 1e-6) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * The depth of the deepest point, by brute force. Some deepest point is
+   * either the center of a disk inside all the others covering it, or on two
+   * circles, so it is enough to count at the centers and at every pairwise
+   * intersection, including tangent points.
+   */
+  private static int bruteForceDepth(final CaptureDiskTable table) {
+    int best = 0;
+    for (int i = table.nextLive(0); i >= 0; i = table.nextLive(i + 1)) {
+      best = Math.max(best,
+          countNear(table, table.centerX[i], table.centerY[i]));
+      for (int j = table.nextLive(i + 1); j >= 0; j = table.nextLive(j + 1)) {
+        final double dx = table.centerX[j] - table.centerX[i];
+        final double dy = table.centerY[j] - table.centerY[i];
+        final double d = Math.sqrt(dx * dx + dy * dy);
+        final double ri = table.radius[i];
+        final double rj = table.radius[j];
+        if (d == 0 || d > ri + rj || d < Math.abs(ri - rj)) {
+          continue;
+        }
+        final double a = (d * d + ri * ri - rj * rj) / (2 * d);
+        final double h = Math.sqrt(Math.max(0, ri * ri - a * a));
+        final double mx = table.centerX[i] + a * dx / d;
+        final double my = table.centerY[i] + a * dy / d;
+        best = Math.max(best,
+            countNear(table, mx - h * dy / d, my + h * dx / d));
+        best = Math.max(best,
+            countNear(table, mx + h * dy / d, my - h * dx / d));
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Finds the deepest arc and places a receiver on it, checking both against
+   * the brute-force depth.
+   */
+  private static void assertDeepest(final float[] disks) {
+    final CaptureDiskTable table = createTable(disks);
+    final DiskGrid diskIndex = new DiskGrid(table);
+    final TaskConfig task = new TaskConfig();
+    task.numTransmitters = 2;
+    final SweepExperiment experiment = new SweepExperiment(task,
+        new ExperimentStats[0], null);
+    final SweepExperiment.SweepTask deepest = experiment
+        .findDeepest(diskIndex);
+    final int expected = bruteForceDepth(table);
+    assertEquals(expected, deepest.bestDepth);
+
+    final int c = deepest.bestCircle;
+    assertTrue(c < table.length());
+    final Receiver receiver = SweepExperiment.placeReceiver(diskIndex,
+        table.centerX[c], table.centerY[c], table.radius[c],
+        deepest.bestAngle, deepest.bestDepth);
+    assertEquals(expected, receiver.coveringDisks.size());
+  }
+
+  @Test
+  public void testDeepestRandom() {
+    final Random rand = new Random(5);
+    for (int trial = 0; trial < 50; ++trial) {
+      final float[] disks = new float[3 * (3 + rand.nextInt(20))];
+      for (int i = 0; i < disks.length; i += 3) {
+        disks[i] = 100 * rand.nextFloat();
+        disks[i + 1] = 100 * rand.nextFloat();
+        disks[i + 2] = 5 + 25 * rand.nextFloat();
+      }
+      assertDeepest(disks);
+    }
+  }
+
+  @Test
+  public void testDeepestTangent() {
+    // Externally tangent, the deepest point is the single point they share
+    assertDeepest(new float[] { 10, 10, 3, 16, 10, 3 });
+    // Three disks tangent at the same point
+    assertDeepest(new float[] { 10, 10, 3, 16, 10, 3, 13, 14, 4 });
+    // Internally tangent
+    assertDeepest(new float[] { 10, 10, 5, 12, 10, 3, 30, 30, 2 });
+  }
+
+  @Test
+  public void testDeepestCoincident() {
+    // The same disk three times, and another overlapping it
+    assertDeepest(new float[] { 20, 20, 4, 20, 20, 4, 20, 20, 4, 23, 20, 2 });
+    // Concentric disks
+    assertDeepest(new float[] { 50, 50, 10, 50, 50, 6, 50, 50, 2, 70, 50, 1 });
+  }
+}